@@ -18,11 +18,20 @@ package com.intuit.wasabi.analytics;
 import com.google.inject.AbstractModule;
 import com.intuit.wasabi.analytics.impl.AnalysisToolsImpl;
 import com.intuit.wasabi.analytics.impl.AnalyticsImpl;
+import com.intuit.wasabi.analytics.impl.AssignmentCountReconciler;
+import com.intuit.wasabi.analytics.impl.RollupBuilder;
 import com.intuit.wasabi.experiment.ExperimentsModule;
 import com.intuit.wasabi.repository.RepositoryModule;
 import org.slf4j.Logger;
 
+import java.util.Properties;
+
 import static com.google.inject.Scopes.SINGLETON;
+import static com.google.inject.name.Names.named;
+import static com.intuit.autumn.utils.PropertyFactory.create;
+import static com.intuit.autumn.utils.PropertyFactory.getProperty;
+import static com.intuit.wasabi.analytics.impl.AnalyticsImpl.PROPERTY_NAME;
+import static java.lang.Integer.parseInt;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -42,8 +51,22 @@ public class AnalyticsModule extends AbstractModule {
         install(new ExperimentsModule());
         install(new RepositoryModule());
 
+        Properties properties = create(PROPERTY_NAME, AnalyticsModule.class);
+
+        bind(Integer.class).annotatedWith(named("rollup.build.interval"))
+                .toInstance(parseInt(getProperty("rollup.build.interval", properties, "900")));
+        bind(Integer.class).annotatedWith(named("rollup.build.lock.lease"))
+                .toInstance(parseInt(getProperty("rollup.build.lock.lease", properties, "1800")));
+        bind(Integer.class).annotatedWith(named("event.partitions.days.ahead"))
+                .toInstance(parseInt(getProperty("event.partitions.days.ahead", properties, "0")));
+        bind(Integer.class).annotatedWith(named("assignment.counts.reconcile.interval"))
+                .toInstance(parseInt(getProperty("assignment.counts.reconcile.interval", properties, "86400")));
+        bind(Integer.class).annotatedWith(named("assignment.counts.reconcile.lock.lease"))
+                .toInstance(parseInt(getProperty("assignment.counts.reconcile.lock.lease", properties, "3600")));
         bind(Analytics.class).to(AnalyticsImpl.class).in(SINGLETON);
         bind(AnalysisTools.class).to(AnalysisToolsImpl.class).in(SINGLETON);
+        bind(RollupBuilder.class).asEagerSingleton();
+        bind(AssignmentCountReconciler.class).asEagerSingleton();
 
         LOGGER.debug("installed module: {}", AnalyticsModule.class.getSimpleName());
     }
@@ -50,6 +50,11 @@ public class AnalysisToolsImpl implements AnalysisTools {
      */
     private static final Logger LOGGER = getLogger(AnalysisToolsImpl.class);
 
+    /**
+     * Number of buckets from which on the bucket comparisons are calculated in parallel
+     */
+    static final int PARALLEL_COMPARISON_THRESHOLD = 4;
+
     /**
      * {@inheritDoc}
      */
@@ -95,112 +100,147 @@ public class AnalysisToolsImpl implements AnalysisTools {
      * {@inheritDoc}
      */
     @Override
-    public void generateBucketComparison(Map<Bucket.Label, BucketStatistics> buckets,
-                                         BinomialMetrics.BinomialMetric metric, double effectSize, Parameters.Mode mode) {
-        //loop over the set of buckets twice to get the two buckets to compare
-        for (BucketStatistics bucket : buckets.values()) {
-            for (BucketStatistics otherBucket : buckets.values()) {
-                //don't compare a bucket to itself
-                if (bucket != otherBucket) {
-                    long bucketImpressions = bucket.getImpressionCounts().getUniqueUserCount();
-                    long otherBucketImpressions = otherBucket.getImpressionCounts().getUniqueUserCount();
-                    //calculate the joint action comparison
-                    long bucketUniqueCounts = bucket.getJointActionCounts().getUniqueUserCount();
-                    long otherBucketUniqueCounts = otherBucket.getJointActionCounts().getUniqueUserCount();
-                    Estimate rateDifference;
-
-                    try {
-                        rateDifference = metric.estimateRateDifference(bucketImpressions, bucketUniqueCounts,
-                                otherBucketImpressions, otherBucketUniqueCounts);
-                    } catch (IllegalArgumentException iae) {
-                        LOGGER.warn("BinomialMetric.estimateRateDifference called with invalid arguments by AnalyticsService.generateBucketComparisons: ", iae);
-
-                        rateDifference = new Estimate(NaN, NaN, NaN);
-                    }
+    public void generateBucketComparison(final Map<Bucket.Label, BucketStatistics> buckets,
+                                         final BinomialMetrics.BinomialMetric metric, final double effectSize,
+                                         final Parameters.Mode mode) {
+        //each bucket only receives its own comparisons, so the rows of the comparison matrix are independent
+        if (buckets.size() < PARALLEL_COMPARISON_THRESHOLD) {
+            for (BucketStatistics bucket : buckets.values()) {
+                addBucketComparisons(bucket, buckets.values(), metric, effectSize, mode);
+            }
+        } else {
+            buckets.values().parallelStream()
+                    .forEach(bucket -> addBucketComparisons(bucket, buckets.values(), metric, effectSize, mode));
+        }
+    }
 
-                    Double fractionData;
+    /**
+     * Compares a bucket to all other buckets and adds the comparisons to it.
+     *
+     * @param bucket       the bucket to add the comparisons to
+     * @param otherBuckets all buckets of the experiment, including {@code bucket}
+     * @param metric       the binomial metric to use
+     * @param effectSize   the effect size of interest
+     * @param mode         the mode of the analysis
+     */
+    private void addBucketComparisons(BucketStatistics bucket, Collection<BucketStatistics> otherBuckets,
+                                      BinomialMetrics.BinomialMetric metric, double effectSize,
+                                      Parameters.Mode mode) {
+        for (BucketStatistics otherBucket : otherBuckets) {
+            //don't compare a bucket to itself
+            if (bucket != otherBucket) {
+                bucket.addToBucketComparisons(otherBucket.getLabel(),
+                        compareBuckets(bucket, otherBucket, metric, effectSize, mode));
+            }
+        }
+    }
 
-                    fractionData = computeFractionData(metric, effectSize, mode, bucketImpressions, otherBucketImpressions, bucketUniqueCounts, otherBucketUniqueCounts);
+    /**
+     * Compares the joint action and the shared actions of two buckets.
+     *
+     * @param bucket      the bucket to compare
+     * @param otherBucket the bucket to compare to
+     * @param metric      the binomial metric to use
+     * @param effectSize  the effect size of interest
+     * @param mode        the mode of the analysis
+     * @return the comparison of {@code bucket} to {@code otherBucket}
+     */
+    private BucketComparison compareBuckets(BucketStatistics bucket, BucketStatistics otherBucket,
+                                            BinomialMetrics.BinomialMetric metric, double effectSize,
+                                            Parameters.Mode mode) {
+        long bucketImpressions = bucket.getImpressionCounts().getUniqueUserCount();
+        long otherBucketImpressions = otherBucket.getImpressionCounts().getUniqueUserCount();
+        //calculate the joint action comparison
+        long bucketUniqueCounts = bucket.getJointActionCounts().getUniqueUserCount();
+        long otherBucketUniqueCounts = otherBucket.getJointActionCounts().getUniqueUserCount();
+        Estimate rateDifference;
 
-                    DistinguishableEffectSize effects;
+        try {
+            rateDifference = metric.estimateRateDifference(bucketImpressions, bucketUniqueCounts,
+                    otherBucketImpressions, otherBucketUniqueCounts);
+        } catch (IllegalArgumentException iae) {
+            LOGGER.warn("BinomialMetric.estimateRateDifference called with invalid arguments by AnalyticsService.generateBucketComparisons: ", iae);
 
-                    try {
-                        effects = metric.distinguishableEffectSizes(bucketImpressions, bucketUniqueCounts,
-                                otherBucketImpressions, otherBucketUniqueCounts);
-                    } catch (IllegalArgumentException iae) {
-                        LOGGER.warn("BinomialMetric.distinguishableEffectSizes called with invalid arguments by AnalyticsService.generateBucketComparisons: ", iae);
+            rateDifference = new Estimate(NaN, NaN, NaN);
+        }
 
-                        effects = new DistinguishableEffectSize(NaN, NaN);
-                    }
+        Double fractionData;
 
-                    ComparisonStatistics jointComparison = new ComparisonStatistics.Builder()
-                            .withActionRateDifference(rateDifference)
-                            .withSmallestDistinguishableEffectSize(effects)
-                            .withFractionDataCollected(fractionData)
-                            .build();
-
-                    jointComparison.setSufficientData( DoubleMath.fuzzyEquals(fractionData, 1.0, Math.ulp(1.0)));
-
-                    computeClearComparisonWinner(bucket, otherBucket, rateDifference, jointComparison);
-
-                    //loop over shared actions within the buckets to calculate comparisons
-                    Map<Event.Name, ActionComparisonStatistics> actionsComparisons = new HashMap<>();
-
-                    Map<Event.Name, ActionCounts> actionCounts = bucket.getActionCounts();
-                    Map<Event.Name, ActionCounts> otherActionCounts = otherBucket.getActionCounts();
-                    Set<Event.Name> sharedNames = new HashSet<>(actionCounts.keySet());
-                    sharedNames.retainAll(otherActionCounts.keySet());
-                    for (Event.Name actionName : sharedNames) {
-                        ActionCounts action = actionCounts.get(actionName);
-                        ActionCounts otherAction = otherActionCounts.get(actionName);
-                        bucketUniqueCounts = action.getUniqueUserCount();
-                        otherBucketUniqueCounts = otherAction.getUniqueUserCount();
-
-                        try {
-                            rateDifference = metric.estimateRateDifference(bucketImpressions,
-                                    bucketUniqueCounts, otherBucketImpressions, otherBucketUniqueCounts);
-                        } catch (IllegalArgumentException iae) {
-                            LOGGER.warn("BinomialMetric.estimateRateDifference called with invalid arguments by AnalyticsService.generateBucketComparisons: ", iae);
-                            rateDifference = new Estimate(NaN, NaN, NaN);
-                        }
+        fractionData = computeFractionData(metric, effectSize, mode, bucketImpressions, otherBucketImpressions, bucketUniqueCounts, otherBucketUniqueCounts);
 
-                        fractionData = computeFractionData(metric, effectSize, mode, bucketImpressions,
-                                otherBucketImpressions, bucketUniqueCounts, otherBucketUniqueCounts);
+        DistinguishableEffectSize effects;
 
-                        try {
-                            effects = metric.distinguishableEffectSizes(bucketImpressions,
-                                    bucketUniqueCounts, otherBucketImpressions, otherBucketUniqueCounts);
-                        } catch (IllegalArgumentException iae) {
-                            LOGGER.warn("BinomialMetric.distinguishableEffectSizes called with invalid arguments by AnalyticsService.generateBucketComparisons: ",  iae);
+        try {
+            effects = metric.distinguishableEffectSizes(bucketImpressions, bucketUniqueCounts,
+                    otherBucketImpressions, otherBucketUniqueCounts);
+        } catch (IllegalArgumentException iae) {
+            LOGGER.warn("BinomialMetric.distinguishableEffectSizes called with invalid arguments by AnalyticsService.generateBucketComparisons: ", iae);
 
-                            effects = new DistinguishableEffectSize(NaN, NaN);
-                        }
+            effects = new DistinguishableEffectSize(NaN, NaN);
+        }
 
-                        ActionComparisonStatistics actionComparison = new ActionComparisonStatistics.Builder()
-                                .withActionName(actionName)
-                                .withActionRateDifference(rateDifference)
-                                .withSmallestDistinguishableEffectSize(effects)
-                                .withFractionDataCollected(fractionData)
-                                .build();
+        ComparisonStatistics jointComparison = new ComparisonStatistics.Builder()
+                .withActionRateDifference(rateDifference)
+                .withSmallestDistinguishableEffectSize(effects)
+                .withFractionDataCollected(fractionData)
+                .build();
 
-                        actionComparison.setSufficientData( DoubleMath.fuzzyEquals(fractionData, 1.0, Math.ulp(1.0)) );
+        jointComparison.setSufficientData( DoubleMath.fuzzyEquals(fractionData, 1.0, Math.ulp(1.0)));
 
-                        computeClearComparisonWinner(bucket, otherBucket, rateDifference, actionComparison);
+        computeClearComparisonWinner(bucket, otherBucket, rateDifference, jointComparison);
 
-                        actionsComparisons.put(actionName, actionComparison);
-                    }
+        //loop over shared actions within the buckets to calculate comparisons
+        Map<Event.Name, ActionComparisonStatistics> actionsComparisons = new HashMap<>();
 
-                    Bucket.Label otherBucketLabel = otherBucket.getLabel();
-                    BucketComparison comparison = new BucketComparison.Builder()
-                            .withOtherLabel(otherBucketLabel)
-                            .withJointActionComparison(jointComparison)
-                            .withActionComparisons(actionsComparisons)
-                            .build();
+        Map<Event.Name, ActionCounts> actionCounts = bucket.getActionCounts();
+        Map<Event.Name, ActionCounts> otherActionCounts = otherBucket.getActionCounts();
+        Set<Event.Name> sharedNames = new HashSet<>(actionCounts.keySet());
+        sharedNames.retainAll(otherActionCounts.keySet());
+        for (Event.Name actionName : sharedNames) {
+            ActionCounts action = actionCounts.get(actionName);
+            ActionCounts otherAction = otherActionCounts.get(actionName);
+            bucketUniqueCounts = action.getUniqueUserCount();
+            otherBucketUniqueCounts = otherAction.getUniqueUserCount();
 
-                    bucket.addToBucketComparisons(otherBucketLabel, comparison);
-                }
+            try {
+                rateDifference = metric.estimateRateDifference(bucketImpressions,
+                        bucketUniqueCounts, otherBucketImpressions, otherBucketUniqueCounts);
+            } catch (IllegalArgumentException iae) {
+                LOGGER.warn("BinomialMetric.estimateRateDifference called with invalid arguments by AnalyticsService.generateBucketComparisons: ", iae);
+                rateDifference = new Estimate(NaN, NaN, NaN);
+            }
+
+            fractionData = computeFractionData(metric, effectSize, mode, bucketImpressions,
+                    otherBucketImpressions, bucketUniqueCounts, otherBucketUniqueCounts);
+
+            try {
+                effects = metric.distinguishableEffectSizes(bucketImpressions,
+                        bucketUniqueCounts, otherBucketImpressions, otherBucketUniqueCounts);
+            } catch (IllegalArgumentException iae) {
+                LOGGER.warn("BinomialMetric.distinguishableEffectSizes called with invalid arguments by AnalyticsService.generateBucketComparisons: ",  iae);
+
+                effects = new DistinguishableEffectSize(NaN, NaN);
             }
+
+            ActionComparisonStatistics actionComparison = new ActionComparisonStatistics.Builder()
+                    .withActionName(actionName)
+                    .withActionRateDifference(rateDifference)
+                    .withSmallestDistinguishableEffectSize(effects)
+                    .withFractionDataCollected(fractionData)
+                    .build();
+
+            actionComparison.setSufficientData( DoubleMath.fuzzyEquals(fractionData, 1.0, Math.ulp(1.0)) );
+
+            computeClearComparisonWinner(bucket, otherBucket, rateDifference, actionComparison);
+
+            actionsComparisons.put(actionName, actionComparison);
         }
+
+        return new BucketComparison.Builder()
+                .withOtherLabel(otherBucket.getLabel())
+                .withJointActionComparison(jointComparison)
+                .withActionComparisons(actionsComparisons)
+                .build();
     }
 
     private void computeClearComparisonWinner(BucketStatistics bucket, BucketStatistics otherBucket, Estimate rateDifference, ComparisonStatistics jointComparison) {
@@ -15,6 +15,8 @@
  *******************************************************************************/
 package com.intuit.wasabi.analytics.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 import com.intuit.wasabi.analytics.AnalysisTools;
 import com.intuit.wasabi.analytics.Analytics;
@@ -38,13 +40,13 @@ import com.intuit.wasabi.repository.ExperimentRepository;
 import org.slf4j.Logger;
 
 import java.text.DateFormat;
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
 import static com.intuit.autumn.utils.PropertyFactory.create;
 import static com.intuit.autumn.utils.PropertyFactory.getProperty;
 import static com.intuit.wasabi.util.DateUtil.createCalendarMidnight;
+import static java.lang.Integer.parseInt;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -61,7 +63,11 @@ public class AnalyticsImpl implements Analytics {
     private final AnalysisTools analysisTools;
     private final ExperimentRepository cassandraRepository;
     private final AssignmentsRepository assignmentRepository;
-    private Date release_date = null;
+    /**
+     * Cumulative statistics of days which are over, keyed by the numbers of their cumulative counts and the
+     * statistics parameters. The cached statistics are never handed out, only copies of them.
+     */
+    private final Cache<List<Object>, ExperimentStatistics> closedDayStatistics;
 
     /**
      * Constructor
@@ -84,16 +90,13 @@ public class AnalyticsImpl implements Analytics {
         this.analysisTools = analysisTools;
         this.cassandraRepository = cassandraRepository;
         this.assignmentRepository = assignmentRepository;
-        final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
 
         // FIXME: inject
         Properties properties = create(PROPERTY_NAME, AnalyticsImpl.class);
 
-        try {
-            release_date = dateFormat.parse(getProperty("analytics.release.date", properties));
-        } catch (ParseException e) {
-            LOGGER.error("Error: Could not parse the specified date and set to default", e);
-        }
+        closedDayStatistics = CacheBuilder.newBuilder()
+                .maximumSize(parseInt(getProperty("analytics.dailies.cache.size", properties, "1000")))
+                .build();
     }
 
     /**
@@ -383,49 +386,157 @@ public class AnalyticsImpl implements Analytics {
             start_ts = exp.getStartTime();
         }
 
-        Calendar start_cal = createCalendarMidnight(start_ts);
+        final Calendar start_cal = createCalendarMidnight(start_ts);
         Date end_ts = parameters.getToTime();
 
         if (end_ts == null) {
             end_ts = exp.getEndTime();
         }
 
-        Calendar end_cal = createCalendarMidnight(end_ts);
-        DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+        final Calendar end_cal = createCalendarMidnight(end_ts);
 
-        df.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return (ExperimentCumulativeCounts) transactionFactory.transaction(new Block() {
+            @Override
+            public Object value(Transaction transaction) {
+                DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
 
-        List<DailyCounts> days = new ArrayList<>();
+                df.setTimeZone(TimeZone.getTimeZone("UTC"));
 
-        //loop over days using calendars
-        for (; start_cal.compareTo(end_cal) <= 0; start_cal.add(Calendar.DATE, 1)) {
-            Calendar to_cal = (Calendar) start_cal.clone();
+                //scan the events from the start of the experiment up through the last day once
+                Calendar last_cal = (Calendar) end_cal.clone();
+                last_cal.add(Calendar.DATE, 1);
+                last_cal.add(Calendar.MILLISECOND, -1);
+
+                Parameters dailyParams = parameters.clone();
+                dailyParams.setFromTime(null);
+                dailyParams.setToTime(new Date(last_cal.getTime().getTime()));
+
+                SortedMap<String, List<Map>> impressionRows = groupByDay(
+                        analyticsRepository.getImpressionRowsPerDay(experimentId, dailyParams));
+                SortedMap<String, List<Map>> actionsRows = groupByDay(
+                        analyticsRepository.getActionsRowsPerDay(experimentId, dailyParams));
+                SortedMap<String, List<Map>> jointActionsRows = groupByDay(
+                        analyticsRepository.getJointActionsPerDay(experimentId, dailyParams));
+                Map<Bucket.Label, BucketCounts> emptyBuckets = analyticsRepository.getEmptyBuckets(experimentId);
+                Map<Bucket.Label, BucketCounts> cumulativeBuckets = cloneBuckets(emptyBuckets);
+
+                //fold the days before the first requested day into the cumulative counts
+                String firstDate = df.format(start_cal.getTime());
+                SortedSet<String> earlierDates = new TreeSet<>();
+                earlierDates.addAll(impressionRows.headMap(firstDate).keySet());
+                earlierDates.addAll(actionsRows.headMap(firstDate).keySet());
+                earlierDates.addAll(jointActionsRows.headMap(firstDate).keySet());
+
+                for (String date : earlierDates) {
+                    addDailyRows(cumulativeBuckets, impressionRows.get(date), actionsRows.get(date),
+                            jointActionsRows.get(date), true);
+                }
 
-            to_cal.add(Calendar.DATE, 1);
-            to_cal.add(Calendar.MILLISECOND, -1);
+                List<DailyCounts> days = new ArrayList<>();
+
+                //loop over days using calendars, adding each day to the cumulative counts
+                for (Calendar day_cal = (Calendar) start_cal.clone(); day_cal.compareTo(end_cal) <= 0;
+                     day_cal.add(Calendar.DATE, 1)) {
+                    String currentDate = df.format(day_cal.getTime());
+                    Map<Bucket.Label, BucketCounts> perDayBuckets = cloneBuckets(emptyBuckets);
+
+                    addDailyRows(perDayBuckets, impressionRows.get(currentDate), actionsRows.get(currentDate),
+                            jointActionsRows.get(currentDate), false);
+                    addDailyRows(cumulativeBuckets, impressionRows.get(currentDate), actionsRows.get(currentDate),
+                            jointActionsRows.get(currentDate), true);
+
+                    days.add(new DailyCounts.Builder().setDate(currentDate)
+                            .withPerDay(analysisTools.calculateExperimentCounts(perDayBuckets.values()))
+                            .withCumulative(analysisTools.calculateExperimentCounts(
+                                    cloneBuckets(cumulativeBuckets).values()))
+                            .build());
+                }
+
+                return new ExperimentCumulativeCounts.Builder().withDays(days).build();
+            }
+        });
+    }
 
-            String currentDate = df.format(start_cal.getTime());
+    private SortedMap<String, List<Map>> groupByDay(List<Map> rows) {
+        SortedMap<String, List<Map>> rowsByDay = new TreeMap<>();
 
-            //fetch the counts for the current day only
-            Parameters dailyParams = parameters.clone();
-            dailyParams.setFromTime(new Date(start_cal.getTime().getTime()));
-            dailyParams.setToTime(new Date(to_cal.getTime().getTime()));
+        for (Map row : rows) {
+            String day = (String) row.get("day");
+            List<Map> dayRows = rowsByDay.get(day);
 
-            ExperimentCounts perDayCount = getExperimentCounts(experimentId, dailyParams);
+            if (dayRows == null) {
+                dayRows = new ArrayList<>();
+                rowsByDay.put(day, dayRows);
+            }
 
-            //fetch the counts from the beginning of the experiment up through the current day
-            Parameters cumulativeParams = parameters.clone();
-            cumulativeParams.setFromTime(null);
-            cumulativeParams.setToTime(new Date(to_cal.getTime().getTime()));
+            dayRows.add(row);
+        }
 
-            ExperimentCounts cumulativeCount = getExperimentCounts(experimentId, cumulativeParams);
+        return rowsByDay;
+    }
 
-            days.add(new DailyCounts.Builder().setDate(currentDate).withPerDay(perDayCount)
-                    .withCumulative(cumulativeCount).build());
+    private Map<Bucket.Label, BucketCounts> cloneBuckets(Map<Bucket.Label, BucketCounts> buckets) {
+        Map<Bucket.Label, BucketCounts> clonedBuckets = new HashMap<>();
 
+        for (Map.Entry<Bucket.Label, BucketCounts> bucketEntry : buckets.entrySet()) {
+            clonedBuckets.put(bucketEntry.getKey(), bucketEntry.getValue().clone());
         }
 
-        return new ExperimentCumulativeCounts.Builder().withDays(days).build();
+        return clonedBuckets;
+    }
+
+    /**
+     * Adds the counts of one day to the given buckets. For cumulative counts the unique users are the users
+     * seen for the first time that day, so that no user is counted twice over several days.
+     */
+    private void addDailyRows(Map<Bucket.Label, BucketCounts> buckets, List<Map> impressionRows,
+                              List<Map> actionsRows, List<Map> jointActionsRows, boolean cumulative) {
+        String uniqueUsers = cumulative ? "nu" : "cu";
+
+        if (impressionRows != null) {
+            for (Map impressionRow : impressionRows) {
+                BucketCounts bucket = buckets.get(Bucket.Label.valueOf((String) impressionRow.get("bid")));
+
+                if (bucket != null) {
+                    bucket.getImpressionCounts().addCount(new Counts((Long) impressionRow.get("c"),
+                            (Long) impressionRow.get(uniqueUsers)));
+                }
+            }
+        }
+
+        if (jointActionsRows != null) {
+            for (Map jointActionsRow : jointActionsRows) {
+                BucketCounts bucket = buckets.get(Bucket.Label.valueOf((String) jointActionsRow.get("bid")));
+
+                if (bucket != null) {
+                    bucket.getJointActionCounts().addCount(new Counts((Long) jointActionsRow.get("c"),
+                            (Long) jointActionsRow.get(uniqueUsers)));
+                }
+            }
+        }
+
+        if (actionsRows != null) {
+            for (Map actionRow : actionsRows) {
+                BucketCounts bucket = buckets.get(Bucket.Label.valueOf((String) actionRow.get("bid")));
+
+                if (bucket == null) {
+                    continue;
+                }
+
+                Event.Name actionName = Event.Name.valueOf((String) actionRow.get(ACTION));
+                ActionCounts actionCounts = bucket.getActionCounts().get(actionName);
+
+                if (actionCounts == null) {
+                    bucket.addActionCounts(actionName, new ActionCounts.Builder()
+                            .withActionName(actionName)
+                            .withEventCount((Long) actionRow.get("c"))
+                            .withUniqueUserCount((Long) actionRow.get(uniqueUsers))
+                            .build());
+                } else {
+                    actionCounts.addCount(new Counts((Long) actionRow.get("c"), (Long) actionRow.get(uniqueUsers)));
+                }
+            }
+        }
     }
 
     /**
@@ -477,6 +588,13 @@ public class AnalyticsImpl implements Analytics {
         //get counts for each day, using rollups if applicable
         ExperimentCumulativeCounts counts = getExperimentRollupDailies(experimentId, parameters);
         List<DailyStatistics> days = new ArrayList<>();
+        DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+
+        df.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        String today = df.format(new Date());
+        ExperimentCounts previousCumulativeCount = null;
+        ExperimentStatistics previousCumulativeStatistics = null;
 
         for (DailyCounts day : counts.getDays()) {
             //fetch the counts for the current day only and create corresponding statistics objects
@@ -500,16 +618,32 @@ public class AnalyticsImpl implements Analytics {
             analysisTools.generateRate(perDayStatistics, metric);
 
             //fetch the counts from the beginning of the experiment up through the current day
-            //and create corresponding statistics objects
+            //and create corresponding statistics objects; these only depend on the cumulative counts, so they are
+            //reused for days without new counts and for days which are over
             ExperimentCounts cumulativeCount = day.getCumulative();
-            ExperimentStatistics cumulativeStatistics = new ExperimentStatistics.Builder()
-                    .withExperimentCounts(cumulativeCount)
-                    .withBuckets(calculateBucketStatistics(cumulativeCount.getBuckets(),
-                            metric, effectSize, parameters.getMode()))
-                    .build();
-
-            analysisTools.generateRate(cumulativeStatistics, metric);
-            analysisTools.generateProgress(cumulativeStatistics);
+            ExperimentStatistics cumulativeStatistics;
+
+            if (cumulativeCount.equals(previousCumulativeCount)) {
+                cumulativeStatistics = previousCumulativeStatistics.clone();
+            } else if (day.getDate() != null && day.getDate().compareTo(today) < 0) {
+                List<Object> key = new ArrayList<>(Arrays.<Object>asList(parameters.getMetric(),
+                        parameters.getConfidenceLevel(), parameters.isSingleShot(), effectSize,
+                        parameters.getMode()));
+                key.addAll(countsKey(cumulativeCount));
+                key = Collections.unmodifiableList(key);
+                ExperimentStatistics cachedStatistics = closedDayStatistics.getIfPresent(key);
+                if (cachedStatistics == null) {
+                    cachedStatistics = calculateExperimentStatistics(cumulativeCount, metric, effectSize,
+                            parameters.getMode());
+                    closedDayStatistics.put(key, cachedStatistics);
+                }
+                cumulativeStatistics = cachedStatistics.clone();
+            } else {
+                cumulativeStatistics = calculateExperimentStatistics(cumulativeCount, metric, effectSize,
+                        parameters.getMode());
+            }
+            previousCumulativeCount = cumulativeCount;
+            previousCumulativeStatistics = cumulativeStatistics;
 
             days.add(new DailyStatistics.Builder().setDate(day.getDate()).withPerDay(perDayStatistics)
                     .withCumulative(cumulativeStatistics).build());
@@ -525,13 +659,60 @@ public class AnalyticsImpl implements Analytics {
      */
     @Override
     public AssignmentCounts getAssignmentCounts(Experiment.ID experimentID, Context context) {
+        // the counters summed over all contexts, if no context is given
+        if (context == null) {
+            return assignmentRepository.getBucketAssignmentCount(cassandraRepository.getExperiment(experimentID));
+        }
+        return cassandraRepository.getAssignmentCounts(experimentID, context);
+    }
+
+    /**
+     * Lists the numbers of the given counts, in the order of their bucket labels and action names, so that they
+     * can be used as a cache key which does not change if the counts are modified later. The number of buckets
+     * and actions precedes them, so that the lists of different counts never match.
+     *
+     * @param counts the counts of an experiment
+     * @return the labels, names and counts of the experiment counts
+     */
+    static List<Object> countsKey(ExperimentCounts counts) {
+        List<Object> key = new ArrayList<>();
+        addCountsKey(key, counts);
+        if (counts.getBuckets() != null) {
+            SortedMap<String, BucketCounts> buckets = new TreeMap<>();
+            for (Map.Entry<Bucket.Label, BucketCounts> bucket : counts.getBuckets().entrySet()) {
+                buckets.put(bucket.getKey().toString(), bucket.getValue());
+            }
+            key.add(buckets.size());
+            for (Map.Entry<String, BucketCounts> bucket : buckets.entrySet()) {
+                key.add(bucket.getKey());
+                addCountsKey(key, bucket.getValue());
+            }
+        }
+        return key;
+    }
+
+    private static void addCountsKey(List<Object> key, AbstractContainerCounts counts) {
+        addCountsKey(key, counts.getImpressionCounts());
+        addCountsKey(key, counts.getJointActionCounts());
+        if (counts.getActionCounts() != null) {
+            SortedMap<String, ActionCounts> actions = new TreeMap<>();
+            for (Map.Entry<Event.Name, ActionCounts> action : counts.getActionCounts().entrySet()) {
+                actions.put(action.getKey().toString(), action.getValue());
+            }
+            key.add(actions.size());
+            for (Map.Entry<String, ActionCounts> action : actions.entrySet()) {
+                key.add(action.getKey());
+                addCountsKey(key, action.getValue());
+            }
+        }
+    }
 
-        // Uses counters
-        Experiment experiment = cassandraRepository.getExperiment(experimentID);
-        if (release_date != null && release_date.before(experiment.getCreationTime())) {
-            return assignmentRepository.getBucketAssignmentCount(experiment);
+    private static void addCountsKey(List<Object> key, Counts counts) {
+        if (counts == null) {
+            key.add(null);
         } else {
-            return cassandraRepository.getAssignmentCounts(experimentID, context);
+            key.add(counts.getEventCount());
+            key.add(counts.getUniqueUserCount());
         }
     }
 
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.analytics.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.intuit.wasabi.experiment.Experiments;
+import com.intuit.wasabi.experimentobjects.Context;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.repository.AnalyticsRepository;
+import com.intuit.wasabi.repository.CassandraRepository;
+import com.intuit.wasabi.repository.ExperimentRepository;
+import org.slf4j.Logger;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static java.lang.management.ManagementFactory.getRuntimeMXBean;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Keeps the per context assignment counters in line with the assignments in <code>user_bucket_index</code>.
+ *
+ * At startup and every <code>assignment.counts.reconcile.interval</code> seconds the node holding the reconciliation
+ * lock recounts the assignments of all running and paused experiments and corrects the counters by the difference,
+ * so that failed counter updates do not accumulate. The lease of the lock is renewed for every experiment, and runs
+ * are skipped if any node completed a run within the interval. Counter updates may be pending for up to
+ * <code>assign.bucket.count.flush.interval</code> milliseconds, which are waited for before a correction. Terminated
+ * experiments are only recounted for contexts which are not reconciled yet, e.g. if they were assigned to before the
+ * counters were kept per context.
+ *
+ * The assignment counts of a context are recounted on reads until it has been reconciled once.
+ */
+public class AssignmentCountReconciler {
+
+    static final String LOCK_NAME = "assignment_counts";
+    private static final Logger LOGGER = getLogger(AssignmentCountReconciler.class);
+    private static final Context PROD = Context.valueOf("PROD");
+    private final Experiments experiments;
+    private final ExperimentRepository cassandraRepository;
+    private final AnalyticsRepository analyticsRepository;
+    private final int reconcileInterval;
+    private final int leaseSeconds;
+    private final long pendingMillis;
+    private final String owner;
+    private final ScheduledExecutorService reconcileExecutor;
+
+    /**
+     * Constructor
+     *
+     * @param experiments         experiments
+     * @param cassandraRepository cassandra repository
+     * @param analyticsRepository analytics repository
+     * @param reconcileInterval   seconds between two reconciliations, no reconciliations if not positive
+     * @param leaseSeconds        seconds the reconciliation lock is held after an experiment is reconciled
+     * @param pendingMillis       milliseconds assignment counter updates may be pending for
+     */
+    @Inject
+    public AssignmentCountReconciler(final Experiments experiments,
+                                     final @CassandraRepository ExperimentRepository cassandraRepository,
+                                     final AnalyticsRepository analyticsRepository,
+                                     final @Named("assignment.counts.reconcile.interval") Integer reconcileInterval,
+                                     final @Named("assignment.counts.reconcile.lock.lease") Integer leaseSeconds,
+                                     final @Named("assign.bucket.count.flush.interval") Integer pendingMillis) {
+        super();
+
+        this.experiments = experiments;
+        this.cassandraRepository = cassandraRepository;
+        this.analyticsRepository = analyticsRepository;
+        this.reconcileInterval = reconcileInterval;
+        this.leaseSeconds = leaseSeconds;
+        this.pendingMillis = Math.max(0, pendingMillis);
+        this.owner = getRuntimeMXBean().getName();
+        this.reconcileExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("AssignmentCountReconciler-%d").setDaemon(true).build());
+        if (reconcileInterval > 0) {
+            // the first reconciliation runs at startup, so that the counts of new contexts are not recounted for long
+            reconcileExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    reconcile();
+                }
+            }, 0, reconcileInterval, SECONDS);
+        }
+    }
+
+    /**
+     * Reconciles the assignment counters of all experiments, if this node holds the reconciliation lock and no
+     * reconciliation was completed within the interval. Stops if the lock is lost.
+     */
+    public void reconcile() {
+        try {
+            if (!analyticsRepository.acquireLock(LOCK_NAME, owner, leaseSeconds)) {
+                LOGGER.debug("Assignment counts are reconciled by another node");
+                return;
+            }
+            if (analyticsRepository.hasCompletedRunWithin(LOCK_NAME, reconcileInterval)) {
+                LOGGER.debug("Assignment counts were reconciled within the last {} seconds", reconcileInterval);
+                return;
+            }
+
+            for (Experiment experiment : experiments.getExperiments().getExperiments()) {
+                // renews the lease, so that another node does not take over a long run
+                if (!analyticsRepository.acquireLock(LOCK_NAME, owner, leaseSeconds)) {
+                    LOGGER.warn("Lost the assignment counts reconciliation lock, stopping before experiment {}",
+                            experiment.getID());
+                    return;
+                }
+                try {
+                    reconcile(experiment);
+                } catch (Exception e) {
+                    LOGGER.warn("Unable to reconcile the assignment counts of experiment " + experiment.getID(), e);
+                }
+            }
+            analyticsRepository.recordCompletedRun(LOCK_NAME);
+        } catch (Exception e) {
+            LOGGER.warn("Unable to reconcile the assignment counts", e);
+        }
+    }
+
+    /**
+     * Stops the periodic reconciliations.
+     */
+    public void shutdown() {
+        reconcileExecutor.shutdown();
+    }
+
+    /**
+     * Reconciles the assignment counters of an experiment for all contexts with counters or events.
+     *
+     * @param experiment the experiment
+     */
+    void reconcile(final Experiment experiment) {
+        Experiment.State state = experiment.getState();
+        boolean active = Experiment.State.RUNNING.equals(state) || Experiment.State.PAUSED.equals(state);
+        if (!active && !Experiment.State.TERMINATED.equals(state)) {
+            return;
+        }
+
+        Experiment.ID experimentID = experiment.getID();
+        Set<Context> contexts = new HashSet<>(cassandraRepository.getAssignmentCountContexts(experimentID));
+        contexts.addAll(analyticsRepository.getEventContexts(experimentID));
+        contexts.add(PROD);
+        Set<Context> reconciled = active ? Collections.<Context>emptySet()
+                : cassandraRepository.getReconciledAssignmentCountContexts(experimentID);
+
+        for (Context context : contexts) {
+            // no assignments are made to a terminated experiment, so its counters stay correct once reconciled
+            if (!reconciled.contains(context)) {
+                cassandraRepository.reconcileAssignmentCounts(experimentID, context, pendingMillis);
+            }
+        }
+    }
+}
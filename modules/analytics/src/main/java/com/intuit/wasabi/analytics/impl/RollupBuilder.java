@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.analytics.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.intuit.wasabi.analyticsobjects.Parameters;
+import com.intuit.wasabi.experiment.Experiments;
+import com.intuit.wasabi.experimentobjects.Context;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.repository.AnalyticsRepository;
+import org.joda.time.DateMidnight;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static java.lang.management.ManagementFactory.getRuntimeMXBean;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Builds the rows of <code>experiment_rollup</code> from the event tables, so that analytics requests are answered
+ * from the rollups instead of counting the raw events.
+ *
+ * Every <code>rollup.build.interval</code> seconds the node holding the rollup lock writes the daily and cumulative
+ * counts per bucket and action of all running, paused and recently terminated experiments. It resumes from the
+ * last rolled up day of each experiment and context, which is rewritten because its events may not have been
+ * complete, and keeps rolling up until the last day of the experiment, so that the rollups stay fresh.
+ *
+ * If <code>event.partitions.days.ahead</code> is positive, the same node also adds the daily partitions of the
+ * coming days to the event tables before each build. The tables are partitioned by day once by the operators with
+ * <code>partition_event_tables.sql</code>, which blocks writes while it copies the tables.
+ */
+public class RollupBuilder {
+
+    static final String LOCK_NAME = "experiment_rollup";
+    private static final Logger LOGGER = getLogger(RollupBuilder.class);
+    private static final String ACTION = "action";
+    private static final String DAY_FORMAT = "yyyy-MM-dd";
+    private final Experiments experiments;
+    private final AnalyticsRepository analyticsRepository;
+    private final int leaseSeconds;
+    private final int partitionDaysAhead;
+    private final String owner;
+    private final ScheduledExecutorService buildExecutor;
+
+    /**
+     * Constructor
+     *
+     * @param experiments         experiments
+     * @param analyticsRepository analytics repository
+     * @param buildInterval       seconds between two builds, no builds if not positive
+     * @param leaseSeconds        seconds the rollup lock is held after a build started
+     * @param partitionDaysAhead  days ahead to add event table partitions for, no partitioning if not positive
+     */
+    @Inject
+    public RollupBuilder(final Experiments experiments, final AnalyticsRepository analyticsRepository,
+                         final @Named("rollup.build.interval") Integer buildInterval,
+                         final @Named("rollup.build.lock.lease") Integer leaseSeconds,
+                         final @Named("event.partitions.days.ahead") Integer partitionDaysAhead) {
+        super();
+
+        this.experiments = experiments;
+        this.analyticsRepository = analyticsRepository;
+        this.leaseSeconds = leaseSeconds;
+        this.partitionDaysAhead = partitionDaysAhead;
+        this.owner = getRuntimeMXBean().getName();
+        this.buildExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("RollupBuilder-%d").setDaemon(true).build());
+        if (buildInterval > 0) {
+            buildExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    build();
+                }
+            }, buildInterval, buildInterval, SECONDS);
+        }
+    }
+
+    /**
+     * Rolls up all experiments with events which are not rolled up yet, if this node holds the rollup lock.
+     */
+    public void build() {
+        try {
+            if (!analyticsRepository.acquireLock(LOCK_NAME, owner, leaseSeconds)) {
+                LOGGER.debug("Rollups are built by another node");
+                return;
+            }
+
+            if (partitionDaysAhead > 0) {
+                try {
+                    analyticsRepository.addEventPartitions(partitionDaysAhead);
+                } catch (Exception e) {
+                    LOGGER.warn("Unable to add the event partitions", e);
+                }
+            }
+
+            for (Experiment experiment : experiments.getExperiments().getExperiments()) {
+                if (isRolledUp(experiment.getState())) {
+                    try {
+                        rollUp(experiment);
+                    } catch (Exception e) {
+                        LOGGER.warn("Unable to roll up experiment " + experiment.getID(), e);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Unable to build the rollups", e);
+        }
+    }
+
+    /**
+     * Stops the periodic builds.
+     */
+    public void shutdown() {
+        buildExecutor.shutdown();
+    }
+
+    /**
+     * Writes the rollups of an experiment for all contexts with events, starting at the last rolled up day.
+     *
+     * @param experiment the experiment
+     */
+    void rollUp(final Experiment experiment) {
+        Experiment.ID experimentID = experiment.getID();
+
+        for (Context context : analyticsRepository.getEventContexts(experimentID)) {
+            Parameters parameters = new Parameters();
+            parameters.setContext(context);
+
+            Date latestDay = analyticsRepository.getLatestRollupDay(experimentID, parameters);
+            String resumeDay = null;
+            if (latestDay != null) {
+                DateMidnight latestRollupDay = new DateMidnight(latestDay);
+                // no events are recorded after the last day of a terminated experiment
+                if (Experiment.State.TERMINATED.equals(experiment.getState())
+                        && !latestRollupDay.isBefore(experiment.calculateLastDay())) {
+                    continue;
+                }
+                resumeDay = latestRollupDay.toString(DAY_FORMAT);
+            }
+
+            List<Map> rollupRows = buildRollupRows(
+                    analyticsRepository.getImpressionRowsPerDay(experimentID, parameters),
+                    analyticsRepository.getJointActionsPerDay(experimentID, parameters),
+                    analyticsRepository.getActionsRowsPerDay(experimentID, parameters),
+                    resumeDay);
+            analyticsRepository.writeRollupRows(experimentID, parameters, rollupRows);
+        }
+    }
+
+    /**
+     * Folds the per day counts of the analytics repository into daily and cumulative rollup rows. The cumulative
+     * unique users of a day are the sum of the users seen for the first time on that day or before.
+     *
+     * @param impressionRows   impressions per day and bucket
+     * @param jointActionRows  joint actions per day and bucket
+     * @param actionRows       actions per day, bucket and action
+     * @param resumeDay        first day to return rows for, all days if <code>null</code>
+     * @return the rollup rows, ordered by day
+     */
+    List<Map> buildRollupRows(final List<Map> impressionRows, final List<Map> jointActionRows,
+                              final List<Map> actionRows, final String resumeDay) {
+        // per day, bucket and action: events, users and new users of impressions, then of actions
+        SortedMap<String, Map<List<String>, long[]>> days = new TreeMap<>();
+        addDailyCounts(days, impressionRows, false, 0);
+        addDailyCounts(days, jointActionRows, false, 1);
+        addDailyCounts(days, actionRows, true, 1);
+
+        Map<List<String>, long[]> cumulative = new LinkedHashMap<>();
+        List<Map> rollupRows = new ArrayList<>();
+
+        for (Map.Entry<String, Map<List<String>, long[]>> day : days.entrySet()) {
+            boolean write = resumeDay == null || day.getKey().compareTo(resumeDay) >= 0;
+
+            for (Map.Entry<List<String>, long[]> daily : day.getValue().entrySet()) {
+                long[] counts = daily.getValue();
+                long[] total = cumulative.get(daily.getKey());
+                if (total == null) {
+                    total = new long[6];
+                    cumulative.put(daily.getKey(), total);
+                }
+                for (int i = 0; i < counts.length; i += 3) {
+                    total[i] += counts[i];
+                    total[i + 1] += counts[i + 2];
+                }
+
+                if (write) {
+                    rollupRows.add(rollupRow(day.getKey(), false, daily.getKey(), counts));
+                }
+            }
+
+            if (write) {
+                for (Map.Entry<List<String>, long[]> total : cumulative.entrySet()) {
+                    rollupRows.add(rollupRow(day.getKey(), true, total.getKey(), total.getValue()));
+                }
+            }
+        }
+        return rollupRows;
+    }
+
+    private void addDailyCounts(final SortedMap<String, Map<List<String>, long[]>> days, final List<Map> rows,
+                                final boolean perAction, final int table) {
+        for (Map row : rows) {
+            String day = (String) row.get("day");
+            Map<List<String>, long[]> dailyCounts = days.get(day);
+            if (dailyCounts == null) {
+                dailyCounts = new LinkedHashMap<>();
+                days.put(day, dailyCounts);
+            }
+
+            List<String> key = Arrays.asList((String) row.get("bid"), perAction ? (String) row.get(ACTION) : "");
+            long[] counts = dailyCounts.get(key);
+            if (counts == null) {
+                counts = new long[6];
+                dailyCounts.put(key, counts);
+            }
+            counts[table * 3] += ((Number) row.get("c")).longValue();
+            counts[table * 3 + 1] += ((Number) row.get("cu")).longValue();
+            counts[table * 3 + 2] += ((Number) row.get("nu")).longValue();
+        }
+    }
+
+    private Map rollupRow(final String day, final boolean cumulative, final List<String> key, final long[] counts) {
+        Map<String, Object> rollupRow = new HashMap<>();
+        rollupRow.put("day", day);
+        rollupRow.put("c", cumulative);
+        rollupRow.put("bid", key.get(0));
+        rollupRow.put(ACTION, key.get(1));
+        rollupRow.put("ic", counts[0]);
+        rollupRow.put("iuc", counts[1]);
+        rollupRow.put("ac", counts[3]);
+        rollupRow.put("auc", counts[4]);
+        return rollupRow;
+    }
+
+    private boolean isRolledUp(final Experiment.State state) {
+        return Experiment.State.RUNNING.equals(state) || Experiment.State.PAUSED.equals(state)
+                || Experiment.State.TERMINATED.equals(state);
+    }
+}
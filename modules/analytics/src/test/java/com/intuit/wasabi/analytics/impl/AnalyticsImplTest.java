@@ -16,13 +16,20 @@
 package com.intuit.wasabi.analytics.impl;
 
 import com.intuit.wasabi.analytics.AnalysisTools;
+import com.intuit.wasabi.analyticsobjects.Event;
 import com.intuit.wasabi.analyticsobjects.Parameters;
+import com.intuit.wasabi.analyticsobjects.counts.ActionCounts;
 import com.intuit.wasabi.analyticsobjects.counts.AssignmentCounts;
 import com.intuit.wasabi.analyticsobjects.counts.BucketCounts;
+import com.intuit.wasabi.analyticsobjects.counts.Counts;
+import com.intuit.wasabi.analyticsobjects.counts.DailyCounts;
 import com.intuit.wasabi.analyticsobjects.counts.ExperimentCounts;
+import com.intuit.wasabi.analyticsobjects.counts.ExperimentCumulativeCounts;
 import com.intuit.wasabi.analyticsobjects.metrics.BinomialMetrics;
 import com.intuit.wasabi.analyticsobjects.statistics.BucketStatistics;
+import com.intuit.wasabi.analyticsobjects.statistics.ExperimentCumulativeStatistics;
 import com.intuit.wasabi.analyticsobjects.statistics.ExperimentStatistics;
+import com.intuit.wasabi.database.Transaction;
 import com.intuit.wasabi.database.TransactionFactory;
 import com.intuit.wasabi.exceptions.ExperimentNotFoundException;
 import com.intuit.wasabi.experiment.Experiments;
@@ -38,8 +45,12 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -50,8 +61,11 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.mockito.AdditionalMatchers.not;
 import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -128,26 +142,76 @@ public class AnalyticsImplTest {
     @Test
     public void getAssignmentCountsTest(){
         AssignmentCounts assignmentCounts = mock(AssignmentCounts.class);
+        AssignmentCounts contextCounts = mock(AssignmentCounts.class);
         Experiment experiment = mock(Experiment.class);
         Experiment.ID id = Experiment.ID.newInstance();
+        Context context = Context.valueOf("PROD");
         when(experimentRepository.getExperiment(eq(id))).thenReturn(experiment);
         when(assignmentsRepository.getBucketAssignmentCount(eq(experiment))).thenReturn(assignmentCounts);
-        when(experimentRepository.getAssignmentCounts(eq(id), any(Context.class))).thenReturn(assignmentCounts);
-       //test the else part
-        Date date = new Date(1000); //some time in 1970
-        when(experiment.getCreationTime()).thenReturn(date);
-        AssignmentCounts result = this.analyticsImpl.getAssignmentCounts(id, null);
-        assertThat(result, is(assignmentCounts));
-        //test the if part
-        date = new Date(); //always now
-        when(experiment.getCreationTime()).thenReturn(date);
+        when(experimentRepository.getAssignmentCounts(eq(id), eq(context))).thenReturn(contextCounts);
+        //the counters of the context
+        AssignmentCounts result = this.analyticsImpl.getAssignmentCounts(id, context);
+        assertThat(result, is(contextCounts));
+        //the counters of all contexts
         result = this.analyticsImpl.getAssignmentCounts(id, null);
         assertThat(result, is(assignmentCounts));
     }
 
-    @Ignore /* TO BE IMPLEMENTED */
+    @Test
     public void getExperimentStatisticsDailiesTest(){
-        Assert.fail();
+        Experiment.ID id = Experiment.ID.newInstance();
+        Parameters parameters = new Parameters();
+        parameters.parse();
+        ExperimentCounts firstDay = dailiesCounts(10);
+        ExperimentCounts secondDay = dailiesCounts(20);
+        ExperimentCumulativeCounts counts = new ExperimentCumulativeCounts.Builder().withDays(Arrays.asList(
+                new DailyCounts.Builder().setDate("2016-01-01").withPerDay(firstDay).withCumulative(firstDay).build(),
+                new DailyCounts.Builder().setDate("2016-01-02").withPerDay(dailiesCounts(10))
+                        .withCumulative(secondDay).build(),
+                new DailyCounts.Builder().setDate("2016-01-03").withPerDay(dailiesCounts(0))
+                        .withCumulative(dailiesCounts(20)).build())).build();
+        AnalyticsImpl analyticsImpl = spy(this.analyticsImpl);
+        doReturn(counts).when(analyticsImpl).getExperimentRollupDailies(id, parameters);
+
+        ExperimentCumulativeStatistics result = analyticsImpl.getExperimentStatisticsDailies(id, parameters);
+        assertThat(result.getDays().size(), is(3));
+        assertThat(result.getDays().get(2).getCumulative(), is(result.getDays().get(1).getCumulative()));
+        Assert.assertNotSame(result.getDays().get(1).getCumulative(), result.getDays().get(2).getCumulative());
+        verify(analysisTools, times(2)).generateBucketComparison(anyMap(), any(BinomialMetrics.BinomialMetric.class),
+                anyDouble(), any(Parameters.Mode.class));
+
+        //the days are over, so their statistics are not calculated again, but copied from the cache
+        ExperimentCumulativeStatistics cached = analyticsImpl.getExperimentStatisticsDailies(id, parameters);
+        verify(analysisTools, times(2)).generateBucketComparison(anyMap(), any(BinomialMetrics.BinomialMetric.class),
+                anyDouble(), any(Parameters.Mode.class));
+        assertThat(cached.getDays().get(0).getCumulative(), is(result.getDays().get(0).getCumulative()));
+        Assert.assertNotSame(result.getDays().get(0).getCumulative(), cached.getDays().get(0).getCumulative());
+    }
+
+    @Test
+    public void countsKeyTest(){
+        ExperimentCounts counts = dailiesCounts(10);
+        Map<Bucket.Label, BucketCounts> buckets = new HashMap<>();
+        buckets.put(Bucket.Label.valueOf("red"), new BucketCounts.Builder().withLabel(Bucket.Label.valueOf("red"))
+                .withImpressionCounts(new Counts.Builder().withEventCount(4).withUniqueUserCount(3).build()).build());
+        counts.setBuckets(buckets);
+
+        List<Object> key = AnalyticsImpl.countsKey(counts);
+        assertThat(key, is(AnalyticsImpl.countsKey(counts.clone())));
+        assertThat(key, is(Arrays.<Object>asList(10L, 10L, null, 1, "red", 4L, 3L, null)));
+
+        //the key does not change with the counts
+        counts.getBuckets().get(Bucket.Label.valueOf("red")).getImpressionCounts().setEventCount(5);
+        assertThat(key, is(Arrays.<Object>asList(10L, 10L, null, 1, "red", 4L, 3L, null)));
+        assertThat(AnalyticsImpl.countsKey(counts), is(Arrays.<Object>asList(10L, 10L, null, 1, "red", 5L, 3L, null)));
+    }
+
+    private ExperimentCounts dailiesCounts(long impressions) {
+        return new ExperimentCounts.Builder()
+                .withImpressionCounts(new Counts.Builder().withEventCount(impressions)
+                        .withUniqueUserCount(impressions).build())
+                .withBuckets(new HashMap<Bucket.Label, BucketCounts>())
+                .build();
     }
 
     @Test
@@ -168,11 +232,76 @@ public class AnalyticsImplTest {
         Assert.fail();
     }
 
-    @Ignore  /* TO BE IMPLEMENTED */
+    @Test
     public void getExperimentCountsDailiesTest(){
         Experiment experiment = mock(Experiment.class);
         Experiment.ID id = Experiment.ID.newInstance();
         when(experiments.getExperiment(eq(id))).thenReturn(experiment);
+        when(experiment.getEndTime()).thenReturn(new Date(1451779200000L)); //2016-01-03
+        Parameters parameters = new Parameters();
+        parameters.setFromTime(new Date(1451692800000L)); //2016-01-02
+        when(transactionFactory.transaction(any(Transaction.Block.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return ((Transaction.Block) invocation.getArguments()[0]).value(mock(Transaction.class));
+            }
+        });
+        when(analysisTools.calculateExperimentCounts(anyCollection())).thenAnswer(new Answer<ExperimentCounts>() {
+            @Override
+            public ExperimentCounts answer(InvocationOnMock invocation) throws Throwable {
+                Map<Bucket.Label, BucketCounts> buckets = new HashMap<>();
+                for (Object bucket : (Collection) invocation.getArguments()[0]) {
+                    buckets.put(((BucketCounts) bucket).getLabel(), (BucketCounts) bucket);
+                }
+                return new ExperimentCounts.Builder().withBuckets(buckets).build();
+            }
+        });
+
+        Bucket.Label red = Bucket.Label.valueOf("red");
+        Map<Bucket.Label, BucketCounts> emptyBuckets = new HashMap<>();
+        emptyBuckets.put(red, new BucketCounts.Builder().withLabel(red)
+                .withImpressionCounts(new Counts(0, 0)).withJointActionCounts(new Counts(0, 0))
+                .withActionCounts(new HashMap<Event.Name, ActionCounts>()).build());
+        when(analyticsRepository.getEmptyBuckets(id)).thenReturn(emptyBuckets);
+        when(analyticsRepository.getImpressionRowsPerDay(eq(id), any(Parameters.class))).thenReturn(Arrays.asList(
+                dayRow("2016-01-01", "red", 3, 2, 2), dayRow("2016-01-02", "red", 2, 2, 1),
+                dayRow("2016-01-02", "blue", 5, 5, 5)));
+        Map clickRow = dayRow("2016-01-03", "red", 4, 3, 3);
+        clickRow.put("action", "click");
+        when(analyticsRepository.getActionsRowsPerDay(eq(id), any(Parameters.class)))
+                .thenReturn(Arrays.<Map>asList(clickRow));
+        when(analyticsRepository.getJointActionsPerDay(eq(id), any(Parameters.class)))
+                .thenReturn(Arrays.asList(dayRow("2016-01-03", "red", 4, 3, 3)));
+
+        List<DailyCounts> days = analyticsImpl.getExperimentCountsDailies(id, parameters).getDays();
+
+        assertThat(days.size(), is(2));
+        assertThat(days.get(0).getDate(), is("2016-01-02"));
+        BucketCounts perDay = days.get(0).getPerDay().getBuckets().get(red);
+        assertThat(perDay.getImpressionCounts(), is(new Counts(2, 2)));
+        BucketCounts cumulative = days.get(0).getCumulative().getBuckets().get(red);
+        assertThat(cumulative.getImpressionCounts(), is(new Counts(5, 3)));
+        assertThat(cumulative.getJointActionCounts(), is(new Counts(0, 0)));
+
+        assertThat(days.get(1).getDate(), is("2016-01-03"));
+        perDay = days.get(1).getPerDay().getBuckets().get(red);
+        assertThat(perDay.getImpressionCounts(), is(new Counts(0, 0)));
+        assertThat(perDay.getActionCounts().get(Event.Name.valueOf("click")).getEventCount(), is(4L));
+        cumulative = days.get(1).getCumulative().getBuckets().get(red);
+        assertThat(cumulative.getImpressionCounts(), is(new Counts(5, 3)));
+        assertThat(cumulative.getJointActionCounts(), is(new Counts(4, 3)));
+        //the empty buckets are never changed
+        assertThat(emptyBuckets.get(red).getImpressionCounts(), is(new Counts(0, 0)));
+    }
+
+    private Map dayRow(String day, String bucket, long count, long uniqueUsers, long newUsers) {
+        Map row = new HashMap();
+        row.put("day", day);
+        row.put("bid", bucket);
+        row.put("c", count);
+        row.put("cu", uniqueUsers);
+        row.put("nu", newUsers);
+        return row;
     }
 
     @Ignore
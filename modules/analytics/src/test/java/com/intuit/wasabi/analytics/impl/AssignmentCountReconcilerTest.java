@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.analytics.impl;
+
+import com.intuit.wasabi.experiment.Experiments;
+import com.intuit.wasabi.experimentobjects.Context;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.experimentobjects.ExperimentList;
+import com.intuit.wasabi.repository.AnalyticsRepository;
+import com.intuit.wasabi.repository.ExperimentRepository;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AssignmentCountReconcilerTest {
+
+    private final Context prod = Context.valueOf("PROD");
+    private final Context qa = Context.valueOf("QA");
+    private Experiments experiments = mock(Experiments.class);
+    private ExperimentRepository cassandraRepository = mock(ExperimentRepository.class);
+    private AnalyticsRepository analyticsRepository = mock(AnalyticsRepository.class);
+    private AssignmentCountReconciler reconciler;
+
+    @Before
+    public void setup() {
+        reconciler = new AssignmentCountReconciler(experiments, cassandraRepository, analyticsRepository, 0, 60, 0);
+    }
+
+    @Test
+    public void reconcileSkipsWithoutLock() {
+        when(analyticsRepository.acquireLock(eq(AssignmentCountReconciler.LOCK_NAME), anyString(), anyInt()))
+                .thenReturn(false);
+
+        reconciler.reconcile();
+
+        verify(experiments, never()).getExperiments();
+    }
+
+    @Test
+    public void reconcileSkipsRecentlyCompletedRuns() {
+        when(analyticsRepository.acquireLock(eq(AssignmentCountReconciler.LOCK_NAME), anyString(), anyInt()))
+                .thenReturn(true);
+        when(analyticsRepository.hasCompletedRunWithin(AssignmentCountReconciler.LOCK_NAME, 0)).thenReturn(true);
+
+        reconciler.reconcile();
+
+        verify(experiments, never()).getExperiments();
+        verify(analyticsRepository, never()).recordCompletedRun(anyString());
+    }
+
+    @Test
+    public void reconcileStopsWhenTheLockIsLost() {
+        Experiment first = Experiment.withID(Experiment.ID.newInstance()).withState(Experiment.State.RUNNING).build();
+        Experiment second = Experiment.withID(Experiment.ID.newInstance()).withState(Experiment.State.RUNNING).build();
+        ExperimentList experimentList = new ExperimentList();
+        experimentList.addExperiment(first);
+        experimentList.addExperiment(second);
+        when(analyticsRepository.acquireLock(eq(AssignmentCountReconciler.LOCK_NAME), anyString(), anyInt()))
+                .thenReturn(true, true, false);
+        when(experiments.getExperiments()).thenReturn(experimentList);
+
+        reconciler.reconcile();
+
+        verify(cassandraRepository).reconcileAssignmentCounts(first.getID(), prod, 0);
+        verify(cassandraRepository, never())
+                .reconcileAssignmentCounts(eq(second.getID()), any(Context.class), anyLong());
+        verify(analyticsRepository, never()).recordCompletedRun(anyString());
+    }
+
+    @Test
+    public void reconcileRecountsAllContextsOfRunningExperiments() {
+        Experiment experiment = Experiment.withID(Experiment.ID.newInstance())
+                .withState(Experiment.State.RUNNING).build();
+        Experiment draft = Experiment.withID(Experiment.ID.newInstance()).withState(Experiment.State.DRAFT).build();
+        ExperimentList experimentList = new ExperimentList();
+        experimentList.addExperiment(experiment);
+        experimentList.addExperiment(draft);
+        when(analyticsRepository.acquireLock(eq(AssignmentCountReconciler.LOCK_NAME), anyString(), anyInt()))
+                .thenReturn(true);
+        when(experiments.getExperiments()).thenReturn(experimentList);
+        when(cassandraRepository.getAssignmentCountContexts(experiment.getID()))
+                .thenReturn(Collections.singleton(prod));
+        when(analyticsRepository.getEventContexts(experiment.getID())).thenReturn(Collections.singletonList(qa));
+
+        reconciler.reconcile();
+
+        verify(cassandraRepository).reconcileAssignmentCounts(experiment.getID(), prod, 0);
+        verify(cassandraRepository).reconcileAssignmentCounts(experiment.getID(), qa, 0);
+        verify(cassandraRepository, never())
+                .reconcileAssignmentCounts(eq(draft.getID()), any(Context.class), anyLong());
+        verify(analyticsRepository).recordCompletedRun(AssignmentCountReconciler.LOCK_NAME);
+    }
+
+    @Test
+    public void reconcileRecountsTerminatedExperimentsOnlyUntilReconciled() {
+        Experiment experiment = Experiment.withID(Experiment.ID.newInstance())
+                .withState(Experiment.State.TERMINATED).build();
+        when(cassandraRepository.getAssignmentCountContexts(experiment.getID()))
+                .thenReturn(Collections.singleton(prod));
+        when(cassandraRepository.getReconciledAssignmentCountContexts(experiment.getID()))
+                .thenReturn(Collections.singleton(prod));
+        when(analyticsRepository.getEventContexts(experiment.getID())).thenReturn(Collections.singletonList(qa));
+
+        reconciler.reconcile(experiment);
+
+        verify(cassandraRepository, never()).reconcileAssignmentCounts(experiment.getID(), prod, 0);
+        verify(cassandraRepository).reconcileAssignmentCounts(experiment.getID(), qa, 0);
+    }
+}
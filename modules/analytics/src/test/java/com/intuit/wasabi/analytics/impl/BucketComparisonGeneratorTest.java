@@ -137,6 +137,33 @@ public class BucketComparisonGeneratorTest {
                 .withActionCounts(bucket3Counts.getActionCounts()).build();
     }
 
+    @Test
+    public void generateBucketComparisonsInParallel() throws Exception {
+        Map<Bucket.Label, BucketStatistics> bucketStatistics = new HashMap<>();
+        bucketStatistics.put(bucket1Label, bucket1StatsOriginal.clone());
+        bucketStatistics.put(bucket2Label, bucket2StatsOriginal.clone());
+        for (String label : new String[]{"four", "five", "six"}) {
+            Bucket.Label bucketLabel = Bucket.Label.valueOf(label);
+            bucketStatistics.put(bucketLabel, new BucketStatistics.Builder()
+                    .withLabel(bucketLabel)
+                    .withImpressionCounts(bucket2StatsOriginal.getImpressionCounts())
+                    .withJointActionCounts(bucket2StatsOriginal.getJointActionCounts())
+                    .withActionCounts(bucket2StatsOriginal.getActionCounts()).build());
+        }
+
+        analysisTools.generateBucketComparison(bucketStatistics, metric95, 0.4, Parameters.Mode.PRODUCTION);
+
+        for (BucketStatistics bucketStats : bucketStatistics.values()) {
+            assertThat("number of comparisons is 4", bucketStats.getBucketComparisons().keySet(), hasSize(4));
+        }
+        BucketComparison comparison = bucketStatistics.get(bucket1Label).getBucketComparisons().get(bucket2Label);
+        assertThat("joint action rate difference estimate is -0.6022727",
+                comparison.getJointActionComparison().getActionRateDifference().getEstimate(),
+                closeTo(-0.6022727, precision));
+        assertThat("joint action winner is bucket 2",
+                comparison.getJointActionComparison().getClearComparisonWinner(), is(bucket2Label));
+    }
+
     @Test
     public void generateBucketComparisons() throws Exception {
         Map<Bucket.Label, BucketStatistics> bucketStatistics = new HashMap<>();
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.analytics.impl;
+
+import com.intuit.wasabi.analyticsobjects.Parameters;
+import com.intuit.wasabi.experiment.Experiments;
+import com.intuit.wasabi.experimentobjects.Context;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.experimentobjects.ExperimentList;
+import com.intuit.wasabi.repository.AnalyticsRepository;
+import org.joda.time.DateMidnight;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RollupBuilderTest {
+
+    private Experiments experiments = mock(Experiments.class);
+    private AnalyticsRepository analyticsRepository = mock(AnalyticsRepository.class);
+    private RollupBuilder rollupBuilder;
+
+    @Before
+    public void setup() {
+        rollupBuilder = new RollupBuilder(experiments, analyticsRepository, 0, 60, 0);
+    }
+
+    @Test
+    public void buildRollupRowsSumsFirstSeenUsersIntoCumulativeRows() {
+        List<Map> impressions = rows(row("2016-06-01", "a", null, 3, 2, 2), row("2016-06-02", "a", null, 2, 2, 1));
+        List<Map> jointActions = rows(row("2016-06-02", "a", null, 1, 1, 1));
+        List<Map> actions = rows(row("2016-06-02", "a", "click", 1, 1, 1));
+
+        List<Map> rollupRows = rollupBuilder.buildRollupRows(impressions, jointActions, actions, null);
+
+        // day 1: daily and cumulative impressions, day 2: daily and cumulative for joint and click
+        assertThat(rollupRows.size(), is(6));
+        Map cumulative = find(rollupRows, "2016-06-02", true, "");
+        assertThat(cumulative.get("ic"), is((Object) 5L));
+        assertThat(cumulative.get("iuc"), is((Object) 3L));
+        assertThat(cumulative.get("ac"), is((Object) 1L));
+        assertThat(cumulative.get("auc"), is((Object) 1L));
+        Map daily = find(rollupRows, "2016-06-02", false, "");
+        assertThat(daily.get("iuc"), is((Object) 2L));
+        assertThat(find(rollupRows, "2016-06-02", true, "click").get("auc"), is((Object) 1L));
+    }
+
+    @Test
+    public void buildRollupRowsResumesFromGivenDay() {
+        List<Map> impressions = rows(row("2016-06-01", "a", null, 3, 2, 2), row("2016-06-02", "a", null, 2, 2, 1));
+
+        List<Map> rollupRows = rollupBuilder.buildRollupRows(impressions, new ArrayList<Map>(),
+                new ArrayList<Map>(), "2016-06-02");
+
+        assertThat(rollupRows.size(), is(2));
+        assertThat(find(rollupRows, "2016-06-02", true, "").get("iuc"), is((Object) 3L));
+    }
+
+    @Test
+    public void buildSkipsWithoutLock() {
+        when(analyticsRepository.acquireLock(eq(RollupBuilder.LOCK_NAME), anyString(), anyInt())).thenReturn(false);
+
+        rollupBuilder.build();
+
+        verify(experiments, never()).getExperiments();
+    }
+
+    @Test
+    public void buildWritesRollupsOfRunningExperiments() {
+        Experiment.ID experimentID = Experiment.ID.newInstance();
+        Experiment experiment = Experiment.withID(experimentID).withState(Experiment.State.RUNNING).build();
+        Experiment draft = Experiment.withID(Experiment.ID.newInstance()).withState(Experiment.State.DRAFT).build();
+        ExperimentList experimentList = new ExperimentList();
+        experimentList.addExperiment(experiment);
+        experimentList.addExperiment(draft);
+        when(analyticsRepository.acquireLock(eq(RollupBuilder.LOCK_NAME), anyString(), anyInt())).thenReturn(true);
+        when(experiments.getExperiments()).thenReturn(experimentList);
+        when(analyticsRepository.getEventContexts(experimentID))
+                .thenReturn(Collections.singletonList(Context.valueOf("PROD")));
+        when(analyticsRepository.getLatestRollupDay(eq(experimentID), any(Parameters.class)))
+                .thenReturn(new DateMidnight(2016, 6, 2).toDate());
+
+        rollupBuilder.build();
+
+        verify(analyticsRepository).writeRollupRows(eq(experimentID), any(Parameters.class), any(List.class));
+        verify(analyticsRepository, never()).getEventContexts(draft.getID());
+    }
+
+    @Test
+    public void buildAddsEventPartitionsIfEnabled() {
+        when(analyticsRepository.acquireLock(eq(RollupBuilder.LOCK_NAME), anyString(), anyInt())).thenReturn(true);
+        when(experiments.getExperiments()).thenReturn(new ExperimentList());
+
+        rollupBuilder.build();
+        verify(analyticsRepository, never()).addEventPartitions(anyInt());
+
+        new RollupBuilder(experiments, analyticsRepository, 0, 60, 7).build();
+        verify(analyticsRepository).addEventPartitions(7);
+    }
+
+    private List<Map> rows(Map... rows) {
+        List<Map> list = new ArrayList<>();
+        Collections.addAll(list, rows);
+        return list;
+    }
+
+    private Map row(String day, String bucket, String action, long count, long users, long newUsers) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("day", day);
+        row.put("bid", bucket);
+        if (action != null) {
+            row.put("action", action);
+        }
+        row.put("c", count);
+        row.put("cu", users);
+        row.put("nu", newUsers);
+        return row;
+    }
+
+    private Map find(List<Map> rollupRows, String day, boolean cumulative, String action) {
+        for (Map rollupRow : rollupRows) {
+            if (day.equals(rollupRow.get("day")) && rollupRow.get("c").equals(cumulative)
+                    && action.equals(rollupRow.get("action"))) {
+                return rollupRow;
+            }
+        }
+        throw new AssertionError("no rollup row for " + day + " " + cumulative + " " + action);
+    }
+}
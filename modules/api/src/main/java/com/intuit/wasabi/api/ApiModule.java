@@ -38,6 +38,7 @@ import static com.google.inject.Scopes.SINGLETON;
 import static com.google.inject.name.Names.named;
 import static com.intuit.autumn.utils.PropertyFactory.create;
 import static com.intuit.autumn.utils.PropertyFactory.getProperty;
+import static java.lang.Long.parseLong;
 import static org.slf4j.LoggerFactory.getLogger;
 
 public class ApiModule extends AbstractModule {
@@ -71,9 +72,16 @@ public class ApiModule extends AbstractModule {
                 .toInstance(getProperty("default.time.zone", properties, "yyyy-MM-dd HH:mm:ss"));
         bind(String.class).annotatedWith(named("default.time.format"))
                 .toInstance(getProperty("default.time.format", properties, "yyyy-MM-dd HH:mm:ss"));
+        bind(Long.class).annotatedWith(named("ping.health.refresh.interval"))
+                .toInstance(parseLong(getProperty("ping.health.refresh.interval", properties, "5000")));
+        bind(Long.class).annotatedWith(named("ping.health.check.timeout"))
+                .toInstance(parseLong(getProperty("ping.health.check.timeout", properties, "2000")));
+        bind(Long.class).annotatedWith(named("ping.health.max.age"))
+                .toInstance(parseLong(getProperty("ping.health.max.age", properties, "30000")));
 
         bind(AuthorizedExperimentGetter.class).in(SINGLETON);
         bind(HealthCheckRegistry.class).in(SINGLETON);
+        bind(HealthCheckMonitor.class).asEagerSingleton();
         bind(HttpHeader.class).in(SINGLETON);
         bind(ExceptionJsonifier.class).in(SINGLETON);
 
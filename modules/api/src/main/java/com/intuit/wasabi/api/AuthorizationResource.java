@@ -374,4 +374,23 @@ public class AuthorizationResource {
 
         return httpHeader.headers().entity(userRoleListList).build();
     }
+
+    /**
+     * Returns the size, hits, misses and evictions of the permission caches of this node.
+     *
+     * @param authHeader the authorization header
+     * @return the cache metrics
+     */
+    @GET
+    @Path("/cacheMetrics")
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Get the metrics of the permission caches of this node")
+    @Timed
+    public Response getCacheMetrics(@HeaderParam(AUTHORIZATION)
+                                    @ApiParam(value = EXAMPLE_AUTHORIZATION_HEADER, required = true)
+                                    String authHeader) {
+        authorization.checkSuperAdmin(authorization.getUser(authHeader));
+
+        return httpHeader.headers().entity(authorization.getCacheMetrics()).build();
+    }
 }
@@ -25,6 +25,8 @@ public class ComponentHealthList {
     private List<ComponentHealth> componentHealths;
     @ApiModelProperty(required = false)
     private String version;
+    @ApiModelProperty(value = "milliseconds since the health checks were run", required = false)
+    private Long age;
 
     public ComponentHealthList(List<ComponentHealth> componentHealths) {
         this.componentHealths = componentHealths;
@@ -38,6 +40,14 @@ public class ComponentHealthList {
         this.version = version;
     }
 
+    public Long getAge() {
+        return age;
+    }
+
+    public void setAge(Long age) {
+        this.age = age;
+    }
+
     public List<ComponentHealth> getComponentHealths() {
         return componentHealths;
     }
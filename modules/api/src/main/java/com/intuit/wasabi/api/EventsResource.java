@@ -115,16 +115,8 @@ public class EventsResource {
         Set<Context> contextSet = new HashSet<>();
 
         for (Event event : eventList.getEvents()) {
-            if (event.getTimestamp() == null) {
-                event.setTimestamp(NOW);
-            }
-
+            prepareEvent(event, NOW);
             contextSet.add(event.getContext());
-
-            // TODO: add checking to Event.Name constructor instead of here
-            if (event.getName() == null || isBlank(event.getName().toString())) {
-                throw new IllegalArgumentException("Event name cannot be null or an empty string");
-            }
         }
 
         events.recordEvents(applicationName, experimentLabel, userID, eventList, contextSet);
@@ -136,46 +128,96 @@ public class EventsResource {
      * Submit events for users within the context of a specific application
      * and experiment. Each event is an impression or action.
      *
+     * The events are posted as a map from user ID to the list of events of that user, e.g.
+     * <code>{"user1": [{"name": "IMPRESSION"}], "user2": [{"name": "click"}]}</code>. Events of users who are
+     * not assigned to the experiment are ignored.
+     *
      * @param applicationName the application name
      * @param experimentLabel the experiment label
-     * @param eventList       the {@link com.intuit.wasabi.analyticsobjects.EventList} event list
-     * @throws UnsupportedOperationException UnsupportedOperationException
+     * @param eventList       the events per user
+     * @return Response object
      */
     @POST
     @Path("applications/{applicationName}/experiments/{experimentLabel}/users")
     @Consumes(APPLICATION_JSON)
     @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Submit events for several assigned users of an experiment",
+            notes = "*NOTE*: Events of users who are not assigned to the experiment are ignored. " +
+                    "Use event name = \"IMPRESSION\" for impressions.")
     @Timed
     public Response recordUsersEvents(
             @PathParam("applicationName")
+            @ApiParam(value = "Application Name")
             final Application.Name applicationName,
 
             @PathParam("experimentLabel")
+            @ApiParam(value = "Experiment Label")
             final Experiment.Label experimentLabel,
 
+            @ApiParam(name = "eventList", required = true, value = "Events per user ID")
             final Map<User.ID, List<Event>> eventList) {
-        throw new UnsupportedOperationException("Not implemented");
+        prepareUserEvents(eventList, new Date());
+
+        events.recordUsersEvents(applicationName, experimentLabel, eventList);
+
+        return httpHeader.headers(CREATED).build();
     }
 
     /**
      * Submit events for users and experiments within the context of a
      * specific application. Each event is an impression or action.
      *
+     * The events are posted as a map from experiment label to a map from user ID to the list of events, e.g.
+     * <code>{"exp1": {"user1": [{"name": "IMPRESSION"}]}, "exp2": {"user1": [{"name": "click"}]}}</code>.
+     * Events of users who are not assigned to the experiment are ignored.
+     *
      * @param applicationName the application name
-     * @param userID          the user id
-     * @param eventList       the {@link com.intuit.wasabi.analyticsobjects.EventList} event list
-     * @throws UnsupportedOperationException always throws
+     * @param eventList       the events per experiment and user
+     * @return Response object
      */
     @POST
     @Path("applications/{applicationName}/experiments")
     @Consumes(APPLICATION_JSON)
     @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Submit events for several assigned users of several experiments",
+            notes = "*NOTE*: Events of users who are not assigned to the experiment are ignored. " +
+                    "Use event name = \"IMPRESSION\" for impressions.")
     @Timed
     public Response recordExperimentsEvents(
-            @PathParam("applicationName") final Application.Name applicationName,
-            @PathParam("userID") final User.ID userID,
+            @PathParam("applicationName")
+            @ApiParam(value = "Application Name")
+            final Application.Name applicationName,
+
+            @ApiParam(name = "eventList", required = true, value = "Events per experiment label and user ID")
             final Map<Experiment.Label, Map<User.ID, List<Event>>> eventList) {
-        throw new UnsupportedOperationException("Not implemented");
+        final Date NOW = new Date();
+
+        for (Map<User.ID, List<Event>> userEvents : eventList.values()) {
+            prepareUserEvents(userEvents, NOW);
+        }
+
+        events.recordExperimentsEvents(applicationName, eventList);
+
+        return httpHeader.headers(CREATED).build();
+    }
+
+    private void prepareUserEvents(Map<User.ID, List<Event>> userEvents, Date now) {
+        for (List<Event> eventsOfUser : userEvents.values()) {
+            for (Event event : eventsOfUser) {
+                prepareEvent(event, now);
+            }
+        }
+    }
+
+    private void prepareEvent(Event event, Date now) {
+        if (event.getTimestamp() == null) {
+            event.setTimestamp(now);
+        }
+
+        // TODO: add checking to Event.Name constructor instead of here
+        if (event.getName() == null || isBlank(event.getName().toString())) {
+            throw new IllegalArgumentException("Event name cannot be null or an empty string");
+        }
     }
     
     /**
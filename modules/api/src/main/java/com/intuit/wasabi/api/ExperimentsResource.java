@@ -38,9 +38,12 @@ import org.slf4j.Logger;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.zip.GZIPOutputStream;
 
 import static com.intuit.wasabi.api.APISwaggerResource.*;
 import static com.intuit.wasabi.authorizationobjects.Permission.*;
@@ -51,7 +54,9 @@ import static com.intuit.wasabi.experimentobjects.Experiment.State.TERMINATED;
 import static com.intuit.wasabi.experimentobjects.Experiment.from;
 import static java.lang.Boolean.FALSE;
 import static java.util.TimeZone.getTimeZone;
+import static javax.ws.rs.core.HttpHeaders.ACCEPT_ENCODING;
 import static javax.ws.rs.core.HttpHeaders.AUTHORIZATION;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_ENCODING;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
 import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
@@ -978,7 +983,11 @@ public class ExperimentsResource {
 
                                       @HeaderParam(AUTHORIZATION)
                                       @ApiParam(value = EXAMPLE_AUTHORIZATION_HEADER, required = true)
-                                      final String authorizationHeader) throws ParseException {
+                                      final String authorizationHeader,
+
+                                      @HeaderParam(ACCEPT_ENCODING)
+                                      @ApiParam(value = "gzip to receive the assignments compressed")
+                                      final String acceptEncoding) throws ParseException {
         if (authorizationHeader != null) {
             Username userName = authorization.getUser(authorizationHeader);
             Experiment experiment = experiments.getExperiment(experimentID);
@@ -1041,10 +1050,73 @@ public class ExperimentsResource {
         StreamingOutput streamAssignment = assignments.getAssignmentStream(experimentID, context, parameters,
                 ignoreNullBucket);
 
-        return httpHeader.headers()
+        Response.ResponseBuilder response = httpHeader.headers()
                 .header("Content-Disposition", "attachment; filename =\"assignments.csv\"")
-                .entity(streamAssignment)
-                .build();
+                .header("Vary", ACCEPT_ENCODING);
+
+        if (acceptsGzip(acceptEncoding)) {
+            return response.header(CONTENT_ENCODING, "gzip")
+                    .entity(gzip(streamAssignment))
+                    .build();
+        }
+
+        return response.entity(streamAssignment).build();
+    }
+
+    /**
+     * Whether an Accept-Encoding header accepts gzip: gzip (or x-gzip), else the wildcard, is listed with a
+     * quality value above 0.
+     *
+     * @param acceptEncoding the Accept-Encoding header, may be <code>null</code>
+     * @return whether gzip is acceptable
+     */
+    static boolean acceptsGzip(final String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        Double gzipQuality = null;
+        Double wildcardQuality = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim().toLowerCase();
+            double quality = 1;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim().toLowerCase();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+
+            if ("gzip".equals(name) || "x-gzip".equals(name)) {
+                gzipQuality = quality;
+            } else if ("*".equals(name)) {
+                wildcardQuality = quality;
+            }
+        }
+
+        Double quality = gzipQuality != null ? gzipQuality : wildcardQuality;
+        return quality != null && quality > 0;
+    }
+
+    private StreamingOutput gzip(final StreamingOutput streamingOutput) {
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream os) throws IOException, WebApplicationException {
+                GZIPOutputStream gzipOutputStream = new GZIPOutputStream(os, 64 * 1024);
+
+                try {
+                    streamingOutput.write(gzipOutputStream);
+                } finally {
+                    // finishes the compressed stream unless the wrapped output closed it already
+                    gzipOutputStream.close();
+                }
+            }
+        };
     }
 
     /**
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.api;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import org.slf4j.Logger;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Runs the registered health checks on a background schedule, so that pings are answered from the last results
+ * instead of querying MySQL and Cassandra on every request.
+ *
+ * Every <code>ping.health.refresh.interval</code> milliseconds all checks are run in parallel. A check which does not
+ * finish within <code>ping.health.check.timeout</code> milliseconds is reported as unhealthy and is not started again
+ * until its previous run has finished, so that a hanging backend does not pile up threads.
+ */
+public class HealthCheckMonitor {
+
+    private static final Logger LOGGER = getLogger(HealthCheckMonitor.class);
+    private final HealthCheckRegistry healthChecks;
+    private final long checkTimeout;
+    private final long maxAge;
+    private final ExecutorService checkExecutor;
+    private final Map<String, Future<HealthCheck.Result>> runningChecks = new HashMap<>();
+    private volatile Snapshot snapshot;
+
+    /**
+     * Constructor
+     *
+     * @param healthChecks    the registered health checks
+     * @param refreshInterval milliseconds between two runs of the checks, only run on demand if not positive
+     * @param checkTimeout    milliseconds a single check may take before it is reported as unhealthy
+     * @param maxAge          milliseconds after which the last results are considered stale
+     */
+    @Inject
+    public HealthCheckMonitor(final HealthCheckRegistry healthChecks,
+                              final @Named("ping.health.refresh.interval") Long refreshInterval,
+                              final @Named("ping.health.check.timeout") Long checkTimeout,
+                              final @Named("ping.health.max.age") Long maxAge) {
+        this.healthChecks = healthChecks;
+        this.checkTimeout = checkTimeout;
+        this.maxAge = maxAge;
+        this.checkExecutor = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("HealthCheck-%d").setDaemon(true).build());
+        if (refreshInterval > 0) {
+            ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("HealthCheckMonitor-%d").setDaemon(true).build());
+            refreshExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    refresh();
+                }
+            }, 0, refreshInterval, MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the results of the last run of the health checks, running them first if they have never been run.
+     *
+     * @return the last snapshot
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        return current != null ? current : refresh();
+    }
+
+    /**
+     * Runs all registered health checks and replaces the snapshot with their results.
+     *
+     * @return the new snapshot
+     */
+    synchronized Snapshot refresh() {
+        try {
+            Map<String, Future<HealthCheck.Result>> started = new HashMap<>();
+
+            for (final String name : healthChecks.getNames()) {
+                Future<HealthCheck.Result> running = runningChecks.get(name);
+
+                if (running == null || running.isDone()) {
+                    running = checkExecutor.submit(new Callable<HealthCheck.Result>() {
+                        @Override
+                        public HealthCheck.Result call() throws Exception {
+                            return healthChecks.runHealthCheck(name);
+                        }
+                    });
+                    runningChecks.put(name, running);
+                }
+                started.put(name, running);
+            }
+            runningChecks.keySet().retainAll(started.keySet());
+
+            SortedMap<String, HealthCheck.Result> results = new TreeMap<>();
+            long deadline = currentTimeMillis() + checkTimeout;
+
+            for (Map.Entry<String, Future<HealthCheck.Result>> entry : started.entrySet()) {
+                results.put(entry.getKey(), awaitResult(entry.getValue(), deadline));
+            }
+            snapshot = new Snapshot(Collections.unmodifiableSortedMap(results), currentTimeMillis());
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to run the health checks", e);
+        }
+        return snapshot;
+    }
+
+    private HealthCheck.Result awaitResult(Future<HealthCheck.Result> check, long deadline) {
+        try {
+            return check.get(Math.max(0, deadline - currentTimeMillis()), MILLISECONDS);
+        } catch (TimeoutException e) {
+            return HealthCheck.Result.unhealthy("Health check did not finish within " + checkTimeout + " ms");
+        } catch (ExecutionException e) {
+            return HealthCheck.Result.unhealthy(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return HealthCheck.Result.unhealthy("Interrupted while waiting for the health check");
+        }
+    }
+
+    /**
+     * The results of one run of the health checks.
+     */
+    public class Snapshot {
+
+        private final SortedMap<String, HealthCheck.Result> results;
+        private final long timestamp;
+
+        Snapshot(SortedMap<String, HealthCheck.Result> results, long timestamp) {
+            this.results = results;
+            this.timestamp = timestamp;
+        }
+
+        /**
+         * @return the results of the health checks by name
+         */
+        public SortedMap<String, HealthCheck.Result> getResults() {
+            return results;
+        }
+
+        /**
+         * @return milliseconds since the health checks finished
+         */
+        public long getAge() {
+            return Math.max(0, currentTimeMillis() - timestamp);
+        }
+
+        /**
+         * @return true if the health checks have not been run for longer than the configured maximum age
+         */
+        public boolean isStale() {
+            return getAge() > maxAge;
+        }
+    }
+}
@@ -20,8 +20,10 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.intuit.wasabi.auditlog.AuditLog;
 import com.intuit.wasabi.auditlogobjects.AuditLogEntry;
+import com.intuit.wasabi.auditlogobjects.AuditLogPage;
 import com.intuit.wasabi.authorization.Authorization;
 import com.intuit.wasabi.authorizationobjects.Permission;
+import com.intuit.wasabi.exceptions.TimeFormatException;
 import com.intuit.wasabi.experimentobjects.Application;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -29,10 +31,16 @@ import io.swagger.annotations.ApiParam;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.Response;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TimeZone;
 
 import static com.intuit.wasabi.api.APISwaggerResource.*;
 import static com.intuit.wasabi.authorizationobjects.Permission.ADMIN;
@@ -161,6 +169,110 @@ public class LogsResource {
         return prepareLogListResponse(auditLogs, page, perPage, filter, sort);
     }
 
+    /**
+     * Returns a page of audit log entries for the specified application if the requesting user has access to it.
+     * To have access the user needs {@link Permission#ADMIN} permissions for the application.
+     *
+     * Unlike {@link #getLogs(String, Application.Name, int, int, String, String, String)} the entries are not
+     * fetched as a whole and paginated afterwards: the time range is part of the query and the filter is applied
+     * while the entries are read, newest first. The next page is requested with the returned continuation token,
+     * which is also linked in the {@code Link} header with {@code rel="Next"}. A page may hold fewer entries than
+     * requested while there are more, the listing ends when no continuation token is returned.
+     *
+     * @param authorizationHeader the authentication headers
+     * @param applicationName     the name of the application for which the log should be fetched
+     * @param perPage             the number of log entries per page, defaults to 10
+     * @param filter              the filter rules
+     * @param from                the earliest time of the entries, format {@code yyyy-MM-dd HH:mm:ss}
+     * @param to                  the latest time of the entries, format {@code yyyy-MM-dd HH:mm:ss}
+     * @param timezoneOffset      the timezone offset from GMT
+     * @param continuation        the continuation token of the previous page
+     * @return a response containing the log entries of the page and the continuation token
+     */
+    @GET
+    @Path("/applications/{applicationName}/entries")
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Returns a page of logs for the specified application if the requesting user has Admin "
+            + "permissions.",
+            notes = "Returns a page of logs for the specified application, newest first. The parameters allow for "
+                    + "filtering by time range and filter rules; the next page is requested with the returned "
+                    + "continuation token.",
+            response = Response.class,
+            httpMethod = "GET",
+            produces = "application/json",
+            protocols = "https")
+    @Timed(name = "getLogPage")
+    public Response getLogPage(@HeaderParam(AUTHORIZATION)
+                               @ApiParam(value = EXAMPLE_AUTHORIZATION_HEADER, required = true)
+                               final String authorizationHeader,
+
+                               @PathParam("applicationName")
+                               @ApiParam(value = "Application Name")
+                               final Application.Name applicationName,
+
+                               @QueryParam("per_page")
+                               @DefaultValue(DEFAULT_PER_PAGE)
+                               @ApiParam(name = "perPage", value = "Defines the entries per page.", defaultValue = DEFAULT_PER_PAGE)
+                               final int perPage,
+
+                               @QueryParam("filter")
+                               @DefaultValue("")
+                               @ApiParam(name = "filter",
+                                       value = "Allows to specify filter rules.<br />"
+                                               + "<pre>"
+                                               + "FilterMask   := Value | Value,KeyValueList | KeyValueList"
+                                               + "KeyValueList := Property=Value | Property=Value,KeyValueList"
+                                               + "Property     := firstname | lastname | username | mail | user | action | experiment | bucket | app | time | attr | before | after"
+                                               + "Value        := any value, may not contain commas (,) followed by a Property. If it starts with an escaped"
+                                               + "                dash (\\-), the value is negated, thus shall not match."
+                                               + "</pre>")
+                               final String filter,
+
+                               @QueryParam("from")
+                               @ApiParam(name = "from", value = "The earliest time of the entries, yyyy-MM-dd HH:mm:ss in the given timezone.")
+                               final String from,
+
+                               @QueryParam("to")
+                               @ApiParam(name = "to", value = "The latest time of the entries, yyyy-MM-dd HH:mm:ss in the given timezone.")
+                               final String to,
+
+                               @QueryParam("timezone")
+                               @DefaultValue("+0000")
+                               @ApiParam(name = "timezone", defaultValue = "+0000", value = "Allows to specify the user's timezone offset to UTC. Should be in the format +0000 (or -0000). Default is +0000.")
+                               final String timezoneOffset,
+
+                               @QueryParam("continuation")
+                               @ApiParam(name = "continuation", value = "The continuation token of the previous page.")
+                               final String continuation) {
+        authorization.checkUserPermissions(authorization.getUser(authorizationHeader), applicationName, ADMIN);
+
+        AuditLogPage auditLogPage = auditLog.getAuditLogPage(applicationName,
+                prepareDateFilter(filter, timezoneOffset), parseTime(from, timezoneOffset),
+                parseTime(to, timezoneOffset), continuation, perPage);
+
+        Map<String, Object> auditLogResponse = new HashMap<>();
+
+        auditLogResponse.put("logEntries", auditLogPage.getEntries());
+        auditLogResponse.put("continuation", auditLogPage.getContinuation());
+
+        Response.ResponseBuilder response = httpHeader.headers();
+
+        if (auditLogPage.getContinuation() != null) {
+            Map<String, String> params = new HashMap<>();
+
+            params.put("filter", filter);
+            params.put("from", from);
+            params.put("to", to);
+            params.put("timezone", timezoneOffset);
+            params.put("continuation", auditLogPage.getContinuation());
+
+            response.header("Link", nextLinkHeaderValue("/applications/" + encode(applicationName.toString())
+                    + "/entries", perPage, params));
+        }
+
+        return response.entity(auditLogResponse).build();
+    }
+
     /**
      * Returns a list of audit log entries for all applications, if the requesting user has access to it.
      * To have access the user needs {@link Permission#SUPERADMIN} permissions.
@@ -305,6 +417,39 @@ public class LogsResource {
         return filter;
     }
 
+    /**
+     * Parses a time of the format {@code yyyy-MM-dd HH:mm:ss} in the given timezone offset.
+     *
+     * @param time           the time, may be blank
+     * @param timezoneOffset the timezone offset from GMT, +0000 if blank
+     * @return the parsed time, or null if the time is blank
+     * @throws TimeFormatException if the time is not well formatted
+     */
+    /*test*/ Date parseTime(final String time, final String timezoneOffset) {
+        if (isBlank(time)) {
+            return null;
+        }
+
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+        sdf.setLenient(false);
+        sdf.setTimeZone(TimeZone.getTimeZone("GMT" + (isBlank(timezoneOffset) ? "+0000" : timezoneOffset)));
+
+        try {
+            return sdf.parse(time);
+        } catch (ParseException e) {
+            throw new TimeFormatException(time);
+        }
+    }
+
+    private String encode(final String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * Calculates a fromIndex for use with {@link List#subList(int, int)} to paginate a list correctly.
      * Returns 0 for all invalid values (alongside with {@link #toIndex(int, int, int)}), so that
@@ -405,8 +550,8 @@ public class LogsResource {
         int pages = numberOfPages(entries, perPage);
         List<String> links = new ArrayList<>();
 
-        links.add("<" + base + "&page=1>; rel=\"First\"");
-        links.add("<" + base + "&page=" + pages + ">; rel=\"Last\"");
+        links.add(link(base + "&page=1", "First"));
+        links.add(link(base + "&page=" + pages, "Last"));
 
         for (int i = page - boundary; i <= page + boundary; ++i) {
             if (i <= 0 || i == page || i > pages) {
@@ -414,15 +559,41 @@ public class LogsResource {
             }
 
             if (i == page - 1 || i == page + 1) {
-                links.add("<" + base + "&page=" + i + ">; rel=\"" + (i == page - 1 ? "Previous" : "Next") + "\"");
+                links.add(link(base + "&page=" + i, i == page - 1 ? "Previous" : "Next"));
             }
 
-            links.add("<" + base + "&page=" + i + ">; rel=\"Page " + i + "\"");
+            links.add(link(base + "&page=" + i, "Page " + i));
         }
 
         return join(links, ", ");
     }
 
+    /**
+     * Creates the link to the next page of a listing continued by a continuation token, in the format of
+     * {@link #linkHeaderValue(String, int, int, int, int, Map)}. Blank parameters are left out, the others are
+     * URL encoded.
+     *
+     * @param path       the sub path in this endpoint, for example {@code /applications/MyApplication/entries}
+     * @param perPage    the number of entries per page
+     * @param parameters the parameters to append to the link, including the continuation token
+     * @return a string suitable for a {@code Link} headers field linking the next page
+     */
+    /*test*/ String nextLinkHeaderValue(final String path, final int perPage, final Map<String, String> parameters) {
+        String base = "/api/v1/logs" + path + "?per_page=" + perPage;
+
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            if (!isBlank(parameter.getValue())) {
+                base += "&" + parameter.getKey() + "=" + encode(parameter.getValue());
+            }
+        }
+
+        return link(base, "Next");
+    }
+
+    private static String link(final String uri, final String rel) {
+        return "<" + uri + ">; rel=\"" + rel + "\"";
+    }
+
     /**
      * Calculates the total number of pages needed to present the number of entries.
      * <br />
@@ -17,7 +17,6 @@ package com.intuit.wasabi.api;
 
 import com.codahale.metrics.annotation.Timed;
 import com.codahale.metrics.health.HealthCheck;
-import com.codahale.metrics.health.HealthCheckRegistry;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import io.swagger.annotations.Api;
@@ -29,7 +28,6 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.Response;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
@@ -47,48 +45,63 @@ import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
 public class PingResource {
 
     private final HttpHeader httpHeader;
-    private HealthCheckRegistry healthChecks;
+    private final HealthCheckMonitor healthCheckMonitor;
 
     @Inject
-    PingResource(final HealthCheckRegistry healthChecks, final HttpHeader httpHeader) {
+    PingResource(final HealthCheckMonitor healthCheckMonitor, final HttpHeader httpHeader) {
         this.httpHeader = httpHeader;
-        this.healthChecks = healthChecks;
+        this.healthCheckMonitor = healthCheckMonitor;
     }
 
-    /*
-     * FIXME: Is apparently blocking if health-check fails
-     * TODO: run periodically and push to graphite?
-     */
     @GET
     @Produces(APPLICATION_JSON)
     @ApiOperation(value = "Pings the server",
-            notes = "Also returns the status of other components. Uses metrics-healthchecks and pings/check connections to MySql and Cassandra.",
+            notes = "Also returns the status of other components. Uses metrics-healthchecks and pings/check connections to MySql and Cassandra. " +
+                    "The checks are run in the background; the age of their results is returned in milliseconds.",
             response = ComponentHealthList.class)
     @Timed
     public Response ping() {
-        boolean status = true;
-        Map<String, HealthCheck.Result> results = healthChecks.runHealthChecks();
+        HealthCheckMonitor.Snapshot snapshot = healthCheckMonitor.getSnapshot();
+        boolean status = snapshot != null && !snapshot.isStale();
         List<ComponentHealth> chs = new ArrayList<>();
 
-        for (Entry<String, HealthCheck.Result> entry : results.entrySet()) {
-            String serverId = entry.getKey();
-            ComponentHealth h = new ComponentHealth(serverId);
+        if (snapshot != null) {
+            for (Entry<String, HealthCheck.Result> entry : snapshot.getResults().entrySet()) {
+                String serverId = entry.getKey();
+                ComponentHealth h = new ComponentHealth(serverId);
 
-            chs.add(h);
-            h.setHealthy(entry.getValue().isHealthy());
+                chs.add(h);
+                h.setHealthy(entry.getValue().isHealthy());
 
-            if (!entry.getValue().isHealthy()) {
-                status = false;
+                if (!entry.getValue().isHealthy()) {
+                    status = false;
 
-                h.setDetailedMessage(entry.getValue().getMessage());
+                    h.setDetailedMessage(entry.getValue().getMessage());
+                }
             }
         }
 
         ComponentHealthList componentHealthList = new ComponentHealthList(chs);
 
         componentHealthList.setVersion(httpHeader.getApplicationName());
+        componentHealthList.setAge(snapshot != null ? snapshot.getAge() : null);
 
         return httpHeader.headers(status ?
                 OK : SERVICE_UNAVAILABLE).type(APPLICATION_JSON_TYPE).entity(componentHealthList).build();
     }
+
+    @GET
+    @Path("/live")
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Checks that the server is running",
+            notes = "Does not check other components.",
+            response = ComponentHealthList.class)
+    @Timed
+    public Response live() {
+        ComponentHealthList componentHealthList = new ComponentHealthList(new ArrayList<ComponentHealth>());
+
+        componentHealthList.setVersion(httpHeader.getApplicationName());
+
+        return httpHeader.headers(OK).type(APPLICATION_JSON_TYPE).entity(componentHealthList).build();
+    }
 }
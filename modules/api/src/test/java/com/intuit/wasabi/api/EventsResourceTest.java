@@ -91,21 +91,37 @@ public class EventsResourceTest {
 	}
 
 	@Test
-	public void recordUsersEvents() throws UnsupportedOperationException {
+	public void recordUsersEvents() throws Exception {
+		Event e = new Event();
+		e.setName(Name.valueOf("someEventName"));
+		Map<User.ID, List<Event>> eventList = new HashMap<>();
+		eventList.put(userID, Collections.singletonList(e));
+
+		resource.recordUsersEvents(applicationName, experimentLabel, eventList);
+		verify(events).recordUsersEvents(applicationName, experimentLabel, eventList);
+		assertNotNull(e.getTimestamp());
+	}
+
+	@Test
+	public void recordUsersEventsNameNull() throws Exception {
 		Map<User.ID, List<Event>> eventList = new HashMap<>();
+		eventList.put(userID, Collections.singletonList(new Event()));
 
-		thrown.expect(UnsupportedOperationException.class);
-		thrown.expectMessage("Not implemented");
+		thrown.expect(IllegalArgumentException.class);
+		thrown.expectMessage("Event name cannot be null or an empty string");
 		resource.recordUsersEvents(applicationName, experimentLabel, eventList);
 	}
 
 	@Test
 	public void recordExperimentsEvents() throws Exception {
+		Event e = new Event();
+		e.setName(Name.valueOf("someEventName"));
 		Map<Experiment.Label, Map<User.ID, List<Event>>> eventList = new HashMap<>();
+		eventList.put(experimentLabel, Collections.singletonMap(userID, Collections.singletonList(e)));
 
-		thrown.expect(UnsupportedOperationException.class);
-		thrown.expectMessage("Not implemented");
-		resource.recordExperimentsEvents(applicationName, userID, eventList);
+		resource.recordExperimentsEvents(applicationName, eventList);
+		verify(events).recordExperimentsEvents(applicationName, eventList);
+		assertNotNull(e.getTimestamp());
 	}
 
     @Test
@@ -610,7 +610,7 @@ public class ExperimentsResourceTest {
         when(experiments.getExperiment(experiment.getID())).thenReturn(null);
         thrown.expect(ExperimentNotFoundException.class);
         experimentsResource.exportAssignments(experiment.getID(), context, ignoreStringNullBucket,
-                fromStringDate,toStringDate,timeZoneString,AUTHHEADER);
+                fromStringDate,toStringDate,timeZoneString,AUTHHEADER,null);
     }
 
     @Test
@@ -620,7 +620,31 @@ public class ExperimentsResourceTest {
         when(authorization.getUser(AUTHHEADER)).thenReturn(USER);
         when(experiments.getExperiment(experiment.getID())).thenReturn(experiment);
         assertNotNull(experimentsResource.exportAssignments(experiment.getID(), context, ignoreStringNullBucket,
-                fromStringDate,toStringDate,timeZoneString,AUTHHEADER));
+                fromStringDate,toStringDate,timeZoneString,AUTHHEADER,null));
+    }
+
+    @Test
+    public void exportAssignmentsGzip() throws Exception {
+        ExperimentsResource experimentsResource = new ExperimentsResource(experiments, eventsExport, assignments,
+                authorization, buckets, mutex, pages, priorities, "US/New York", "YYYY-mm-DD", new HttpHeader("jaba-???"));
+        when(authorization.getUser(AUTHHEADER)).thenReturn(USER);
+        when(experiments.getExperiment(experiment.getID())).thenReturn(experiment);
+        Response response = experimentsResource.exportAssignments(experiment.getID(), context, ignoreStringNullBucket,
+                fromStringDate,toStringDate,timeZoneString,AUTHHEADER,"gzip, deflate");
+        assertThat(response.getMetadata().getFirst("Content-Encoding"), is((Object) "gzip"));
+    }
+
+    @Test
+    public void acceptsGzip() {
+        assertThat(ExperimentsResource.acceptsGzip("gzip, deflate"), is(true));
+        assertThat(ExperimentsResource.acceptsGzip("deflate, GZIP;q=0.5"), is(true));
+        assertThat(ExperimentsResource.acceptsGzip("*"), is(true));
+        assertThat(ExperimentsResource.acceptsGzip(null), is(false));
+        assertThat(ExperimentsResource.acceptsGzip("deflate"), is(false));
+        assertThat(ExperimentsResource.acceptsGzip("gzip;q=0"), is(false));
+        assertThat(ExperimentsResource.acceptsGzip("gzip; q=0.0, deflate"), is(false));
+        assertThat(ExperimentsResource.acceptsGzip("*, gzip;q=0"), is(false));
+        assertThat(ExperimentsResource.acceptsGzip("gzip;q=abc"), is(false));
     }
 
     @Test
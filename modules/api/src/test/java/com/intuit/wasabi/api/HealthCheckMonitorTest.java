@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.api;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class HealthCheckMonitorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger slowRuns = new AtomicInteger();
+    private HealthCheckRegistry healthChecks;
+    private HealthCheckMonitor monitor;
+
+    @Before
+    public void setup() {
+        healthChecks = new HealthCheckRegistry();
+        healthChecks.register("fast", new HealthCheck() {
+            @Override
+            protected Result check() throws Exception {
+                return Result.healthy();
+            }
+        });
+        healthChecks.register("slow", new HealthCheck() {
+            @Override
+            protected Result check() throws Exception {
+                slowRuns.incrementAndGet();
+                release.await();
+                return Result.healthy();
+            }
+        });
+        monitor = new HealthCheckMonitor(healthChecks, 0L, 100L, 30000L);
+    }
+
+    @Test
+    public void slowCheckIsReportedAsUnhealthy() throws Exception {
+        HealthCheckMonitor.Snapshot snapshot = monitor.getSnapshot();
+
+        assertThat(snapshot.getResults().get("fast").isHealthy(), is(true));
+        assertThat(snapshot.getResults().get("slow").isHealthy(), is(false));
+        assertThat(snapshot.isStale(), is(false));
+    }
+
+    @Test
+    public void slowCheckIsNotStartedAgainWhileRunning() throws Exception {
+        monitor.refresh();
+        monitor.refresh();
+        assertThat(slowRuns.get(), is(1));
+
+        release.countDown();
+        HealthCheckMonitor.Snapshot snapshot = monitor.refresh();
+        assertThat(snapshot.getResults().get("slow").isHealthy(), is(true));
+    }
+
+    @Test
+    public void snapshotIsServedUntilRefreshed() throws Exception {
+        release.countDown();
+        HealthCheckMonitor.Snapshot snapshot = monitor.getSnapshot();
+
+        assertThat(monitor.getSnapshot(), is(snapshot));
+        assertThat(slowRuns.get(), is(1));
+    }
+}
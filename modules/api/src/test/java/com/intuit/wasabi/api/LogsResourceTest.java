@@ -19,8 +19,10 @@ import com.intuit.wasabi.auditlog.AuditLog;
 import com.intuit.wasabi.auditlog.impl.AuditLogImpl;
 import com.intuit.wasabi.auditlogobjects.AuditLogEntry;
 import com.intuit.wasabi.auditlogobjects.AuditLogEntryFactory;
+import com.intuit.wasabi.auditlogobjects.AuditLogPage;
 import com.intuit.wasabi.authorization.Authorization;
 import com.intuit.wasabi.eventlog.events.SimpleEvent;
+import com.intuit.wasabi.exceptions.TimeFormatException;
 import com.intuit.wasabi.experimentobjects.Application;
 import org.junit.Assert;
 import org.junit.Test;
@@ -28,7 +30,10 @@ import org.mockito.Mockito;
 
 import javax.ws.rs.core.Response;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -181,6 +186,18 @@ public class LogsResourceTest {
         assertEquals("</api/v1/logs/test?per_page=5&page=1>; rel=\"First\", </api/v1/logs/test?per_page=5&page=20>; rel=\"Last\", </api/v1/logs/test?per_page=5&page=2>; rel=\"Previous\", </api/v1/logs/test?per_page=5&page=2>; rel=\"Page 2\", </api/v1/logs/test?per_page=5&page=4>; rel=\"Next\", </api/v1/logs/test?per_page=5&page=4>; rel=\"Page 4\"", lh);
     }
 
+    @Test
+    public void nextLinkHeaderValue() throws Exception {
+        LogsResource lr = new LogsResource(mock(AuditLog.class), mock(Authorization.class), new HttpHeader("jaba-???"));
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put("filter", "");
+        parameters.put("continuation", "a b");
+
+        String lh = lr.nextLinkHeaderValue("/test", 5, parameters);
+
+        assertEquals("</api/v1/logs/test?per_page=5&continuation=a+b>; rel=\"Next\"", lh);
+    }
+
     @Test
     public void prepareDateFilter() throws Exception {
         LogsResource lr = new LogsResource(mock(AuditLog.class), mock(Authorization.class), new HttpHeader("jaba-???"));
@@ -202,4 +219,43 @@ public class LogsResourceTest {
         assertEquals("filterMask,time={+0200},action=ed exp", lr.prepareDateFilter("filterMask,time={+0200},action=ed exp", "+0100"));
         assertEquals("filterMask,time={+0200}Sep 22,action=ed exp", lr.prepareDateFilter("filterMask,time={+0200}Sep 22,action=ed exp", "+0100"));
     }
+
+    @Test
+    public void getLogPage() throws Exception {
+        AuditLog al = mock(AuditLogImpl.class);
+        Authorization auth = mock(Authorization.class);
+        LogsResource lr = new LogsResource(al, auth, new HttpHeader("jaba-???"));
+        Application.Name appName = Application.Name.valueOf("app");
+        List<AuditLogEntry> list = Collections.singletonList(
+                AuditLogEntryFactory.createFromEvent(new SimpleEvent("Event")));
+
+        Mockito.when(al.getAuditLogPage(appName, "", null, new Date(0), null, 1))
+                .thenReturn(new AuditLogPage(list, "token"));
+        Response r = lr.getLogPage("", appName, 1, "", null, "1970-01-01 00:00:00", "+0000", null);
+        assertEquals(list, ((Map) r.getEntity()).get("logEntries"));
+        assertEquals("token", ((Map) r.getEntity()).get("continuation"));
+        Assert.assertTrue(r.getMetadata().getFirst("Link").toString().contains("continuation=token"));
+        Assert.assertTrue(r.getMetadata().getFirst("Link").toString().endsWith("rel=\"Next\""));
+
+        Mockito.when(al.getAuditLogPage(appName, "", null, null, "token", 1))
+                .thenReturn(new AuditLogPage(Collections.<AuditLogEntry>emptyList(), null));
+        r = lr.getLogPage("", appName, 1, "", null, null, "+0000", "token");
+        Assert.assertNull(((Map) r.getEntity()).get("continuation"));
+        Assert.assertNull(r.getMetadata().getFirst("Link"));
+    }
+
+    @Test
+    public void parseTime() throws Exception {
+        LogsResource lr = new LogsResource(mock(AuditLog.class), mock(Authorization.class), new HttpHeader("jaba-???"));
+
+        Assert.assertNull(lr.parseTime("", "+0000"));
+        assertEquals(new Date(3600000), lr.parseTime("1970-01-01 00:00:00", "-0100"));
+    }
+
+    @Test(expected = TimeFormatException.class)
+    public void parseTimeInvalid() throws Exception {
+        LogsResource lr = new LogsResource(mock(AuditLog.class), mock(Authorization.class), new HttpHeader("jaba-???"));
+
+        lr.parseTime("yesterday", "+0000");
+    }
 }
@@ -24,11 +24,16 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import javax.ws.rs.core.Response;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.Collections;
+import java.util.TreeSet;
 
+import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -41,7 +46,7 @@ public class PingResourceTest {
 
     @Before
     public void setup() {
-        resouce = new PingResource(healthChecks, new HttpHeader(version));
+        resouce = new PingResource(new HealthCheckMonitor(healthChecks, 0L, 1000L, 30000L), new HttpHeader(version));
     }
 
     @Test
@@ -65,12 +70,32 @@ public class PingResourceTest {
 
     @Test
     public void pingTest() throws Exception {
-        SortedMap<String, HealthCheck.Result> result = new TreeMap<String, HealthCheck.Result>();
-        result.put("test", HealthCheck.Result.unhealthy("test unhealthy"));
-        when(healthChecks.runHealthChecks()).thenReturn(result);
+        when(healthChecks.getNames()).thenReturn(new TreeSet<>(Collections.singleton("test")));
+        when(healthChecks.runHealthCheck("test")).thenReturn(HealthCheck.Result.unhealthy("test unhealthy"));
         Response answer = resouce.ping();
         Response expected = Response.status(Response.Status.SERVICE_UNAVAILABLE)
                 .entity("").build();
         assertThat(answer.getStatus(), is(expected.getStatus()));
     }
+
+    @Test
+    public void pingServesLastResults() throws Exception {
+        when(healthChecks.getNames()).thenReturn(new TreeSet<>(Collections.singleton("test")));
+        when(healthChecks.runHealthCheck("test")).thenReturn(HealthCheck.Result.healthy());
+
+        assertThat(resouce.ping().getStatus(), is(Response.Status.OK.getStatusCode()));
+        Response answer = resouce.ping();
+
+        assertThat(answer.getStatus(), is(Response.Status.OK.getStatusCode()));
+        assertThat(((ComponentHealthList) answer.getEntity()).getAge(), is(notNullValue()));
+        verify(healthChecks, times(1)).runHealthCheck("test");
+    }
+
+    @Test
+    public void live() throws Exception {
+        Response answer = resouce.live();
+
+        assertThat(answer.getStatus(), is(Response.Status.OK.getStatusCode()));
+        verify(healthChecks, never()).runHealthCheck(anyString());
+    }
 }
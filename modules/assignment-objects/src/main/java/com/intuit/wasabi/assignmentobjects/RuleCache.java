@@ -15,25 +15,103 @@
  *******************************************************************************/
 package com.intuit.wasabi.assignmentobjects;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.intuit.hyrule.Rule;
+import com.intuit.hyrule.RuleBuilder;
 import com.intuit.wasabi.experimentobjects.Experiment;
 
+/**
+ * Size-bounded cache of parsed segmentation rules.
+ *
+ * Every entry remembers the rule text it was parsed from, so {@link #getRule(Experiment.ID, String)} parses a rule
+ * again only after its text has changed. When the cache is full, the least recently used entry is evicted; entries
+ * of terminated or deleted experiments are removed with {@link #clearRule(Experiment.ID)}.
+ *
+ * Next to the parsed rule, every entry holds the names of the attributes the rule may reference, so that only
+ * these attributes need to be looked up when the rule is evaluated.
+ */
 public class RuleCache {
 
-    // FIXME cache can only grow, we need to add a delete routine that removes rule objects for terminated/deleted experiments
+    public static final int DEFAULT_MAX_SIZE = 10000;
+    private static final String OPERATOR_CHARACTERS = "()=!<>&|^~,";
 
     // Default 16 standard concurrency update level used
-    private Map<Experiment.ID, Rule> ruleCache = new ConcurrentHashMap<>();
+    private final Map<Experiment.ID, Entry> ruleCache = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final int maxSize;
+
+    public RuleCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize maximum number of cached rules, at least 1
+     */
+    public RuleCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Rule cache size must be positive, was " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the parsed rule for the given rule text, parsing and caching it if the cached rule of the
+     * experiment was parsed from a different text or is not cached at all.
+     *
+     * @param key      the experiment ID
+     * @param ruleText the current rule text of the experiment
+     * @return the parsed rule, <code>null</code> if the rule text is empty
+     */
+    public Rule getRule(Experiment.ID key, String ruleText) {
+        if (ruleText == null || ruleText.isEmpty()) {
+            clearRule(key);
+            return null;
+        }
+
+        Entry entry = ruleCache.get(key);
+        if (entry != null && ruleText.equals(entry.ruleText)) {
+            entry.lastAccess = clock.incrementAndGet();
+            return entry.rule;
+        }
+
+        Rule rule = new RuleBuilder().parseExpression(ruleText);
+        put(key, new Entry(ruleText, rule));
+        return rule;
+    }
+
+    /**
+     * Returns the names of the attributes the given rule text may reference. The names are a superset of the
+     * referenced attributes: every word of the rule outside of quoted values is considered a name.
+     *
+     * @param key      the experiment ID
+     * @param ruleText the current rule text of the experiment
+     * @return the attribute names, empty if the rule text is empty
+     */
+    public Set<String> getAttributeNames(Experiment.ID key, String ruleText) {
+        Entry entry = ruleCache.get(key);
+        if (entry != null && ruleText != null && ruleText.equals(entry.ruleText)) {
+            return entry.attributeNames;
+        }
+        return attributeNames(ruleText);
+    }
 
     public void setRule(Experiment.ID key, Rule rule) {
-      ruleCache.put(key, rule);
+        if (rule == null) {
+            clearRule(key);
+        } else {
+            put(key, new Entry(null, rule));
+        }
     }
 
     public Rule getRule(Experiment.ID key) {
-        return ruleCache.get(key);
+        Entry entry = ruleCache.get(key);
+        return entry != null ? entry.rule : null;
     }
 
     public boolean containsRule(Experiment.ID key) {
@@ -41,4 +119,93 @@ public class RuleCache {
     }
 
     public void clearRule(Experiment.ID key) { ruleCache.remove(key);}
+
+    public int size() {
+        return ruleCache.size();
+    }
+
+    private void put(Experiment.ID key, Entry entry) {
+        entry.lastAccess = clock.incrementAndGet();
+        if (ruleCache.put(key, entry) == null && ruleCache.size() > maxSize) {
+            evictLeastRecentlyUsed(key);
+        }
+    }
+
+    /*
+     * Only called when a new experiment is added to a full cache, which does not happen on the assignment path
+     * of a node whose running experiments fit into the cache, so a linear scan is cheap enough.
+     */
+    private synchronized void evictLeastRecentlyUsed(Experiment.ID keep) {
+        while (ruleCache.size() > maxSize) {
+            Experiment.ID eldest = null;
+            long eldestAccess = Long.MAX_VALUE;
+            for (Map.Entry<Experiment.ID, Entry> candidate : ruleCache.entrySet()) {
+                if (!candidate.getKey().equals(keep) && candidate.getValue().lastAccess < eldestAccess) {
+                    eldest = candidate.getKey();
+                    eldestAccess = candidate.getValue().lastAccess;
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            ruleCache.remove(eldest);
+        }
+    }
+
+    static Set<String> attributeNames(String ruleText) {
+        if (ruleText == null || ruleText.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<String> names = new HashSet<>();
+        StringBuilder word = new StringBuilder();
+        char quote = 0;
+        for (int i = 0; i < ruleText.length(); i++) {
+            char c = ruleText.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                addAttributeName(names, word);
+            } else if (Character.isWhitespace(c) || OPERATOR_CHARACTERS.indexOf(c) >= 0) {
+                addAttributeName(names, word);
+            } else {
+                word.append(c);
+            }
+        }
+        addAttributeName(names, word);
+        return Collections.unmodifiableSet(names);
+    }
+
+    private static void addAttributeName(Set<String> names, StringBuilder word) {
+        if (word.length() > 0) {
+            String name = word.toString();
+            names.add(name);
+            // a word like "a-b" could also be an expression over two attributes
+            for (String part : name.split("[-.+*/]")) {
+                if (!part.isEmpty()) {
+                    names.add(part);
+                }
+            }
+            word.setLength(0);
+        }
+    }
+
+    private static class Entry {
+
+        private final String ruleText;
+        private final Rule rule;
+        private final Set<String> attributeNames;
+        private volatile long lastAccess;
+
+        Entry(String ruleText, Rule rule) {
+            this.ruleText = ruleText;
+            this.rule = rule;
+            this.attributeNames = attributeNames(ruleText);
+        }
+    }
 }
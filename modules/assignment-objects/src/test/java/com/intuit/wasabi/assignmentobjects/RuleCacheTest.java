@@ -24,7 +24,15 @@ import org.mockito.runners.MockitoJUnitRunner;
 import com.intuit.hyrule.Rule;
 import com.intuit.wasabi.experimentobjects.Experiment;
 
+import java.util.Arrays;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -50,4 +58,62 @@ public class RuleCacheTest {
         assertTrue(!ruleCache.containsRule(experimentID));
     }
 
+    @Test
+    public void testRuleParsedOnlyWhenTextChanges() {
+        Rule parsed = ruleCache.getRule(experimentID, "a = b");
+        assertNotNull(parsed);
+        assertSame(parsed, ruleCache.getRule(experimentID, "a = b"));
+
+        Rule changed = ruleCache.getRule(experimentID, "a = c");
+        assertNotSame(parsed, changed);
+        assertSame(changed, ruleCache.getRule(experimentID));
+    }
+
+    @Test
+    public void testAttributeNames() {
+        String ruleText = "(User-Agent = \"my agent\") && (salary > 1000) && (context = 'PROD')";
+        Set<String> names = ruleCache.getAttributeNames(experimentID, ruleText);
+
+        assertTrue(names.containsAll(Arrays.asList("User-Agent", "salary", "context")));
+        assertFalse(names.contains("my"));
+        assertFalse(names.contains("PROD"));
+
+        String cachedRuleText = "(salary < 10000) && (state = 'VA')";
+        ruleCache.getRule(experimentID, cachedRuleText);
+        assertSame(ruleCache.getAttributeNames(experimentID, cachedRuleText),
+                ruleCache.getAttributeNames(experimentID, cachedRuleText));
+        assertTrue(ruleCache.getAttributeNames(experimentID, "").isEmpty());
+    }
+
+    @Test
+    public void testEmptyRuleTextClearsRule() {
+        ruleCache.getRule(experimentID, "a = b");
+
+        assertNull(ruleCache.getRule(experimentID, ""));
+        assertFalse(ruleCache.containsRule(experimentID));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedRuleEvicted() {
+        RuleCache boundedCache = new RuleCache(2);
+        Experiment.ID first = Experiment.ID.newInstance();
+        Experiment.ID second = Experiment.ID.newInstance();
+        Experiment.ID third = Experiment.ID.newInstance();
+
+        boundedCache.getRule(first, "a = b");
+        boundedCache.getRule(second, "a = b");
+        boundedCache.getRule(first, "a = b");
+        boundedCache.getRule(third, "a = b");
+
+        assertEquals(2, boundedCache.size());
+        assertTrue(boundedCache.containsRule(first));
+        assertFalse(boundedCache.containsRule(second));
+        assertTrue(boundedCache.containsRule(third));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveSizeRejected() {
+        new RuleCache(0);
+    }
+
 }
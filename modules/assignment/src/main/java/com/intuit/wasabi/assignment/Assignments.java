@@ -30,6 +30,7 @@ import com.intuit.wasabi.experimentobjects.Page;
 
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.StreamingOutput;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -202,4 +203,19 @@ public interface Assignments {
     boolean doSegmentTest(Application.Name applicationName, Experiment.Label experimentLabel,
                           Context context, SegmentationProfile segmentationProfile,
                           HttpHeaders headers);
+
+    /**
+     * Returns the existing assignments of a user to several experiments of an application. The assignments of the
+     * user are read once for all experiments, no new assignments are created.
+     *
+     * @param userID           the {@link com.intuit.wasabi.assignmentobjects.User.ID} of the person we want the assignments for
+     * @param applicationName  the {@link com.intuit.wasabi.experimentobjects.Application.Name} the app we want the assignments for
+     * @param context          the {@link Context} of the assignments
+     * @param experimentLabels the labels of the experiments
+     * @return the assignment per experiment label, see {@link #getAssignment(User.ID, Application.Name,
+     * Experiment.Label, Context, boolean, boolean, SegmentationProfile, HttpHeaders)} for the statuses
+     */
+    Map<Experiment.Label, Assignment> getExistingAssignments(User.ID userID, Application.Name applicationName,
+                                                             Context context,
+                                                             Collection<Experiment.Label> experimentLabels);
 }
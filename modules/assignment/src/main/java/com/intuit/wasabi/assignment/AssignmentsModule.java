@@ -15,7 +15,6 @@
  *******************************************************************************/
 package com.intuit.wasabi.assignment;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.AbstractModule;
 import com.google.inject.TypeLiteral;
 import com.google.inject.multibindings.MapBinder;
@@ -26,11 +25,12 @@ import com.intuit.wasabi.export.Envelope;
 import com.intuit.wasabi.export.WebExport;
 import com.intuit.wasabi.export.rest.impl.ExportModule;
 import com.intuit.wasabi.repository.RepositoryModule;
+import com.intuit.wasabi.util.concurrent.BoundedExecutor;
+import com.intuit.wasabi.util.concurrent.OverflowPolicy;
 import org.slf4j.Logger;
 
 import java.net.URI;
 import java.util.Properties;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import static com.google.common.base.Optional.fromNullable;
@@ -40,7 +40,6 @@ import static com.intuit.autumn.utils.PropertyFactory.create;
 import static com.intuit.autumn.utils.PropertyFactory.getProperty;
 import static java.lang.Boolean.FALSE;
 import static java.lang.Integer.parseInt;
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.slf4j.LoggerFactory.getLogger;
 
 public class AssignmentsModule extends AbstractModule {
@@ -64,7 +63,7 @@ public class AssignmentsModule extends AbstractModule {
         Properties properties = create(PROPERTY_NAME, AssignmentsModule.class);
 
         bindAssignmentAndDecorator(properties);
-        bindRuleCacheThreadPool(properties);
+        bindBatchAssignmentThreadPool(properties);
 
         String databaseAssignmentClassName = getProperty("export.rest.assignment.db.class.name", properties,
                 "com.intuit.wasabi.assignment.impl.NoopDatabaseAssignmentEnvelope");
@@ -133,16 +132,23 @@ public class AssignmentsModule extends AbstractModule {
         }
     }
 
-    private void bindRuleCacheThreadPool(final Properties properties) {
-        LinkedBlockingQueue<Runnable> ruleCacheQueue = new LinkedBlockingQueue<>();
-        int ruleCacheThreadPoolSize = parseInt(getProperty("ruleCache.executor.pool.size", properties, "5"));
-        ThreadPoolExecutor ruleCacheExecutor = new ThreadPoolExecutor(ruleCacheThreadPoolSize,
-                ruleCacheThreadPoolSize, 0L, MILLISECONDS, ruleCacheQueue, new ThreadFactoryBuilder()
-                .setNameFormat("RuleCache-%d")
-                .setDaemon(true)
-                .build());
-
-        bind(ThreadPoolExecutor.class).annotatedWith(named("ruleCache.threadPool")).toInstance(ruleCacheExecutor);
+    private void bindBatchAssignmentThreadPool(final Properties properties) {
+        int batchAssignmentThreadPoolSize = parseInt(getProperty("batchAssignment.executor.pool.size", properties,
+                "20"));
+        int batchAssignmentQueueCapacity = parseInt(getProperty("batchAssignment.executor.queue.capacity",
+                properties, "1000"));
+        // a request waits for its writes, so a saturated pool makes the request thread write itself
+        ThreadPoolExecutor batchAssignmentExecutor = new BoundedExecutor.Builder("BatchAssignment")
+                .withPoolSize(batchAssignmentThreadPoolSize)
+                .withQueueCapacity(batchAssignmentQueueCapacity)
+                .withOverflowPolicy(OverflowPolicy.CALLER_RUNS)
+                .withDaemonThreads(true)
+                .build();
+
+        bind(ThreadPoolExecutor.class).annotatedWith(named("batchAssignment.threadPool"))
+                .toInstance(batchAssignmentExecutor);
+        bind(Boolean.class).annotatedWith(named("batchAssignment.concurrent.writes"))
+                .toInstance(Boolean.parseBoolean(getProperty("batchAssignment.concurrent.writes", properties,
+                        FALSE.toString())));
     }
-
 }
@@ -16,6 +16,8 @@
 package com.intuit.wasabi.assignment.impl;
 
 import com.google.common.collect.Table;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.name.Named;
@@ -32,9 +34,12 @@ import com.intuit.wasabi.assignment.AssignmentIngestionExecutor;
 import com.intuit.wasabi.assignment.Assignments;
 import com.intuit.wasabi.assignmentobjects.*;
 import com.intuit.wasabi.eventlog.EventLog;
+import com.intuit.wasabi.exceptions.AssignmentException;
 import com.intuit.wasabi.exceptions.AssignmentExistsException;
 import com.intuit.wasabi.exceptions.BucketNotFoundException;
 import com.intuit.wasabi.exceptions.ExperimentNotFoundException;
+import com.intuit.wasabi.experiment.ApplicationSnapshot;
+import com.intuit.wasabi.experiment.MetadataCache;
 import com.intuit.wasabi.experiment.Pages;
 import com.intuit.wasabi.experiment.Priorities;
 import com.intuit.wasabi.experimentobjects.*;
@@ -47,7 +52,6 @@ import com.intuit.wasabi.repository.AssignmentsRepository;
 import com.intuit.wasabi.repository.CassandraRepository;
 import com.intuit.wasabi.repository.ExperimentRepository;
 import com.intuit.wasabi.repository.MutexRepository;
-import com.intuit.wasabi.repository.impl.cassandra.ExperimentRuleCacheUpdateEnvelope;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import org.slf4j.Logger;
 
@@ -55,8 +59,12 @@ import javax.annotation.Nullable;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.StreamingOutput;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import static org.slf4j.LoggerFactory.getLogger;
@@ -68,11 +76,16 @@ import static org.slf4j.LoggerFactory.getLogger;
  */
 public class AssignmentsImpl implements Assignments {
 
-    protected static final String RULE_CACHE = "ruleCache";
     /**
      * Logger for the class
      */
     private static final Logger LOGGER = getLogger(AssignmentsImpl.class);
+    /**
+     * Hash of experiment and user deciding sampling and bucket of experiments with hash assignment
+     */
+    private static final HashFunction ASSIGNMENT_HASH = Hashing.murmur3_128();
+    private static final String SAMPLING_SALT = "sampling";
+    private static final String BUCKET_SALT = "bucket";
     /**
      * Experiment repo
      */
@@ -93,7 +106,10 @@ public class AssignmentsImpl implements Assignments {
      */
     protected Map<String, AssignmentIngestionExecutor> executors;
     protected AssignmentDecorator assignmentDecorator = null;
-    protected ThreadPoolExecutor ruleCacheExecutor;
+    /**
+     * Executor writing the new assignments of a batch concurrently
+     */
+    protected ThreadPoolExecutor batchAssignmentExecutor;
     //TODO: instead of provider type, these needs to be factories
     protected Provider<Envelope<AssignmentEnvelopePayload, DatabaseExport>> assignmentDBEnvelopeProvider;
     //TODO: instead of provider type, these needs to be factories
@@ -106,6 +122,18 @@ public class AssignmentsImpl implements Assignments {
     private HttpCall<PersonalizationEngineResponse> httpCall = new HttpCallImplWithConnectionPooling<>();
     private Priorities priorities;
     private Pages pages;
+    /**
+     * In-memory application metadata used on the assignment path
+     */
+    private MetadataCache metadataCache;
+    /**
+     * Whether the new assignments of a batch are written concurrently once all of them are decided
+     */
+    private boolean concurrentBatchWrites;
+    /**
+     * Hash assignments being written, so that repeated requests do not write and count them again meanwhile
+     */
+    private final Set<String> hashWritesInFlight = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     private EventLog eventLog;
 
@@ -135,9 +163,47 @@ public class AssignmentsImpl implements Assignments {
      * @param assignmentDBEnvelopeProvider        AssignmentDBEnvelopeProvider
      * @param assignmentWebEnvelopeProvider       AssignmentWebEnvelopeProvider
      * @param assignmentDecorator                 The assignmentDecorator to be used
-     * @param ruleCacheExecutor                   The rule cache executor to be used
+     * @param batchAssignmentExecutor             The executor writing the new assignments of a batch
+     * @param eventLog                            eventLog
+     * @param metadataCache                       cache of the application metadata
+     * @throws IOException         io exception
+     * @throws ConnectionException connection exception
+     */
+    public AssignmentsImpl(Map<String, AssignmentIngestionExecutor> executors,
+                           final ExperimentRepository repository,
+                           final AssignmentsRepository assignmentsRepository,
+                           final MutexRepository mutexRepository,
+                           final RuleCache ruleCache, final Pages pages,
+                           final Priorities priorities,
+                           final Provider<Envelope<AssignmentEnvelopePayload, DatabaseExport>> assignmentDBEnvelopeProvider,
+                           final Provider<Envelope<AssignmentEnvelopePayload, WebExport>> assignmentWebEnvelopeProvider,
+                           final AssignmentDecorator assignmentDecorator,
+                           final ThreadPoolExecutor batchAssignmentExecutor,
+                           final EventLog eventLog,
+                           final MetadataCache metadataCache)
+            throws IOException, ConnectionException {
+        this(executors, repository, assignmentsRepository, mutexRepository, ruleCache, pages, priorities,
+                assignmentDBEnvelopeProvider, assignmentWebEnvelopeProvider, assignmentDecorator,
+                batchAssignmentExecutor, eventLog, metadataCache, false);
+    }
 
+    /**
+     * Constructor
+     *
+     * @param repository                          CassandraRepository to connect to
+     * @param assignmentsRepository               reference to AssignmentsRepository
+     * @param mutexRepository                     reference to MutexRepository
+     * @param ruleCache                           RuleCache which has cached segmentation rules
+     * @param pages                               Pages for this experiment
+     * @param priorities                          Priorities for the application
+     * @param assignmentDBEnvelopeProvider        AssignmentDBEnvelopeProvider
+     * @param assignmentWebEnvelopeProvider       AssignmentWebEnvelopeProvider
+     * @param assignmentDecorator                 The assignmentDecorator to be used
+     * @param batchAssignmentExecutor             The executor writing the new assignments of a batch
      * @param eventLog                            eventLog
+     * @param metadataCache                       cache of the application metadata
+     * @param concurrentBatchWrites               whether the new assignments of a batch are decided first and
+     *                                            written concurrently afterwards
      * @throws IOException         io exception
      * @throws ConnectionException connection exception
      */
@@ -151,8 +217,10 @@ public class AssignmentsImpl implements Assignments {
                            final Provider<Envelope<AssignmentEnvelopePayload, DatabaseExport>> assignmentDBEnvelopeProvider,
                            final Provider<Envelope<AssignmentEnvelopePayload, WebExport>> assignmentWebEnvelopeProvider,
                            final @Nullable AssignmentDecorator assignmentDecorator,
-                           final @Named("ruleCache.threadPool") ThreadPoolExecutor ruleCacheExecutor,
-                           final EventLog eventLog)
+                           final @Named("batchAssignment.threadPool") ThreadPoolExecutor batchAssignmentExecutor,
+                           final EventLog eventLog,
+                           final MetadataCache metadataCache,
+                           final @Named("batchAssignment.concurrent.writes") Boolean concurrentBatchWrites)
             throws IOException, ConnectionException {
         super();
 
@@ -167,10 +235,12 @@ public class AssignmentsImpl implements Assignments {
         this.assignmentWebEnvelopeProvider = assignmentWebEnvelopeProvider;
         this.assignmentDecorator = assignmentDecorator;
         this.eventLog = eventLog;
-        this.ruleCacheExecutor = ruleCacheExecutor;
+        this.batchAssignmentExecutor = batchAssignmentExecutor;
         this.assignmentsRepository = assignmentsRepository;
         this.mutexRepository = mutexRepository;
         this.eventLog = eventLog;
+        this.metadataCache = metadataCache;
+        this.concurrentBatchWrites = concurrentBatchWrites;
     }
 
     /**
@@ -234,8 +304,8 @@ public class AssignmentsImpl implements Assignments {
                 boolean selectBucket;
 
                 if (doesProfileMatch(experiment, segmentationProfile, headers, context)) {
-                    selectBucket = checkMutex(experiment, userID, context) && (ignoreSamplingPercent || (rollDie() <
-                            samplePercent));
+                    selectBucket = checkMutex(experiment, userID, context) && (ignoreSamplingPercent ||
+                            (rollDie(experiment, userID, SAMPLING_SALT) < samplePercent));
 
                     if (segmentationProfile == null || segmentationProfile.getProfile() == null) {
                         Map profileMap = new HashMap();
@@ -248,9 +318,6 @@ public class AssignmentsImpl implements Assignments {
                             "Assignment status should have been NEW_ASSIGNMENT for " +
                                     "userID = \"" + userID + "\", experiment = \"" + experiment + "\"";
                 } else {
-                    ruleCacheExecutor.execute(new ExperimentRuleCacheUpdateEnvelope(experiment.getRule(),
-                            ruleCache, experimentID));
-
                     return nullAssignment(userID, applicationName, experiment.getID(),
                             Assignment.Status.NO_PROFILE_MATCH);
                 }
@@ -263,10 +330,6 @@ public class AssignmentsImpl implements Assignments {
                             experiment + "\"";
         }
 
-        // Updating rule cache
-        ruleCacheExecutor.execute(new ExperimentRuleCacheUpdateEnvelope(experiment.getRule(), ruleCache,
-                experimentID));
-
         // Ingest data to real time data ingestion systems if executors exist
 		for (String name : executors.keySet()) {
 			executors.get(name).execute(new AssignmentEnvelopePayload(userID, context, createAssignment, false, ignoreSamplingPercent,
@@ -284,23 +347,44 @@ public class AssignmentsImpl implements Assignments {
                                     Application.Name appName, Experiment.Label experimentLabel,
                                     Context context, boolean createAssignment, boolean ignoreSamplingPercent,
                                     SegmentationProfile segmentationProfile, HttpHeaders headers) {
-        Table<Experiment.ID, Experiment.Label, Experiment> allExperiments =
-                repository.getExperimentList(appName);
+        ApplicationSnapshot snapshot = metadataCache.getSnapshot(appName);
+        Table<Experiment.ID, Experiment.Label, Experiment> allExperiments = snapshot.getExperiments();
         Experiment experiment = getExperimentFromTable(allExperiments, experimentLabel);
 
         if (experiment == null) {
             return nullAssignment(userID, appName, null, Assignment.Status.EXPERIMENT_NOT_FOUND);
         }
 
-        BucketList bucketList = repository.getBucketList(experiment.getID());
+        BucketList bucketList = snapshot.getBucketList(experiment.getID());
         Table<Experiment.ID, Experiment.Label, String> userAssignments =
                 assignmentsRepository.getAssignments(userID, experiment.getApplicationName(), context, allExperiments);
-        Map<Experiment.ID, List<Experiment.ID>> exclusives = getExclusivesList(experiment.getID());
+        Map<Experiment.ID, List<Experiment.ID>> exclusives = snapshot.getExclusives();
 
         return getAssignment(userID, appName, experimentLabel, context, createAssignment, ignoreSamplingPercent,
                 segmentationProfile, headers, null, experiment, bucketList, userAssignments, exclusives);
     }
 
+    @Override
+    public Map<Experiment.Label, Assignment> getExistingAssignments(User.ID userID, Application.Name applicationName,
+                                                                    Context context,
+                                                                    Collection<Experiment.Label> experimentLabels) {
+        ApplicationSnapshot snapshot = metadataCache.getSnapshot(applicationName);
+        Table<Experiment.ID, Experiment.Label, Experiment> allExperiments = snapshot.getExperiments();
+        // one read of the user's partition for all experiments
+        Table<Experiment.ID, Experiment.Label, String> userAssignments =
+                assignmentsRepository.getAssignments(userID, applicationName, context, allExperiments);
+        Map<Experiment.ID, List<Experiment.ID>> exclusives = snapshot.getExclusives();
+
+        Map<Experiment.Label, Assignment> result = new HashMap<>();
+        for (Experiment.Label experimentLabel : experimentLabels) {
+            Experiment experiment = getExperimentFromTable(allExperiments, experimentLabel);
+            BucketList bucketList = experiment != null ? snapshot.getBucketList(experiment.getID()) : null;
+            result.put(experimentLabel, getAssignment(userID, applicationName, experimentLabel, context, false, false,
+                    null, null, null, experiment, bucketList, userAssignments, exclusives));
+        }
+        return result;
+    }
+
     protected Experiment getExperimentFromTable(Table<Experiment.ID, Experiment.Label, Experiment> allExperiments,
                                                 Experiment.Label experimentLabel) {
 
@@ -308,13 +392,6 @@ public class AssignmentsImpl implements Assignments {
         return experiments.isEmpty() ? null : experiments.iterator().next();
     }
 
-    private Map<Experiment.ID, List<Experiment.ID>> getExclusivesList(Experiment.ID experimentID) {
-        List<Experiment.ID> exclusions = mutexRepository.getExclusionList(experimentID);
-        Map<Experiment.ID, List<Experiment.ID>> result = new HashMap<>(1);
-        result.put(experimentID, exclusions);
-        return result;
-    }
-
 
     /**
      * Return an existing assignment for a user, or potentially create a new
@@ -328,8 +405,28 @@ public class AssignmentsImpl implements Assignments {
                                     Experiment experiment, BucketList bucketList,
                                     Table<Experiment.ID, Experiment.Label, String> userAssignments,
                                     Map<Experiment.ID, List<Experiment.ID>> exclusives) {
+        return getAssignment(userID, applicationName, experimentLabel, context, createAssignment,
+                ignoreSamplingPercent, segmentationProfile, headers, pageName, experiment, bucketList,
+                userAssignments, exclusives, null);
+    }
+
+    /**
+     * Same as {@link #getAssignment(User.ID, Application.Name, Experiment.Label, Context, boolean, boolean,
+     * SegmentationProfile, HttpHeaders, Page.Name, Experiment, BucketList, Table, Map)}, but if
+     * {@code pendingAssignments} is not null, a new assignment is not written: it is added to
+     * {@code pendingAssignments} and returned as it will be stored. A new assignment is only ingested once it has
+     * been written.
+     */
+    private Assignment getAssignment(User.ID userID, Application.Name applicationName,
+                                     Experiment.Label experimentLabel, Context context, boolean createAssignment,
+                                     boolean ignoreSamplingPercent, SegmentationProfile segmentationProfile,
+                                     HttpHeaders headers, Page.Name pageName, Experiment experiment,
+                                     BucketList bucketList, Table<Experiment.ID, Experiment.Label, String> userAssignments,
+                                     Map<Experiment.ID, List<Experiment.ID>> exclusives,
+                                     List<PendingAssignment> pendingAssignments) {
         final Date currentDate = new Date();
         final long currentTime = currentDate.getTime();
+        PendingAssignment pendingAssignment = null;
 
         if (experiment == null) {
             return nullAssignment(userID, applicationName, null, Assignment.Status.EXPERIMENT_NOT_FOUND);
@@ -373,13 +470,11 @@ public class AssignmentsImpl implements Assignments {
                 // Check if the current user is selected by the segmentation rule of this experiment
                 // when their profile values (and the headers and context) are used in the evaluation.
                 // NOTE: If available, this uses the parsed version of the rule for this experiment that
-                // has been cached in memory on this system.  That means a recent change to the rule
-                // won't be taken into account until the ruleCacheExecutor call below.  This is an optimization
-                // to improve performance which can mean that several assignments will use the old version of
-                // the rule (until all servers have been updated with the new version).
+                // has been cached in memory on this system.  The rule is only parsed again once the rule
+                // text of the experiment differs from the text the cached version was parsed from.
                 if (doesProfileMatch(experiment, segmentationProfile, headers, context)) {
                     selectBucket = checkMutex(experiment, userAssignments, exclusives) &&
-                            (ignoreSamplingPercent || (rollDie() < samplePercent));
+                            (ignoreSamplingPercent || (rollDie(experiment, userID, SAMPLING_SALT) < samplePercent));
 
                     if (segmentationProfile == null || segmentationProfile.getProfile() == null) {
                         Map profileMap = new HashMap();
@@ -389,15 +484,19 @@ public class AssignmentsImpl implements Assignments {
                     // Generate the assignment; this always generates an assignment,
                     // which may or may not specify a bucket
                     //todo: change so this doesn't follow the 'read then write' Cassandra anti-pattern
-                    assignment = generateAssignment(experiment, userID, context, selectBucket, bucketList, currentDate);
+                    assignment = newAssignment(experiment, userID, context, selectBucket, bucketList, currentDate);
+                    if (assignment.getStatus() == Assignment.Status.NEW_ASSIGNMENT) {
+                        if (pendingAssignments != null || isHashAssignment(experiment)) {
+                            pendingAssignment = new PendingAssignment(assignment, experiment, currentDate);
+                        } else {
+                            assignment = assignmentsRepository.assignUser(assignment, experiment, currentDate);
+                        }
+                    }
                     assert assignment.getStatus() == Assignment.Status.NEW_ASSIGNMENT :
                             new StringBuilder("Assignment status should have been NEW_ASSIGNMENT for ")
                                     .append("userID = \"").append(userID).append("\", experiment = \"")
                                     .append(experiment).append("\"").toString();
                 } else {
-                    // Make a call to Rule cache update
-                    ruleCacheExecutor.execute(new ExperimentRuleCacheUpdateEnvelope(experiment.getRule(),
-                            ruleCache, experimentID));
                     return nullAssignment(userID, applicationName, experimentID,
                             Assignment.Status.NO_PROFILE_MATCH);
                 }
@@ -411,17 +510,21 @@ public class AssignmentsImpl implements Assignments {
         }
 
         // Ingest data to real time data ingestion systems if executors exist
-		for (String name : executors.keySet()) {
-			executors.get(name).execute(new AssignmentEnvelopePayload(userID, context, createAssignment, false,
-                    ignoreSamplingPercent, segmentationProfile, assignment != null ? assignment.getStatus() : null,
-                    assignment != null ? assignment.getBucketLabel() : null, pageName, applicationName, experimentLabel,
-                    experimentID, currentDate, headers));
-		}        
-        
-        // Updating rule cache.  This will cause future assignment calls, on this server, to
-        // use the new version of the rule, if it has recently been changed.
-        ruleCacheExecutor.execute(new ExperimentRuleCacheUpdateEnvelope(experiment.getRule(),
-                ruleCache, experimentID));
+        AssignmentEnvelopePayload payload = new AssignmentEnvelopePayload(userID, context, createAssignment, false,
+                ignoreSamplingPercent, segmentationProfile, assignment != null ? assignment.getStatus() : null,
+                assignment != null ? assignment.getBucketLabel() : null, pageName, applicationName, experimentLabel,
+                experimentID, currentDate, headers);
+        if (pendingAssignment == null) {
+            ingest(payload);
+        } else {
+            // a new assignment which is not written yet is only ingested once it has been written
+            pendingAssignment.payload = payload;
+            if (pendingAssignments != null) {
+                pendingAssignments.add(pendingAssignment);
+            } else {
+                batchAssignmentExecutor.execute(pendingAssignment);
+            }
+        }
 
         return assignment;
     }
@@ -433,17 +536,21 @@ public class AssignmentsImpl implements Assignments {
                                             Map<Experiment.ID, Boolean> allowAssignments) {
 
         // Get the metadata of all the experiments for this application
-        Table<Experiment.ID, Experiment.Label, Experiment> allExperiments = repository.getExperimentList(applicationName);
+        ApplicationSnapshot snapshot = metadataCache.getSnapshot(applicationName);
+        Table<Experiment.ID, Experiment.Label, Experiment> allExperiments = snapshot.getExperiments();
 
         List<Map> allAssignments = new ArrayList<>();
 
         // Get the assignments for userID across all experiments in applicationName for the context
         Table<Experiment.ID, Experiment.Label, String> userAssignments =
                 assignmentsRepository.getAssignments(userID, applicationName, context, allExperiments);
-        PrioritizedExperimentList appPriorities = priorities.getPriorities(applicationName, false);
-        Set<Experiment.ID> experimentSet = allExperiments.rowKeySet();
-        Map<Experiment.ID, BucketList> bucketList = getBucketList(experimentSet);
-        Map<Experiment.ID, List<Experiment.ID>> exclusives = getExclusivesList(experimentSet);
+        PrioritizedExperimentList appPriorities = snapshot.getPriorities();
+        Map<Experiment.ID, List<Experiment.ID>> exclusives = snapshot.getExclusives();
+
+        // new assignments are decided in priority order, so that each decision sees the mutual exclusions of the
+        // assignments decided before it; with concurrent batch writes they are only written once all experiments
+        // have been decided, otherwise each one is written as it is decided
+        List<PendingAssignment> pendingAssignments = concurrentBatchWrites ? new ArrayList<PendingAssignment>() : null;
 
         // iterate over all experiments in the application in priority order
         for (PrioritizedExperiment experiment : appPriorities.getPrioritizedExperiments()) {
@@ -458,12 +565,16 @@ public class AssignmentsImpl implements Assignments {
                         .build();
 
                 try {
+                    int pending = pendingAssignments != null ? pendingAssignments.size() : 0;
                     Assignment assignment = getAssignment(userID, applicationName, label,
                             context, allowAssignments != null ? allowAssignments.get(experiment.getID()) : createAssignment,
                             forceInExperiment, segmentationProfile,
                             headers, pageName, allExperiments.get(experiment.getID(), experiment.getLabel()),
-                            bucketList.get(experiment.getID()), userAssignments, exclusives);
-
+                            snapshot.getBucketList(experiment.getID()), userAssignments, exclusives,
+                            pendingAssignments);
+                    if (pendingAssignments != null && pendingAssignments.size() > pending) {
+                        pendingAssignments.get(pending).result = tempResult;
+                    }
 
                     // This wouldn't normally happen because we specified CREATE=true
                     if (assignment == null) {
@@ -481,9 +592,14 @@ public class AssignmentsImpl implements Assignments {
                                         : null);
 
                         if (assignment.getBucketLabel() != null) {
-                            Bucket bucket = repository.getBucket(experiment.getID(), assignment.getBucketLabel());
+                            // the payload is part of the snapshot's buckets, no lookup per experiment
+                            Bucket bucket = findBucket(snapshot.getBucketList(experiment.getID()),
+                                    assignment.getBucketLabel());
+                            if (bucket == null) {
+                                bucket = repository.getBucket(experiment.getID(), assignment.getBucketLabel());
+                            }
                             tempResult.put("payload",
-                                    bucket.getPayload() != null
+                                    bucket != null && bucket.getPayload() != null
                                             ? bucket.getPayload()
                                             : null);
                         }
@@ -503,15 +619,215 @@ public class AssignmentsImpl implements Assignments {
                 experimentBatch.getLabels().remove(experiment.getLabel());
             }
         }
+
+        if (pendingAssignments != null) {
+            writeAssignments(pendingAssignments, userAssignments, exclusives);
+        }
         return allAssignments;
     }
 
-    private Map<Experiment.ID, BucketList> getBucketList(Set<Experiment.ID> experimentIDSet) {
-        return repository.getBucketList(experimentIDSet);
+    /**
+     * Writes the new assignments of a batch concurrently and waits for all of them, except for those of experiments
+     * with hash assignment. The result of an awaited assignment which could not be written is marked as failed,
+     * like an assignment which failed while it was decided, and the assignment is removed from the user's
+     * assignments again.
+     *
+     * An assignment decided after a new bucket assignment to a mutually exclusive experiment of the same batch
+     * depends on it: it is only written once that assignment has been written, and fails if it could not be written,
+     * so that no decision based on an assignment which does not exist is stored.
+     *
+     * @param pendingAssignments the new assignments in priority order
+     * @param userAssignments    the assignments of the user, including the new ones
+     * @param exclusives         the mutually exclusive experiments of each experiment
+     */
+    private void writeAssignments(List<PendingAssignment> pendingAssignments,
+                                  Table<Experiment.ID, Experiment.Label, String> userAssignments,
+                                  Map<Experiment.ID, List<Experiment.ID>> exclusives) {
+        List<PendingAssignment> independentAssignments = new ArrayList<>(pendingAssignments.size());
+        List<PendingAssignment> dependentAssignments = new ArrayList<>();
+        for (int i = 0; i < pendingAssignments.size(); i++) {
+            PendingAssignment pendingAssignment = pendingAssignments.get(i);
+            for (PendingAssignment earlier : pendingAssignments.subList(0, i)) {
+                if (dependsOn(pendingAssignment, earlier, exclusives)) {
+                    pendingAssignment.dependencies.add(earlier);
+                    earlier.awaited = true;
+                }
+            }
+            if (pendingAssignment.dependencies.isEmpty()) {
+                independentAssignments.add(pendingAssignment);
+            } else {
+                dependentAssignments.add(pendingAssignment);
+            }
+        }
+
+        List<PendingAssignment> awaitedAssignments = new ArrayList<>(independentAssignments.size());
+        for (PendingAssignment pendingAssignment : independentAssignments) {
+            if (isHashAssignment(pendingAssignment.experiment) && !pendingAssignment.awaited) {
+                writeUnawaited(pendingAssignment);
+            } else {
+                awaitedAssignments.add(pendingAssignment);
+            }
+        }
+        writeConcurrently(awaitedAssignments);
+
+        // rare: both experiments of a mutual exclusion are new to the user, written in priority order
+        for (PendingAssignment pendingAssignment : dependentAssignments) {
+            PendingAssignment unwritten = null;
+            for (PendingAssignment dependency : pendingAssignment.dependencies) {
+                if (!dependency.written) {
+                    unwritten = dependency;
+                    break;
+                }
+            }
+            if (unwritten != null) {
+                pendingAssignment.fail(new AssignmentException("The assignment was decided against the assignment "
+                        + "to the mutually exclusive experiment " + unwritten.experiment.getLabel()
+                        + ", which could not be written"));
+            } else if (isHashAssignment(pendingAssignment.experiment) && !pendingAssignment.awaited) {
+                writeUnawaited(pendingAssignment);
+            } else {
+                pendingAssignment.write();
+            }
+            awaitedAssignments.add(pendingAssignment);
+        }
+
+        for (PendingAssignment pendingAssignment : awaitedAssignments) {
+            if (pendingAssignment.failed) {
+                userAssignments.remove(pendingAssignment.experiment.getID(), pendingAssignment.experiment.getLabel());
+            }
+        }
+    }
+
+    /**
+     * @return true if {@code later} was decided against {@code earlier}, i.e. {@code earlier} assigns a bucket of an
+     * experiment mutually exclusive with the one of {@code later}
+     */
+    private static boolean dependsOn(PendingAssignment later, PendingAssignment earlier,
+                                     Map<Experiment.ID, List<Experiment.ID>> exclusives) {
+        List<Experiment.ID> exclusiveIDs = exclusives.get(later.experiment.getID());
+        return earlier.assignment.getBucketLabel() != null && exclusiveIDs != null
+                && exclusiveIDs.contains(earlier.experiment.getID());
     }
 
-    private Map<Experiment.ID, List<Experiment.ID>> getExclusivesList(Set<Experiment.ID> experimentIDSet) {
-        return mutexRepository.getExclusivesList(experimentIDSet);
+    private void writeUnawaited(PendingAssignment pendingAssignment) {
+        // a lost write is repeated by the user's next request, which derives the same bucket, so it is not
+        // awaited; its result is returned before the write finishes and must not be changed by it
+        pendingAssignment.result = null;
+        batchAssignmentExecutor.execute(pendingAssignment);
+    }
+
+    private void writeConcurrently(List<PendingAssignment> awaitedAssignments) {
+        if (awaitedAssignments.size() == 1) {
+            // nothing to overlap with, write on the request thread
+            awaitedAssignments.get(0).write();
+            return;
+        }
+        List<Future<?>> writes = new ArrayList<>(awaitedAssignments.size());
+        for (PendingAssignment pendingAssignment : awaitedAssignments) {
+            writes.add(batchAssignmentExecutor.submit(pendingAssignment));
+        }
+        for (int i = 0; i < writes.size(); i++) {
+            try {
+                writes.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssignmentException("Interrupted while writing the batch assignments", e);
+            } catch (ExecutionException e) {
+                // expected failures are recorded in the assignment's result by PendingAssignment.write
+                LOGGER.error("Unexpected failure writing a batch assignment", e.getCause());
+                awaitedAssignments.get(i).fail(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * A new assignment which has been decided but not yet written. It is ingested once it has been written.
+     */
+    private class PendingAssignment implements Runnable {
+
+        private final Assignment assignment;
+        private final Experiment experiment;
+        private final Date date;
+        private final List<PendingAssignment> dependencies = new ArrayList<>();
+        private Map<String, Object> result;
+        private AssignmentEnvelopePayload payload;
+        private boolean awaited;
+        private volatile boolean written;
+        private volatile boolean failed;
+
+        PendingAssignment(Assignment assignment, Experiment experiment, Date date) {
+            this.assignment = assignment;
+            this.experiment = experiment;
+            this.date = date;
+        }
+
+        @Override
+        public void run() {
+            write();
+        }
+
+        void write() {
+            String key = null;
+            try {
+                if (isHashAssignment(experiment)) {
+                    String inFlight = assignment.getExperimentID() + "/" + assignment.getUserID() + "/"
+                            + assignment.getContext();
+                    key = hashWritesInFlight.add(inFlight) ? inFlight : null;
+                    if (key == null || isStored()) {
+                        // a repeated request derived the same assignment before the first write was visible to it,
+                        // writing it again would count the user twice
+                        written = true;
+                        return;
+                    }
+                }
+                assignmentsRepository.assignUser(assignment, experiment, date);
+                written = true;
+            } catch (WasabiException ex) {
+                LOGGER.info("Could not write assignment " + assignment, ex);
+                fail(ex);
+            } finally {
+                if (key != null) {
+                    hashWritesInFlight.remove(key);
+                }
+            }
+            if (written && payload != null) {
+                ingest(payload);
+            }
+        }
+
+        /**
+         * @return true if the same assignment has been stored already
+         */
+        private boolean isStored() {
+            Assignment stored = assignmentsRepository.getAssignment(assignment.getExperimentID(),
+                    assignment.getUserID(), assignment.getContext());
+            return stored != null && Objects.equals(stored.getBucketLabel(), assignment.getBucketLabel());
+        }
+
+        void fail(Throwable cause) {
+            failed = true;
+            if (result != null) {
+                result.put("status", "assignment failed");
+                result.put("exception", cause.toString());
+                result.put("assignment", null);
+                result.remove("payload");
+            }
+        }
+    }
+
+    private void ingest(AssignmentEnvelopePayload payload) {
+        for (AssignmentIngestionExecutor executor : executors.values()) {
+            executor.execute(payload);
+        }
+    }
+
+    private Bucket findBucket(BucketList bucketList, Bucket.Label bucketLabel) {
+        for (Bucket bucket : bucketList.getBuckets()) {
+            if (bucketLabel.equals(bucket.getLabel())) {
+                return bucket;
+            }
+        }
+        return null;
     }
 
     @Override
@@ -681,7 +997,8 @@ public class AssignmentsImpl implements Assignments {
                                            Context context, boolean createAssignment, boolean ignoreSamplingPercent,
                                            HttpHeaders headers, SegmentationProfile segmentationProfile) {
 
-        List<PageExperiment> pageExperimentList = pages.getExperiments(applicationName, pageName);
+        List<PageExperiment> pageExperimentList = metadataCache.getSnapshot(applicationName)
+                .getPageExperiments(pageName);
         Set<Experiment.Label> experimentLabels = new HashSet<>(pageExperimentList.size());
         Map<Experiment.ID, Boolean> allowAssignments = new HashMap<>(pageExperimentList.size());
         for (PageExperiment pageExperiment : pageExperimentList) {
@@ -736,7 +1053,7 @@ public class AssignmentsImpl implements Assignments {
      * header values and the context value, so those can be passed in by the user, and to force the rule
      * to be parsed from the experiment every time.  That is not as performant, but is necessary if
      * we need to use the latest saved version of the rule.  For the normal use, that is, during assignments,
-     * we want to use the cache (and only update the cache after the latest evaluation, asynchronously).
+     * we want to use the cache, which parses the rule again only after its text has changed.
      */
     private boolean doesProfileMatch(Experiment experiment, SegmentationProfile segmentationProfile,
                                      HttpHeaders headers, Context context, boolean testMode) {
@@ -746,43 +1063,25 @@ public class AssignmentsImpl implements Assignments {
             if (ruleExpression == null || ruleExpression.trim().isEmpty()) {
                 return true;
             } else {
-                Map<String, Object> profileAttrs;
-                if (testMode) {
-                    // So that the user can provide values for context and headers (like user-agent), we need
-                    // to not pull those in automatically.
-                    profileAttrs = segmentationProfile.getProfile();
-                } else {
-                    segmentationProfile = mergeHeaderAndContextWithProfile(segmentationProfile, headers, context);
-                    if (segmentationProfile == null) {
-                        profileAttrs = null;
-                    } else {
-                        profileAttrs = segmentationProfile.getProfile();
-                    }
-                }
-
                 Rule ruleObject = null;
                 if (testMode) {
                     // This is used by the API (doSegmentTest()) that allows a user interactively test the rule with different
                     // profile values.  That isn't as performance sensitive, so we can parse and evaluate
                     // the expression each time, because we need to take recent changes into account immediately.
+                    // So that the user can provide values for context and headers (like user-agent), we need
+                    // to not pull those in automatically.
                     ruleObject = new RuleBuilder().parseExpression(ruleExpression);
-                    return ruleObject.evaluate((HashMap) profileAttrs); //cast for Hyrule method
+                    return ruleObject.evaluate((HashMap) segmentationProfile.getProfile()); //cast for Hyrule method
                 }
 
-                // Note that we are using the in-memory cache on this server. The key to understand about
-                // this is that if the rule has been changed recently, it will not be cached, and therefore,
-                // not available for evaluation, until after the next time an assignment call is made.
-                ruleObject = ruleCache.getRule(experiment.getID());
-
-                if (ruleObject == null) {
-                    // The rule for this experiment has never been cached on this system.  Parse it
-                    // and save the result in the cache for future evaluations.
-                    ruleObject = new RuleBuilder().parseExpression(ruleExpression);
-                    ruleCache.setRule(experiment.getID(), ruleObject);
-                    return ruleObject.evaluate((HashMap) profileAttrs); //cast for Hyrule method
-                } else {
-                    return ruleObject.evaluate((HashMap) profileAttrs); //cast for Hyrule method
-                }
+                // Note that we are using the in-memory cache on this server. The cached rule is keyed by the
+                // rule text, so a changed rule is parsed once and then reused for the following evaluations.
+                ruleObject = ruleCache.getRule(experiment.getID(), ruleExpression);
+                // Only the attributes the rule references are looked up in the profile, the context and the headers;
+                // the profile itself is shared by all experiments of a batch and is not modified
+                HashMap<String, Object> profileAttrs = new ProfileAttributes(segmentationProfile, context, headers)
+                        .select(ruleCache.getAttributeNames(experiment.getID(), ruleExpression));
+                return ruleObject.evaluate(profileAttrs);
             }
         } catch (MissingInputException | InvalidInputException | TreeStructureException e) {
             LOGGER.warn("assignment: profile match exception " + e);
@@ -842,7 +1141,8 @@ public class AssignmentsImpl implements Assignments {
             Retrieves buckets from DE if personalization is enabled
             * */
             BucketList buckets = getBucketList(experiment, false);
-            Bucket assignedBucket = selectBucket(buckets.getBuckets());
+            Bucket assignedBucket = new BucketAllocation(buckets)
+                    .select(rollDie(experiment, userID, BUCKET_SALT));
 
             //check that at least one bucket was open
             if (assignedBucket != null) {
@@ -861,8 +1161,14 @@ public class AssignmentsImpl implements Assignments {
         return assignmentsRepository.assignUser(result, experiment, date);
     }
 
-    private Assignment generateAssignment(Experiment experiment, User.ID userID, Context context, boolean selectBucket,
-                                          BucketList buckets, Date date) {
+    /**
+     * Selects the bucket of a new assignment without storing it.
+     *
+     * @return the assignment with status {@link Assignment.Status#NEW_ASSIGNMENT} which is to be stored, or a null
+     * assignment with status {@link Assignment.Status#NO_OPEN_BUCKETS}
+     */
+    private Assignment newAssignment(Experiment experiment, User.ID userID, Context context, boolean selectBucket,
+                                     BucketList buckets, Date date) {
 
         Assignment.Builder builder = Assignment.newInstance(experiment.getID())
                 .withApplicationName(experiment.getApplicationName())
@@ -883,7 +1189,8 @@ public class AssignmentsImpl implements Assignments {
             Retrieves buckets from Repository if personalization is not enabled and if skipBucketRetrieval is false
             Retrieves buckets from DE if personalization is enabled
             */
-            assignedBucket = selectBucket(buckets.getBuckets());
+            assignedBucket = getBucketAllocation(experiment, buckets)
+                    .select(rollDie(experiment, userID, BUCKET_SALT));
             //check that at least one bucket was open
             if (assignedBucket != null) {
                 //create the bucket with bucketlabel
@@ -897,8 +1204,10 @@ public class AssignmentsImpl implements Assignments {
             builder.withBucketLabel(null);
         }
 
-        Assignment result = builder.build();
-        return assignmentsRepository.assignUser(result, experiment, date);
+        return builder.withStatus(Assignment.Status.NEW_ASSIGNMENT)
+                .withCreated(date)
+                .withCacheable(null)
+                .build();
     }
 
     /**
@@ -922,83 +1231,51 @@ public class AssignmentsImpl implements Assignments {
         return random.nextDouble();
     }
 
-    protected Bucket selectBucket(List<Bucket> buckets) {
-
-        final double dieRoll = rollDie();
-
-        // Sort the buckets consistently (by label)
-        Collections.sort(buckets,
-                new Comparator<Bucket>() {
-                    @Override
-                    public int compare(Bucket b1, Bucket b2) {
-                        return b1.getAllocationPercent().compareTo(
-                                b2.getAllocationPercent());
-                    }
-                });
-
-        Double totalProbability = 0.0d;
-
-        Bucket bucket = null;
-        for (Bucket candidateBucket : buckets) {
-            totalProbability += candidateBucket.getAllocationPercent();
-
-            if (dieRoll < totalProbability) {
-                bucket = candidateBucket;
-                break;
-            }
-        }
-
-        return bucket;
-    }
-
     /**
-     * Adds http header attributes to profile (does not override existing profile attributes)
-     * We only use the first attribute if multiple attributes with same key are provided in header
+     * Rolls the die deciding sampling or bucket of a new assignment. For experiments with hash assignment the roll
+     * is derived from a hash of the experiment ID, the salt and the user ID, so that a user always gets the same
+     * roll in the same experiment; otherwise it is random.
      *
-     * @param segmentationProfile segmentation profile {@link SegmentationProfile}
-     * @param headers             the http headers to use
-     * @return merged segmentation profile
+     * @param experiment the experiment
+     * @param userID     the user
+     * @param salt       distinguishes the rolls for sampling and bucket, so that both are independent
+     * @return a roll in [0, 1)
      */
-    protected SegmentationProfile mergeHeaderWithProfile(SegmentationProfile segmentationProfile, HttpHeaders headers) {
-        if (segmentationProfile != null && segmentationProfile.getProfile() != null && headers != null) {
-            for (String headerKey : headers.getRequestHeaders().keySet()) {
-                if (!segmentationProfile.hasAttribute(headerKey)) {
-                    segmentationProfile.addAttribute(headerKey, headers.getRequestHeader(headerKey).get(0));
-                }
-            }
-        } else if ((segmentationProfile == null || segmentationProfile.getProfile() == null) && headers != null) {
-            // create profile with headers only
-            Map profileMap = new HashMap();
-            segmentationProfile = new SegmentationProfile.Builder(profileMap).build();
-
-            for (String headerKey : headers.getRequestHeaders().keySet()) {
-                if (!segmentationProfile.hasAttribute(headerKey)) {
-                    segmentationProfile.addAttribute(headerKey, headers.getRequestHeader(headerKey).get(0));
-                }
-            }
-        }
-        return segmentationProfile;
+    private double rollDie(Experiment experiment, User.ID userID, String salt) {
+        return isHashAssignment(experiment) ? hashDie(experiment.getID(), userID, salt) : rollDie();
+    }
+
+    /*test*/
+    static double hashDie(Experiment.ID experimentID, User.ID userID, String salt) {
+        long hash = ASSIGNMENT_HASH.newHasher()
+                .putLong(experimentID.getRawID().getMostSignificantBits())
+                .putLong(experimentID.getRawID().getLeastSignificantBits())
+                .putString(salt, StandardCharsets.UTF_8)
+                .putString(userID.toString(), StandardCharsets.UTF_8)
+                .hash()
+                .asLong();
+        // the upper 53 bits as a fraction, which is uniform in [0, 1) like SecureRandom.nextDouble()
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+    private boolean isHashAssignment(Experiment experiment) {
+        return Boolean.TRUE.equals(experiment.getIsHashAssignment());
     }
 
     /**
-     * Adds the context attribute to the profile. It also adds the header attributes to profile using a helper method.
-     *
-     * @param segmentationProfile The segmentation profile object containing various segments.
-     * @param headers             The http headers that need to be merged into segmentation profile as new segments.
-     * @param context             The context object containing the context, for example, PROD or QA.
-     *
-     * @return Returns The merged segmentation profile object containing new segments from headers and context objects.
+     * Returns the allocation of the given buckets of an experiment. If they are the buckets of the application's
+     * snapshot, its precomputed allocation is used.
      */
-    protected SegmentationProfile mergeHeaderAndContextWithProfile(SegmentationProfile segmentationProfile, HttpHeaders headers, Context context) {
-        SegmentationProfile updatedSegmentationProfile = mergeHeaderWithProfile(segmentationProfile, headers);
-
-        if (updatedSegmentationProfile == null) {
-            Map profileMap = new HashMap();
-            updatedSegmentationProfile = new SegmentationProfile.Builder(profileMap).build();
+    private BucketAllocation getBucketAllocation(Experiment experiment, BucketList buckets) {
+        ApplicationSnapshot snapshot = metadataCache.getSnapshot(experiment.getApplicationName());
+        if (snapshot != null && snapshot.getBucketList(experiment.getID()) == buckets) {
+            return snapshot.getBucketAllocation(experiment.getID());
         }
+        return new BucketAllocation(buckets);
+    }
 
-        updatedSegmentationProfile.addAttribute("context", context.getContext());
-        return updatedSegmentationProfile;
+    protected Bucket selectBucket(List<Bucket> buckets) {
+        return new BucketAllocation(buckets).select(rollDie());
     }
 
     /**
@@ -1045,7 +1322,7 @@ public class AssignmentsImpl implements Assignments {
     @Override
     public Map<String, Integer> queuesLength() {
         Map<String, Integer> queueLengthMap = new HashMap<String, Integer>();
-        queueLengthMap.put(RULE_CACHE, new Integer(this.ruleCacheExecutor.getQueue().size()));
+        queueLengthMap.putAll(assignmentsRepository.queuesLength());
         for (String name : executors.keySet()) {
             queueLengthMap.put(name.toLowerCase(), new Integer(executors.get(name).queueLength()));
         }        
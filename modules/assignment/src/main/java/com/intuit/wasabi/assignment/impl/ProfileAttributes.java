@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.assignment.impl;
+
+import com.intuit.wasabi.assignmentobjects.SegmentationProfile;
+import com.intuit.wasabi.experimentobjects.Context;
+
+import javax.ws.rs.core.HttpHeaders;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only view of the attributes a segmentation rule is evaluated against: the attributes of the segmentation
+ * profile, the <code>context</code> and the request headers, in this order of precedence.
+ *
+ * Attributes are resolved on demand, so neither the profile nor the headers are copied or modified. If a header is
+ * sent several times, only its first value is used.
+ */
+public class ProfileAttributes {
+
+    static final String CONTEXT = "context";
+    private final Map<String, Object> profile;
+    private final Context context;
+    private final HttpHeaders headers;
+
+    /**
+     * @param segmentationProfile the segmentation profile of the request, may be {@code null}
+     * @param context             the context of the request, may be {@code null}
+     * @param headers             the headers of the request, may be {@code null}
+     */
+    public ProfileAttributes(SegmentationProfile segmentationProfile, Context context, HttpHeaders headers) {
+        this.profile = segmentationProfile != null ? segmentationProfile.getProfile() : null;
+        this.context = context;
+        this.headers = headers;
+    }
+
+    /**
+     * @param name the attribute name
+     * @return true if the attribute is set in any of the layers
+     */
+    public boolean containsKey(String name) {
+        return (profile != null && profile.containsKey(name)) || get(name) != null;
+    }
+
+    /**
+     * @param name the attribute name
+     * @return the value of the attribute in the first layer it is set in, {@code null} if it is not set
+     */
+    public Object get(String name) {
+        if (profile != null && profile.containsKey(name)) {
+            return profile.get(name);
+        }
+        if (context != null && CONTEXT.equals(name)) {
+            return context.getContext();
+        }
+        if (headers != null && name != null) {
+            List<String> values = headers.getRequestHeaders().get(name);
+            if (values != null && !values.isEmpty()) {
+                return values.get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copies the given attributes into a new map, e.g. to evaluate a rule which references only these attributes.
+     *
+     * @param names the attribute names
+     * @return the attributes which are set
+     */
+    public HashMap<String, Object> select(Collection<String> names) {
+        HashMap<String, Object> attributes = new HashMap<>();
+        for (String name : names) {
+            Object value = get(name);
+            if (value != null || (profile != null && profile.containsKey(name))) {
+                attributes.put(name, value);
+            }
+        }
+        return attributes;
+    }
+}
@@ -24,7 +24,6 @@ import com.intuit.wasabi.repository.MutexRepository;
 import com.intuit.wasabi.repository.impl.cassandra.CassandraMutexRepository;
 import org.junit.Ignore;
 
-import java.util.concurrent.ThreadPoolExecutor;
 
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsNot.not;
@@ -53,9 +52,6 @@ public class AssignmentsModuleTest {
         injector.getInstance(Key.get(int.class, Names.named("assignment.http.proxy.portt")));
         injector.getInstance(Key.get(String.class, Names.named("assignment.http.proxy.host")));
 
-        //RuleCacheEngine
-        injector.getInstance(Key.get(ThreadPoolExecutor.class, Names.named("ruleCache.threadPool")));
-
         assertThat(injector.getInstance(Key.get(Assignments.class)), is(not(nullValue())));
     }
 }
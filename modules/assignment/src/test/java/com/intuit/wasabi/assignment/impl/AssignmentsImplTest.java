@@ -25,6 +25,10 @@ import com.intuit.wasabi.assignment.Assignments;
 import com.intuit.wasabi.assignmentobjects.*;
 import com.intuit.wasabi.cassandra.CassandraDriver;
 import com.intuit.wasabi.eventlog.EventLog;
+import com.intuit.wasabi.exceptions.AssignmentException;
+import com.intuit.wasabi.experiment.ApplicationSnapshot;
+import com.intuit.wasabi.experiment.BucketAllocation;
+import com.intuit.wasabi.experiment.MetadataCache;
 import com.intuit.wasabi.experiment.Mutex;
 import com.intuit.wasabi.experiment.Pages;
 import com.intuit.wasabi.experiment.Priorities;
@@ -37,14 +41,15 @@ import com.intuit.wasabi.repository.AnalyticsRepository;
 import com.intuit.wasabi.repository.AssignmentsRepository;
 import com.intuit.wasabi.repository.ExperimentRepository;
 import com.intuit.wasabi.repository.MutexRepository;
-import com.intuit.wasabi.repository.impl.cassandra.ExperimentRuleCacheUpdateEnvelope;
 import com.intuit.wasabi.repository.impl.cassandra.ExperimentsKeyspace;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import javax.ws.rs.core.HttpHeaders;
 import java.io.IOException;
@@ -60,7 +65,9 @@ import static org.mockito.BDDMockito.doReturn;
 import static org.mockito.BDDMockito.eq;
 import static org.mockito.BDDMockito.spy;
 import static org.mockito.BDDMockito.times;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -84,8 +91,10 @@ public class AssignmentsImplTest {
     private Assignments assignments = mock(Assignments.class);
     private Driver restDriver = mock(Driver.class);
     private EventLog eventLog = mock(EventLog.class);
+    private MetadataCache metadataCache = mock(MetadataCache.class);
+    private ApplicationSnapshot snapshot = mock(ApplicationSnapshot.class);
     private AssignmentDecorator assignmentDecorator = mock(AssignmentDecorator.class);
-    private ThreadPoolExecutor threadPoolExecutor = mock(ThreadPoolExecutor.class, RETURNS_DEEP_STUBS);
+    private ThreadPoolExecutor batchAssignmentExecutor = mock(ThreadPoolExecutor.class);
     private Provider<Envelope<AssignmentEnvelopePayload, DatabaseExport>> assignmentDBEnvelopeProvider =
             mock(Provider.class, RETURNS_DEEP_STUBS);
     private Provider<Envelope<AssignmentEnvelopePayload, WebExport>> assignmentWebEnvelopeProvider=
@@ -95,17 +104,20 @@ public class AssignmentsImplTest {
 
     @Before
     public void setup() throws IOException, ConnectionException {
+        when(metadataCache.getSnapshot(any(Application.Name.class))).thenReturn(snapshot);
         this.assignmentsImpl = new AssignmentsImpl(new HashMap<String, AssignmentIngestionExecutor>(),
                 experimentRepository, assignmentsRepository, mutexRepository,
                 ruleCache, pages, priorities, assignmentDBEnvelopeProvider, assignmentWebEnvelopeProvider,
-                assignmentDecorator, threadPoolExecutor, eventLog);
+                assignmentDecorator, batchAssignmentExecutor, eventLog, metadataCache);
     }
 
     @Test
     public void testQueueLength(){
-        when(threadPoolExecutor.getQueue().size()).thenReturn(0);
+        Map<String, Integer> repositoryQueueLengthMap = new HashMap<String, Integer>();
+        repositoryQueueLengthMap.put("assignmentsCount", new Integer(3));
+        when(assignmentsRepository.queuesLength()).thenReturn(repositoryQueueLengthMap);
         Map<String, Integer> queueLengthMap = new HashMap<String, Integer>();
-        queueLengthMap.put(AssignmentsImpl.RULE_CACHE, new Integer(0));
+        queueLengthMap.put("assignmentsCount", new Integer(3));
         assertThat(assignmentsImpl.queuesLength(), is(queueLengthMap));
     }
 
@@ -135,8 +147,8 @@ public class AssignmentsImplTest {
         AssignmentsImpl assignmentsImpl = spy(new AssignmentsImpl(new HashMap<String, AssignmentIngestionExecutor>(),
                 experimentRepository, assignmentsRepository,
                 mutexRepository, ruleCache, pages, priorities, assignmentDBEnvelopeProvider,
-                assignmentWebEnvelopeProvider, assignmentDecorator, threadPoolExecutor,
-                eventLog));
+                assignmentWebEnvelopeProvider, assignmentDecorator, batchAssignmentExecutor,
+                eventLog, metadataCache));
         Experiment.ID id = Experiment.ID.newInstance();
         Experiment experiment = mock(Experiment.class);
         when(experiment.getID()).thenReturn(id);
@@ -242,7 +254,7 @@ public class AssignmentsImplTest {
         AssignmentsImpl assignmentsImpl = spy(new AssignmentsImpl(new HashMap<String, AssignmentIngestionExecutor>(),
                 experimentRepository, assignmentsRepository,
                 mutexRepository, ruleCache, pages, priorities, assignmentDBEnvelopeProvider,
-                assignmentWebEnvelopeProvider, assignmentDecorator, threadPoolExecutor, eventLog));
+                assignmentWebEnvelopeProvider, assignmentDecorator, batchAssignmentExecutor, eventLog, metadataCache));
         Experiment.ID id = Experiment.ID.newInstance();
         Experiment experiment = mock(Experiment.class, RETURNS_DEEP_STUBS);
         when(experiment.getID()).thenReturn(id);
@@ -268,7 +280,6 @@ public class AssignmentsImplTest {
         Assignment result = assignmentsImpl.getSingleAssignment(user, appName, label, context, true, true,
                 segmentationProfile, headers, pageName);
         assertThat(result.equals(nullAssignment), is(true));
-        verify(threadPoolExecutor, times(1)).execute(any(ExperimentRuleCacheUpdateEnvelope.class));
     }
 
     @Test(expected = AssertionError.class)
@@ -288,9 +299,7 @@ public class AssignmentsImplTest {
         SegmentationProfile segmentationProfile = mock(SegmentationProfile.class);
         HttpHeaders headers = mock(HttpHeaders.class);
         Page.Name pageName = Page.Name.valueOf("p1");
-        verify(threadPoolExecutor, times(0)).execute(any(Runnable.class));
         assignmentsImpl.getSingleAssignment(user, appName, label, context, true, true, segmentationProfile, headers, pageName);
-        verify(threadPoolExecutor, times(0)).execute(any(Runnable.class));
     }
 
     @Test(expected = AssertionError.class)
@@ -298,7 +307,7 @@ public class AssignmentsImplTest {
         AssignmentsImpl assignmentsImpl = spy(new AssignmentsImpl(new HashMap<String, AssignmentIngestionExecutor>(),
                 experimentRepository, assignmentsRepository,
                 mutexRepository, ruleCache, pages, priorities, assignmentDBEnvelopeProvider,
-                assignmentWebEnvelopeProvider, assignmentDecorator, threadPoolExecutor, eventLog));
+                assignmentWebEnvelopeProvider, assignmentDecorator, batchAssignmentExecutor, eventLog, metadataCache));
         Experiment.ID id = Experiment.ID.newInstance();
         Experiment experiment = mock(Experiment.class, RETURNS_DEEP_STUBS);
         Assignment assignment = mock(Assignment.class);
@@ -319,9 +328,7 @@ public class AssignmentsImplTest {
         HttpHeaders headers = mock(HttpHeaders.class);
         when(assignment.getStatus()).thenReturn(Assignment.Status.EXPERIMENT_NOT_FOUND);
         Page.Name pageName = Page.Name.valueOf("p1");
-        verify(threadPoolExecutor, times(0)).execute(any(Runnable.class));
         assignmentsImpl.getSingleAssignment(user, appName, label, context, true, true, null, headers, pageName);
-        verify(threadPoolExecutor, times(0)).execute(any(Runnable.class));
     }
 
     @Test
@@ -329,7 +336,7 @@ public class AssignmentsImplTest {
         AssignmentsImpl assignmentsImpl = spy(new AssignmentsImpl(new HashMap<String, AssignmentIngestionExecutor>(),
                 experimentRepository, assignmentsRepository,
                 mutexRepository, ruleCache, pages, priorities, assignmentDBEnvelopeProvider,
-                assignmentWebEnvelopeProvider, assignmentDecorator,  threadPoolExecutor, eventLog));
+                assignmentWebEnvelopeProvider, assignmentDecorator,  batchAssignmentExecutor, eventLog, metadataCache));
         Experiment.ID id = Experiment.ID.newInstance();
         Experiment experiment = mock(Experiment.class, RETURNS_DEEP_STUBS);
         Assignment assignment = mock(Assignment.class);
@@ -346,7 +353,6 @@ public class AssignmentsImplTest {
         when(assignment.getStatus()).thenReturn(Assignment.Status.EXISTING_ASSIGNMENT);
         Assignment result = assignmentsImpl.getSingleAssignment(user, appName, label, context, true, true,
                     null, null, pageName);
-        verify(threadPoolExecutor, times(1)).execute(any(ExperimentRuleCacheUpdateEnvelope.class));
         assertThat(result, is(assignment));
     }
 
@@ -362,7 +368,7 @@ public class AssignmentsImplTest {
         when(collection.isEmpty()).thenReturn(true);
         SegmentationProfile segmentationProfile = mock(SegmentationProfile.class);
         HttpHeaders headers = mock(HttpHeaders.class);
-        when(experimentRepository.getExperimentList(eq(appName))).thenReturn(table);
+        when(snapshot.getExperiments()).thenReturn(table);
         Assignment nullAssignment = Assignment.newInstance(null)
                 .withApplicationName(appName)
                 .withBucketLabel(null)
@@ -384,12 +390,12 @@ public class AssignmentsImplTest {
         Experiment experiment = mock(Experiment.class);
         SegmentationProfile segmentationProfile = mock(SegmentationProfile.class);
         HttpHeaders headers = mock(HttpHeaders.class);
-        when(experimentRepository.getExperimentList(eq(appName))).thenReturn(table);
+        when(snapshot.getExperiments()).thenReturn(table);
         Assignment assignment = mock(Assignment.class);
         AssignmentsImpl assignmentsImpl = spy( new AssignmentsImpl(new HashMap<String, AssignmentIngestionExecutor>(),
                 experimentRepository, assignmentsRepository,
                 mutexRepository, ruleCache, pages, priorities, assignmentDBEnvelopeProvider,
-                assignmentWebEnvelopeProvider, assignmentDecorator,  threadPoolExecutor, eventLog));
+                assignmentWebEnvelopeProvider, assignmentDecorator,  batchAssignmentExecutor, eventLog, metadataCache));
 
         doReturn(assignment).when(assignmentsImpl).getAssignment(eq(userID), eq(appName), eq(label),
                 eq(context), any(boolean.class), any(boolean.class), eq(segmentationProfile),
@@ -709,6 +715,127 @@ public class AssignmentsImplTest {
     	then(value).isEqualTo(true);
     }
 
+    @Test
+    public void selectBucketDoesNotReorderSharedBucketList() {
+        Experiment.ID experimentID = Experiment.ID.newInstance();
+        Bucket large = Bucket.newInstance(experimentID, Bucket.Label.valueOf("large")).withAllocationPercent(.7)
+                .build();
+        Bucket small = Bucket.newInstance(experimentID, Bucket.Label.valueOf("small")).withAllocationPercent(.3)
+                .build();
+        List<Bucket> buckets = Arrays.asList(large, small);
+
+        Bucket result = assignmentsImpl.selectBucket(buckets);
+
+        assertNotNull(result);
+        assertThat(buckets.get(0), is(large));
+        assertThat(buckets.get(1), is(small));
+    }
+
+    @Test
+    public void hashDieIsDeterministicPerExperimentAndUser() {
+        Experiment.ID experimentID = Experiment.ID.newInstance();
+        User.ID userID = User.ID.valueOf("user-a");
+
+        double die = AssignmentsImpl.hashDie(experimentID, userID, "bucket");
+
+        assertThat(AssignmentsImpl.hashDie(experimentID, userID, "bucket"), is(die));
+        assertTrue(die >= 0 && die < 1);
+        assertNotEquals(die, AssignmentsImpl.hashDie(experimentID, userID, "sampling"), 0);
+        assertNotEquals(die, AssignmentsImpl.hashDie(Experiment.ID.newInstance(), userID, "bucket"), 0);
+        assertNotEquals(die, AssignmentsImpl.hashDie(experimentID, User.ID.valueOf("user-b"), "bucket"), 0);
+    }
+
+    @Test
+    public void doBatchAssignmentsWithHashAssignmentSelectsSameBucketWithoutAwaitingWrite() {
+        final Calendar c = Calendar.getInstance();
+        c.add(Calendar.DATE, -1);
+        Experiment experiment = Experiment.withID(Experiment.ID.newInstance()).withApplicationName(testApp)
+                .withLabel(Experiment.Label.valueOf("exp")).withStartTime(c.getTime()).withSamplingPercent(1.0)
+                .withState(Experiment.State.RUNNING).withIsHashAssignment(true).build();
+        c.add(Calendar.DATE, 10);
+        experiment.setEndTime(c.getTime());
+        BucketList bucketList = new BucketList(2);
+        bucketList.addBucket(Bucket.newInstance(experiment.getID(), Bucket.Label.valueOf("red"))
+                .withState(Bucket.State.OPEN).withAllocationPercent(.5).build());
+        bucketList.addBucket(Bucket.newInstance(experiment.getID(), Bucket.Label.valueOf("blue"))
+                .withState(Bucket.State.OPEN).withAllocationPercent(.5).build());
+
+        Table<Experiment.ID, Experiment.Label, Experiment> allExperiments = HashBasedTable.create();
+        allExperiments.put(experiment.getID(), experiment.getLabel(), experiment);
+        PrioritizedExperimentList prioritizedExperimentList = new PrioritizedExperimentList();
+        prioritizedExperimentList.addPrioritizedExperiment(PrioritizedExperiment.from(experiment, 1).build());
+
+        when(snapshot.getExperiments()).thenReturn(allExperiments);
+        when(snapshot.getPriorities()).thenReturn(prioritizedExperimentList);
+        when(snapshot.getExclusives()).thenReturn(new HashMap<Experiment.ID, List<Experiment.ID>>());
+        when(snapshot.getBucketList(experiment.getID())).thenReturn(bucketList);
+        when(assignmentsRepository.getAssignments(any(User.ID.class), eq(testApp), eq(context),
+                eq(allExperiments))).thenReturn(HashBasedTable.<Experiment.ID, Experiment.Label, String>create());
+
+        User.ID userID = User.ID.valueOf("user-a");
+        Bucket expected = new BucketAllocation(bucketList)
+                .select(AssignmentsImpl.hashDie(experiment.getID(), userID, "bucket"));
+        for (int i = 0; i < 2; i++) {
+            ExperimentBatch experimentBatch = ExperimentBatch.newInstance()
+                    .withLabels(new HashSet<>(Collections.singleton(experiment.getLabel())))
+                    .withProfile(new HashMap<String, Object>()).build();
+
+            List<Map> result = assignmentsImpl.doBatchAssignments(userID, testApp, context, true, false, null,
+                    experimentBatch, null, null);
+
+            assertThat(result.get(0).get("assignment"), is((Object) expected.getLabel().toString()));
+        }
+        verify(batchAssignmentExecutor, times(2)).execute(any(Runnable.class));
+        verify(assignmentsRepository, never()).assignUser(any(Assignment.class), any(Experiment.class),
+                any(Date.class));
+    }
+
+    @Test
+    public void hashAssignmentIsNotWrittenAgainIfAlreadyStored() {
+        final Calendar c = Calendar.getInstance();
+        c.add(Calendar.DATE, -1);
+        Experiment experiment = Experiment.withID(Experiment.ID.newInstance()).withApplicationName(testApp)
+                .withLabel(Experiment.Label.valueOf("exp")).withStartTime(c.getTime()).withSamplingPercent(1.0)
+                .withState(Experiment.State.RUNNING).withIsHashAssignment(true).build();
+        c.add(Calendar.DATE, 10);
+        experiment.setEndTime(c.getTime());
+        BucketList bucketList = new BucketList(1);
+        bucketList.addBucket(Bucket.newInstance(experiment.getID(), Bucket.Label.valueOf("red"))
+                .withState(Bucket.State.OPEN).withAllocationPercent(1.0).build());
+
+        Table<Experiment.ID, Experiment.Label, Experiment> allExperiments = HashBasedTable.create();
+        allExperiments.put(experiment.getID(), experiment.getLabel(), experiment);
+        PrioritizedExperimentList prioritizedExperimentList = new PrioritizedExperimentList();
+        prioritizedExperimentList.addPrioritizedExperiment(PrioritizedExperiment.from(experiment, 1).build());
+
+        when(snapshot.getExperiments()).thenReturn(allExperiments);
+        when(snapshot.getPriorities()).thenReturn(prioritizedExperimentList);
+        when(snapshot.getExclusives()).thenReturn(new HashMap<Experiment.ID, List<Experiment.ID>>());
+        when(snapshot.getBucketList(experiment.getID())).thenReturn(bucketList);
+        // the index read of the repeated request does not see the first write yet, the look up table does
+        when(assignmentsRepository.getAssignments(any(User.ID.class), eq(testApp), eq(context),
+                eq(allExperiments))).thenReturn(HashBasedTable.<Experiment.ID, Experiment.Label, String>create());
+        User.ID userID = User.ID.valueOf("user-a");
+        when(assignmentsRepository.getAssignment(experiment.getID(), userID, context)).thenReturn(
+                Assignment.newInstance(experiment.getID()).withUserID(userID).withContext(context)
+                        .withBucketLabel(Bucket.Label.valueOf("red")).build());
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(batchAssignmentExecutor).execute(any(Runnable.class));
+
+        List<Map> result = assignmentsImpl.doBatchAssignments(userID, testApp, context, true, false, null,
+                ExperimentBatch.newInstance().withLabels(new HashSet<>(Collections.singleton(experiment.getLabel())))
+                        .withProfile(new HashMap<String, Object>()).build(), null, null);
+
+        assertThat(result.get(0).get("assignment"), is((Object) "red"));
+        verify(assignmentsRepository, never()).assignUser(any(Assignment.class), any(Experiment.class),
+                any(Date.class));
+    }
+
     /* FIXME
     @Test
     public void checkMutexWithEmptyExclusionListStateRunning() throws Exception {
@@ -1177,6 +1304,222 @@ public class AssignmentsImplTest {
         assert pageAssignments.get(1).get("status").toString().equals(Assignment.Status.NEW_ASSIGNMENT.toString());
     }
 
+    @Test
+    public void doBatchAssignmentsReadsPayloadFromSnapshot() {
+        final Calendar c = Calendar.getInstance();
+        c.add(Calendar.DATE, -1);
+        Experiment experiment = Experiment.withID(Experiment.ID.newInstance()).withApplicationName(testApp)
+                .withLabel(Experiment.Label.valueOf("exp")).withStartTime(c.getTime()).withSamplingPercent(1.0)
+                .withState(Experiment.State.RUNNING).build();
+        c.add(Calendar.DATE, 10);
+        experiment.setEndTime(c.getTime());
+        Bucket redBucket = Bucket.newInstance(experiment.getID(), Bucket.Label.valueOf("red"))
+                .withState(Bucket.State.OPEN).withAllocationPercent(1.0).withPayload("redPayload").build();
+        BucketList bucketList = new BucketList(1);
+        bucketList.addBucket(redBucket);
+
+        Table<Experiment.ID, Experiment.Label, Experiment> allExperiments = HashBasedTable.create();
+        allExperiments.put(experiment.getID(), experiment.getLabel(), experiment);
+        PrioritizedExperimentList prioritizedExperimentList = new PrioritizedExperimentList();
+        prioritizedExperimentList.addPrioritizedExperiment(PrioritizedExperiment.from(experiment, 1).build());
+        Table<Experiment.ID, Experiment.Label, String> userAssignments = HashBasedTable.create();
+        userAssignments.put(experiment.getID(), experiment.getLabel(), "red");
+
+        when(snapshot.getExperiments()).thenReturn(allExperiments);
+        when(snapshot.getPriorities()).thenReturn(prioritizedExperimentList);
+        when(snapshot.getExclusives()).thenReturn(new HashMap<Experiment.ID, List<Experiment.ID>>());
+        when(snapshot.getBucketList(experiment.getID())).thenReturn(bucketList);
+        when(assignmentsRepository.getAssignments(any(User.ID.class), eq(testApp), eq(context),
+                eq(allExperiments))).thenReturn(userAssignments);
+
+        ExperimentBatch experimentBatch = ExperimentBatch.newInstance()
+                .withLabels(new HashSet<>(Collections.singleton(experiment.getLabel())))
+                .withProfile(new HashMap<String, Object>()).build();
+        List<Map> result = assignmentsImpl.doBatchAssignments(User.ID.valueOf("user-a"), testApp, context, true,
+                false, null, experimentBatch, null, null);
+
+        assertThat(result.size(), is(1));
+        assertThat(result.get(0).get("assignment"), is((Object) "red"));
+        assertThat(result.get(0).get("payload"), is((Object) "redPayload"));
+        verify(experimentRepository, never()).getBucket(any(Experiment.ID.class), any(Bucket.Label.class));
+    }
+
+    @Test
+    public void doBatchAssignmentsResolvesMutexInPriorityOrderAndWritesConcurrently() throws Exception {
+        final Calendar c = Calendar.getInstance();
+        c.add(Calendar.DATE, -1);
+        Experiment experiment = Experiment.withID(Experiment.ID.newInstance()).withApplicationName(testApp)
+                .withLabel(Experiment.Label.valueOf("exp")).withStartTime(c.getTime()).withSamplingPercent(1.0)
+                .withState(Experiment.State.RUNNING).build();
+        Experiment experiment2 = Experiment.withID(Experiment.ID.newInstance()).withApplicationName(testApp)
+                .withLabel(Experiment.Label.valueOf("exp2")).withStartTime(c.getTime()).withSamplingPercent(1.0)
+                .withState(Experiment.State.RUNNING).build();
+        c.add(Calendar.DATE, 10);
+        experiment.setEndTime(c.getTime());
+        experiment2.setEndTime(c.getTime());
+        BucketList bucketList = new BucketList(1);
+        bucketList.addBucket(Bucket.newInstance(experiment.getID(), Bucket.Label.valueOf("red"))
+                .withState(Bucket.State.OPEN).withAllocationPercent(1.0).build());
+        BucketList bucketList2 = new BucketList(1);
+        bucketList2.addBucket(Bucket.newInstance(experiment2.getID(), Bucket.Label.valueOf("green"))
+                .withState(Bucket.State.OPEN).withAllocationPercent(1.0).build());
+
+        Table<Experiment.ID, Experiment.Label, Experiment> allExperiments = HashBasedTable.create();
+        allExperiments.put(experiment.getID(), experiment.getLabel(), experiment);
+        allExperiments.put(experiment2.getID(), experiment2.getLabel(), experiment2);
+        PrioritizedExperimentList prioritizedExperimentList = new PrioritizedExperimentList();
+        prioritizedExperimentList.addPrioritizedExperiment(PrioritizedExperiment.from(experiment, 1).build());
+        prioritizedExperimentList.addPrioritizedExperiment(PrioritizedExperiment.from(experiment2, 2).build());
+        Map<Experiment.ID, List<Experiment.ID>> exclusives = new HashMap<>();
+        exclusives.put(experiment.getID(), Collections.singletonList(experiment2.getID()));
+        exclusives.put(experiment2.getID(), Collections.singletonList(experiment.getID()));
+
+        when(snapshot.getExperiments()).thenReturn(allExperiments);
+        when(snapshot.getPriorities()).thenReturn(prioritizedExperimentList);
+        when(snapshot.getExclusives()).thenReturn(exclusives);
+        when(snapshot.getBucketList(experiment.getID())).thenReturn(bucketList);
+        when(snapshot.getBucketList(experiment2.getID())).thenReturn(bucketList2);
+        when(assignmentsRepository.getAssignments(any(User.ID.class), eq(testApp), eq(context),
+                eq(allExperiments))).thenReturn(HashBasedTable.<Experiment.ID, Experiment.Label, String>create());
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 0, java.util.concurrent.TimeUnit.SECONDS,
+                new java.util.concurrent.LinkedBlockingQueue<Runnable>());
+        try {
+            AssignmentsImpl batchAssignments = new AssignmentsImpl(new HashMap<String, AssignmentIngestionExecutor>(),
+                    experimentRepository, assignmentsRepository, mutexRepository, ruleCache, pages, priorities,
+                    assignmentDBEnvelopeProvider, assignmentWebEnvelopeProvider, assignmentDecorator,
+                    executor, eventLog, metadataCache, true);
+            Set<Experiment.Label> labels = new HashSet<>(Arrays.asList(experiment2.getLabel(), experiment.getLabel()));
+            ExperimentBatch experimentBatch = ExperimentBatch.newInstance().withLabels(labels)
+                    .withProfile(new HashMap<String, Object>()).build();
+
+            List<Map> result = batchAssignments.doBatchAssignments(User.ID.valueOf("user-a"), testApp, context,
+                    true, true, null, experimentBatch, null, null);
+
+            // priority order is kept and the second experiment sees the first one's new assignment
+            assertThat(result.size(), is(2));
+            assertThat(result.get(0).get("experimentLabel"), is((Object) experiment.getLabel()));
+            assertThat(result.get(0).get("assignment"), is((Object) "red"));
+            assertThat(result.get(1).get("assignment"), is((Object) null));
+            assertThat(result.get(1).get("status"), is((Object) Assignment.Status.NEW_ASSIGNMENT));
+            verify(assignmentsRepository, times(2)).assignUser(any(Assignment.class), any(Experiment.class),
+                    any(Date.class));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void doBatchAssignmentsDropsDecisionsAgainstUnwrittenAssignments() throws Exception {
+        final Calendar c = Calendar.getInstance();
+        c.add(Calendar.DATE, -1);
+        Experiment experiment = Experiment.withID(Experiment.ID.newInstance()).withApplicationName(testApp)
+                .withLabel(Experiment.Label.valueOf("exp")).withStartTime(c.getTime()).withSamplingPercent(1.0)
+                .withState(Experiment.State.RUNNING).build();
+        Experiment experiment2 = Experiment.withID(Experiment.ID.newInstance()).withApplicationName(testApp)
+                .withLabel(Experiment.Label.valueOf("exp2")).withStartTime(c.getTime()).withSamplingPercent(1.0)
+                .withState(Experiment.State.RUNNING).build();
+        c.add(Calendar.DATE, 10);
+        experiment.setEndTime(c.getTime());
+        experiment2.setEndTime(c.getTime());
+        BucketList bucketList = new BucketList(1);
+        bucketList.addBucket(Bucket.newInstance(experiment.getID(), Bucket.Label.valueOf("red"))
+                .withState(Bucket.State.OPEN).withAllocationPercent(1.0).build());
+        BucketList bucketList2 = new BucketList(1);
+        bucketList2.addBucket(Bucket.newInstance(experiment2.getID(), Bucket.Label.valueOf("green"))
+                .withState(Bucket.State.OPEN).withAllocationPercent(1.0).build());
+
+        Table<Experiment.ID, Experiment.Label, Experiment> allExperiments = HashBasedTable.create();
+        allExperiments.put(experiment.getID(), experiment.getLabel(), experiment);
+        allExperiments.put(experiment2.getID(), experiment2.getLabel(), experiment2);
+        PrioritizedExperimentList prioritizedExperimentList = new PrioritizedExperimentList();
+        prioritizedExperimentList.addPrioritizedExperiment(PrioritizedExperiment.from(experiment, 1).build());
+        prioritizedExperimentList.addPrioritizedExperiment(PrioritizedExperiment.from(experiment2, 2).build());
+        Map<Experiment.ID, List<Experiment.ID>> exclusives = new HashMap<>();
+        exclusives.put(experiment.getID(), Collections.singletonList(experiment2.getID()));
+        exclusives.put(experiment2.getID(), Collections.singletonList(experiment.getID()));
+        Table<Experiment.ID, Experiment.Label, String> userAssignments = HashBasedTable.create();
+
+        when(snapshot.getExperiments()).thenReturn(allExperiments);
+        when(snapshot.getPriorities()).thenReturn(prioritizedExperimentList);
+        when(snapshot.getExclusives()).thenReturn(exclusives);
+        when(snapshot.getBucketList(experiment.getID())).thenReturn(bucketList);
+        when(snapshot.getBucketList(experiment2.getID())).thenReturn(bucketList2);
+        when(assignmentsRepository.getAssignments(any(User.ID.class), eq(testApp), eq(context),
+                eq(allExperiments))).thenReturn(userAssignments);
+        when(assignmentsRepository.assignUser(any(Assignment.class), eq(experiment), any(Date.class)))
+                .thenThrow(new AssignmentException("write failed"));
+
+        AssignmentsImpl batchAssignments = new AssignmentsImpl(new HashMap<String, AssignmentIngestionExecutor>(),
+                experimentRepository, assignmentsRepository, mutexRepository, ruleCache, pages, priorities,
+                assignmentDBEnvelopeProvider, assignmentWebEnvelopeProvider, assignmentDecorator,
+                batchAssignmentExecutor, eventLog, metadataCache, true);
+        Set<Experiment.Label> labels = new HashSet<>(Arrays.asList(experiment2.getLabel(), experiment.getLabel()));
+        List<Map> result = batchAssignments.doBatchAssignments(User.ID.valueOf("user-a"), testApp, context,
+                true, true, null, ExperimentBatch.newInstance().withLabels(labels)
+                        .withProfile(new HashMap<String, Object>()).build(), null, null);
+
+        // the second experiment was kept out by the first one's assignment, which does not exist
+        assertThat(result.get(0).get("status"), is((Object) "assignment failed"));
+        assertThat(result.get(1).get("status"), is((Object) "assignment failed"));
+        verify(assignmentsRepository, never()).assignUser(any(Assignment.class), eq(experiment2), any(Date.class));
+        assertTrue(userAssignments.isEmpty());
+    }
+
+    @Test
+    public void doBatchAssignmentsIngestsOnlyWrittenAssignments() {
+        final Calendar c = Calendar.getInstance();
+        c.add(Calendar.DATE, -1);
+        Experiment experiment = Experiment.withID(Experiment.ID.newInstance()).withApplicationName(testApp)
+                .withLabel(Experiment.Label.valueOf("exp")).withStartTime(c.getTime()).withSamplingPercent(1.0)
+                .withState(Experiment.State.RUNNING).build();
+        c.add(Calendar.DATE, 10);
+        experiment.setEndTime(c.getTime());
+        BucketList bucketList = new BucketList(1);
+        bucketList.addBucket(Bucket.newInstance(experiment.getID(), Bucket.Label.valueOf("red"))
+                .withState(Bucket.State.OPEN).withAllocationPercent(1.0).build());
+
+        Table<Experiment.ID, Experiment.Label, Experiment> allExperiments = HashBasedTable.create();
+        allExperiments.put(experiment.getID(), experiment.getLabel(), experiment);
+        PrioritizedExperimentList prioritizedExperimentList = new PrioritizedExperimentList();
+        prioritizedExperimentList.addPrioritizedExperiment(PrioritizedExperiment.from(experiment, 1).build());
+        Table<Experiment.ID, Experiment.Label, String> userAssignments = HashBasedTable.create();
+
+        when(snapshot.getExperiments()).thenReturn(allExperiments);
+        when(snapshot.getPriorities()).thenReturn(prioritizedExperimentList);
+        when(snapshot.getExclusives()).thenReturn(new HashMap<Experiment.ID, List<Experiment.ID>>());
+        when(snapshot.getBucketList(experiment.getID())).thenReturn(bucketList);
+        when(assignmentsRepository.getAssignments(any(User.ID.class), eq(testApp), eq(context),
+                eq(allExperiments))).thenReturn(userAssignments);
+        when(assignmentsRepository.assignUser(any(Assignment.class), eq(experiment), any(Date.class)))
+                .thenThrow(new AssignmentException("write failed")).thenReturn(null);
+
+        AssignmentIngestionExecutor ingestionExecutor = mock(AssignmentIngestionExecutor.class);
+        AssignmentsImpl ingestingAssignments = new AssignmentsImpl(
+                Collections.singletonMap("ingestion", ingestionExecutor),
+                experimentRepository, assignmentsRepository, mutexRepository, ruleCache, pages, priorities,
+                assignmentDBEnvelopeProvider, assignmentWebEnvelopeProvider, assignmentDecorator,
+                batchAssignmentExecutor, eventLog, metadataCache, true);
+
+        List<Map> result = ingestingAssignments.doBatchAssignments(User.ID.valueOf("user-a"), testApp, context,
+                true, true, null, ExperimentBatch.newInstance()
+                        .withLabels(new HashSet<>(Collections.singleton(experiment.getLabel())))
+                        .withProfile(new HashMap<String, Object>()).build(), null, null);
+
+        // the failed write is neither ingested nor kept in the user's assignments
+        assertThat(result.get(0).get("status"), is((Object) "assignment failed"));
+        assertFalse(userAssignments.contains(experiment.getID(), experiment.getLabel()));
+        verify(ingestionExecutor, never()).execute(any(AssignmentEnvelopePayload.class));
+
+        result = ingestingAssignments.doBatchAssignments(User.ID.valueOf("user-a"), testApp, context,
+                true, true, null, ExperimentBatch.newInstance()
+                        .withLabels(new HashSet<>(Collections.singleton(experiment.getLabel())))
+                        .withProfile(new HashMap<String, Object>()).build(), null, null);
+
+        assertThat(result.get(0).get("assignment"), is((Object) "red"));
+        verify(ingestionExecutor, times(1)).execute(any(AssignmentEnvelopePayload.class));
+    }
+
     @Test
     public void putAssignment_test() throws IOException, ConnectionException {
         final Calendar c = Calendar.getInstance();
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.assignment.impl;
+
+import com.intuit.wasabi.assignmentobjects.SegmentationProfile;
+import com.intuit.wasabi.experimentobjects.Context;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ProfileAttributesTest {
+
+    private Map<String, Object> profile;
+    private HttpHeaders headers;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        profile = new HashMap<>();
+        profile.put("salary", 1000);
+        profile.put("User-Agent", "profile agent");
+
+        MultivaluedMap<String, String> requestHeaders = mock(MultivaluedMap.class);
+        when(requestHeaders.get("User-Agent")).thenReturn(Collections.singletonList("header agent"));
+        when(requestHeaders.get("context")).thenReturn(Collections.singletonList("header context"));
+        when(requestHeaders.get("Accept")).thenReturn(Arrays.asList("text/html", "application/json"));
+        headers = mock(HttpHeaders.class);
+        when(headers.getRequestHeaders()).thenReturn(requestHeaders);
+    }
+
+    @Test
+    public void testLayers() {
+        ProfileAttributes attributes = new ProfileAttributes(SegmentationProfile.from(profile).build(),
+                Context.valueOf("PROD"), headers);
+
+        assertEquals(1000, attributes.get("salary"));
+        assertEquals("profile agent", attributes.get("User-Agent"));
+        assertEquals("PROD", attributes.get("context"));
+        assertEquals("text/html", attributes.get("Accept"));
+        assertNull(attributes.get("state"));
+        assertFalse(attributes.containsKey("state"));
+    }
+
+    @Test
+    public void testSelectDoesNotModifyProfile() {
+        ProfileAttributes attributes = new ProfileAttributes(SegmentationProfile.from(profile).build(),
+                Context.valueOf("PROD"), headers);
+
+        Map<String, Object> selected = attributes.select(Arrays.asList("salary", "context", "Accept", "state"));
+
+        assertEquals(3, selected.size());
+        assertEquals("PROD", selected.get("context"));
+        assertEquals(2, profile.size());
+    }
+
+    @Test
+    public void testWithoutProfile() {
+        ProfileAttributes attributes = new ProfileAttributes(null, null, headers);
+
+        assertEquals("header agent", attributes.get("User-Agent"));
+        assertEquals("header context", attributes.get("context"));
+        assertTrue(attributes.select(Collections.singletonList("salary")).isEmpty());
+    }
+}
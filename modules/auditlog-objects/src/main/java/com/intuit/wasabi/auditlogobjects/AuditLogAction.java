@@ -165,6 +165,8 @@ public enum AuditLogAction {
                 return "changed model version to " + entry.getAfter();
             case "isRapidExperiment":
                 return Boolean.parseBoolean(entry.getAfter()) ? "enabled rapid experimentation" : "disabled rapid experimentation";
+            case "isHashAssignment":
+                return Boolean.parseBoolean(entry.getAfter()) ? "enabled hash assignment" : "disabled hash assignment";
             case "userCap":
                 return "changed user cap for rapid experimentation to " + entry.getAfter();
             case "label":
@@ -0,0 +1,54 @@
+package com.intuit.wasabi.auditlogobjects;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents a page of AuditLogEntries, newest first, together with the continuation token to request the
+ * entries following it.
+ */
+public class AuditLogPage {
+
+    private final List<AuditLogEntry> entries;
+    private final String continuation;
+
+    /**
+     * Creates an AuditLogPage.
+     *
+     * @param entries the entries of this page
+     * @param continuation the token to request the next page, null if there are no more entries
+     */
+    public AuditLogPage(List<AuditLogEntry> entries, String continuation) {
+        this.entries = entries == null ? Collections.<AuditLogEntry>emptyList() : entries;
+        this.continuation = continuation;
+    }
+
+    /**
+     * The entries of this page.
+     *
+     * @return the entries
+     */
+    public List<AuditLogEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * An opaque token to request the entries following this page, null if this is the last page.
+     *
+     * @return the continuation token
+     */
+    public String getContinuation() {
+        return continuation;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
+    }
+}
@@ -85,6 +85,8 @@ public class AuditLogActionTest {
         eventKeywords.put(new ExperimentChangeEvent(exp, "modelVersion", "", "1.32"), new String[]{"model", "version", "1.32"});
         eventKeywords.put(new ExperimentChangeEvent(exp, "isRapidExperiment", "", "true"), new String[]{"enabled", "rapid", "experiment"});
         eventKeywords.put(new ExperimentChangeEvent(exp, "isRapidExperiment", "", "false"), new String[]{"disabled", "rapid", "experiment"});
+        eventKeywords.put(new ExperimentChangeEvent(exp, "isHashAssignment", "", "true"), new String[]{"enabled", "hash", "assignment"});
+        eventKeywords.put(new ExperimentChangeEvent(exp, "isHashAssignment", "", "false"), new String[]{"disabled", "hash", "assignment"});
         eventKeywords.put(new ExperimentChangeEvent(exp, "userCap", "2000", "1500"), new String[]{"changed", "rapid", "experiment", "1500"});
         eventKeywords.put(new ExperimentChangeEvent(exp, "label", "FEDCBA", "ABCDEF"), new String[]{"label", "ABCDEF", "changed"});
         eventKeywords.put(new ExperimentChangeEvent(exp, "applicationName", "", ""), new String[]{"application", "ABCDEF", "moved"});
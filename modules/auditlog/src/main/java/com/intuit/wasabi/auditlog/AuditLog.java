@@ -1,9 +1,11 @@
 package com.intuit.wasabi.auditlog;
 
 import com.intuit.wasabi.auditlogobjects.AuditLogEntry;
+import com.intuit.wasabi.auditlogobjects.AuditLogPage;
 import com.intuit.wasabi.auditlogobjects.AuditLogProperty;
 import com.intuit.wasabi.experimentobjects.Application;
 
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -24,6 +26,25 @@ public interface AuditLog {
      */
     List<AuditLogEntry> getAuditLogs(Application.Name applicationName, String filterMask, String sortOrder);
 
+    /**
+     * Retrieves a page of AuditLogEntries for the provided application from the repository, newest first.
+     * The time range is applied by the repository query, the filterMask (see {@link #filter(List, String)}) while
+     * reading, so that only matching entries are transferred. A page is returned once it is full or once as many
+     * entries were read as a single fetch is limited to; in the latter case it may hold fewer entries but still
+     * carries a continuation token.
+     *
+     * @param applicationName the application
+     * @param filterMask      the filter mask
+     * @param from            the earliest time of the entries, unbounded if null
+     * @param to              the latest time of the entries, unbounded if null
+     * @param continuation    the continuation token of the previous page, null for the first page
+     * @param perPage         the maximum number of entries on the page
+     * @return the page of filtered audit logs
+     * @throws IllegalArgumentException if the continuation token is invalid
+     */
+    AuditLogPage getAuditLogPage(Application.Name applicationName, String filterMask, Date from, Date to,
+                                 String continuation, int perPage);
+
     /**
      * Retrieves a list of AuditLogEntries for no specific application from the repository.
      * Filters the retrieved data according to the filterMask and sorts it according to the sortOrder.
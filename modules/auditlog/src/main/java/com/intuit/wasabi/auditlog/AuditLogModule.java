@@ -13,6 +13,7 @@ import static com.intuit.autumn.utils.PropertyFactory.create;
 import static com.intuit.autumn.utils.PropertyFactory.getProperty;
 import static java.lang.Class.forName;
 import static java.lang.Integer.parseInt;
+import static java.lang.Long.parseLong;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -38,6 +39,14 @@ public class AuditLogModule extends AbstractModule {
                 parseInt(getProperty("auditlog.threadpoolsize.core", properties, "2")));
         bind(Integer.class).annotatedWith(named("auditlog.threadpoolsize.max")).toInstance(
                 parseInt(getProperty("auditlog.threadpoolsize.max", properties, "4")));
+        bind(Integer.class).annotatedWith(named("auditlog.batch.size")).toInstance(
+                parseInt(getProperty("auditlog.batch.size", properties, "100")));
+        bind(Long.class).annotatedWith(named("auditlog.batch.linger")).toInstance(
+                parseLong(getProperty("auditlog.batch.linger", properties, "50")));
+        bind(Integer.class).annotatedWith(named("auditlog.batch.max.retries")).toInstance(
+                parseInt(getProperty("auditlog.batch.max.retries", properties, "3")));
+        bind(String.class).annotatedWith(named("auditlog.fallback.directory")).toInstance(
+                getProperty("auditlog.fallback.directory", properties));
 
         String auditLogListenerClass = getProperty("auditlog.listener.class.name", properties,
                 "com.intuit.wasabi.auditlog.impl.NoopAuditLogListenerImpl");
@@ -0,0 +1,280 @@
+package com.intuit.wasabi.auditlog.impl;
+
+import com.intuit.wasabi.auditlogobjects.AuditLogEntry;
+import com.intuit.wasabi.experimentobjects.Application;
+import com.intuit.wasabi.repository.AuditLogRepository;
+import com.intuit.wasabi.repository.RepositoryException;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Writes audit log entries to the database in batches. The thread running an {@link AuditLogEntryEnvelope} takes
+ * further envelopes from the queue of the audit log executor, waiting at most <code>lingerMillis</code> for a batch
+ * to fill up, and writes the entries of each application with one batch, as they share a partition.
+ *
+ * Failed batches are retried. If a batch still fails, its entries are appended to the fallback file, which is
+ * written to the database again after the next successful batch. The fallback file is renamed to a replay file
+ * while it is written, which is only deleted once all of its entries are stored or appended to the fallback file
+ * again, so that a replay file left over by a previous run is written again, too.
+ */
+class AuditLogBatchWriter {
+
+    private static final Logger LOGGER = getLogger(AuditLogBatchWriter.class);
+    private static final long RETRY_DELAY_MILLIS = 100;
+    private final AuditLogRepository repository;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final int maxRetries;
+    private final File fallbackFile;
+    private final Path replayFile;
+    private final AuditLogEntryCodec codec = new AuditLogEntryCodec();
+    private final Object fallbackLock = new Object();
+    private final AtomicBoolean replaying = new AtomicBoolean();
+    private volatile boolean fallbackPending;
+    private volatile BlockingQueue<Runnable> queue;
+
+    /**
+     * Constructor
+     *
+     * @param repository     repository the batches are written to
+     * @param batchSize      maximum number of entries per batch
+     * @param lingerMillis   maximum time to wait for a batch to fill up
+     * @param maxRetries     number of retries of a failed batch
+     * @param fallbackFile   file the entries which cannot be written are appended to, one JSON record per line
+     */
+    AuditLogBatchWriter(AuditLogRepository repository, int batchSize, long lingerMillis, int maxRetries,
+                        File fallbackFile) {
+        super();
+
+        this.repository = repository;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerMillis = lingerMillis;
+        this.maxRetries = maxRetries;
+        this.fallbackFile = fallbackFile;
+        this.replayFile = fallbackFile.toPath().resolveSibling(fallbackFile.getName() + ".replay");
+        // entries left over by a previous run are written with the first batch
+        this.fallbackPending = fallbackFile.exists() || Files.exists(replayFile);
+    }
+
+    /**
+     * Sets the queue the further envelopes of a batch are taken from.
+     *
+     * @param queue the queue of the audit log executor
+     */
+    void attach(BlockingQueue<Runnable> queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Writes the entry of the given envelope together with the entries waiting in the queue.
+     *
+     * @param first the envelope being run
+     */
+    void write(AuditLogEntryEnvelope first) {
+        List<AuditLogEntry> batch = new ArrayList<>();
+        batch.add(first.getEntry());
+        collect(batch);
+
+        if (store(batch) && fallbackPending) {
+            replayFallback();
+        }
+    }
+
+    private void collect(List<AuditLogEntry> batch) {
+        BlockingQueue<Runnable> source = queue;
+        if (source == null) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        try {
+            while (batch.size() < batchSize) {
+                long remaining = deadline - System.nanoTime();
+                Runnable task = remaining > 0 ? source.poll(remaining, TimeUnit.NANOSECONDS) : source.poll();
+                if (task == null) {
+                    return;
+                }
+                if (task instanceof AuditLogEntryEnvelope) {
+                    batch.add(((AuditLogEntryEnvelope) task).getEntry());
+                } else {
+                    // not an entry, run it on its own
+                    task.run();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stores the entries grouped by application, appending the groups which cannot be stored to the fallback file.
+     *
+     * @param entries the entries
+     * @return true if all entries were stored in the database
+     */
+    private boolean store(List<AuditLogEntry> entries) {
+        boolean stored = true;
+        for (List<AuditLogEntry> partition : byApplication(entries)) {
+            List<AuditLogEntry> failed = storeWithRetries(partition);
+            if (!failed.isEmpty()) {
+                appendToFallback(failed);
+                stored = false;
+            }
+        }
+        return stored;
+    }
+
+    private static Collection<List<AuditLogEntry>> byApplication(List<AuditLogEntry> entries) {
+        Map<Application.Name, List<AuditLogEntry>> partitions = new LinkedHashMap<>();
+        for (AuditLogEntry entry : entries) {
+            Application.Name applicationName = entry.getApplicationName() != null
+                    ? entry.getApplicationName() : AuditLogRepository.GLOBAL_ENTRY_APPLICATION;
+            List<AuditLogEntry> partition = partitions.get(applicationName);
+            if (partition == null) {
+                partition = new ArrayList<>();
+                partitions.put(applicationName, partition);
+            }
+            partition.add(entry);
+        }
+        return partitions.values();
+    }
+
+    /**
+     * @param entries the entries of one application
+     * @return the entries which could not be stored
+     */
+    private List<AuditLogEntry> storeWithRetries(List<AuditLogEntry> entries) {
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            if (attempt > 0 && !sleep(RETRY_DELAY_MILLIS * attempt)) {
+                break;
+            }
+            try {
+                if (repository.storeEntries(entries)) {
+                    return Collections.emptyList();
+                }
+            } catch (RepositoryException e) {
+                // an invalid entry would fail every retry, so write the entries one by one instead
+                return storeEach(entries);
+            }
+            LOGGER.warn("Attempt {} to write a batch of {} audit log entries failed", attempt + 1, entries.size());
+        }
+        return entries;
+    }
+
+    private List<AuditLogEntry> storeEach(List<AuditLogEntry> entries) {
+        List<AuditLogEntry> failed = new ArrayList<>();
+        for (AuditLogEntry entry : entries) {
+            try {
+                if (!repository.storeEntry(entry)) {
+                    failed.add(entry);
+                }
+            } catch (RepositoryException e) {
+                LOGGER.error("Dropping invalid audit log entry " + entry, e);
+            }
+        }
+        return failed;
+    }
+
+    private void appendToFallback(List<AuditLogEntry> entries) {
+        List<String> records = new ArrayList<>(entries.size());
+        for (AuditLogEntry entry : entries) {
+            String record = codec.encode(entry);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        synchronized (fallbackLock) {
+            try {
+                Files.write(fallbackFile.toPath(), records, StandardCharsets.UTF_8, CREATE, APPEND);
+                fallbackPending = true;
+                LOGGER.warn("Wrote {} audit log entries which could not be stored to {}", records.size(),
+                        fallbackFile);
+            } catch (IOException e) {
+                LOGGER.error("Unable to write " + records.size() + " audit log entries to " + fallbackFile
+                        + ", the entries are lost: " + records, e);
+            }
+        }
+    }
+
+    /**
+     * Writes the entries of the fallback file to the database. Entries which still cannot be written are appended
+     * to the fallback file again. A replay file left over by an interrupted replay is written before the fallback
+     * file.
+     */
+    void replayFallback() {
+        if (!replaying.compareAndSet(false, true)) {
+            // another thread is replaying, the entries stay pending for the next batch
+            return;
+        }
+        try {
+            List<String> records;
+            synchronized (fallbackLock) {
+                try {
+                    if (!Files.exists(replayFile)) {
+                        if (!fallbackFile.exists()) {
+                            fallbackPending = false;
+                            return;
+                        }
+                        Files.move(fallbackFile.toPath(), replayFile, ATOMIC_MOVE);
+                    }
+                    fallbackPending = fallbackFile.exists();
+                    records = Files.readAllLines(replayFile, StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to replay the audit log entries of " + replayFile, e);
+                    return;
+                }
+            }
+
+            LOGGER.info("replaying {} audit log entries of {}", records.size(), replayFile);
+            List<AuditLogEntry> entries = new ArrayList<>(records.size());
+            for (String record : records) {
+                try {
+                    entries.add(codec.decode(record));
+                } catch (RuntimeException e) {
+                    LOGGER.error("Dropping invalid audit log record " + record, e);
+                }
+            }
+            for (int from = 0; from < entries.size(); from += batchSize) {
+                store(entries.subList(from, Math.min(entries.size(), from + batchSize)));
+            }
+
+            // all entries are stored or back in the fallback file
+            try {
+                Files.delete(replayFile);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to delete " + replayFile + ", its entries will be written again", e);
+                fallbackPending = true;
+            }
+        } finally {
+            replaying.set(false);
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.intuit.wasabi.auditlog.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intuit.wasabi.auditlogobjects.AuditLogAction;
+import com.intuit.wasabi.auditlogobjects.AuditLogEntry;
+import com.intuit.wasabi.authenticationobjects.UserInfo;
+import com.intuit.wasabi.experimentobjects.Application;
+import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.Experiment;
+
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes {@link AuditLogEntry}s as single line JSON records, so that entries which cannot be written to the
+ * database can be appended to a file and written later.
+ */
+class AuditLogEntryCodec {
+
+    private static final String TIME = "time";
+    private static final String USERNAME = "username";
+    private static final String FIRST_NAME = "firstName";
+    private static final String LAST_NAME = "lastName";
+    private static final String EMAIL = "email";
+    private static final String USER_ID = "userID";
+    private static final String ACTION = "action";
+    private static final String APPLICATION_NAME = "applicationName";
+    private static final String EXPERIMENT_LABEL = "experimentLabel";
+    private static final String EXPERIMENT_ID = "experimentID";
+    private static final String BUCKET_LABEL = "bucketLabel";
+    private static final String CHANGED_PROPERTY = "changedProperty";
+    private static final String BEFORE = "before";
+    private static final String AFTER = "after";
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Encodes an entry.
+     *
+     * @param entry the entry
+     * @return the entry as a single line, <code>null</code> if it cannot be encoded
+     */
+    String encode(AuditLogEntry entry) {
+        UserInfo user = entry.getUser();
+
+        Map<String, String> record = new HashMap<>();
+        record.put(TIME, Long.toString(entry.getTime().getTimeInMillis()));
+        record.put(USERNAME, toString(user.getUsername()));
+        record.put(FIRST_NAME, user.getFirstName());
+        record.put(LAST_NAME, user.getLastName());
+        record.put(EMAIL, user.getEmail());
+        record.put(USER_ID, user.getUserId());
+        record.put(ACTION, entry.getAction().name());
+        record.put(APPLICATION_NAME, toString(entry.getApplicationName()));
+        record.put(EXPERIMENT_LABEL, toString(entry.getExperimentLabel()));
+        record.put(EXPERIMENT_ID, toString(entry.getExperimentId()));
+        record.put(BUCKET_LABEL, toString(entry.getBucketLabel()));
+        record.put(CHANGED_PROPERTY, entry.getChangedProperty());
+        record.put(BEFORE, entry.getBefore());
+        record.put(AFTER, entry.getAfter());
+        try {
+            return mapper.writeValueAsString(record);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decodes an entry encoded by {@link #encode(AuditLogEntry)}.
+     *
+     * @param record the encoded entry
+     * @return the entry
+     * @throws IllegalArgumentException if the record is not a valid entry
+     */
+    AuditLogEntry decode(String record) {
+        Map<String, String> fields;
+        try {
+            fields = mapper.readValue(record, new TypeReference<Map<String, String>>() {
+            });
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid audit log record " + record, e);
+        }
+
+        Calendar time = Calendar.getInstance();
+        time.setTimeInMillis(Long.parseLong(fields.get(TIME)));
+        UserInfo user = UserInfo.from(UserInfo.Username.valueOf(fields.get(USERNAME)))
+                .withFirstName(fields.get(FIRST_NAME))
+                .withLastName(fields.get(LAST_NAME))
+                .withEmail(fields.get(EMAIL))
+                .withUserId(fields.get(USER_ID))
+                .build();
+
+        return new AuditLogEntry(time, user, AuditLogAction.valueOf(fields.get(ACTION)),
+                fields.get(APPLICATION_NAME) != null ? Application.Name.valueOf(fields.get(APPLICATION_NAME)) : null,
+                fields.get(EXPERIMENT_LABEL) != null ? Experiment.Label.valueOf(fields.get(EXPERIMENT_LABEL)) : null,
+                fields.get(EXPERIMENT_ID) != null ? Experiment.ID.valueOf(fields.get(EXPERIMENT_ID)) : null,
+                fields.get(BUCKET_LABEL) != null ? Bucket.Label.valueOf(fields.get(BUCKET_LABEL)) : null,
+                fields.get(CHANGED_PROPERTY), fields.get(BEFORE), fields.get(AFTER));
+    }
+
+    private static String toString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+}
@@ -13,6 +13,7 @@ import com.intuit.wasabi.repository.AuditLogRepository;
      */
     private final AuditLogEntry entry;
     private final AuditLogRepository repository;
+    private final AuditLogBatchWriter batchWriter;
 
     /**
      * Wraps {@code entry} into this envelope.
@@ -21,8 +22,29 @@ import com.intuit.wasabi.repository.AuditLogRepository;
      * @param repository the repository to store events
      */
     public AuditLogEntryEnvelope(final AuditLogEntry entry, final AuditLogRepository repository) {
+        this(entry, repository, null);
+    }
+
+    /**
+     * Wraps {@code entry} into this envelope.
+     *
+     * @param entry the entry to wrap
+     * @param repository the repository to store events
+     * @param batchWriter writer storing the entry together with the entries queued behind it,
+     *                    <code>null</code> to store it on its own
+     */
+    public AuditLogEntryEnvelope(final AuditLogEntry entry, final AuditLogRepository repository,
+                                 final AuditLogBatchWriter batchWriter) {
         this.entry = entry;
         this.repository = repository;
+        this.batchWriter = batchWriter;
+    }
+
+    /**
+     * @return the wrapped entry
+     */
+    AuditLogEntry getEntry() {
+        return entry;
     }
 
     /**
@@ -30,6 +52,10 @@ import com.intuit.wasabi.repository.AuditLogRepository;
      */
     @Override
     public void run() {
-        repository.storeEntry(entry);
+        if (batchWriter != null) {
+            batchWriter.write(this);
+        } else {
+            repository.storeEntry(entry);
+        }
     }
 }
@@ -5,6 +5,7 @@ import com.google.inject.name.Named;
 import com.intuit.wasabi.auditlog.AuditLog;
 import com.intuit.wasabi.auditlogobjects.AuditLogAction;
 import com.intuit.wasabi.auditlogobjects.AuditLogEntry;
+import com.intuit.wasabi.auditlogobjects.AuditLogPage;
 import com.intuit.wasabi.auditlogobjects.AuditLogProperty;
 import com.intuit.wasabi.authenticationobjects.UserInfo;
 import com.intuit.wasabi.experimentobjects.Application;
@@ -12,14 +13,17 @@ import com.intuit.wasabi.repository.AuditLogRepository;
 import org.apache.commons.lang3.StringUtils;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.function.Predicate;
 
 /**
  * Implements the AuditLog with a default implementation.
@@ -49,6 +53,16 @@ public class AuditLogImpl implements AuditLog {
         return filterAndSort(repository.getAuditLogEntryList(applicationName, limit), filterMask, sortOrder);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AuditLogPage getAuditLogPage(Application.Name applicationName, String filterMask, Date from, Date to,
+                                        String continuation, int perPage) {
+        return repository.getAuditLogEntryPage(applicationName, from, to, continuation, perPage, limit,
+                filterPredicate(filterMask));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -70,54 +84,79 @@ public class AuditLogImpl implements AuditLog {
      */
     @Override
     public List<AuditLogEntry> filter(List<AuditLogEntry> auditLogEntries, String filterMask) {
-        if (StringUtils.isBlank(filterMask)) {
+        Predicate<AuditLogEntry> predicate = filterPredicate(filterMask);
+        if (predicate == null) {
             return auditLogEntries;
         }
 
-        String[] mask = prepareMask(filterMask);
-        boolean filterFullText = !mask[0].contains("=");
-        String fullTextPattern = null;
-        if (filterFullText) {
-            fullTextPattern = mask[0].startsWith("\\-") ? mask[0].substring(2, mask[0].length()) : mask[0];
+        for (Iterator<AuditLogEntry> iter = auditLogEntries.iterator(); iter.hasNext(); ) {
+            if (!predicate.test(iter.next())) {
+                iter.remove();
+            }
         }
 
-        Map<String, String> optionsMap = new HashMap<>();
+        return auditLogEntries;
+    }
 
-        for (Iterator<AuditLogEntry> iter = auditLogEntries.iterator(); iter.hasNext(); ) {
-            AuditLogEntry auditLogEntry = iter.next();
-            boolean remove = false;
+    /**
+     * Parses a filter mask as it is defined by the rules described in {@link #filter(List, String)} once and returns
+     * a predicate which retains the matching entries. An ill-formatted mask matches no entries.
+     *
+     * @param filterMask the filter mask
+     * @return the predicate, or null if the filter mask is blank
+     */
+    /*test*/ Predicate<AuditLogEntry> filterPredicate(String filterMask) {
+        if (StringUtils.isBlank(filterMask)) {
+            return null;
+        }
 
-            // filter for each key value pair until none is left or the entry should be removed
-            for (int i = filterFullText ? 1 : 0; i < mask.length && !remove; ++i) {
-                // determine key and value, fail if not well formatted
-                String[] keyValue = mask[i].split("=");
-                String options = "";
-                if (keyValue.length > 2) { // return empty list if invalid
-                    return Collections.emptyList();
-                } else if (keyValue.length == 1) { // skip empty filters
-                    continue;
-                } else {
-                    // options
-                    if (keyValue[1].startsWith("{") && keyValue[1].contains("}")) {
-                        options = keyValue[1].substring(1, keyValue[1].indexOf("}"));
-                        keyValue[1] = keyValue[1].substring(keyValue[1].indexOf("}") + 1);
-                        optionsMap.put(keyValue[0], options);
+        final String[] mask = prepareMask(filterMask);
+        final boolean filterFullText = !mask[0].contains("=");
+        final String fullTextPattern = filterFullText
+                ? (mask[0].startsWith("\\-") ? mask[0].substring(2, mask[0].length()) : mask[0])
+                : null;
+
+        // determine keys, values and options of the key value pairs, fail if not well formatted
+        final Map<String, String> optionsMap = new HashMap<>();
+        final List<String[]> fieldFilters = new ArrayList<>();
+        for (int i = filterFullText ? 1 : 0; i < mask.length; ++i) {
+            String[] keyValue = mask[i].split("=");
+            String options = "";
+            if (keyValue.length > 2) { // match nothing if invalid
+                return new Predicate<AuditLogEntry>() {
+                    @Override
+                    public boolean test(AuditLogEntry auditLogEntry) {
+                        return false;
                     }
+                };
+            } else if (keyValue.length == 1) { // skip empty filters
+                continue;
+            } else {
+                // options
+                if (keyValue[1].startsWith("{") && keyValue[1].contains("}")) {
+                    options = keyValue[1].substring(1, keyValue[1].indexOf("}"));
+                    keyValue[1] = keyValue[1].substring(keyValue[1].indexOf("}") + 1);
+                    optionsMap.put(keyValue[0], options);
                 }
-                String pattern = keyValue[1].startsWith("\\-") ? keyValue[1].substring(2, keyValue[1].length()) : keyValue[1];
-                remove = !singleFieldSearch(auditLogEntry, keyValue[0], pattern, options, !keyValue[1].startsWith("\\-"));
-            }
-
-            if (filterFullText && !remove) {
-                remove = !fullTextSearch(auditLogEntry, fullTextPattern, optionsMap, !mask[0].startsWith("\\-"));
-            }
-
-            if (remove) {
-                iter.remove();
             }
+            String pattern = keyValue[1].startsWith("\\-") ? keyValue[1].substring(2, keyValue[1].length()) : keyValue[1];
+            fieldFilters.add(new String[]{keyValue[0], pattern, options, String.valueOf(!keyValue[1].startsWith("\\-"))});
         }
 
-        return auditLogEntries;
+        return new Predicate<AuditLogEntry>() {
+            @Override
+            public boolean test(AuditLogEntry auditLogEntry) {
+                // filter for each key value pair until none is left or the entry should be removed
+                for (String[] fieldFilter : fieldFilters) {
+                    if (!singleFieldSearch(auditLogEntry, fieldFilter[0], fieldFilter[1], fieldFilter[2],
+                            Boolean.parseBoolean(fieldFilter[3]))) {
+                        return false;
+                    }
+                }
+                return !filterFullText
+                        || fullTextSearch(auditLogEntry, fullTextPattern, optionsMap, !mask[0].startsWith("\\-"));
+            }
+        };
     }
 
     /**
@@ -7,20 +7,24 @@ import com.intuit.wasabi.auditlogobjects.AuditLogEntryFactory;
 import com.intuit.wasabi.eventlog.EventLog;
 import com.intuit.wasabi.eventlog.EventLogListener;
 import com.intuit.wasabi.eventlog.events.EventLogEvent;
+import com.intuit.wasabi.exceptions.AuditLogException;
 import com.intuit.wasabi.repository.AuditLogRepository;
 
+import java.io.File;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
  * The AuditLogListener subscribes to events which should be logged for the user interface.
+ * Entries are stored in batches by the {@link AuditLogBatchWriter}.
  */
 public class AuditLogListenerImpl implements EventLogListener {
 
     /** Executes the {@link AuditLogEntryEnvelope}s. */
     private final ThreadPoolExecutor threadPoolExecutor;
     private final AuditLogRepository repository;
+    private final AuditLogBatchWriter batchWriter;
 
     /**
      * Initializes the audit log.
@@ -28,17 +32,38 @@ public class AuditLogListenerImpl implements EventLogListener {
      * @param eventLog the event log to subscribe to
      * @param threadPoolSizeCore the core threadpool size (java property {@code auditlog.threadpoolsize.core})
      * @param threadPoolSizeMax the max threadpool size (java property {@code auditlog.threadpoolsize.max})
+     * @param batchSize the maximum number of entries per batch (java property {@code auditlog.batch.size})
+     * @param batchLinger the maximum milliseconds to wait for a batch to fill up
+     *                    (java property {@code auditlog.batch.linger})
+     * @param batchMaxRetries the number of retries of a failed batch (java property {@code auditlog.batch.max.retries})
+     * @param fallbackDirectory the directory of the file entries are appended to while they cannot be stored
+     *                          (java property {@code auditlog.fallback.directory}), which must be durable
      * @param repository the audit log repository
      */
     @Inject
     public AuditLogListenerImpl(final EventLog eventLog,
                                 final @Named("auditlog.threadpoolsize.core") int threadPoolSizeCore,
                                 final @Named("auditlog.threadpoolsize.max") int threadPoolSizeMax,
+                                final @Named("auditlog.batch.size") int batchSize,
+                                final @Named("auditlog.batch.linger") long batchLinger,
+                                final @Named("auditlog.batch.max.retries") int batchMaxRetries,
+                                final @Named("auditlog.fallback.directory") String fallbackDirectory,
                                 final AuditLogRepository repository) {
         this.repository = repository;
-        eventLog.register(this);
+
+        if (fallbackDirectory == null || fallbackDirectory.trim().isEmpty()) {
+            throw new AuditLogException("auditlog.fallback.directory is not configured");
+        }
+        File fallbackDir = new File(fallbackDirectory);
+        if (!fallbackDir.isDirectory() && !fallbackDir.mkdirs()) {
+            throw new AuditLogException("Unable to create the audit log fallback directory " + fallbackDir);
+        }
 
         threadPoolExecutor = new ThreadPoolExecutor(threadPoolSizeCore, threadPoolSizeMax, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        batchWriter = new AuditLogBatchWriter(repository, batchSize, batchLinger, batchMaxRetries,
+                new File(fallbackDir, "AuditLog.fallback"));
+        batchWriter.attach(threadPoolExecutor.getQueue());
+        eventLog.register(this);
     }
 
     /**
@@ -48,7 +73,8 @@ public class AuditLogListenerImpl implements EventLogListener {
      */
     @Override
     public void postEvent(EventLogEvent event) {
-        threadPoolExecutor.submit(createAuditLogEntryEnvelope(event));
+        // executed rather than submitted, so that the queue holds the envelopes the batch writer collects
+        threadPoolExecutor.execute(createAuditLogEntryEnvelope(event));
     }
 
     /**
@@ -57,7 +83,7 @@ public class AuditLogListenerImpl implements EventLogListener {
      * @return an {@link AuditLogEntry} wrapped into an envelope
      */
     private AuditLogEntryEnvelope createAuditLogEntryEnvelope(EventLogEvent event) {
-        return new AuditLogEntryEnvelope(AuditLogEntryFactory.createFromEvent(event), repository);
+        return new AuditLogEntryEnvelope(AuditLogEntryFactory.createFromEvent(event), repository, batchWriter);
     }
 
 }
@@ -2,9 +2,11 @@ package com.intuit.wasabi.auditlog.impl;
 
 import com.intuit.wasabi.auditlog.AuditLog;
 import com.intuit.wasabi.auditlogobjects.AuditLogEntry;
+import com.intuit.wasabi.auditlogobjects.AuditLogPage;
 import com.intuit.wasabi.experimentobjects.Application;
 
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -25,6 +27,23 @@ public class NoopAuditLogImpl implements AuditLog {
         return Collections.emptyList();
     }
 
+    /**
+     * Returns an empty page.
+     *
+     * @param applicationName the application
+     * @param filterMask      the filter mask
+     * @param from            the earliest time of the entries
+     * @param to              the latest time of the entries
+     * @param continuation    the continuation token of the previous page
+     * @param perPage         the maximum number of entries on the page
+     * @return an empty page without continuation token
+     */
+    @Override
+    public AuditLogPage getAuditLogPage(Application.Name applicationName, String filterMask, Date from, Date to,
+                                        String continuation, int perPage) {
+        return new AuditLogPage(Collections.<AuditLogEntry>emptyList(), null);
+    }
+
     /**
      * Returns an empty list.
      *
@@ -0,0 +1,103 @@
+package com.intuit.wasabi.auditlog.impl;
+
+import com.intuit.wasabi.auditlogobjects.AuditLogAction;
+import com.intuit.wasabi.auditlogobjects.AuditLogEntry;
+import com.intuit.wasabi.eventlog.EventLog;
+import com.intuit.wasabi.experimentobjects.Application;
+import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.repository.AuditLogRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for {@link AuditLogBatchWriter}.
+ */
+public class AuditLogBatchWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Application.Name app = Application.Name.valueOf("app");
+    private final Application.Name otherApp = Application.Name.valueOf("otherApp");
+    private AuditLogRepository repository;
+    private File fallbackFile;
+    private AuditLogBatchWriter batchWriter;
+
+    @Before
+    public void setUp() throws Exception {
+        repository = Mockito.mock(AuditLogRepository.class);
+        fallbackFile = new File(folder.getRoot(), "AuditLog.fallback");
+        batchWriter = new AuditLogBatchWriter(repository, 10, 0, 1, fallbackFile);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailedBatchIsWrittenToFallbackAndReplayed() {
+        Mockito.when(repository.storeEntries(Mockito.anyList())).thenReturn(false);
+        AuditLogEntry failed = entry(app);
+
+        batchWriter.write(envelope(failed));
+
+        // first attempt and one retry
+        Mockito.verify(repository, Mockito.times(2)).storeEntries(Mockito.anyList());
+        Assert.assertTrue(fallbackFile.exists());
+
+        Mockito.reset(repository);
+        Mockito.when(repository.storeEntries(Mockito.anyList())).thenReturn(true);
+        batchWriter.write(envelope(entry(otherApp)));
+
+        ArgumentCaptor<List> batches = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(repository, Mockito.times(2)).storeEntries(batches.capture());
+        AuditLogEntry replayed = (AuditLogEntry) batches.getAllValues().get(1).get(0);
+        Assert.assertEquals(failed.getTime().getTimeInMillis(), replayed.getTime().getTimeInMillis());
+        Assert.assertEquals(failed.getUser().getUsername(), replayed.getUser().getUsername());
+        Assert.assertEquals(failed.getAction(), replayed.getAction());
+        Assert.assertEquals(failed.getApplicationName(), replayed.getApplicationName());
+        Assert.assertEquals(failed.getExperimentId(), replayed.getExperimentId());
+        Assert.assertEquals(failed.getBucketLabel(), replayed.getBucketLabel());
+        Assert.assertEquals(failed.getAfter(), replayed.getAfter());
+        Assert.assertFalse(fallbackFile.exists());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLeftoverReplayFileIsReplayed() throws Exception {
+        AuditLogEntry leftover = entry(app);
+        File replayFile = new File(folder.getRoot(), "AuditLog.fallback.replay");
+        Files.write(replayFile.toPath(), Collections.singletonList(new AuditLogEntryCodec().encode(leftover)),
+                StandardCharsets.UTF_8);
+        batchWriter = new AuditLogBatchWriter(repository, 10, 0, 1, fallbackFile);
+        Mockito.when(repository.storeEntries(Mockito.anyList())).thenReturn(true);
+
+        batchWriter.write(envelope(entry(otherApp)));
+
+        ArgumentCaptor<List> batches = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(repository, Mockito.times(2)).storeEntries(batches.capture());
+        AuditLogEntry replayed = (AuditLogEntry) batches.getAllValues().get(1).get(0);
+        Assert.assertEquals(leftover.getExperimentId(), replayed.getExperimentId());
+        Assert.assertFalse(replayFile.exists());
+    }
+
+    private AuditLogEntry entry(Application.Name applicationName) {
+        return new AuditLogEntry(Calendar.getInstance(), EventLog.SYSTEM_USER, AuditLogAction.BUCKET_CHANGED,
+                applicationName, Experiment.Label.valueOf("label"), Experiment.ID.newInstance(),
+                Bucket.Label.valueOf("bucket"), "allocation", "0.5", "0.4");
+    }
+
+    private AuditLogEntryEnvelope envelope(AuditLogEntry entry) {
+        return new AuditLogEntryEnvelope(entry, repository, batchWriter);
+    }
+}
@@ -3,6 +3,7 @@ package com.intuit.wasabi.auditlog.impl;
 import com.intuit.wasabi.auditlog.AuditLog;
 import com.intuit.wasabi.auditlogobjects.AuditLogAction;
 import com.intuit.wasabi.auditlogobjects.AuditLogEntry;
+import com.intuit.wasabi.auditlogobjects.AuditLogPage;
 import com.intuit.wasabi.authenticationobjects.UserInfo;
 import com.intuit.wasabi.eventlog.EventLog;
 import com.intuit.wasabi.experimentobjects.Application;
@@ -20,9 +21,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.function.Predicate;
 
 /**
  * Tests for {@link AuditLogImpl}.
@@ -396,4 +399,27 @@ public class AuditLogImplTest {
         Assert.assertTrue(((AuditLogImpl) auditLog).singleFieldSearch(appList.get(0), null, "", "", false));
     }
 
+    @Test
+    public void testGetAuditLogPage() throws Exception {
+        Application.Name appName = Application.Name.valueOf("App");
+        Date from = new Date(0);
+        AuditLogPage page = new AuditLogPage(appList, "token");
+        Mockito.when(repository.getAuditLogEntryPage(Mockito.eq(appName), Mockito.eq(from), Mockito.<Date>any(),
+                Mockito.eq("previous"), Mockito.eq(5), Mockito.eq(limit), Mockito.<Predicate<AuditLogEntry>>any()))
+                .thenReturn(page);
+
+        Assert.assertSame(page, auditLog.getAuditLogPage(appName, "attr=ro", from, null, "previous", 5));
+    }
+
+    @Test
+    public void testFilterPredicate() throws Exception {
+        Assert.assertNull(((AuditLogImpl) auditLog).filterPredicate(""));
+
+        Predicate<AuditLogEntry> predicate = ((AuditLogImpl) auditLog).filterPredicate("attr=ro,experiment=4");
+        Assert.assertTrue(predicate.test(completeList.get(0)));
+        Assert.assertFalse(predicate.test(completeList.get(6)));
+
+        Assert.assertFalse(((AuditLogImpl) auditLog).filterPredicate("attr=a=b").test(completeList.get(0)));
+    }
+
 }
@@ -1,19 +1,86 @@
 package com.intuit.wasabi.auditlog.impl;
 
+import com.intuit.wasabi.auditlogobjects.AuditLogEntry;
 import com.intuit.wasabi.eventlog.EventLog;
 import com.intuit.wasabi.eventlog.events.SimpleEvent;
+import com.intuit.wasabi.exceptions.AuditLogException;
 import com.intuit.wasabi.repository.AuditLogRepository;
+import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for {@link AuditLogListenerImpl}.
  */
 public class AuditLogListenerImplTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testPostEvent() {
-        new AuditLogListenerImpl(Mockito.mock(EventLog.class), 2, 4, Mockito.mock(AuditLogRepository.class)).postEvent(new SimpleEvent("SimpleEvent"));
+        new AuditLogListenerImpl(Mockito.mock(EventLog.class), 2, 4, 100, 50L, 3, folder.getRoot().getPath(),
+                Mockito.mock(AuditLogRepository.class)).postEvent(new SimpleEvent("SimpleEvent"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPostedEventsAreWrittenInOneBatch() throws Exception {
+        final CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        AuditLogRepository repository = Mockito.mock(AuditLogRepository.class);
+        Mockito.when(repository.storeEntries(Mockito.anyList())).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                batchSizes.add(((List<AuditLogEntry>) invocation.getArguments()[0]).size());
+                firstBatchStarted.countDown();
+                release.await();
+                return true;
+            }
+        });
+        AuditLogListenerImpl listener = new AuditLogListenerImpl(Mockito.mock(EventLog.class), 1, 1, 100, 0L, 3,
+                folder.getRoot().getPath(), repository);
+
+        // the single worker is busy with the first entry while the others are queued behind it
+        listener.postEvent(new SimpleEvent("first"));
+        Assert.assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            listener.postEvent(new SimpleEvent("queued" + i));
+        }
+        release.countDown();
+
+        Mockito.verify(repository, Mockito.timeout(5000).times(2)).storeEntries(Mockito.anyList());
+        Assert.assertEquals(Arrays.asList(1, 5), batchSizes);
+        Mockito.verify(repository, Mockito.never()).storeEntry(Mockito.any(AuditLogEntry.class));
+    }
+
+    @Test
+    public void testFallbackDirectoryIsCreated() {
+        File fallbackDirectory = new File(folder.getRoot(), "auditlog");
+
+        new AuditLogListenerImpl(Mockito.mock(EventLog.class), 2, 4, 100, 50L, 3, fallbackDirectory.getPath(),
+                Mockito.mock(AuditLogRepository.class));
+
+        Assert.assertTrue(fallbackDirectory.isDirectory());
+    }
+
+    @Test(expected = AuditLogException.class)
+    public void testFallbackDirectoryIsRequired() {
+        new AuditLogListenerImpl(Mockito.mock(EventLog.class), 2, 4, 100, 50L, 3, "",
+                Mockito.mock(AuditLogRepository.class));
     }
 
 
@@ -24,5 +24,7 @@ public class NoopAuditLogImplTest {
         List<AuditLogEntry> inList = Collections.singletonList(Mockito.mock(AuditLogEntry.class));
         Assert.assertEquals("", inList, auditLog.filter(inList, null));
         Assert.assertEquals("", inList, auditLog.sort(inList, null));
+        Assert.assertEquals("", Collections.emptyList(), auditLog.getAuditLogPage(null, null, null, null, null, 10).getEntries());
+        Assert.assertNull("", auditLog.getAuditLogPage(null, null, null, null, null, 10).getContinuation());
     }
 }
@@ -54,6 +54,10 @@ public class AuthenticationModule extends AbstractModule {
                 .toInstance(getProperty("http.proxy.host", properties));
         bind(Integer.class).annotatedWith(named("authentication.http.proxy.port"))
                 .toInstance(Integer.parseInt(getProperty("http.proxy.port", properties, "80")));
+        bind(Integer.class).annotatedWith(named("authentication.cache.ttl"))
+                .toInstance(Integer.parseInt(getProperty("authentication.cache.ttl", properties, "60")));
+        bind(Integer.class).annotatedWith(named("authentication.cache.max.size"))
+                .toInstance(Integer.parseInt(getProperty("authentication.cache.max.size", properties, "1000")));
 
         String authenticationClassName = getProperty("authentication.class.name", properties,
                 "com.intuit.wasabi.authentication.impl.DefaultAuthentication");
@@ -19,7 +19,12 @@
 package com.intuit.wasabi.authentication.impl;
 
 import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 import com.intuit.wasabi.authentication.Authentication;
 import com.intuit.wasabi.authenticationobjects.LoginToken;
 import com.intuit.wasabi.authenticationobjects.UserInfo;
@@ -27,8 +32,12 @@ import com.intuit.wasabi.exceptions.AuthenticationException;
 import com.intuit.wasabi.userdirectory.UserDirectory;
 import org.slf4j.Logger;
 
+import java.security.MessageDigest;
+
 import static com.google.common.base.Optional.fromNullable;
 import static com.intuit.wasabi.authenticationobjects.LoginToken.withAccessToken;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.commons.codec.binary.Base64.decodeBase64;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -43,14 +52,28 @@ public class DefaultAuthentication implements Authentication {
     public static final String BASIC = "Basic";
     public static final String EMPTY = "";
     private static final Logger LOGGER = getLogger(DefaultAuthentication.class);
+    private static final HashFunction CREDENTIAL_HASH = Hashing.sha256();
     private UserDirectory userDirectory;
+    /**
+     * Access tokens of successfully verified headers, keyed by the header's hash so that no plain credential is kept
+     * as a key
+     */
+    private final Cache<String, String> verifiedAccessTokens;
 
     /**
      * @param userDirectory an instance of userDirectory that help us to lookup the user's info
+     * @param cacheTtl      seconds a verified credential is remembered, no caching if 0
+     * @param cacheMaxSize  the maximum number of remembered credentials
      */
     @Inject
-    public DefaultAuthentication(final UserDirectory userDirectory) {
+    public DefaultAuthentication(final UserDirectory userDirectory,
+                                 final @Named("authentication.cache.ttl") Integer cacheTtl,
+                                 final @Named("authentication.cache.max.size") Integer cacheMaxSize) {
         this.userDirectory = userDirectory;
+        this.verifiedAccessTokens = CacheBuilder.newBuilder()
+                .expireAfterWrite(Math.max(cacheTtl, 0), SECONDS)
+                .maximumSize(cacheMaxSize)
+                .build();
     }
 
     /**
@@ -63,31 +86,66 @@ public class DefaultAuthentication implements Authentication {
     public LoginToken logIn(final String authHeader) {
         LOGGER.debug("Authentication header received as: {}", authHeader);
 
-        UserCredential credential = parseUsernamePassword(fromNullable(authHeader));
+        String accessToken = verify(authHeader);
 
-        if (isBasicAuthenicationValid(credential)) {
-            return withAccessToken(credential.toBase64Encode()).withTokenType(BASIC).build();
+        if (accessToken != null) {
+            return withAccessToken(accessToken).withTokenType(BASIC).build();
         } else {
             throw new AuthenticationException("Authentication login failed. Invalid Login Credential");
         }
     }
 
+    /**
+     * Verifies the credential of the header, answering from the cache of recently verified headers if possible.
+     * Only successful verifications are remembered.
+     *
+     * @param authHeader the authentication header
+     * @return the access token of the verified credential or null if it is not valid
+     */
+    private String verify(final String authHeader) {
+        String key = authHeader != null ? CREDENTIAL_HASH.hashString(authHeader, UTF_8).toString() : null;
+        String accessToken = key != null ? verifiedAccessTokens.getIfPresent(key) : null;
+
+        if (accessToken == null) {
+            UserCredential credential = parseUsernamePassword(fromNullable(authHeader));
+
+            if (isBasicAuthenicationValid(credential)) {
+                accessToken = credential.toBase64Encode();
+                verifiedAccessTokens.put(key, accessToken);
+            }
+        }
+
+        return accessToken;
+    }
+
     /**
      * @param credential the user's credential
      * @return true if user token is valid, false otherwise
      */
     private boolean isBasicAuthenicationValid(final UserCredential credential) {
-        // FIXME: this looks convoluted to me
         try {
             UserInfo userInfo = userDirectory.lookupUser(UserInfo.Username.valueOf(credential.username));
 
-            return userInfo.getPassword().equals(credential.password);
+            return userInfo.getPassword() != null && passwordsMatch(userInfo.getPassword(), credential.password);
         } catch (AuthenticationException ae) {
             LOGGER.error("Unable to lookup user", ae);
             return false;
         }
     }
 
+    /**
+     * Compares the digests of both passwords in constant time, so that neither the length nor the matching prefix
+     * of the stored password can be timed.
+     *
+     * @param expected the stored password
+     * @param actual   the presented password
+     * @return true if both passwords are equal
+     */
+    private static boolean passwordsMatch(final String expected, final String actual) {
+        return MessageDigest.isEqual(CREDENTIAL_HASH.hashString(expected, UTF_8).asBytes(),
+                CREDENTIAL_HASH.hashString(actual, UTF_8).asBytes());
+    }
+
     /**
      * Attempts to verify the user token retrieved via the {@link #logIn(String) logIn} method
      *
@@ -98,10 +156,10 @@ public class DefaultAuthentication implements Authentication {
     public LoginToken verifyToken(final String tokenHeader)  {
         LOGGER.debug("Authentication token received as: {}", tokenHeader);
 
-        UserCredential credential = parseUsernamePassword(fromNullable(tokenHeader));
+        String accessToken = verify(tokenHeader);
 
-        if (isBasicAuthenicationValid(credential)) {
-            return withAccessToken(credential.toBase64Encode()).withTokenType(BASIC).build();
+        if (accessToken != null) {
+            return withAccessToken(accessToken).withTokenType(BASIC).build();
         } else {
             throw new AuthenticationException("Authentication Token is not valid");
         }
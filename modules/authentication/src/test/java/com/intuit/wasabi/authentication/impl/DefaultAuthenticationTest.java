@@ -26,6 +26,7 @@ import com.intuit.wasabi.authentication.TestUtil;
 import com.intuit.wasabi.authenticationobjects.LoginToken;
 import com.intuit.wasabi.authenticationobjects.UserInfo;
 import com.intuit.wasabi.exceptions.AuthenticationException;
+import com.intuit.wasabi.userdirectory.UserDirectory;
 import com.intuit.wasabi.userdirectory.UserDirectoryModule;
 
 import org.junit.Test;
@@ -36,6 +37,11 @@ import static org.junit.Assert.assertThat;
 import org.apache.commons.codec.binary.Base64;
 import org.junit.Before;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
 /**
  * Unit test for Default Authenication Test
  */
@@ -146,4 +152,42 @@ public class DefaultAuthenticationTest {
                 )
         );
     }
+
+    @Test
+    public void testVerifiedCredentialIsCached() {
+        UserDirectory userDirectory = mock(UserDirectory.class);
+        UserInfo.Username username = UserInfo.Username.valueOf(WASABI_ADMIN);
+        when(userDirectory.lookupUser(username))
+                .thenReturn(UserInfo.from(username).withPassword(WASABI_ADMIN).build());
+        Authentication authentication = new DefaultAuthentication(userDirectory, 60, 10);
+        String header = DefaultAuthentication.BASIC + " " +
+                new String(Base64.encodeBase64(WASABI_ADMIN_WASABI_ADMIN.getBytes(TestUtil.CHARSET)));
+
+        LoginToken token = authentication.logIn(header);
+
+        assertThat(authentication.verifyToken(header), is(token));
+        verify(userDirectory, times(1)).lookupUser(username);
+    }
+
+    @Test
+    public void testInvalidCredentialIsNotCached() {
+        UserDirectory userDirectory = mock(UserDirectory.class);
+        UserInfo.Username username = UserInfo.Username.valueOf(WASABI_ADMIN);
+        when(userDirectory.lookupUser(username))
+                .thenReturn(UserInfo.from(username).withPassword("other").build());
+        Authentication authentication = new DefaultAuthentication(userDirectory, 60, 10);
+        String header = DefaultAuthentication.BASIC + " " +
+                new String(Base64.encodeBase64(WASABI_ADMIN_WASABI_ADMIN.getBytes(TestUtil.CHARSET)));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                authentication.verifyToken(header);
+                fail("Should throw exception");
+            } catch (AuthenticationException e) {
+                //ignore
+            }
+        }
+
+        verify(userDirectory, times(2)).lookupUser(username);
+    }
 }
@@ -122,4 +122,11 @@ public interface Authorization {
      * @return the complete {@link UserInfo}
      */
     UserInfo getUserInfo(UserInfo.Username userID);
+
+    /**
+     * Returns the size, hits, misses and evictions of the permission caches
+     *
+     * @return the metrics keyed by cache and metric name
+     */
+    Map<String, Long> getCacheMetrics();
 }
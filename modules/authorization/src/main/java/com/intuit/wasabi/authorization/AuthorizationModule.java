@@ -27,7 +27,9 @@ import java.util.Properties;
 import static com.google.inject.Scopes.SINGLETON;
 import static com.intuit.autumn.utils.PropertyFactory.create;
 import static com.intuit.autumn.utils.PropertyFactory.getProperty;
+import static com.google.inject.name.Names.named;
 import static java.lang.Class.forName;
+import static java.lang.Integer.parseInt;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -54,6 +56,11 @@ public class AuthorizationModule extends AbstractModule {
         String authorizationClassName = getProperty("authorization.class.name", properties,
                 "com.intuit.wasabi.authorization.impl.DefaultAuthorization");
 
+        bind(Integer.class).annotatedWith(named("authorization.cache.ttl"))
+                .toInstance(parseInt(getProperty("authorization.cache.ttl", properties, "60")));
+        bind(Integer.class).annotatedWith(named("authorization.cache.max.size"))
+                .toInstance(parseInt(getProperty("authorization.cache.max.size", properties, "10000")));
+
         try {
             @SuppressWarnings("unchecked")
             Class<Authorization> authorizationClass = (Class<Authorization>) forName(authorizationClassName);
@@ -16,11 +16,17 @@
 package com.intuit.wasabi.authorization.impl;
 
 import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.intuit.wasabi.authenticationobjects.UserInfo;
 import com.intuit.wasabi.authorization.Authorization;
 import com.intuit.wasabi.authorizationobjects.*;
 import com.intuit.wasabi.eventlog.EventLog;
+import com.intuit.wasabi.eventlog.EventLogListener;
 import com.intuit.wasabi.eventlog.events.AuthorizationChangeEvent;
+import com.intuit.wasabi.eventlog.events.EventLogEvent;
 import com.intuit.wasabi.exceptions.AuthenticationException;
 import com.intuit.wasabi.experiment.Experiments;
 import com.intuit.wasabi.experimentobjects.Application;
@@ -32,16 +38,27 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 
 import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import static com.intuit.wasabi.authorizationobjects.Permission.SUPERADMIN;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * The default authorization implementation for noop authentication
+ *
+ * The permissions of a user per application and the superadmin lookups are cached for
+ * <code>authorization.cache.ttl</code> seconds. The entries of a user are dropped when their roles are changed
+ * through this node; an {@link AuthorizationChangeEvent} drops all entries.
  */
 public class DefaultAuthorization implements Authorization {
 
@@ -58,15 +75,51 @@ public class DefaultAuthorization implements Authorization {
     private final AuthorizationRepository authorizationRepository;
     private final Experiments experiments;
     private final EventLog eventLog;
+    private final boolean cacheEnabled;
+    private final Cache<Map.Entry<UserInfo.Username, Application.Name>, Optional<UserPermissions>>
+            permissionsCache;
+    private final Cache<UserInfo.Username, Boolean> superAdminCache;
 
+    /**
+     * Constructor
+     *
+     * @param authorizationRepository the authorization repository
+     * @param experiments             the experiments
+     * @param eventLog                the event log
+     * @param cacheTtl                seconds permissions are cached, no caching if not positive
+     * @param cacheMaxSize            maximum number of cached permissions and of cached superadmin lookups
+     */
     @Inject
     public DefaultAuthorization(final AuthorizationRepository authorizationRepository, final Experiments experiments,
-                                final EventLog eventLog) {
+                                final EventLog eventLog,
+                                final @Named("authorization.cache.ttl") Integer cacheTtl,
+                                final @Named("authorization.cache.max.size") Integer cacheMaxSize) {
         super();
 
         this.authorizationRepository = authorizationRepository;
         this.experiments = experiments;
         this.eventLog = eventLog;
+        this.cacheEnabled = cacheTtl > 0;
+        this.permissionsCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(Math.max(cacheTtl, 0), SECONDS)
+                .maximumSize(cacheMaxSize)
+                .recordStats()
+                .build();
+        this.superAdminCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(Math.max(cacheTtl, 0), SECONDS)
+                .maximumSize(cacheMaxSize)
+                .recordStats()
+                .build();
+
+        if (cacheEnabled) {
+            eventLog.register(new EventLogListener() {
+                @Override
+                public void postEvent(EventLogEvent event) {
+                    // the event only names the affected user for display, so drop everything
+                    invalidateAll();
+                }
+            }, Collections.<Class<? extends EventLogEvent>>singletonList(AuthorizationChangeEvent.class));
+        }
     }
 
     @Override
@@ -85,13 +138,26 @@ public class DefaultAuthorization implements Authorization {
     }
 
     @Override
-    public UserPermissions getUserPermissions(UserInfo.Username userID, Application.Name applicationName) {
-        return authorizationRepository.getUserPermissions(userID, applicationName);
+    public UserPermissions getUserPermissions(final UserInfo.Username userID,
+                                              final Application.Name applicationName) {
+        if (!cacheEnabled || userID == null || applicationName == null) {
+            return authorizationRepository.getUserPermissions(userID, applicationName);
+        }
+
+        return getCached(permissionsCache, new SimpleImmutableEntry<>(userID, applicationName),
+                new Callable<Optional<UserPermissions>>() {
+                    @Override
+                    public Optional<UserPermissions> call() {
+                        return Optional.fromNullable(authorizationRepository.getUserPermissions(userID,
+                                applicationName));
+                    }
+                }).orNull();
     }
 
     @Override
     public void deleteUserRole(UserInfo.Username userID, Application.Name applicationName, UserInfo admin) {
         authorizationRepository.deleteUserRole(userID, applicationName);
+        invalidate(userID);
         UserInfo user = getUserInfo(userID);
         eventLog.postEvent(new AuthorizationChangeEvent(admin, applicationName, user, "", ""));
     }
@@ -137,6 +203,7 @@ public class DefaultAuthorization implements Authorization {
             try {
                 // set new permissions
                 authorizationRepository.setUserRole(userRole);
+                invalidate(userRole.getUserID());
                 status.put("roleAssignmentStatus", "SUCCESS");
 
                 // prepare event for log
@@ -162,12 +229,68 @@ public class DefaultAuthorization implements Authorization {
     }
 
     @Override
-    public void checkSuperAdmin(UserInfo.Username userID) {
-        if (authorizationRepository.checkSuperAdminPermissions(userID, null) == null) {
+    public void checkSuperAdmin(final UserInfo.Username userID) {
+        boolean superAdmin;
+        if (!cacheEnabled || userID == null) {
+            superAdmin = authorizationRepository.checkSuperAdminPermissions(userID, null) != null;
+        } else {
+            superAdmin = getCached(superAdminCache, userID, new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return authorizationRepository.checkSuperAdminPermissions(userID, null) != null;
+                }
+            });
+        }
+
+        if (!superAdmin) {
             throw new AuthenticationException("error, user " + userID + " is not a superadmin");
         }
     }
 
+    @Override
+    public Map<String, Long> getCacheMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        putMetrics("permissions", permissionsCache.stats(), permissionsCache.size(), metrics);
+        putMetrics("superadmin", superAdminCache.stats(), superAdminCache.size(), metrics);
+        return metrics;
+    }
+
+    private void putMetrics(String name, CacheStats stats, long size, Map<String, Long> metrics) {
+        metrics.put(name + ".size", size);
+        metrics.put(name + ".hits", stats.hitCount());
+        metrics.put(name + ".misses", stats.missCount());
+        metrics.put(name + ".evictions", stats.evictionCount());
+    }
+
+    private <K, V> V getCached(Cache<K, V> cache, K key, Callable<V> loader) {
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            // the loaders only throw unchecked exceptions, which are passed on as they are
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new AuthenticationException("error checking the permissions", e.getCause());
+        }
+    }
+
+    private void invalidate(UserInfo.Username userID) {
+        if (userID != null) {
+            // role changes are rare, so scanning the cached keys is cheap enough
+            for (Map.Entry<UserInfo.Username, Application.Name> key : permissionsCache.asMap().keySet()) {
+                if (userID.equals(key.getKey())) {
+                    permissionsCache.invalidate(key);
+                }
+            }
+            superAdminCache.invalidate(userID);
+        }
+    }
+
+    private void invalidateAll() {
+        permissionsCache.invalidateAll();
+        superAdminCache.invalidateAll();
+    }
+
     @Override
     public UserInfo getUserInfo(UserInfo.Username userID) {
         UserInfo result;
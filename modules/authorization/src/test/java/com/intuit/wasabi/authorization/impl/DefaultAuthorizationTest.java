@@ -74,7 +74,7 @@ public class DefaultAuthorizationTest {
 
     @Before
     public void setUp() throws Exception {
-        defaultAuthorization = new DefaultAuthorization(authorizationRepository, experiments, eventLog);
+        defaultAuthorization = new DefaultAuthorization(authorizationRepository, experiments, eventLog, 0, 100);
     }
 
     @Test
@@ -136,6 +136,50 @@ public class DefaultAuthorizationTest {
         defaultAuthorization.checkUserPermissions(USER, TESTAPP, Permission.ADMIN);
     }
 
+    @Test
+    public void testCheckUserPermissionsCachesPermissions() throws Exception {
+        DefaultAuthorization cachingAuthorization =
+                new DefaultAuthorization(authorizationRepository, experiments, eventLog, 60, 100);
+        when(authorizationRepository.getUserPermissions(USER, TESTAPP)).thenReturn(UserPermissions.newInstance
+                (TESTAPP, Role.ADMIN.getRolePermissions()).build());
+
+        cachingAuthorization.checkUserPermissions(USER, TESTAPP, Permission.ADMIN);
+        cachingAuthorization.checkUserPermissions(USER, TESTAPP, Permission.READ);
+
+        verify(authorizationRepository, times(1)).getUserPermissions(USER, TESTAPP);
+        Map<String, Long> metrics = cachingAuthorization.getCacheMetrics();
+        assertThat(metrics.get("permissions.hits"), is(1L));
+        assertThat(metrics.get("permissions.misses"), is(1L));
+    }
+
+    @Test
+    public void testDeleteUserRoleInvalidatesCachedPermissions() throws Exception {
+        DefaultAuthorization cachingAuthorization =
+                new DefaultAuthorization(authorizationRepository, experiments, eventLog, 60, 100);
+        when(authorizationRepository.getUserPermissions(USER, TESTAPP)).thenReturn(UserPermissions.newInstance
+                (TESTAPP, Role.ADMIN.getRolePermissions()).build());
+        when(authorizationRepository.getUserInfo(USER)).thenReturn(EventLog.SYSTEM_USER);
+        cachingAuthorization.checkUserPermissions(USER, TESTAPP, Permission.ADMIN);
+
+        cachingAuthorization.deleteUserRole(USER, TESTAPP, EventLog.SYSTEM_USER);
+        when(authorizationRepository.getUserPermissions(USER, TESTAPP)).thenReturn(null);
+
+        thrown.expect(AuthenticationException.class);
+        cachingAuthorization.checkUserPermissions(USER, TESTAPP, Permission.ADMIN);
+    }
+
+    @Test
+    public void testCheckSuperAdminCachesLookup() throws Exception {
+        DefaultAuthorization cachingAuthorization =
+                new DefaultAuthorization(authorizationRepository, experiments, eventLog, 60, 100);
+        when(authorizationRepository.checkSuperAdminPermissions(USER, null)).thenReturn(Mockito.mock(UserPermissions.class));
+
+        cachingAuthorization.checkSuperAdmin(USER);
+        cachingAuthorization.checkSuperAdmin(USER);
+
+        verify(authorizationRepository, times(1)).checkSuperAdminPermissions(USER, null);
+    }
+
     @Test
     public void testGetUserHeaderNull(){
         thrown.expect(AuthenticationException.class);
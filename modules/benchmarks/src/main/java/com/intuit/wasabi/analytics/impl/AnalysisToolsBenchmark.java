@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.analytics.impl;
+
+import com.intuit.wasabi.analytics.AnalysisTools;
+import com.intuit.wasabi.analyticsobjects.Event;
+import com.intuit.wasabi.analyticsobjects.Parameters;
+import com.intuit.wasabi.analyticsobjects.counts.ActionCounts;
+import com.intuit.wasabi.analyticsobjects.counts.Counts;
+import com.intuit.wasabi.analyticsobjects.metrics.BinomialMetrics.BinomialMetric;
+import com.intuit.wasabi.analyticsobjects.metrics.NormalApproxSymMetric;
+import com.intuit.wasabi.analyticsobjects.statistics.BucketComparison;
+import com.intuit.wasabi.analyticsobjects.statistics.BucketStatistics;
+import com.intuit.wasabi.analyticsobjects.statistics.ExperimentStatistics;
+import com.intuit.wasabi.experimentobjects.Bucket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the bucket comparisons and the progress of an experiment as calculated for every analytics request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AnalysisToolsBenchmark {
+
+    private static final Event.Name[] ACTIONS = {Event.Name.valueOf("click"), Event.Name.valueOf("purchase"),
+            Event.Name.valueOf("comment")};
+
+    @Param({"2", "4", "10"})
+    public int bucketCount;
+
+    private final AnalysisTools analysisTools = new AnalysisToolsImpl();
+    private final BinomialMetric metric = new NormalApproxSymMetric(0.95, 1.0);
+    private Map<Bucket.Label, BucketStatistics> buckets;
+    private ExperimentStatistics experiment;
+
+    @Setup
+    public void setUp() {
+        buckets = new HashMap<>();
+        for (int i = 0; i < bucketCount; i++) {
+            Map<Event.Name, ActionCounts> actions = new HashMap<>();
+            for (int j = 0; j < ACTIONS.length; j++) {
+                actions.put(ACTIONS[j], new ActionCounts.Builder().withActionName(ACTIONS[j])
+                        .withEventCount(300 + 10 * i - 50 * j).withUniqueUserCount(200 + 10 * i - 50 * j).build());
+            }
+            Bucket.Label label = Bucket.Label.valueOf("bucket" + i);
+            BucketStatistics bucket = new BucketStatistics.Builder()
+                    .withLabel(label)
+                    .withImpressionCounts(new Counts.Builder().withEventCount(12000 + 100 * i)
+                            .withUniqueUserCount(10000 + 100 * i).build())
+                    .withJointActionCounts(new Counts.Builder().withEventCount(450 + 10 * i)
+                            .withUniqueUserCount(300 + 10 * i).build())
+                    .withActionCounts(actions)
+                    .withBucketComparisons(new HashMap<Bucket.Label, BucketComparison>())
+                    .build();
+            analysisTools.generateRate(bucket, metric);
+            buckets.put(label, bucket);
+        }
+        analysisTools.generateBucketComparison(buckets, metric, 0.05, Parameters.Mode.PRODUCTION);
+
+        experiment = new ExperimentStatistics.Builder().withBuckets(buckets).build();
+    }
+
+    @Benchmark
+    public Map<Bucket.Label, BucketStatistics> generateBucketComparison() {
+        analysisTools.generateBucketComparison(buckets, metric, 0.05, Parameters.Mode.PRODUCTION);
+        return buckets;
+    }
+
+    @Benchmark
+    public ExperimentStatistics generateProgress() {
+        analysisTools.generateProgress(experiment);
+        return experiment;
+    }
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.assignment.impl;
+
+import com.intuit.wasabi.assignment.AssignmentIngestionExecutor;
+import com.intuit.wasabi.assignmentobjects.RuleCache;
+import com.intuit.wasabi.assignmentobjects.SegmentationProfile;
+import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.Context;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.sun.jersey.core.header.InBoundHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the bucket selection and the segmentation rule evaluation of {@link AssignmentsImpl}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AssignmentsBenchmark {
+
+    private static final String RULE = "(salary < 10000) && (state = 'VA') && (User-Agent = \"benchmark\")";
+
+    @Param({"2", "10"})
+    public int bucketCount;
+
+    private final Context context = Context.valueOf("PROD");
+    private AssignmentsImpl assignments;
+    private List<Bucket> buckets;
+    private Experiment cachedRuleExperiment;
+    private Experiment[] changedRuleExperiments;
+    private SegmentationProfile segmentationProfile;
+    private HttpHeaders headers;
+    private Set<String> ruleAttributeNames;
+    private int nextRule;
+
+    @Setup
+    public void setUp() throws Exception {
+        // the benchmarked methods only use the rule cache, so no repositories are given
+        assignments = new AssignmentsImpl(new HashMap<String, AssignmentIngestionExecutor>(), null, null, null,
+                new RuleCache(), null, null, null, null, null, null, null, null);
+
+        Experiment.ID experimentID = Experiment.ID.newInstance();
+        buckets = new ArrayList<>();
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(Bucket.newInstance(experimentID, Bucket.Label.valueOf("bucket" + i))
+                    .withAllocationPercent(1.0 / bucketCount).withState(Bucket.State.OPEN).build());
+        }
+
+        cachedRuleExperiment = Experiment.withID(experimentID).withRule(RULE).build();
+        // alternating rule texts of the same experiment are parsed on every evaluation
+        Experiment.ID changedRuleID = Experiment.ID.newInstance();
+        changedRuleExperiments = new Experiment[]{
+                Experiment.withID(changedRuleID).withRule(RULE).build(),
+                Experiment.withID(changedRuleID).withRule(RULE + " ").build()};
+
+        Map<String, Object> profile = new HashMap<>();
+        profile.put("salary", 5000);
+        profile.put("state", "VA");
+        profile.put("customerType", "retail");
+        segmentationProfile = SegmentationProfile.from(profile).build();
+
+        InBoundHeaders requestHeaders = new InBoundHeaders();
+        requestHeaders.add("Accept", "application/json");
+        requestHeaders.add("Accept-Encoding", "gzip, deflate");
+        requestHeaders.add("Accept-Language", "en-US,en;q=0.8");
+        requestHeaders.add("Authorization", "Basic YWRtaW46YWRtaW4=");
+        requestHeaders.add("Connection", "keep-alive");
+        requestHeaders.add("Cookie", "session=0123456789abcdef");
+        requestHeaders.add("Host", "localhost:8080");
+        requestHeaders.add("User-Agent", "benchmark");
+        requestHeaders.add("X-Forwarded-For", "10.0.0.1");
+        requestHeaders.add("X-Request-Id", "0123456789abcdef");
+        headers = headers(requestHeaders);
+
+        ruleAttributeNames = new RuleCache().getAttributeNames(experimentID, RULE);
+        assignments.doesProfileMatch(cachedRuleExperiment, segmentationProfile, headers, context);
+    }
+
+    @Benchmark
+    public Bucket selectBucket() {
+        return assignments.selectBucket(buckets);
+    }
+
+    @Benchmark
+    public boolean doesProfileMatchCachedRule() {
+        return assignments.doesProfileMatch(cachedRuleExperiment, segmentationProfile, headers, context);
+    }
+
+    @Benchmark
+    public boolean doesProfileMatchChangedRule() {
+        nextRule = 1 - nextRule;
+        return assignments.doesProfileMatch(changedRuleExperiments[nextRule], segmentationProfile, headers, context);
+    }
+
+    /**
+     * Replaces the former merge of headers and context into the profile.
+     */
+    @Benchmark
+    public Map<String, Object> selectProfileAttributes() {
+        return new ProfileAttributes(segmentationProfile, context, headers).select(ruleAttributeNames);
+    }
+
+    private static HttpHeaders headers(final MultivaluedMap<String, String> requestHeaders) {
+        return (HttpHeaders) Proxy.newProxyInstance(HttpHeaders.class.getClassLoader(),
+                new Class<?>[]{HttpHeaders.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                            case "getRequestHeaders":
+                                return requestHeaders;
+                            case "getRequestHeader":
+                                return requestHeaders.get(args[0]);
+                            default:
+                                return null;
+                        }
+                    }
+                });
+    }
+}
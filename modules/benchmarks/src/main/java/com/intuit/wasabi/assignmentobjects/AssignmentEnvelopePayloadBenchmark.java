@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.assignmentobjects;
+
+import com.intuit.wasabi.experimentobjects.Application;
+import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.Context;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.experimentobjects.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the serialization of the assignment envelopes which are sent to the ingestion executors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AssignmentEnvelopePayloadBenchmark {
+
+    private AssignmentEnvelopePayload payload;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> profile = new HashMap<>();
+        profile.put("salary", 5000);
+        profile.put("state", "VA");
+        profile.put("customerType", "retail");
+
+        payload = new AssignmentEnvelopePayload(User.ID.valueOf("user-0123456789"), Context.valueOf("PROD"),
+                true, false, false, SegmentationProfile.from(profile).build(), Assignment.Status.NEW_ASSIGNMENT,
+                Bucket.Label.valueOf("control"), Page.Name.valueOf("checkout"),
+                Application.Name.valueOf("benchmark_app"), Experiment.Label.valueOf("benchmark_experiment"),
+                Experiment.ID.newInstance(), new Date(), null);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return payload.toJson();
+    }
+}
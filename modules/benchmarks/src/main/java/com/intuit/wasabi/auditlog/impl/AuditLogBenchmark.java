@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.auditlog.impl;
+
+import com.intuit.wasabi.auditlogobjects.AuditLogAction;
+import com.intuit.wasabi.auditlogobjects.AuditLogEntry;
+import com.intuit.wasabi.authenticationobjects.UserInfo;
+import com.intuit.wasabi.experimentobjects.Application;
+import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.repository.AuditLogRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of filtering and sorting audit log entries, with the entries served from memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AuditLogBenchmark {
+
+    private static final String FILTER_MASK = "username=user1,experiment=experiment,bucket=-bucket3";
+    private static final String SORT_ORDER = "-username,experiment";
+
+    @Param({"1000", "10000"})
+    public int entryCount;
+
+    private List<AuditLogEntry> entries;
+    private AuditLogImpl auditLog;
+
+    @Setup
+    public void setUp() {
+        entries = new ArrayList<>(entryCount);
+        AuditLogAction[] actions = AuditLogAction.values();
+        for (int i = 0; i < entryCount; i++) {
+            Calendar time = Calendar.getInstance();
+            time.add(Calendar.MINUTE, -i);
+            UserInfo user = UserInfo.newInstance(UserInfo.Username.valueOf("user" + i % 20))
+                    .withFirstName("First" + i % 20).withLastName("Last" + i % 20)
+                    .withEmail("user" + i % 20 + "@example.com").build();
+            entries.add(new AuditLogEntry(time, user, actions[i % actions.length],
+                    Application.Name.valueOf("app" + i % 5), Experiment.Label.valueOf("experiment" + i % 50),
+                    Experiment.ID.newInstance(), Bucket.Label.valueOf("bucket" + i % 4),
+                    "allocation", String.valueOf(i % 10 / 10.0), String.valueOf((i + 1) % 10 / 10.0)));
+        }
+        auditLog = new AuditLogImpl(repository(entries), entryCount);
+    }
+
+    @Benchmark
+    public List<AuditLogEntry> filter() {
+        // filter and sort modify the list in place
+        return auditLog.filter(new ArrayList<>(entries), FILTER_MASK);
+    }
+
+    @Benchmark
+    public List<AuditLogEntry> sort() {
+        return auditLog.sort(new ArrayList<>(entries), SORT_ORDER);
+    }
+
+    @Benchmark
+    public List<AuditLogEntry> getAuditLogs() {
+        return auditLog.getAuditLogs(FILTER_MASK, SORT_ORDER);
+    }
+
+    private static AuditLogRepository repository(final List<AuditLogEntry> entries) {
+        return (AuditLogRepository) Proxy.newProxyInstance(AuditLogRepository.class.getClassLoader(),
+                new Class<?>[]{AuditLogRepository.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getCompleteAuditLogEntryList".equals(method.getName())) {
+                            return new ArrayList<>(entries);
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
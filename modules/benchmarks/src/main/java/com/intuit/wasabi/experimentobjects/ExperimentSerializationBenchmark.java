@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.experimentobjects;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the JSON serialization of experiment and bucket lists, with the date handling of the API's mapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExperimentSerializationBenchmark {
+
+    @Param({"10", "100"})
+    public int size;
+
+    private ObjectMapper mapper;
+    private ExperimentList experiments;
+    private BucketList buckets;
+
+    @Setup
+    public void setUp() {
+        mapper = new ObjectMapper();
+        mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+        SimpleDateFormat iso8601Formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXX");
+        iso8601Formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+        mapper.setDateFormat(iso8601Formatter);
+
+        Date now = new Date();
+        Date end = new Date(now.getTime() + TimeUnit.DAYS.toMillis(30));
+        Experiment.ID experimentID = Experiment.ID.newInstance();
+
+        experiments = new ExperimentList(size);
+        buckets = new BucketList(size);
+        for (int i = 0; i < size; i++) {
+            experiments.addExperiment(Experiment.withID(Experiment.ID.newInstance())
+                    .withLabel(Experiment.Label.valueOf("experiment" + i))
+                    .withApplicationName(Application.Name.valueOf("app" + i % 5))
+                    .withState(Experiment.State.RUNNING)
+                    .withSamplingPercent(0.5)
+                    .withStartTime(now).withEndTime(end)
+                    .withCreationTime(now).withModificationTime(now)
+                    .withDescription("benchmark experiment " + i)
+                    .withRule("(salary < 10000) && (state = 'VA')")
+                    .build());
+            buckets.addBucket(Bucket.newInstance(experimentID, Bucket.Label.valueOf("bucket" + i))
+                    .withAllocationPercent(1.0 / size)
+                    .withControl(i == 0)
+                    .withDescription("benchmark bucket " + i)
+                    .withPayload("{\"color\":\"blue\"}")
+                    .withState(Bucket.State.OPEN)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public String serializeExperimentList() throws JsonProcessingException {
+        return mapper.writeValueAsString(experiments);
+    }
+
+    @Benchmark
+    public String serializeBucketList() throws JsonProcessingException {
+        return mapper.writeValueAsString(buckets);
+    }
+}
@@ -15,12 +15,14 @@
  *******************************************************************************/
 package com.intuit.wasabi.events;
 
+import com.intuit.wasabi.analyticsobjects.Event;
 import com.intuit.wasabi.analyticsobjects.EventList;
 import com.intuit.wasabi.assignmentobjects.User;
 import com.intuit.wasabi.experimentobjects.Application.Name;
 import com.intuit.wasabi.experimentobjects.Context;
 import com.intuit.wasabi.experimentobjects.Experiment;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -49,6 +51,25 @@ public interface Events {
     void recordEvents(Name appName, Experiment.Label experimentLabel, User.ID userID, EventList events,
                       Set<Context> contextSet);
 
+    /**
+     * Records the events of several users for an experiment. The assignments of each user are read once per
+     * context.
+     *
+     * @param appName         Application name
+     * @param experimentLabel Experiment label
+     * @param userEvents      Events per user
+     */
+    void recordUsersEvents(Name appName, Experiment.Label experimentLabel, Map<User.ID, List<Event>> userEvents);
+
+    /**
+     * Records the events of several users for several experiments of an application. The assignments of each user
+     * are read once per context for all experiments.
+     *
+     * @param appName          Application name
+     * @param experimentEvents Events per experiment and user
+     */
+    void recordExperimentsEvents(Name appName, Map<Experiment.Label, Map<User.ID, List<Event>>> experimentEvents);
+
     /**
      * Shutdown the queue, draining the remainder of the queue into the
      * database before returning
@@ -39,6 +39,7 @@ import static com.intuit.autumn.utils.PropertyFactory.create;
 import static com.intuit.autumn.utils.PropertyFactory.getProperty;
 import static java.lang.Class.forName;
 import static java.lang.Integer.parseInt;
+import static java.lang.Long.parseLong;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -60,6 +61,20 @@ public class EventsModule extends AbstractModule {
 
         bind(Integer.class).annotatedWith(named("executor.threadpool.size"))
                 .toInstance(parseInt(getProperty("executor.threadpool.size", properties, "0")));
+        bind(Integer.class).annotatedWith(named("executor.queue.capacity"))
+                .toInstance(parseInt(getProperty("executor.queue.capacity", properties, "10000")));
+        bind(String.class).annotatedWith(named("executor.overflow.policy"))
+                .toInstance(getProperty("executor.overflow.policy", properties, "BLOCK"));
+        bind(Long.class).annotatedWith(named("executor.block.timeout"))
+                .toInstance(parseLong(getProperty("executor.block.timeout", properties, "1000")));
+        bind(String.class).annotatedWith(named("executor.spill.directory"))
+                .toInstance(getProperty("executor.spill.directory", properties));
+        bind(Integer.class).annotatedWith(named("executor.batch.size"))
+                .toInstance(parseInt(getProperty("executor.batch.size", properties, "500")));
+        bind(Long.class).annotatedWith(named("executor.batch.linger"))
+                .toInstance(parseLong(getProperty("executor.batch.linger", properties, "10")));
+        bind(Integer.class).annotatedWith(named("executor.batch.max.retries"))
+                .toInstance(parseInt(getProperty("executor.batch.max.retries", properties, "3")));
         bind(Events.class).to(EventsImpl.class).in(SINGLETON);
         bind(EventsExport.class).to(EventsExportImpl.class).asEagerSingleton();
 
@@ -0,0 +1,354 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.events.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.intuit.wasabi.analyticsobjects.Event;
+import com.intuit.wasabi.assignmentobjects.Assignment;
+import com.intuit.wasabi.database.TransactionFactory;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.util.concurrent.TaskCodec;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Writes events to the events database in batches. The thread running an {@link EventsEnvelope} takes further
+ * envelopes from the queue of the mysql executor, waiting at most <code>lingerMillis</code> for a batch to fill
+ * up, and writes all impressions and all actions of the batch with one multi-row insert each.
+ *
+ * The event tables have no foreign keys into <code>bucket</code>, so the bucket of each event is checked against
+ * the buckets of its experiment, which are cached for <code>BUCKET_CACHE_SECONDS</code>. A bucket missing from the
+ * cached ones may have been added to the running experiment since, so the buckets are read again, at most once per
+ * <code>bucketReloadMillis</code> per experiment. Events of buckets which still do not exist are appended to the
+ * dead letter file.
+ *
+ * Failed batches are retried. If a batch still fails, its events are written one by one, and events which fail
+ * on their own as well are appended to the dead letter file.
+ */
+class EventsBatchWriter {
+
+    private static final Logger LOGGER = getLogger(EventsBatchWriter.class);
+    private static final long RETRY_DELAY_MILLIS = 100;
+    private static final long BUCKET_CACHE_SECONDS = 60;
+    private static final long BUCKET_RELOAD_MILLIS = 1000;
+    static final String IMPRESSION_INSERT = "INSERT INTO event_impression " +
+            "(user_id, experiment_id, bucket_label, context, timestamp, payload) VALUES ";
+    static final String IMPRESSION_VALUES = "(?, ?, ?, ?, ?, ?)";
+    static final String ACTION_INSERT = "INSERT INTO event_action " +
+            "(user_id, experiment_id, bucket_label, action, context, timestamp, payload) VALUES ";
+    static final String ACTION_VALUES = "(?, ?, ?, ?, ?, ?, ?)";
+    private final TransactionFactory transactionFactory;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final int maxRetries;
+    private final File deadLetterFile;
+    private final TaskCodec codec;
+    private final long bucketReloadMillis;
+    private final Object deadLetterLock = new Object();
+    private final Cache<Experiment.ID, BucketLabels> bucketLabels =
+            CacheBuilder.newBuilder().expireAfterWrite(BUCKET_CACHE_SECONDS, TimeUnit.SECONDS).build();
+    private volatile BlockingQueue<Runnable> queue;
+
+    /**
+     * Constructor
+     *
+     * @param transactionFactory factory of the transactions writing the batches
+     * @param batchSize          maximum number of events per batch
+     * @param lingerMillis       maximum time to wait for a batch to fill up
+     * @param maxRetries         number of retries of a failed batch
+     * @param deadLetterFile     file the events which cannot be written are appended to, one JSON record per line
+     */
+    EventsBatchWriter(TransactionFactory transactionFactory, int batchSize, long lingerMillis, int maxRetries,
+                      File deadLetterFile) {
+        this(transactionFactory, batchSize, lingerMillis, maxRetries, deadLetterFile, BUCKET_RELOAD_MILLIS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param transactionFactory factory of the transactions writing the batches
+     * @param batchSize          maximum number of events per batch
+     * @param lingerMillis       maximum time to wait for a batch to fill up
+     * @param maxRetries         number of retries of a failed batch
+     * @param deadLetterFile     file the events which cannot be written are appended to, one JSON record per line
+     * @param bucketReloadMillis minimum time between two reads of the buckets of an experiment with unknown buckets
+     */
+    EventsBatchWriter(TransactionFactory transactionFactory, int batchSize, long lingerMillis, int maxRetries,
+                      File deadLetterFile, long bucketReloadMillis) {
+        super();
+
+        this.transactionFactory = transactionFactory;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerMillis = lingerMillis;
+        this.maxRetries = maxRetries;
+        this.deadLetterFile = deadLetterFile;
+        this.codec = new EventsEnvelopeCodec(transactionFactory);
+        this.bucketReloadMillis = bucketReloadMillis;
+    }
+
+    /**
+     * Sets the queue the further envelopes of a batch are taken from.
+     *
+     * @param queue the queue of the mysql executor
+     */
+    void attach(BlockingQueue<Runnable> queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Writes the given envelope together with the envelopes waiting in the queue.
+     *
+     * @param first the envelope being run
+     */
+    void write(EventsEnvelope first) {
+        List<EventsEnvelope> batch = new ArrayList<>();
+        batch.add(first);
+        collect(batch);
+
+        List<EventsEnvelope> impressions = new ArrayList<>();
+        List<EventsEnvelope> actions = new ArrayList<>();
+        List<EventsEnvelope> unknownBuckets = new ArrayList<>();
+        for (EventsEnvelope envelope : batch) {
+            if (!isRecordable(envelope)) {
+                continue;
+            }
+            if (!hasBucket(envelope.getAssignment())) {
+                LOGGER.warn("Bucket of event {} of assignment {} does not exist", envelope.getEvent(),
+                        envelope.getAssignment());
+                unknownBuckets.add(envelope);
+                continue;
+            }
+            if (Event.Type.IMPRESSION.equals(envelope.getEvent().getType())) {
+                impressions.add(envelope);
+            } else {
+                actions.add(envelope);
+            }
+        }
+
+        writeWithRetries(impressions, true);
+        writeWithRetries(actions, false);
+        deadLetter(unknownBuckets);
+    }
+
+    /**
+     * Checks that the bucket of an assignment exists, in place of a foreign key of the event tables.
+     *
+     * @param assignment the assignment of an event
+     * @return false if the bucket does not exist, true if it exists or the buckets cannot be read
+     */
+    private boolean hasBucket(Assignment assignment) {
+        final Experiment.ID experimentID = assignment.getExperimentID();
+        String label = assignment.getBucketLabel().toString();
+
+        try {
+            BucketLabels cached = bucketLabels.get(experimentID, new Callable<BucketLabels>() {
+                @Override
+                public BucketLabels call() {
+                    return readBucketLabels(experimentID);
+                }
+            });
+            if (cached.labels.contains(label)) {
+                return true;
+            }
+            // the bucket may have been added since, but the buckets are not read for every event of a missing one
+            synchronized (cached) {
+                BucketLabels current = bucketLabels.getIfPresent(experimentID);
+                if (current != null && current != cached) {
+                    return current.labels.contains(label);
+                }
+                if (System.currentTimeMillis() - cached.readMillis < bucketReloadMillis) {
+                    return false;
+                }
+                BucketLabels reloaded = readBucketLabels(experimentID);
+                bucketLabels.put(experimentID, reloaded);
+                return reloaded.labels.contains(label);
+            }
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            LOGGER.warn("Unable to read the buckets of experiment " + experimentID, e.getCause());
+            return true;
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to read the buckets of experiment " + experimentID, e);
+            return true;
+        }
+    }
+
+    private BucketLabels readBucketLabels(Experiment.ID experimentID) {
+        List<Map> bucketRows = transactionFactory.newTransaction()
+                .select("select label from bucket where experiment_id = ?", experimentID);
+        Set<String> labels = new HashSet<>();
+        for (Map bucketRow : bucketRows) {
+            labels.add((String) bucketRow.get("label"));
+        }
+        return new BucketLabels(labels, System.currentTimeMillis());
+    }
+
+    private void collect(List<EventsEnvelope> batch) {
+        BlockingQueue<Runnable> source = queue;
+        if (source == null) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        try {
+            while (batch.size() < batchSize) {
+                long remaining = deadline - System.nanoTime();
+                Runnable task = remaining > 0 ? source.poll(remaining, TimeUnit.NANOSECONDS) : source.poll();
+                if (task == null) {
+                    return;
+                }
+                if (task instanceof EventsEnvelope) {
+                    batch.add((EventsEnvelope) task);
+                } else {
+                    // not an event, run it on its own
+                    task.run();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeWithRetries(List<EventsEnvelope> envelopes, boolean impressions) {
+        if (envelopes.isEmpty()) {
+            return;
+        }
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            if (attempt > 0 && !sleep(RETRY_DELAY_MILLIS * attempt)) {
+                break;
+            }
+            try {
+                insert(envelopes, impressions);
+                return;
+            } catch (Exception e) {
+                LOGGER.warn("Attempt " + (attempt + 1) + " to write a batch of " + envelopes.size()
+                        + (impressions ? " impressions" : " actions") + " failed", e);
+            }
+        }
+
+        // write the events of the failed batch one by one, so that a single bad event does not lose the batch
+        List<EventsEnvelope> failed = new ArrayList<>();
+        for (EventsEnvelope envelope : envelopes) {
+            try {
+                insert(Collections.singletonList(envelope), impressions);
+            } catch (Exception e) {
+                LOGGER.warn("Unable to record event " + envelope.getEvent() + " of assignment "
+                        + envelope.getAssignment(), e);
+                failed.add(envelope);
+            }
+        }
+        deadLetter(failed);
+    }
+
+    private void insert(List<EventsEnvelope> envelopes, boolean impressions) throws Exception {
+        StringBuilder query = new StringBuilder(impressions ? IMPRESSION_INSERT : ACTION_INSERT);
+        List<Object> params = new ArrayList<>(envelopes.size() * 7);
+        for (int i = 0; i < envelopes.size(); i++) {
+            if (i > 0) {
+                query.append(", ");
+            }
+            query.append(impressions ? IMPRESSION_VALUES : ACTION_VALUES);
+            addRow(params, envelopes.get(i), impressions);
+        }
+        transactionFactory.newTransaction().insert(query.toString(), params.toArray());
+    }
+
+    private void addRow(List<Object> params, EventsEnvelope envelope, boolean impression) {
+        Assignment assignment = envelope.getAssignment();
+        Event event = envelope.getEvent();
+
+        params.add(assignment.getUserID().toString());
+        params.add(assignment.getExperimentID());
+        params.add(assignment.getBucketLabel());
+        if (!impression) {
+            params.add(event.getName().toString());
+        }
+        params.add(event.getContext() != null ? event.getContext().getContext() : "PROD");
+        params.add(event.getTimestamp());
+        params.add(event.getPayload() != null ? event.getPayload().toString() : null);
+    }
+
+    private void deadLetter(List<EventsEnvelope> envelopes) {
+        if (envelopes.isEmpty()) {
+            return;
+        }
+        List<String> records = new ArrayList<>(envelopes.size());
+        for (EventsEnvelope envelope : envelopes) {
+            String record = codec.encode(envelope);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        synchronized (deadLetterLock) {
+            try {
+                Files.write(deadLetterFile.toPath(), records, StandardCharsets.UTF_8, CREATE, APPEND);
+                LOGGER.error("Wrote {} events which could not be recorded to {}", records.size(), deadLetterFile);
+            } catch (IOException e) {
+                LOGGER.error("Unable to write " + records.size() + " events to " + deadLetterFile
+                        + ", the events are lost: " + records, e);
+            }
+        }
+    }
+
+    private static boolean isRecordable(EventsEnvelope envelope) {
+        Assignment assignment = envelope.getAssignment();
+        return assignment != null && assignment.getUserID() != null && assignment.getExperimentID() != null
+                && assignment.getBucketLabel() != null && envelope.getEvent() != null
+                && envelope.getEvent().getName() != null;
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * The bucket labels of an experiment and when they were read.
+     */
+    private static final class BucketLabels {
+
+        private final Set<String> labels;
+        private final long readMillis;
+
+        BucketLabels(Set<String> labels, long readMillis) {
+            this.labels = labels;
+            this.readMillis = readMillis;
+        }
+    }
+}
@@ -30,15 +30,47 @@ class EventsEnvelope implements Runnable {
     private final Transaction transaction;
     private Assignment assignment;
     private Event event;
+    private final EventsBatchWriter batchWriter;
 
+    /**
+     * @param assignment  the assignment the event belongs to
+     * @param event       the event
+     * @param transaction transaction to record the event on its own
+     */
     public EventsEnvelope(final Assignment assignment, final Event event, final Transaction transaction) {
         this.assignment = assignment;
         this.event = event;
         this.transaction = transaction;
+        this.batchWriter = null;
+    }
+
+    /**
+     * @param assignment  the assignment the event belongs to
+     * @param event       the event
+     * @param batchWriter writer recording the event together with the events queued behind it, with its own
+     *                    transaction
+     */
+    public EventsEnvelope(final Assignment assignment, final Event event, final EventsBatchWriter batchWriter) {
+        this.assignment = assignment;
+        this.event = event;
+        this.transaction = null;
+        this.batchWriter = batchWriter;
+    }
+
+    Assignment getAssignment() {
+        return assignment;
+    }
+
+    Event getEvent() {
+        return event;
     }
 
     @Override
     public void run() {
+        if (batchWriter != null) {
+            batchWriter.write(this);
+            return;
+        }
         try {
             recordEvent(assignment, event);
         } catch (Exception e) {
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.events.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intuit.wasabi.analyticsobjects.Event;
+import com.intuit.wasabi.assignmentobjects.Assignment;
+import com.intuit.wasabi.assignmentobjects.User;
+import com.intuit.wasabi.database.TransactionFactory;
+import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.Context;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.util.concurrent.TaskCodec;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes {@link EventsEnvelope}s as single line JSON records, so that events which do not fit into the mysql
+ * queue can be spilled to disk and written later. Only the fields the envelope writes to the database are kept.
+ */
+class EventsEnvelopeCodec implements TaskCodec {
+
+    private static final String USER_ID = "userID";
+    private static final String EXPERIMENT_ID = "experimentID";
+    private static final String BUCKET_LABEL = "bucketLabel";
+    private static final String NAME = "name";
+    private static final String CONTEXT = "context";
+    private static final String TIMESTAMP = "timestamp";
+    private static final String PAYLOAD = "payload";
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final TransactionFactory transactionFactory;
+    private final EventsBatchWriter batchWriter;
+
+    EventsEnvelopeCodec(final TransactionFactory transactionFactory) {
+        this(transactionFactory, null);
+    }
+
+    /**
+     * @param transactionFactory factory of the transactions of the decoded envelopes which are recorded on their own
+     * @param batchWriter        batch writer of the decoded envelopes, <code>null</code> to record them on their own
+     */
+    EventsEnvelopeCodec(final TransactionFactory transactionFactory, final EventsBatchWriter batchWriter) {
+        this.transactionFactory = transactionFactory;
+        this.batchWriter = batchWriter;
+    }
+
+    @Override
+    public String encode(Runnable task) {
+        if (!(task instanceof EventsEnvelope)) {
+            return null;
+        }
+        Assignment assignment = ((EventsEnvelope) task).getAssignment();
+        Event event = ((EventsEnvelope) task).getEvent();
+
+        Map<String, String> record = new HashMap<>();
+        record.put(USER_ID, toString(assignment.getUserID()));
+        record.put(EXPERIMENT_ID, toString(assignment.getExperimentID()));
+        record.put(BUCKET_LABEL, toString(assignment.getBucketLabel()));
+        record.put(NAME, toString(event.getName()));
+        record.put(CONTEXT, event.getContext() != null ? event.getContext().getContext() : null);
+        record.put(TIMESTAMP, event.getTimestamp() != null ? Long.toString(event.getTimestamp().getTime()) : null);
+        record.put(PAYLOAD, toString(event.getPayload()));
+        try {
+            return mapper.writeValueAsString(record);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Runnable decode(String record) {
+        Map<String, String> fields;
+        try {
+            fields = mapper.readValue(record, new TypeReference<Map<String, String>>() {
+            });
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid events record " + record, e);
+        }
+
+        Context context = fields.get(CONTEXT) != null ? Context.valueOf(fields.get(CONTEXT)) : null;
+        Assignment assignment = Assignment.newInstance(fields.get(EXPERIMENT_ID) != null
+                ? Experiment.ID.valueOf(fields.get(EXPERIMENT_ID)) : null)
+                .withUserID(fields.get(USER_ID) != null ? User.ID.valueOf(fields.get(USER_ID)) : null)
+                .withBucketLabel(fields.get(BUCKET_LABEL) != null
+                        ? Bucket.Label.valueOf(fields.get(BUCKET_LABEL)) : null)
+                .withContext(context)
+                .build();
+
+        Event event = new Event();
+        event.setName(Event.Name.valueOf(fields.get(NAME)));
+        if (context != null) {
+            event.setContext(context);
+        }
+        if (fields.get(TIMESTAMP) != null) {
+            event.setTimestamp(new Date(Long.parseLong(fields.get(TIMESTAMP))));
+        }
+        if (fields.get(PAYLOAD) != null) {
+            event.setPayload(Event.Payload.valueOf(fields.get(PAYLOAD)));
+        }
+        return batchWriter != null ? new EventsEnvelope(assignment, event, batchWriter)
+                : new EventsEnvelope(assignment, event, transactionFactory.newTransaction());
+    }
+
+    private static String toString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+}
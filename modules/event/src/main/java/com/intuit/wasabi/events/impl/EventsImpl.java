@@ -30,20 +30,27 @@ import com.intuit.wasabi.events.EventsMBean;
 import com.intuit.wasabi.experimentobjects.Application;
 import com.intuit.wasabi.experimentobjects.Context;
 import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.util.concurrent.BoundedExecutor;
+import com.intuit.wasabi.util.concurrent.OverflowPolicy;
 import org.slf4j.Logger;
 
+import java.io.File;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.Collections.singletonMap;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * This class <b>asychronously</b> posts events to the events database (mysql in this implementation).
  * <br></br>
+ * Queued events are written in batches by the {@link EventsBatchWriter}. The event queue is bounded; what happens to events posted while it is full depends on the configured
+ * {@link OverflowPolicy}. The queue is drained when the process shuts down.
+ * <br></br>
  * <b>Note: Since the post to the events database is asynchronous, there is a chance of loosing events if the process is shut down abruptly while the event queue is not empty.</b>
  * <br></br>
  * <STRONG>WARNING: This class may loose events data</STRONG>
@@ -53,25 +60,47 @@ public class EventsImpl implements Events, EventsMBean {
     private static final Logger LOGGER = getLogger(EventsImpl.class);
     protected static final String MYSQL = "mysql";
     private Assignments assignments;
-    private TransactionFactory transactionFactory;
-    private LinkedBlockingQueue mysqlQueue = new LinkedBlockingQueue<>();
-    private ThreadPoolExecutor mysqlExecutor;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+    private BoundedExecutor mysqlExecutor;
+    private EventsBatchWriter batchWriter;
     /**
      * Executors to ingest event data to real time ingestion system.
      */
     protected Map<String, EventIngestionExecutor> eventIngestionExecutors;
 
+    public EventsImpl(Map<String, EventIngestionExecutor> eventIngestionExecutors,
+            final Integer threadPoolSize,
+            final Assignments assignments,
+            final TransactionFactory transactionFactory) {
+        this(eventIngestionExecutors, threadPoolSize, 10000, OverflowPolicy.BLOCK.name(), 1000L,
+                System.getProperty("java.io.tmpdir"), 500, 10L, 3, assignments, transactionFactory);
+    }
+
     @Inject
     public EventsImpl(Map<String, EventIngestionExecutor> eventIngestionExecutors,
             final @Named("executor.threadpool.size") Integer threadPoolSize,
+            final @Named("executor.queue.capacity") Integer queueCapacity,
+            final @Named("executor.overflow.policy") String overflowPolicy,
+            final @Named("executor.block.timeout") Long blockTimeout,
+            final @Named("executor.spill.directory") String spillDirectory,
+            final @Named("executor.batch.size") Integer batchSize,
+            final @Named("executor.batch.linger") Long batchLinger,
+            final @Named("executor.batch.max.retries") Integer batchMaxRetries,
             final Assignments assignments,
             final TransactionFactory transactionFactory) {
         super();
         this.eventIngestionExecutors = eventIngestionExecutors;
-        this.transactionFactory = transactionFactory;
         this.assignments = assignments;
-        mysqlExecutor = new ThreadPoolExecutor(threadPoolSize, threadPoolSize,
-                0L, MILLISECONDS, mysqlQueue);
+        batchWriter = new EventsBatchWriter(transactionFactory, batchSize, batchLinger, batchMaxRetries,
+                new File(spillDirectory, "EventsMysql.deadletter"));
+        mysqlExecutor = new BoundedExecutor.Builder("EventsMysql")
+                .withPoolSize(threadPoolSize)
+                .withQueueCapacity(queueCapacity)
+                .withOverflowPolicy(OverflowPolicy.fromString(overflowPolicy))
+                .withBlockTimeoutMillis(blockTimeout)
+                .withSpill(new File(spillDirectory), new EventsEnvelopeCodec(transactionFactory, batchWriter))
+                .build();
+        batchWriter.attach(mysqlExecutor.getQueue());
     }
 
     /**
@@ -91,6 +120,73 @@ public class EventsImpl implements Events, EventsMBean {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordUsersEvents(Application.Name applicationName, Experiment.Label experimentLabel,
+                                  Map<User.ID, List<Event>> userEvents) {
+        for (Map.Entry<User.ID, List<Event>> entry : userEvents.entrySet()) {
+            recordUserEvents(applicationName, entry.getKey(), singletonMap(experimentLabel, entry.getValue()));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordExperimentsEvents(Application.Name applicationName,
+                                        Map<Experiment.Label, Map<User.ID, List<Event>>> experimentEvents) {
+        // regroup by user, so that the assignments of a user are read once for all experiments
+        Map<User.ID, Map<Experiment.Label, List<Event>>> eventsByUser = new HashMap<>();
+        for (Map.Entry<Experiment.Label, Map<User.ID, List<Event>>> experimentEntry : experimentEvents.entrySet()) {
+            for (Map.Entry<User.ID, List<Event>> userEntry : experimentEntry.getValue().entrySet()) {
+                Map<Experiment.Label, List<Event>> userExperiments = eventsByUser.get(userEntry.getKey());
+                if (userExperiments == null) {
+                    userExperiments = new HashMap<>();
+                    eventsByUser.put(userEntry.getKey(), userExperiments);
+                }
+                userExperiments.put(experimentEntry.getKey(), userEntry.getValue());
+            }
+        }
+
+        for (Map.Entry<User.ID, Map<Experiment.Label, List<Event>>> entry : eventsByUser.entrySet()) {
+            recordUserEvents(applicationName, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void recordUserEvents(Application.Name applicationName, User.ID userID,
+                                  Map<Experiment.Label, List<Event>> experimentEvents) {
+        Map<Context, Set<Experiment.Label>> experimentsByContext = new HashMap<>();
+        for (Map.Entry<Experiment.Label, List<Event>> entry : experimentEvents.entrySet()) {
+            for (Event event : entry.getValue()) {
+                Set<Experiment.Label> labels = experimentsByContext.get(event.getContext());
+                if (labels == null) {
+                    labels = new HashSet<>();
+                    experimentsByContext.put(event.getContext(), labels);
+                }
+                labels.add(entry.getKey());
+            }
+        }
+
+        for (Map.Entry<Context, Set<Experiment.Label>> entry : experimentsByContext.entrySet()) {
+            Map<Experiment.Label, Assignment> assignmentMap =
+                    assignments.getExistingAssignments(userID, applicationName, entry.getKey(), entry.getValue());
+            for (Experiment.Label experimentLabel : entry.getValue()) {
+                Assignment assignment = assignmentMap.get(experimentLabel);
+                if (assignment == null) {
+                    continue;
+                }
+                for (Event event : experimentEvents.get(experimentLabel)) {
+                    if (entry.getKey().equals(event.getContext())) {
+                        postEventToMysql(assignment, event);
+                        ingestEventToRealTimeSystems(applicationName, experimentLabel, event, assignment);
+                    }
+                }
+            }
+        }
+    }
+
     // This method ingests event to real time ingestion systems.
     private void ingestEventToRealTimeSystems(Application.Name applicationName, Experiment.Label experimentLabel, Event event,
             Assignment assignment) {
@@ -126,7 +222,8 @@ public class EventsImpl implements Events, EventsMBean {
      * @return
      */
 	protected EventsEnvelope makeEventEnvelope(Assignment assignment, Event event) {
-		return new EventsEnvelope(assignment, event, transactionFactory.newTransaction());
+		// the batch writer writes through its own transaction
+		return new EventsEnvelope(assignment, event, batchWriter);
 	}
 
     /**
@@ -134,13 +231,17 @@ public class EventsImpl implements Events, EventsMBean {
      */
     @Override
     public void shutdown() {
-        mysqlExecutor.shutdown();
+        try {
+            mysqlExecutor.drain(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
     public Map<String, Integer> queuesLength() {
         Map<String, Integer> queueLengthMap = new HashMap<String, Integer>();
-        queueLengthMap.put(MYSQL, new Integer(mysqlQueue.size()));
+        BoundedExecutor.putMetrics(MYSQL, mysqlExecutor, queueLengthMap);
         for (String name : eventIngestionExecutors.keySet()) {
             queueLengthMap.put(name.toLowerCase(), new Integer(eventIngestionExecutors.get(name).queueLength()));
         }        
@@ -153,6 +254,6 @@ public class EventsImpl implements Events, EventsMBean {
     @Override
     public int getQueueSize() {
         // FIXME: is this MBean method really used??
-        return mysqlQueue.size();
+        return mysqlExecutor.getQueue().size();
     } 
 }
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.events.impl;
+
+import com.intuit.wasabi.analyticsobjects.Event;
+import com.intuit.wasabi.assignmentobjects.Assignment;
+import com.intuit.wasabi.assignmentobjects.User;
+import com.intuit.wasabi.database.Transaction;
+import com.intuit.wasabi.database.TransactionFactory;
+import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.exceptions.DatabaseException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EventsBatchWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private TransactionFactory transactionFactory = mock(TransactionFactory.class);
+    private Transaction transaction = mock(Transaction.class);
+    private BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(10);
+    private Experiment.ID experimentID = Experiment.ID.newInstance();
+    private File deadLetterFile;
+    private EventsBatchWriter writer;
+
+    @Before
+    public void setUp() {
+        when(transactionFactory.newTransaction()).thenReturn(transaction);
+        List<Map> bucketRows = Collections.<Map>singletonList(Collections.singletonMap("label", "red"));
+        when(transaction.select(startsWith("select label from bucket"), eq(experimentID))).thenReturn(bucketRows);
+        deadLetterFile = new File(folder.getRoot(), "EventsMysql.deadletter");
+        writer = new EventsBatchWriter(transactionFactory, 3, 0, 1, deadLetterFile);
+        writer.attach(queue);
+    }
+
+    @Test
+    public void testWritesQueuedEventsAsOneInsertPerTable() throws Exception {
+        queue.add(envelope("u2", "click"));
+        queue.add(envelope("u3", Event.IMPRESSION));
+        queue.add(envelope("u4", "click"));
+
+        writer.write(envelope("u1", Event.IMPRESSION));
+
+        verify(transaction, times(1)).insert(EventsBatchWriter.IMPRESSION_INSERT + EventsBatchWriter.IMPRESSION_VALUES
+                        + ", " + EventsBatchWriter.IMPRESSION_VALUES,
+                "u1", experimentID, Bucket.Label.valueOf("red"), "PROD", new Date(1L), null,
+                "u3", experimentID, Bucket.Label.valueOf("red"), "PROD", new Date(1L), null);
+        verify(transaction, times(1)).insert(EventsBatchWriter.ACTION_INSERT + EventsBatchWriter.ACTION_VALUES,
+                "u2", experimentID, Bucket.Label.valueOf("red"), "click", "PROD", new Date(1L), null);
+        // the batch is full, the last event stays queued for the next batch
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testFailedEventsAreWrittenToDeadLetterFile() throws Exception {
+        doThrow(new DatabaseException("unavailable")).when(transaction)
+                .insert(startsWith(EventsBatchWriter.ACTION_INSERT), anyVararg());
+
+        writer.write(envelope("u1", "click"));
+
+        // two attempts for the batch, one for the single event
+        verify(transaction, times(3)).insert(startsWith(EventsBatchWriter.ACTION_INSERT), anyVararg());
+        String record = Files.readAllLines(deadLetterFile.toPath(), StandardCharsets.UTF_8).get(0);
+        assertTrue(record.contains("\"userID\":\"u1\""));
+    }
+
+    @Test
+    public void testEventsWithoutBucketAreSkipped() throws Exception {
+        Event event = new Event();
+        event.setName(Event.Name.valueOf("click"));
+        Assignment assignment = Assignment.newInstance(experimentID).withUserID(User.ID.valueOf("u1")).build();
+
+        writer.write(new EventsEnvelope(assignment, event, writer));
+
+        verify(transaction, times(0)).insert(startsWith(EventsBatchWriter.ACTION_INSERT), anyVararg());
+        assertFalse(deadLetterFile.exists());
+    }
+
+    @Test
+    public void testEventsOfUnknownBucketsAreWrittenToDeadLetterFile() throws Exception {
+        writer.write(envelope("u1", "click", "blue"));
+        writer.write(envelope("u2", "click", "blue"));
+
+        verify(transaction, times(0)).insert(startsWith(EventsBatchWriter.ACTION_INSERT), anyVararg());
+        // unknown buckets read the buckets again at most once per second
+        verify(transaction, times(1)).select(startsWith("select label from bucket"), eq(experimentID));
+        assertEquals(2, Files.readAllLines(deadLetterFile.toPath(), StandardCharsets.UTF_8).size());
+
+        writer.write(envelope("u3", "click"));
+        writer.write(envelope("u4", "click"));
+        verify(transaction, times(1)).select(startsWith("select label from bucket"), eq(experimentID));
+    }
+
+    @Test
+    public void testBucketsAreReadAgainForUnknownBuckets() throws Exception {
+        writer = new EventsBatchWriter(transactionFactory, 3, 0, 1, deadLetterFile, 0);
+        writer.write(envelope("u1", "click"));
+
+        // a bucket added to the running experiment after its buckets were cached
+        List<Map> bucketRows = Arrays.<Map>asList(Collections.singletonMap("label", "red"),
+                Collections.singletonMap("label", "blue"));
+        when(transaction.select(startsWith("select label from bucket"), eq(experimentID))).thenReturn(bucketRows);
+        writer.write(envelope("u2", "click", "blue"));
+
+        verify(transaction, times(2)).select(startsWith("select label from bucket"), eq(experimentID));
+        verify(transaction, times(1)).insert(EventsBatchWriter.ACTION_INSERT + EventsBatchWriter.ACTION_VALUES,
+                "u2", experimentID, Bucket.Label.valueOf("blue"), "click", "PROD", new Date(1L), null);
+        assertFalse(deadLetterFile.exists());
+    }
+
+    private EventsEnvelope envelope(String userID, String eventName) {
+        return envelope(userID, eventName, "red");
+    }
+
+    private EventsEnvelope envelope(String userID, String eventName, String bucketLabel) {
+        Assignment assignment = Assignment.newInstance(experimentID)
+                .withUserID(User.ID.valueOf(userID))
+                .withBucketLabel(Bucket.Label.valueOf(bucketLabel))
+                .build();
+        Event event = new Event();
+        event.setName(Event.Name.valueOf(eventName));
+        event.setTimestamp(new Date(1L));
+        return new EventsEnvelope(assignment, event, writer);
+    }
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.events.impl;
+
+import com.intuit.wasabi.analyticsobjects.Event;
+import com.intuit.wasabi.assignmentobjects.Assignment;
+import com.intuit.wasabi.assignmentobjects.User;
+import com.intuit.wasabi.database.Transaction;
+import com.intuit.wasabi.database.TransactionFactory;
+import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.Context;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class EventsEnvelopeCodecTest {
+
+    private TransactionFactory transactionFactory = mock(TransactionFactory.class, RETURNS_DEEP_STUBS);
+    private EventsEnvelopeCodec codec = new EventsEnvelopeCodec(transactionFactory);
+
+    @Test
+    public void testRoundTrip() {
+        Experiment.ID experimentID = Experiment.ID.newInstance();
+        Assignment assignment = Assignment.newInstance(experimentID)
+                .withUserID(User.ID.valueOf("user"))
+                .withBucketLabel(Bucket.Label.valueOf("red"))
+                .withContext(Context.valueOf("QA"))
+                .build();
+        Event event = new Event();
+        event.setName(Event.Name.valueOf("click"));
+        event.setContext(Context.valueOf("QA"));
+        event.setTimestamp(new Date(42L));
+        event.setPayload(Event.Payload.valueOf("{\"a\":\"b\"}"));
+
+        EventsEnvelope decoded = (EventsEnvelope) codec.decode(
+                codec.encode(new EventsEnvelope(assignment, event, mock(Transaction.class))));
+
+        assertEquals(experimentID, decoded.getAssignment().getExperimentID());
+        assertEquals(User.ID.valueOf("user"), decoded.getAssignment().getUserID());
+        assertEquals(Bucket.Label.valueOf("red"), decoded.getAssignment().getBucketLabel());
+        assertEquals(Event.Name.valueOf("click"), decoded.getEvent().getName());
+        assertEquals(Event.Type.BINARY_ACTION, decoded.getEvent().getType());
+        assertEquals(Context.valueOf("QA"), decoded.getEvent().getContext());
+        assertEquals(new Date(42L), decoded.getEvent().getTimestamp());
+        assertEquals(Event.Payload.valueOf("{\"a\":\"b\"}"), decoded.getEvent().getPayload());
+    }
+
+    @Test
+    public void testBatchedEnvelopesAreDecodedWithoutTransaction() {
+        EventsEnvelopeCodec batchCodec = new EventsEnvelopeCodec(transactionFactory, mock(EventsBatchWriter.class));
+        Assignment assignment = Assignment.newInstance(Experiment.ID.newInstance())
+                .withUserID(User.ID.valueOf("user"))
+                .withBucketLabel(Bucket.Label.valueOf("red"))
+                .build();
+        Event event = new Event();
+        event.setName(Event.Name.valueOf("click"));
+
+        batchCodec.decode(batchCodec.encode(new EventsEnvelope(assignment, event, mock(Transaction.class))));
+
+        verify(transactionFactory, never()).newTransaction();
+    }
+
+    @Test
+    public void testOtherTasksAreNotEncoded() {
+        assertNull(codec.encode(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }));
+    }
+}
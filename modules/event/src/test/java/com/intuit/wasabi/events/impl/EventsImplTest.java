@@ -4,6 +4,8 @@ import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -32,6 +34,7 @@ import com.intuit.wasabi.experimentobjects.Context;
 import com.intuit.wasabi.experimentobjects.Experiment;
 import com.intuit.wasabi.export.DatabaseExport;
 import com.intuit.wasabi.export.Envelope;
+import com.intuit.wasabi.util.concurrent.BoundedExecutor;
 import static org.mockito.BDDMockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -104,6 +107,11 @@ public class EventsImplTest {
     public void testQueueLength(){
         Map<String, Integer> queueLengthMap = new HashMap<String, Integer>();
         queueLengthMap.put(EventsImpl.MYSQL, new Integer(0));
+        queueLengthMap.put(EventsImpl.MYSQL + "." + BoundedExecutor.REJECTED, new Integer(0));
+        queueLengthMap.put(EventsImpl.MYSQL + "." + BoundedExecutor.DROPPED, new Integer(0));
+        queueLengthMap.put(EventsImpl.MYSQL + "." + BoundedExecutor.SPILLED, new Integer(0));
+        queueLengthMap.put(EventsImpl.MYSQL + "." + BoundedExecutor.CALLER_RUNS, new Integer(0));
+        queueLengthMap.put(EventsImpl.MYSQL + "." + BoundedExecutor.ENQUEUE_WAIT_MILLIS, new Integer(0));
         queueLengthMap.put("mock", new Integer(0));
         assertThat(eventsImpl.queuesLength(), is(queueLengthMap));
     }
@@ -135,4 +143,37 @@ public class EventsImplTest {
 		
 		assertTrue("event envelope should be created", createdEventEnvelope);
 	}
+
+	@Test
+	public void testRecordUsersEventsReadsAssignmentsOncePerContext() {
+		Event other = mock(Event.class);
+		given(event.getContext()).willReturn(c1);
+		given(other.getContext()).willReturn(c1);
+		Map<User.ID, List<Event>> userEvents = new HashMap<>();
+		userEvents.put(userId, Arrays.asList(event, other));
+		given(assignments.getExistingAssignments(userId, appName, c1, Collections.singleton(label)))
+				.willReturn(Collections.singletonMap(label, assignment));
+
+		eventsImpl.recordUsersEvents(appName, label, userEvents);
+
+		verify(assignments, times(1)).getExistingAssignments(userId, appName, c1, Collections.singleton(label));
+		assertTrue("event envelope should be created", createdEventEnvelope);
+	}
+
+	@Test
+	public void testRecordExperimentsEventsGroupsByUser() {
+		Experiment.Label label2 = Experiment.Label.valueOf("l2");
+		given(event.getContext()).willReturn(c1);
+		Map<Experiment.Label, Map<User.ID, List<Event>>> experimentEvents = new HashMap<>();
+		experimentEvents.put(label, Collections.singletonMap(userId, Collections.singletonList(event)));
+		experimentEvents.put(label2, Collections.singletonMap(userId, Collections.singletonList(event)));
+		Set<Experiment.Label> labels = new HashSet<>(Arrays.asList(label, label2));
+		given(assignments.getExistingAssignments(userId, appName, c1, labels))
+				.willReturn(Collections.<Experiment.Label, Assignment>emptyMap());
+
+		eventsImpl.recordExperimentsEvents(appName, experimentEvents);
+
+		verify(assignments, times(1)).getExistingAssignments(userId, appName, c1, labels);
+		assertFalse("event envelope should not be created", createdEventEnvelope);
+	}
 }
@@ -50,6 +50,12 @@ public class EventLogModule extends AbstractModule {
                 .toInstance(parseInt(getProperty("eventlog.threadpoolsize.core", properties, "2")));
         bind(Integer.class).annotatedWith(named("eventlog.threadpoolsize.max"))
                 .toInstance(parseInt(getProperty("eventlog.threadpoolsize.max", properties, "4")));
+        bind(Integer.class).annotatedWith(named("eventlog.event.queue.capacity"))
+                .toInstance(parseInt(getProperty("eventlog.event.queue.capacity", properties, "10000")));
+        bind(Integer.class).annotatedWith(named("eventlog.queue.capacity"))
+                .toInstance(parseInt(getProperty("eventlog.queue.capacity", properties, "10000")));
+        bind(String.class).annotatedWith(named("eventlog.overflow.policy"))
+                .toInstance(getProperty("eventlog.overflow.policy", properties, "CALLER_RUNS"));
 
         String eventLogClassName = getProperty("eventlog.class.name", properties,
                 "com.intuit.wasabi.eventlog.impl.NoopEventLogImpl");
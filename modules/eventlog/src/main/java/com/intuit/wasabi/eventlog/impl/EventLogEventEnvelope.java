@@ -17,18 +17,26 @@ package com.intuit.wasabi.eventlog.impl;
 
 import com.intuit.wasabi.eventlog.EventLogListener;
 import com.intuit.wasabi.eventlog.events.EventLogEvent;
+import org.slf4j.Logger;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.slf4j.LoggerFactory.getLogger;
 
 /**
- * Wraps a {@link Runnable} around an {@link EventLogEvent} and an {@link EventLogListener} (the recipient) who is
- * subscribed to this event. When {@link EventLogEventEnvelope#run()}, the event is posted to the recipient.
+ * Wraps a {@link Runnable} around {@link EventLogEvent}s and an {@link EventLogListener} (the recipient) who is
+ * subscribed to these events. When {@link EventLogEventEnvelope#run()}, the events are posted to the recipient.
  */
 /*pkg*/ class EventLogEventEnvelope implements Runnable {
 
-    /** The recipient of the event. */
+    private static final Logger LOGGER = getLogger(EventLogEventEnvelope.class);
+
+    /** The recipient of the events. */
     private final EventLogListener recipient;
 
-    /** The event. */
-    private final EventLogEvent event;
+    /** The events. */
+    private final List<EventLogEvent> events;
 
     /**
      * Creates an envelope containing an event for the recipient.
@@ -37,19 +45,35 @@ import com.intuit.wasabi.eventlog.events.EventLogEvent;
      * @param recipient the recipient
      */
     public EventLogEventEnvelope(final EventLogEvent event, final EventLogListener recipient) {
-        this.event = event;
+        this(Collections.singletonList(event), recipient);
+    }
+
+    /**
+     * Creates an envelope containing events for the recipient.
+     *
+     * @param events the events, in the order they are posted
+     * @param recipient the recipient
+     */
+    public EventLogEventEnvelope(final List<EventLogEvent> events, final EventLogListener recipient) {
+        this.events = events;
         this.recipient = recipient;
     }
 
     /**
-     * Posts the event to the recipient. <br />
+     * Posts the events to the recipient. A failing event does not keep the following ones from being posted. <br />
      * <br />
      *
      * {@inheritDoc}
      */
     @Override
     public void run() {
-        recipient.postEvent(event);
+        for (EventLogEvent event : events) {
+            try {
+                recipient.postEvent(event);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to post " + event + " to " + recipient, e);
+            }
+        }
     }
 
 }
@@ -20,6 +20,8 @@ import com.google.inject.name.Named;
 import com.intuit.wasabi.eventlog.EventLog;
 import com.intuit.wasabi.eventlog.EventLogListener;
 import com.intuit.wasabi.eventlog.events.EventLogEvent;
+import com.intuit.wasabi.util.concurrent.BoundedExecutor;
+import com.intuit.wasabi.util.concurrent.OverflowPolicy;
 import org.slf4j.Logger;
 
 import java.util.*;
@@ -32,10 +34,17 @@ import static org.slf4j.LoggerFactory.getLogger;
 /**
  * The EventLogImpl can be used to log events. It is possible to subscribe to specific events and get notified
  * whenever an event occurs, to log events or handle them otherwise (for example to notify users of changed events).
+ * <p>
+ * Posted events are queued and dispatched as soon as the event log thread takes them: each listener receives the
+ * events it is subscribed to in one {@link EventLogEventEnvelope} per batch, in the order they were posted.
  */
 public class EventLogImpl implements EventLog {
 
     private static final Logger LOGGER = getLogger(EventLogImpl.class);
+    /**
+     * The maximum number of events which are dispatched together.
+     */
+    private static final int MAX_BATCH_SIZE = 100;
     /**
      * Executes the {@link EventLogEventEnvelope}s.
      */
@@ -45,23 +54,55 @@ public class EventLogImpl implements EventLog {
      */
     private final Map<EventLogListener, List<Class<? extends EventLogEvent>>> listeners;
     /**
-     * the event Deque
+     * The subscribed listeners per concrete event class, filled on first use and replaced on each registration.
      */
-    private final Deque<EventLogEvent> eventDeque;
+    private volatile ConcurrentMap<Class<?>, List<EventLogListener>> subscribers;
+    /**
+     * the event Deque, bounded by the event queue capacity
+     */
+    private final BlockingDeque<EventLogEvent> eventDeque;
+    /**
+     * The thread taking the events from the deque, which must not wait for room in it.
+     */
+    private volatile Thread dispatchingThread;
+
+    /**
+     * Creates the event pool executor with queues of 10000 events and 10000 envelopes, running the envelopes on the
+     * dispatching thread on overflow.
+     *
+     * @param threadPoolSizeCore named instance threadpoolsize.core
+     * @param threadPoolSizeMax  named instance threadpoolsize.max
+     */
+    public EventLogImpl(int threadPoolSizeCore, int threadPoolSizeMax) {
+        this(threadPoolSizeCore, threadPoolSizeMax, 10000, 10000, OverflowPolicy.CALLER_RUNS.name());
+    }
 
     /**
      * Creates the event pool executor. Should be called by Guice.
+     * The event queue capacity bounds the posted events, the queue capacity the envelopes waiting for execution.
      *
      * @param threadPoolSizeCore named instance threadpoolsize.core
      * @param threadPoolSizeMax  named instance threadpoolsize.max
+     * @param eventQueueCapacity named instance event.queue.capacity
+     * @param queueCapacity      named instance queue.capacity
+     * @param overflowPolicy     named instance overflow.policy, one of {@link OverflowPolicy}
      */
     @Inject
     public EventLogImpl(@Named("eventlog.threadpoolsize.core") int threadPoolSizeCore,
-                        @Named("eventlog.threadpoolsize.max") int threadPoolSizeMax) {
+                        @Named("eventlog.threadpoolsize.max") int threadPoolSizeMax,
+                        @Named("eventlog.event.queue.capacity") int eventQueueCapacity,
+                        @Named("eventlog.queue.capacity") int queueCapacity,
+                        @Named("eventlog.overflow.policy") String overflowPolicy) {
         listeners = new ConcurrentHashMap<>();
-        eventDeque = new ConcurrentLinkedDeque<>();
+        subscribers = new ConcurrentHashMap<>();
+        eventDeque = new LinkedBlockingDeque<>(eventQueueCapacity);
 
-        eventPostThreadPoolExecutor = new ThreadPoolExecutor(threadPoolSizeCore, threadPoolSizeMax, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        eventPostThreadPoolExecutor = new BoundedExecutor.Builder("EventLog")
+                .withPoolSize(threadPoolSizeCore)
+                .withMaxPoolSize(threadPoolSizeMax)
+                .withQueueCapacity(queueCapacity)
+                .withOverflowPolicy(OverflowPolicy.fromString(overflowPolicy))
+                .build();
     }
 
     /**
@@ -81,6 +122,7 @@ public class EventLogImpl implements EventLog {
             events = Collections.<Class<? extends EventLogEvent>>singletonList(EventLogEvent.class);
         }
         listeners.put(listener, events);
+        subscribers = new ConcurrentHashMap<>();
     }
 
     /**
@@ -109,6 +151,10 @@ public class EventLogImpl implements EventLog {
 
     /**
      * {@inheritDoc}
+     * <br />
+     * Events are audited, so none is dropped: if the event queue is full, the caller waits until there is room. An
+     * interrupted caller and the dispatching thread itself, which would wait for its own room, dispatch the event
+     * directly.
      */
     @Override
     public void postEvent(EventLogEvent event) {
@@ -116,62 +162,76 @@ public class EventLogImpl implements EventLog {
             LOGGER.warn("null-Event skipped.");
             return;
         }
-        eventDeque.offerLast(event);
+        if (eventDeque.offerLast(event)) {
+            return;
+        }
+        if (Thread.currentThread() == dispatchingThread) {
+            dispatch(Collections.singletonList(event));
+            return;
+        }
+        LOGGER.debug("Event queue is full, waiting to post {}.", event);
+        try {
+            eventDeque.putLast(event);
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting to post " + event + ", dispatching it directly.", e);
+            Thread.currentThread().interrupt();
+            dispatch(Collections.singletonList(event));
+        }
     }
 
     /**
-     * Returns true if {@code listener} is registered for {@code event}.
+     * Returns the listeners which are subscribed to events of the given class, i.e. to the class itself, one of its
+     * super classes or one of their interfaces. The result is cached per event class.
      *
-     * @param listener the listener to check
-     * @param event    the event
-     * @return true if the listener is registered for the event
-     */
-    private boolean isSubscribed(EventLogListener listener, EventLogEvent event) {
-        List<Class<? extends EventLogEvent>> subscriptions = listeners.get(listener);
-
-        // class and super classes
-        Class<?> eventClass = event.getClass();
-        while (!eventClass.equals(Object.class)) {
-            if (subscriptions.contains(eventClass)) {
-                return true;
+     * @param eventClass the concrete class of an event
+     * @return the subscribed listeners
+     */
+    private List<EventLogListener> getSubscribers(Class<?> eventClass) {
+        ConcurrentMap<Class<?>, List<EventLogListener>> currentSubscribers = subscribers;
+        List<EventLogListener> eventSubscribers = currentSubscribers.get(eventClass);
+        if (eventSubscribers == null) {
+            Set<Class<?>> eventTypes = new HashSet<>();
+            for (Class<?> type = eventClass; type != null && !type.equals(Object.class); type = type.getSuperclass()) {
+                eventTypes.add(type);
+                Collections.addAll(eventTypes, type.getInterfaces());
             }
 
-            // interfaces
-            for (Class<?> subscription : eventClass.getInterfaces()) {
-                if (subscriptions.contains(subscription)) {
-                    return true;
+            eventSubscribers = new ArrayList<>();
+            for (Map.Entry<EventLogListener, List<Class<? extends EventLogEvent>>> subscription
+                    : listeners.entrySet()) {
+                if (!Collections.disjoint(eventTypes, subscription.getValue())) {
+                    eventSubscribers.add(subscription.getKey());
                 }
             }
-            eventClass = eventClass.getSuperclass();
+            eventSubscribers = Collections.unmodifiableList(eventSubscribers);
+            currentSubscribers.putIfAbsent(eventClass, eventSubscribers);
         }
-
-        return false;
+        return eventSubscribers;
     }
 
     /**
+     * Waits for events and dispatches them in batches until the thread is interrupted.
+     * <br />
      * {@inheritDoc}
      */
     @Override
     public void run() {
+        List<EventLogEvent> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        dispatchingThread = Thread.currentThread();
         try {
-            while (!Thread.currentThread().isInterrupted() && Thread.currentThread().isAlive()) {
-                if (!eventDeque.isEmpty()) {
-                    prepareEnvelope(eventDeque.pollFirst());
-                } else {
-                    try {
-                        Thread.sleep(500);
-                    } catch (InterruptedException e) {
-                        LOGGER.warn("Interrupted while sleeping.", e);
-                    }
-                }
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(eventDeque.takeFirst());
+                eventDeque.drainTo(batch, MAX_BATCH_SIZE - 1);
+                dispatch(batch);
+                batch.clear();
             }
+        } catch (InterruptedException e) {
+            LOGGER.debug("Interrupted while waiting for events.", e);
+            Thread.currentThread().interrupt();
         } finally {
             LOGGER.info("Shutting down event system, posting remaining events -- incoming events are no longer accepted.");
-            if (!eventDeque.isEmpty()) {
-                for (EventLogEvent eventLogEvent : eventDeque) {
-                    prepareEnvelope(eventLogEvent);
-                }
-            }
+            eventDeque.drainTo(batch);
+            dispatch(batch);
         }
     }
 
@@ -184,9 +244,33 @@ public class EventLogImpl implements EventLog {
         if (event == null) {
             return;
         }
-        for (EventLogListener eventLogListener : listeners.keySet()) {
-            if (isSubscribed(eventLogListener, event)) {
-                eventPostThreadPoolExecutor.submit(new EventLogEventEnvelope(event, eventLogListener));
+        dispatch(Collections.singletonList(event));
+    }
+
+    /**
+     * Submits one {@link EventLogEventEnvelope} per listener, containing all events of the batch the listener is
+     * subscribed to.
+     *
+     * @param events the events to dispatch
+     */
+    private void dispatch(final List<EventLogEvent> events) {
+        Map<EventLogListener, List<EventLogEvent>> envelopes = new LinkedHashMap<>();
+        for (EventLogEvent event : events) {
+            for (EventLogListener eventLogListener : getSubscribers(event.getClass())) {
+                List<EventLogEvent> listenerEvents = envelopes.get(eventLogListener);
+                if (listenerEvents == null) {
+                    listenerEvents = new ArrayList<>();
+                    envelopes.put(eventLogListener, listenerEvents);
+                }
+                listenerEvents.add(event);
+            }
+        }
+
+        for (Map.Entry<EventLogListener, List<EventLogEvent>> envelope : envelopes.entrySet()) {
+            try {
+                eventPostThreadPoolExecutor.submit(new EventLogEventEnvelope(envelope.getValue(), envelope.getKey()));
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("Unable to post " + envelope.getValue().size() + " events to " + envelope.getKey(), e);
             }
         }
     }
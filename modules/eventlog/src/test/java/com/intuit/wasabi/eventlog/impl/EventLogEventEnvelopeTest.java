@@ -20,6 +20,8 @@ import com.intuit.wasabi.eventlog.events.EventLogEvent;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.util.Arrays;
+
 /**
  * Tests for {@link EventLogEventEnvelope}.
  */
@@ -35,4 +37,17 @@ public class EventLogEventEnvelopeTest {
         envelope.run();
         Mockito.verify(eventLogListener, Mockito.times(1)).postEvent(event);
     }
+
+    @Test
+    public void testRunBatch() throws Exception {
+        EventLogEvent failing = Mockito.mock(EventLogEvent.class);
+        EventLogEvent event = Mockito.mock(EventLogEvent.class);
+        EventLogListener eventLogListener = Mockito.mock(EventLogListener.class);
+
+        EventLogEventEnvelope envelope = new EventLogEventEnvelope(Arrays.asList(failing, event), eventLogListener);
+        Mockito.doThrow(new IllegalStateException()).when(eventLogListener).postEvent(failing);
+        envelope.run();
+        Mockito.verify(eventLogListener, Mockito.times(1)).postEvent(failing);
+        Mockito.verify(eventLogListener, Mockito.times(1)).postEvent(event);
+    }
 }
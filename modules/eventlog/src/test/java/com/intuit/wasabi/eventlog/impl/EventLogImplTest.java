@@ -262,6 +262,77 @@ public class EventLogImplTest {
         eventLogThread.interrupt();
     }
 
+    @Test
+    public void testPostEventDispatchesWithoutPolling() throws Exception {
+        EventLogListener eventLogListener = Mockito.mock(EventLogListener.class);
+        EventLogImpl eventLog = new EventLogImpl(2, 4);
+        Thread eventLogThread = new Thread(eventLog);
+        eventLogThread.start();
+
+        eventLog.register(eventLogListener, Collections.<Class<? extends EventLogEvent>> singletonList(EventLogEvent.class));
+
+        SimpleEvent first = new SimpleEvent("first");
+        SimpleEvent second = new SimpleEvent("second");
+        eventLog.postEvent(first);
+        eventLog.postEvent(second);
+
+        Mockito.verify(eventLogListener, Mockito.timeout(200)).postEvent(first);
+        Mockito.verify(eventLogListener, Mockito.timeout(200)).postEvent(second);
+        eventLogThread.interrupt();
+    }
+
+    @Test
+    public void testPostEventWaitsForRoomInsteadOfDropping() throws Exception {
+        EventLogListener eventLogListener = Mockito.mock(EventLogListener.class);
+        final EventLogImpl eventLog = new EventLogImpl(2, 4, 1, 10, "CALLER_RUNS");
+        eventLog.register(eventLogListener, Collections.<Class<? extends EventLogEvent>> singletonList(EventLogEvent.class));
+
+        SimpleEvent first = new SimpleEvent("first");
+        final SimpleEvent second = new SimpleEvent("second");
+        eventLog.postEvent(first);
+        Thread poster = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                eventLog.postEvent(second);
+            }
+        });
+        poster.start();
+        while (poster.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+
+        Thread eventLogThread = new Thread(eventLog);
+        eventLogThread.start();
+        poster.join(1000);
+
+        Assert.assertFalse(poster.isAlive());
+        Mockito.verify(eventLogListener, Mockito.timeout(200)).postEvent(first);
+        Mockito.verify(eventLogListener, Mockito.timeout(200)).postEvent(second);
+        eventLogThread.interrupt();
+    }
+
+    @Test
+    public void testRegisterAfterDispatch() throws Exception {
+        EventLogListener firstListener = Mockito.mock(EventLogListener.class);
+        EventLogListener secondListener = Mockito.mock(EventLogListener.class);
+        EventLogImpl eventLog = new EventLogImpl(2, 4);
+        Thread eventLogThread = new Thread(eventLog);
+        eventLogThread.start();
+
+        eventLog.register(firstListener, Collections.<Class<? extends EventLogEvent>> singletonList(SimpleEvent.class));
+        SimpleEvent simpleEvent = new SimpleEvent("Simple event");
+        eventLog.postEvent(simpleEvent);
+        Mockito.verify(firstListener, Mockito.timeout(200)).postEvent(simpleEvent);
+
+        eventLog.register(secondListener, Collections.<Class<? extends EventLogEvent>> singletonList(SimpleEvent.class));
+        SimpleEvent otherEvent = new SimpleEvent("Other event");
+        eventLog.postEvent(otherEvent);
+        Mockito.verify(firstListener, Mockito.timeout(200)).postEvent(otherEvent);
+        Mockito.verify(secondListener, Mockito.timeout(200)).postEvent(otherEvent);
+        Mockito.verify(secondListener, Mockito.never()).postEvent(simpleEvent);
+        eventLogThread.interrupt();
+    }
+
     @Ignore("https://github.com/intuit/wasabi/issues/45")
     @Test
     public void testRunFinally() throws Exception {
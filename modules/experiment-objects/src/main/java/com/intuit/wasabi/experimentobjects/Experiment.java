@@ -81,6 +81,8 @@ public class Experiment implements Cloneable, ExperimentBase {
     private String modelVersion;
     @ApiModelProperty(value = "is this a rapid experiment", required = false)
     private Boolean isRapidExperiment;
+    @ApiModelProperty(value = "are users sampled and bucketed by a hash of the experiment and user ID", required = false)
+    private Boolean isHashAssignment;
     @ApiModelProperty(value = "maximum number of users to allow before pausing the experiment", required = false)
     private Integer userCap;
     @ApiModelProperty(value = "creator of the experiment", required = false)
@@ -244,6 +246,14 @@ public class Experiment implements Cloneable, ExperimentBase {
         this.isRapidExperiment = isRapidExperiment;
     }
 
+    public Boolean getIsHashAssignment() {
+        return isHashAssignment;
+    }
+
+    public void setIsHashAssignment(Boolean isHashAssignment) {
+        this.isHashAssignment = isHashAssignment;
+    }
+
     public String getCreatorID() {
         return creatorID;
     }
@@ -269,6 +279,7 @@ public class Experiment implements Cloneable, ExperimentBase {
                 .append(modelName)
                 .append(modelVersion)
                 .append(isRapidExperiment)
+                .append(isHashAssignment)
                 .append(userCap)
                 .append(creatorID)
                 .toHashCode();
@@ -300,6 +311,7 @@ public class Experiment implements Cloneable, ExperimentBase {
                 .append(modelName, other.getModelName())
                 .append(modelVersion, other.getModelVersion())
                 .append(isRapidExperiment, other.getIsRapidExperiment())
+                .append(isHashAssignment, other.getIsHashAssignment())
                 .append(userCap, other.getUserCap())
                 .append(creatorID, other.getCreatorID())
                 .isEquals();
@@ -474,6 +486,7 @@ public class Experiment implements Cloneable, ExperimentBase {
             instance.modelName = other.modelName;
             instance.modelVersion = other.modelVersion;
             instance.isRapidExperiment = other.isRapidExperiment;
+            instance.isHashAssignment = other.isHashAssignment;
             instance.userCap = other.userCap;
             instance.creatorID = other.creatorID;
         }
@@ -494,6 +507,11 @@ public class Experiment implements Cloneable, ExperimentBase {
             return this;
         }
 
+        public Builder withIsHashAssignment(Boolean isHashAssignment) {
+            instance.isHashAssignment = isHashAssignment;
+            return this;
+        }
+
         public Builder withUserCap(Integer userCap) {
             instance.userCap = userCap;
             return this;
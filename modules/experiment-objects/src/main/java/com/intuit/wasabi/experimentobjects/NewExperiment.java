@@ -58,6 +58,8 @@ public final class NewExperiment implements ExperimentBase {
     private String modelVersion = "";
     @ApiModelProperty(value = "is this a rapid experiment", required = false)
     private Boolean isRapidExperiment = false;
+    @ApiModelProperty(value = "are users sampled and bucketed by a hash of the experiment and user ID", required = false)
+    private Boolean isHashAssignment = false;
     @ApiModelProperty(value = "maximum number of users to allow before pausing the experiment", required = false)
     private Integer userCap = Integer.MAX_VALUE;
     @ApiModelProperty(required = false)
@@ -120,6 +122,10 @@ public final class NewExperiment implements ExperimentBase {
 		this.isRapidExperiment = isRapidExperiment;
 	}
 
+	public void setIsHashAssignment(Boolean isHashAssignment) {
+		this.isHashAssignment = isHashAssignment;
+	}
+
 	public void setUserCap(Integer userCap) {
 		this.userCap = userCap;
 	}
@@ -142,6 +148,10 @@ public final class NewExperiment implements ExperimentBase {
         return isRapidExperiment;
     }
 
+    public Boolean getIsHashAssignment() {
+        return isHashAssignment;
+    }
+
     public Integer getUserCap() {
         return userCap;
     }
@@ -282,6 +292,11 @@ public final class NewExperiment implements ExperimentBase {
             return this;
         }
 
+        public Builder withIsHashAssignment(Boolean isHashAssignment) {
+            instance.isHashAssignment = isHashAssignment;
+            return this;
+        }
+
         public Builder withUserCap(Integer userCap) {
             instance.userCap = userCap;
             return this;
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.experiment;
+
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Table;
+import com.intuit.wasabi.experimentobjects.Application;
+import com.intuit.wasabi.experimentobjects.BucketList;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.experimentobjects.Page;
+import com.intuit.wasabi.experimentobjects.PageExperiment;
+import com.intuit.wasabi.experimentobjects.PrioritizedExperimentList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Point-in-time view of the assignment related metadata of one application: its experiments, their buckets and
+ * bucket allocations, mutual exclusions, the priority list and the page to experiment mapping.
+ *
+ * A snapshot is never modified after it has been built; a change to the metadata results in a new snapshot
+ * which replaces the old one. The contained {@link BucketList} and {@link PrioritizedExperimentList} objects
+ * are shared between all readers of the snapshot and must therefore not be modified by callers.
+ */
+public class ApplicationSnapshot {
+
+    private final Application.Name applicationName;
+    private final Table<Experiment.ID, Experiment.Label, Experiment> experiments;
+    private final Map<Experiment.ID, BucketList> bucketLists;
+    private final Map<Experiment.ID, BucketAllocation> bucketAllocations;
+    private final Map<Experiment.ID, List<Experiment.ID>> exclusives;
+    private final PrioritizedExperimentList priorities;
+    private final Map<Page.Name, List<PageExperiment>> pageExperiments;
+    private final long creationTime;
+
+    /**
+     * Builds a snapshot from the given metadata. All collections are copied, so the caller may reuse them.
+     *
+     * @param applicationName the application the metadata belongs to
+     * @param experiments     the experiments of the application
+     * @param bucketLists     the buckets per experiment, may be {@code null} if there are none
+     * @param exclusives      the mutually exclusive experiments per experiment, may be {@code null}
+     * @param priorities      the prioritized experiments of the application
+     * @param pageExperiments the experiments per page, may be {@code null}
+     */
+    public ApplicationSnapshot(Application.Name applicationName,
+                               Table<Experiment.ID, Experiment.Label, Experiment> experiments,
+                               Map<Experiment.ID, BucketList> bucketLists,
+                               Map<Experiment.ID, List<Experiment.ID>> exclusives,
+                               PrioritizedExperimentList priorities,
+                               Map<Page.Name, List<PageExperiment>> pageExperiments) {
+        this.applicationName = applicationName;
+        this.experiments = ImmutableTable.copyOf(experiments);
+        this.priorities = priorities != null ? priorities : new PrioritizedExperimentList();
+        this.creationTime = System.currentTimeMillis();
+
+        Map<Experiment.ID, BucketList> bucketListCopy = new HashMap<>();
+        if (bucketLists != null) {
+            bucketListCopy.putAll(bucketLists);
+        }
+        this.bucketLists = Collections.unmodifiableMap(bucketListCopy);
+
+        // selecting the bucket of a new assignment is on the hot path, so the allocations are built only once
+        Map<Experiment.ID, BucketAllocation> bucketAllocationCopy = new HashMap<>();
+        for (Map.Entry<Experiment.ID, BucketList> entry : bucketListCopy.entrySet()) {
+            bucketAllocationCopy.put(entry.getKey(), new BucketAllocation(entry.getValue()));
+        }
+        this.bucketAllocations = Collections.unmodifiableMap(bucketAllocationCopy);
+
+        // every experiment gets an entry so that the mutex check never has to deal with missing keys
+        Map<Experiment.ID, List<Experiment.ID>> exclusivesCopy = new HashMap<>();
+        for (Experiment.ID experimentID : this.experiments.rowKeySet()) {
+            List<Experiment.ID> exclusions = exclusives != null ? exclusives.get(experimentID) : null;
+            exclusivesCopy.put(experimentID, exclusions == null
+                    ? Collections.<Experiment.ID>emptyList()
+                    : Collections.unmodifiableList(new ArrayList<>(exclusions)));
+        }
+        this.exclusives = Collections.unmodifiableMap(exclusivesCopy);
+
+        Map<Page.Name, List<PageExperiment>> pageCopy = new HashMap<>();
+        if (pageExperiments != null) {
+            for (Map.Entry<Page.Name, List<PageExperiment>> entry : pageExperiments.entrySet()) {
+                pageCopy.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+            }
+        }
+        this.pageExperiments = Collections.unmodifiableMap(pageCopy);
+    }
+
+    public Application.Name getApplicationName() {
+        return applicationName;
+    }
+
+    /**
+     * @return the experiments of the application, keyed by experiment id and label
+     */
+    public Table<Experiment.ID, Experiment.Label, Experiment> getExperiments() {
+        return experiments;
+    }
+
+    /**
+     * @param experimentID the experiment id
+     * @return the buckets of the experiment or an empty {@link BucketList} if it has none
+     */
+    public BucketList getBucketList(Experiment.ID experimentID) {
+        BucketList bucketList = bucketLists.get(experimentID);
+        return bucketList != null ? bucketList : new BucketList();
+    }
+
+    /**
+     * @param experimentID the experiment id
+     * @return the allocation of the buckets of {@link #getBucketList(Experiment.ID)} which new assignments can be
+     * made to
+     */
+    public BucketAllocation getBucketAllocation(Experiment.ID experimentID) {
+        BucketAllocation bucketAllocation = bucketAllocations.get(experimentID);
+        return bucketAllocation != null ? bucketAllocation : new BucketAllocation((BucketList) null);
+    }
+
+    /**
+     * @return the buckets of all experiments of the application
+     */
+    public Map<Experiment.ID, BucketList> getBucketLists() {
+        return bucketLists;
+    }
+
+    /**
+     * @return the mutually exclusive experiments for every experiment of the application
+     */
+    public Map<Experiment.ID, List<Experiment.ID>> getExclusives() {
+        return exclusives;
+    }
+
+    public PrioritizedExperimentList getPriorities() {
+        return priorities;
+    }
+
+    /**
+     * @param pageName the page name
+     * @return the experiments associated with the page or an empty list if there are none
+     */
+    public List<PageExperiment> getPageExperiments(Page.Name pageName) {
+        List<PageExperiment> result = pageExperiments.get(pageName);
+        return result != null ? result : Collections.<PageExperiment>emptyList();
+    }
+
+    /**
+     * @return the time in milliseconds at which this snapshot was built
+     */
+    public long getCreationTime() {
+        return creationTime;
+    }
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.experiment;
+
+import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.BucketList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Cumulative allocation of the buckets of an experiment which new assignments can be made to.
+ *
+ * CLOSED and EMPTY buckets and buckets without allocation are left out when the allocation is built; the others
+ * are ordered by allocation and label, so that the same roll always selects the same bucket. An allocation is never
+ * modified after it has been built and can therefore be shared, e.g. by an {@link ApplicationSnapshot}.
+ */
+public class BucketAllocation {
+
+    private static final Comparator<Bucket> ALLOCATION_ORDER = new Comparator<Bucket>() {
+        @Override
+        public int compare(Bucket b1, Bucket b2) {
+            int result = b1.getAllocationPercent().compareTo(b2.getAllocationPercent());
+            return result != 0 ? result : b1.getLabel().toString().compareTo(b2.getLabel().toString());
+        }
+    };
+    private final Bucket[] buckets;
+    private final double[] cumulativeAllocations;
+
+    /**
+     * Builds the allocation of the given buckets, which are not modified.
+     *
+     * @param buckets the buckets of an experiment, may be {@code null}
+     */
+    public BucketAllocation(List<Bucket> buckets) {
+        List<Bucket> selectable = new ArrayList<>();
+        if (buckets != null) {
+            for (Bucket bucket : buckets) {
+                if (bucket.getState() != Bucket.State.CLOSED && bucket.getState() != Bucket.State.EMPTY
+                        && bucket.getAllocationPercent() != null && bucket.getAllocationPercent() > 0) {
+                    selectable.add(bucket);
+                }
+            }
+        }
+        Collections.sort(selectable, ALLOCATION_ORDER);
+
+        this.buckets = selectable.toArray(new Bucket[selectable.size()]);
+        this.cumulativeAllocations = new double[this.buckets.length];
+        double total = 0;
+        for (int i = 0; i < this.buckets.length; i++) {
+            total += this.buckets[i].getAllocationPercent();
+            cumulativeAllocations[i] = total;
+        }
+    }
+
+    /**
+     * Builds the allocation of the buckets of the given list, which is not modified.
+     *
+     * @param bucketList the buckets of an experiment, may be {@code null}
+     */
+    public BucketAllocation(BucketList bucketList) {
+        this(bucketList != null ? bucketList.getBuckets() : null);
+    }
+
+    /**
+     * Selects the bucket whose share of the cumulative allocation contains the roll.
+     *
+     * @param dieRoll a roll in [0, 1)
+     * @return the selected bucket or {@code null} if the roll is beyond the total allocation, e.g. because all
+     * buckets are closed
+     */
+    public Bucket select(double dieRoll) {
+        int low = 0;
+        int high = cumulativeAllocations.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (dieRoll < cumulativeAllocations[middle]) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low < buckets.length ? buckets[low] : null;
+    }
+}
@@ -16,13 +16,21 @@
 package com.intuit.wasabi.experiment;
 
 import com.google.inject.AbstractModule;
+import com.intuit.wasabi.assignmentobjects.RuleCache;
 import com.intuit.wasabi.eventlog.EventLogModule;
 import com.intuit.wasabi.experiment.impl.*;
 import com.intuit.wasabi.experimentobjects.ExperimentValidator;
 import com.intuit.wasabi.repository.RepositoryModule;
 import org.slf4j.Logger;
 
+import java.util.Properties;
+
 import static com.google.inject.Scopes.SINGLETON;
+import static com.google.inject.name.Names.named;
+import static com.intuit.autumn.utils.PropertyFactory.create;
+import static com.intuit.autumn.utils.PropertyFactory.getProperty;
+import static java.lang.Boolean.parseBoolean;
+import static java.lang.Integer.parseInt;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -39,12 +47,24 @@ public class ExperimentsModule extends AbstractModule {
         install(new EventLogModule());
         install(new RepositoryModule());
 
+        Properties properties = create("/experiment.properties", ExperimentsModule.class);
+
+        bind(Boolean.class).annotatedWith(named("metadata.cache.enabled"))
+                .toInstance(parseBoolean(getProperty("metadata.cache.enabled", properties, "true")));
+        bind(Integer.class).annotatedWith(named("metadata.cache.refresh.interval"))
+                .toInstance(parseInt(getProperty("metadata.cache.refresh.interval", properties, "30")));
+        bind(Integer.class).annotatedWith(named("rule.cache.max.size"))
+                .toInstance(parseInt(getProperty("rule.cache.max.size", properties,
+                        String.valueOf(RuleCache.DEFAULT_MAX_SIZE))));
+
         bind(Experiments.class).to(ExperimentsImpl.class).in(SINGLETON);
         bind(Buckets.class).to(BucketsImpl.class).in(SINGLETON);
         bind(Mutex.class).to(MutexImpl.class).in(SINGLETON);
         bind(Pages.class).to(PagesImpl.class).in(SINGLETON);
         bind(Priorities.class).to(PrioritiesImpl.class).in(SINGLETON);
         bind(ExperimentValidator.class).in(SINGLETON);
+        bind(MetadataCache.class).to(MetadataCacheImpl.class).in(SINGLETON);
+        bind(RuleCache.class).toProvider(RuleCacheProvider.class).in(SINGLETON);
 
         LOGGER.debug("installed module: {}", ExperimentsModule.class.getSimpleName());
     }
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.experiment;
+
+import com.intuit.wasabi.experimentobjects.Application;
+
+/**
+ * In-memory cache of the assignment related metadata of applications.
+ *
+ * Every application is represented by an immutable {@link ApplicationSnapshot} which is replaced as a whole
+ * whenever the metadata of the application changes on this node, and periodically reconciled with the
+ * repositories to pick up changes made on other nodes.
+ */
+public interface MetadataCache {
+
+    /**
+     * Returns the current snapshot of the application, loading it from the repositories if it is not cached yet.
+     *
+     * @param applicationName the application name
+     * @return the snapshot of the application
+     */
+    ApplicationSnapshot getSnapshot(Application.Name applicationName);
+
+    /**
+     * Rebuilds the snapshot of the application if it is cached. Has to be called after every change
+     * to the experiments, buckets, exclusions, priorities or pages of the application.
+     *
+     * @param applicationName the application name
+     */
+    void refresh(Application.Name applicationName);
+
+    /**
+     * Rebuilds the snapshots of all cached applications.
+     */
+    void refreshAll();
+}
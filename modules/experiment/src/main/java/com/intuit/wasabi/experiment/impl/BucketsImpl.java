@@ -26,6 +26,7 @@ import com.intuit.wasabi.exceptions.ConstraintViolationException;
 import com.intuit.wasabi.exceptions.ExperimentNotFoundException;
 import com.intuit.wasabi.experiment.Buckets;
 import com.intuit.wasabi.experiment.Experiments;
+import com.intuit.wasabi.experiment.MetadataCache;
 import com.intuit.wasabi.experimentobjects.Bucket;
 import com.intuit.wasabi.experimentobjects.BucketList;
 import com.intuit.wasabi.experimentobjects.Experiment;
@@ -53,12 +54,13 @@ public class BucketsImpl implements Buckets {
     private final Buckets buckets;
     private final EventLog eventLog;
     private final ExperimentValidator validator;
+    private final MetadataCache metadataCache;
 
     @Inject
     public BucketsImpl(@DatabaseRepository final ExperimentRepository databaseRepository,
                        @CassandraRepository final ExperimentRepository cassandraRepository,
                        final Experiments experiments, final Buckets buckets, final ExperimentValidator validator,
-                       final EventLog eventLog) {
+                       final EventLog eventLog, final MetadataCache metadataCache) {
         super();
 
         this.validator = validator;
@@ -67,6 +69,7 @@ public class BucketsImpl implements Buckets {
         this.experiments = experiments;
         this.buckets = buckets;
         this.eventLog = eventLog;
+        this.metadataCache = metadataCache;
     }
 
     private static Double roundToTwo(Double x) {
@@ -118,6 +121,7 @@ public class BucketsImpl implements Buckets {
             BucketList updates = buckets.adjustAllocationPercentages(experiment, newBucket);
             buckets.updateBucketAllocBatch(experimentID, updates);
         }
+        metadataCache.refresh(experiment.getApplicationName());
         return getBucket(experimentID, newBucket.getLabel());
     }
 
@@ -234,6 +238,7 @@ public class BucketsImpl implements Buckets {
                 throw e;
             }
             bucket = updatedBucket;
+            metadataCache.refresh(experiment.getApplicationName());
 
             // Update the bucket audit log
             if (!Experiment.State.DRAFT.equals(experiment.getState())) { // Do not audit the changes that are performed in the experiment's DRAFT state
@@ -368,6 +373,7 @@ public class BucketsImpl implements Buckets {
                 cassandraRepository.updateBucketBatch(experimentID, bucketList);
                 throw ex;
             }
+            metadataCache.refresh(experiment.getApplicationName());
 
             //log bucket changes
             for (int i = 0; i < bucketList.getBuckets().size(); i++) {
@@ -431,6 +437,7 @@ public class BucketsImpl implements Buckets {
         cassandraRepository.deleteBucket(experimentID, bucketLabel);
         try {
             databaseRepository.deleteBucket(experimentID, bucketLabel);
+            metadataCache.refresh(experiment.getApplicationName());
             // do not log changes that are done in DRAFT
             if (!Experiment.State.DRAFT.equals(experiment.getState())) {
                 eventLog.postEvent(new BucketDeleteEvent(user, experiment, bucket));
@@ -563,6 +570,7 @@ public class BucketsImpl implements Buckets {
             validator.validateExperimentBuckets(allBuckets.getBuckets());
 
             cassandraRepository.updateBucketBatch(experimentID, changeBucketList);
+            metadataCache.refresh(experiment.getApplicationName());
             for (int i = 0; i < allChanges.size(); i++) {
                 cassandraRepository.logBucketChanges(experimentID, changeBucketList.getBuckets().get(i).getLabel(),
                         allChanges.get(i));
@@ -16,7 +16,6 @@
 package com.intuit.wasabi.experiment.impl;
 
 import com.intuit.hyrule.Rule;
-import com.intuit.hyrule.RuleBuilder;
 import com.intuit.wasabi.assignmentobjects.RuleCache;
 import com.intuit.wasabi.authenticationobjects.UserInfo;
 import com.intuit.wasabi.eventlog.EventLog;
@@ -25,6 +24,7 @@ import com.intuit.wasabi.eventlog.events.ExperimentCreateEvent;
 import com.intuit.wasabi.exceptions.ExperimentNotFoundException;
 import com.intuit.wasabi.experiment.Buckets;
 import com.intuit.wasabi.experiment.Experiments;
+import com.intuit.wasabi.experiment.MetadataCache;
 import com.intuit.wasabi.experiment.Pages;
 import com.intuit.wasabi.experiment.Priorities;
 import com.intuit.wasabi.experimentobjects.*;
@@ -62,12 +62,13 @@ public class ExperimentsImpl implements Experiments {
     private final Experiments experiments;
     private final EventLog eventLog;
     private RuleCache ruleCache;
+    private final MetadataCache metadataCache;
 
     @Inject
     public ExperimentsImpl(@DatabaseRepository ExperimentRepository databaseRepository,
                            @CassandraRepository ExperimentRepository cassandraRepository, Experiments experiments,
                            Buckets buckets, Pages pages, Priorities priorities, ExperimentValidator validator,
-                           RuleCache ruleCache, EventLog eventLog) {
+                           RuleCache ruleCache, EventLog eventLog, MetadataCache metadataCache) {
         super();
         this.validator = validator;
         this.databaseRepository = databaseRepository;
@@ -78,6 +79,7 @@ public class ExperimentsImpl implements Experiments {
         this.priorities = priorities;
         this.ruleCache = ruleCache;
         this.eventLog = eventLog;
+        this.metadataCache = metadataCache;
     }
 
     /**
@@ -172,6 +174,8 @@ public class ExperimentsImpl implements Experiments {
             throw e;
         }
 
+        metadataCache.refresh(newExperiment.getApplicationName());
+
         // allow for logging of the event
         eventLog.postEvent(new ExperimentCreateEvent(user, newExperiment));
     }
@@ -411,6 +415,16 @@ public class ExperimentsImpl implements Experiments {
             changeList.add(changeData);
         }
 
+        if (updates.getIsHashAssignment() != null
+                && !updates.getIsHashAssignment().equals(experiment.getIsHashAssignment())) {
+            builder.withIsHashAssignment(updates.getIsHashAssignment());
+            requiresUpdate = true;
+            changeData = new ExperimentAuditInfo("isHashAssignment",
+                    String.valueOf(Boolean.TRUE.equals(experiment.getIsHashAssignment())),
+                    updates.getIsHashAssignment().toString());
+            changeList.add(changeData);
+        }
+
         if (updates.getUserCap() != null
                 && !updates.getUserCap().equals(experiment.getUserCap())) {
             builder.withUserCap(updates.getUserCap());
@@ -455,8 +469,7 @@ public class ExperimentsImpl implements Experiments {
         Rule oldRule = ruleCache.getRule(experiment.getID());
         Rule newRule;
         if (experiment.getRule() != null && experiment.getRule().length() != 0) {
-            newRule = new RuleBuilder().parseExpression(experiment.getRule());
-            ruleCache.setRule(experiment.getID(), newRule);
+            newRule = ruleCache.getRule(experiment.getID(), experiment.getRule());
             LOGGER.debug("Segmentation rule of " + experiment.getID() + " updated from "
                     + (oldRule != null ? oldRule.getExpressionRepresentation() : null) +
                     " to " + (newRule != null ? newRule.getExpressionRepresentation() : null));
@@ -543,6 +556,8 @@ public class ExperimentsImpl implements Experiments {
                 priorities.removeFromPriorityList(experiment.getApplicationName(), experimentID);
                 // Remove the experiment from the page related data
                 pages.erasePageData(experiment.getApplicationName(), experimentID, user);
+                // The experiment is not evaluated anymore, so its segmentation rule does not need to be cached
+                ruleCache.clearRule(experimentID);
 
                 /*
                 Special case: after a transition to the deleted state,
@@ -554,6 +569,11 @@ public class ExperimentsImpl implements Experiments {
                             .build();
                 }
             }
+
+            metadataCache.refresh(experiment.getApplicationName());
+            if (applicationNameChanged) {
+                metadataCache.refresh(oldExperiment.getApplicationName());
+            }
         }
 
         return experiment;
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.experiment.impl;
+
+import com.google.common.collect.Table;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.name.Named;
+import com.intuit.wasabi.experiment.ApplicationSnapshot;
+import com.intuit.wasabi.experiment.MetadataCache;
+import com.intuit.wasabi.experimentobjects.Application;
+import com.intuit.wasabi.experimentobjects.BucketList;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.experimentobjects.Page;
+import com.intuit.wasabi.experimentobjects.PageExperiment;
+import com.intuit.wasabi.experimentobjects.PrioritizedExperimentList;
+import com.intuit.wasabi.repository.CassandraRepository;
+import com.intuit.wasabi.repository.ExperimentRepository;
+import com.intuit.wasabi.repository.MutexRepository;
+import com.intuit.wasabi.repository.PagesRepository;
+import com.intuit.wasabi.repository.PrioritiesRepository;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * {@link MetadataCache} keeping one {@link ApplicationSnapshot} per application in memory.
+ *
+ * Readers never block on a cached application; rebuilding a snapshot happens next to the current one, which is
+ * then replaced atomically. Snapshots of an application are built one at a time, so a refresh triggered by a
+ * write always ends up with the state after that write.
+ */
+public class MetadataCacheImpl implements MetadataCache {
+
+    private static final Logger LOGGER = getLogger(MetadataCacheImpl.class);
+    private final ExperimentRepository repository;
+    private final MutexRepository mutexRepository;
+    private final PrioritiesRepository prioritiesRepository;
+    private final PagesRepository pagesRepository;
+    private final boolean enabled;
+    private final ConcurrentMap<Application.Name, ApplicationSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Application.Name, Object> locks = new ConcurrentHashMap<>();
+
+    @Inject
+    public MetadataCacheImpl(@CassandraRepository ExperimentRepository repository, MutexRepository mutexRepository,
+                             PrioritiesRepository prioritiesRepository, PagesRepository pagesRepository,
+                             @Named("metadata.cache.enabled") Boolean enabled,
+                             @Named("metadata.cache.refresh.interval") Integer refreshInterval) {
+        super();
+        this.repository = repository;
+        this.mutexRepository = mutexRepository;
+        this.prioritiesRepository = prioritiesRepository;
+        this.pagesRepository = pagesRepository;
+        this.enabled = enabled;
+
+        if (enabled && refreshInterval > 0) {
+            ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("MetadataCache-%d").setDaemon(true).build());
+            reconciler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    refreshAll();
+                }
+            }, refreshInterval, refreshInterval, SECONDS);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ApplicationSnapshot getSnapshot(Application.Name applicationName) {
+        if (!enabled) {
+            return loadSnapshot(applicationName);
+        }
+
+        ApplicationSnapshot snapshot = snapshots.get(applicationName);
+        if (snapshot == null) {
+            synchronized (lockFor(applicationName)) {
+                snapshot = snapshots.get(applicationName);
+                if (snapshot == null) {
+                    snapshot = loadSnapshot(applicationName);
+                    snapshots.put(applicationName, snapshot);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void refresh(Application.Name applicationName) {
+        if (!enabled || applicationName == null) {
+            return;
+        }
+
+        synchronized (lockFor(applicationName)) {
+            // checked under the lock, so that a snapshot loaded concurrently by getSnapshot is rebuilt as well
+            if (!snapshots.containsKey(applicationName)) {
+                return;
+            }
+            try {
+                snapshots.put(applicationName, loadSnapshot(applicationName));
+            } catch (Exception e) {
+                // the next read loads the application again, rather than serving metadata known to be outdated
+                LOGGER.warn("Unable to refresh the metadata of application " + applicationName
+                        + ", evicting it from the cache", e);
+                snapshots.remove(applicationName);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void refreshAll() {
+        for (Application.Name applicationName : new ArrayList<>(snapshots.keySet())) {
+            refresh(applicationName);
+        }
+    }
+
+    private Object lockFor(Application.Name applicationName) {
+        Object lock = locks.get(applicationName);
+        if (lock == null) {
+            Object newLock = new Object();
+            lock = locks.putIfAbsent(applicationName, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+    ApplicationSnapshot loadSnapshot(Application.Name applicationName) {
+        Table<Experiment.ID, Experiment.Label, Experiment> experiments = repository.getExperimentList(applicationName);
+        Set<Experiment.ID> experimentIDs = experiments.rowKeySet();
+
+        Map<Experiment.ID, BucketList> bucketLists = null;
+        Map<Experiment.ID, List<Experiment.ID>> exclusives = null;
+        if (!experimentIDs.isEmpty()) {
+            bucketLists = repository.getBucketList(experimentIDs);
+            exclusives = mutexRepository.getExclusivesList(experimentIDs);
+        }
+        PrioritizedExperimentList priorities = prioritiesRepository.getPriorities(applicationName);
+        Map<Page.Name, List<PageExperiment>> pageExperiments = pagesRepository.getPageExperimentList(applicationName);
+
+        return new ApplicationSnapshot(applicationName, experiments, bucketLists, exclusives, priorities,
+                pageExperiments);
+    }
+}
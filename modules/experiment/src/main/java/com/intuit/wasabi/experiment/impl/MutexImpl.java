@@ -21,6 +21,7 @@ import com.intuit.wasabi.eventlog.events.ExperimentChangeEvent;
 import com.intuit.wasabi.exceptions.EndTimeHasPassedException;
 import com.intuit.wasabi.exceptions.ExperimentNotFoundException;
 import com.intuit.wasabi.experiment.Experiments;
+import com.intuit.wasabi.experiment.MetadataCache;
 import com.intuit.wasabi.experiment.Mutex;
 import com.intuit.wasabi.experimentobjects.Experiment;
 import com.intuit.wasabi.experimentobjects.ExperimentIDList;
@@ -43,16 +44,19 @@ public class MutexImpl implements Mutex {
     private final MutexRepository mutexRepository;
     private final Experiments experiments;
     private final EventLog eventLog;
+    private final MetadataCache metadataCache;
     private static final Logger LOGGER = LoggerFactory.getLogger(MutexImpl.class);
 
     final Date NOW = new Date();
 
     @Inject
-    public MutexImpl(MutexRepository mutexRepository, Experiments experiments, EventLog eventLog) {
+    public MutexImpl(MutexRepository mutexRepository, Experiments experiments, EventLog eventLog,
+                     MetadataCache metadataCache) {
         super();
         this.mutexRepository = mutexRepository;
         this.experiments = experiments;
         this.eventLog = eventLog;
+        this.metadataCache = metadataCache;
     }
 
     /**
@@ -100,6 +104,7 @@ public class MutexImpl implements Mutex {
         }
 
         mutexRepository.deleteExclusion(expID_1, expID_2);
+        metadataCache.refresh(exp_1.getApplicationName());
         eventLog.postEvent(new ExperimentChangeEvent(user, exp_1, "mutex", exp_2.getLabel().toString(), null));
     }
 
@@ -204,6 +209,7 @@ public class MutexImpl implements Mutex {
             tempResult.put("status", "SUCCESS");
             results.add(tempResult);
         }
+        metadataCache.refresh(baseExp.getApplicationName());
         return results;
     }
 }
@@ -22,6 +22,7 @@ import com.intuit.wasabi.eventlog.events.ExperimentChangeEvent;
 import com.intuit.wasabi.exceptions.ApplicationNotFoundException;
 import com.intuit.wasabi.exceptions.ExperimentNotFoundException;
 import com.intuit.wasabi.experiment.Experiments;
+import com.intuit.wasabi.experiment.MetadataCache;
 import com.intuit.wasabi.experiment.Pages;
 import com.intuit.wasabi.experimentobjects.Application;
 import com.intuit.wasabi.experimentobjects.Experiment;
@@ -51,15 +52,17 @@ public class PagesImpl implements Pages {
     private final Experiments experiments;
     private final PagesRepository pagesRepository;
     private final EventLog eventLog;
+    private final MetadataCache metadataCache;
 
     @Inject
     public PagesImpl(@CassandraRepository ExperimentRepository cassandraRepository, PagesRepository pagesRepository,
-                     Experiments experiments, EventLog eventLog) {
+                     Experiments experiments, EventLog eventLog, MetadataCache metadataCache) {
         super();
         this.cassandraRepository = cassandraRepository;
         this.experiments = experiments;
         this.pagesRepository = pagesRepository;
         this.eventLog = eventLog;
+        this.metadataCache = metadataCache;
     }
 
     /**
@@ -69,6 +72,7 @@ public class PagesImpl implements Pages {
     public void postPages(Experiment.ID experimentID, ExperimentPageList experimentPageList, UserInfo user) {
         Application.Name applicationName = getApplicationNameForModifyingPages(experimentID);
         pagesRepository.postPages(applicationName, experimentID, experimentPageList);
+        metadataCache.refresh(applicationName);
 
         Experiment experiment = experiments.getExperiment(experimentID);
         if (experiment != null) {
@@ -88,6 +92,7 @@ public class PagesImpl implements Pages {
     public void deletePage(Experiment.ID experimentID, Page.Name pageName, UserInfo user) {
         Application.Name applicationName = getApplicationNameForModifyingPages(experimentID);
         pagesRepository.deletePage(applicationName, experimentID, pageName);
+        metadataCache.refresh(applicationName);
 
         Experiment experiment = experiments.getExperiment(experimentID);if (experiment != null) {
             eventLog.postEvent(new ExperimentChangeEvent(user, experiment, "pages", pageName.toString(), null));
@@ -139,6 +144,7 @@ public class PagesImpl implements Pages {
     @Override
     public void erasePageData(Application.Name applicationName, Experiment.ID experimentID, UserInfo user) {
         pagesRepository.erasePageData(applicationName, experimentID);
+        metadataCache.refresh(applicationName);
 
         Experiment experiment = experiments.getExperiment(experimentID);
         if (experiment != null) {
@@ -17,6 +17,7 @@ package com.intuit.wasabi.experiment.impl;
 
 import com.intuit.wasabi.exceptions.ApplicationNotFoundException;
 import com.intuit.wasabi.experiment.Experiments;
+import com.intuit.wasabi.experiment.MetadataCache;
 import com.intuit.wasabi.experiment.Priorities;
 import com.intuit.wasabi.experimentobjects.Application;
 import com.intuit.wasabi.experimentobjects.Experiment;
@@ -36,12 +37,15 @@ public class PrioritiesImpl implements Priorities {
 
     private final PrioritiesRepository prioritiesRepository;
     private final Experiments experiments;
+    private final MetadataCache metadataCache;
 
     @Inject
-    public PrioritiesImpl(PrioritiesRepository prioritiesRepository, Experiments experiments) {
+    public PrioritiesImpl(PrioritiesRepository prioritiesRepository, Experiments experiments,
+                          MetadataCache metadataCache) {
         super();
         this.prioritiesRepository = prioritiesRepository;
         this.experiments = experiments;
+        this.metadataCache = metadataCache;
     }
     
     /**
@@ -84,6 +88,7 @@ public class PrioritiesImpl implements Priorities {
             experimentPriorityList.add(adjustedPriorityNum, experimentID);
         }
         prioritiesRepository.createPriorities(applicationName, experimentPriorityList);
+        metadataCache.refresh(applicationName);
     }
 
     /**
@@ -103,6 +108,7 @@ public class PrioritiesImpl implements Priorities {
         if (!priorityList.contains(experimentID)) {
             priorityList.add(experimentID);
             prioritiesRepository.createPriorities(applicationName, priorityList);
+            metadataCache.refresh(applicationName);
         }
     }
 
@@ -115,6 +121,7 @@ public class PrioritiesImpl implements Priorities {
         if (priorityList != null && priorityList.contains(experimentID)) {
             priorityList.remove(experimentID);
             prioritiesRepository.createPriorities(applicationName, priorityList);
+            metadataCache.refresh(applicationName);
         }
     }
 
@@ -136,6 +143,7 @@ public class PrioritiesImpl implements Priorities {
         } else {
             prioritiesRepository.createPriorities(applicationName, experimentIDList.getExperimentIDs());
         }
+        metadataCache.refresh(applicationName);
     }
 
     public List<Experiment.ID> cleanPriorityList(Application.Name applicationName,
@@ -181,6 +189,7 @@ public class PrioritiesImpl implements Priorities {
             List<Experiment> experimentList = experiments.getExperiments(applicationName);
             if ((priorityList != null ? priorityList.size() : 0) != experimentList.size()) {
                 prioritiesRepository.createPriorities(applicationName, cleanPriorityList(applicationName, priorityList));
+                metadataCache.refresh(applicationName);
             }
         }
         return prioritiesRepository.getPriorities(applicationName);
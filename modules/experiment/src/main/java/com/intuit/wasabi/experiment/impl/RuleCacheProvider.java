@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.experiment.impl;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.name.Named;
+import com.intuit.wasabi.assignmentobjects.RuleCache;
+
+/**
+ * Provider for the {@link RuleCache} shared by experiments and assignments
+ */
+public class RuleCacheProvider implements Provider<RuleCache> {
+
+    private final int maxSize;
+
+    @Inject
+    public RuleCacheProvider(@Named("rule.cache.max.size") Integer maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public RuleCache get() {
+        return new RuleCache(maxSize);
+    }
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.experiment;
+
+import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.BucketList;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+public class BucketAllocationTest {
+
+    private final Experiment.ID experimentID = Experiment.ID.newInstance();
+
+    @Test
+    public void selectsBucketsByCumulativeAllocation() {
+        Bucket large = bucket("large", .5, Bucket.State.OPEN);
+        Bucket small = bucket("small", .2, Bucket.State.OPEN);
+        Bucket medium = bucket("medium", .3, Bucket.State.OPEN);
+
+        BucketAllocation allocation = new BucketAllocation(Arrays.asList(large, small, medium));
+
+        assertThat(allocation.select(0), is(small));
+        assertThat(allocation.select(.19), is(small));
+        assertThat(allocation.select(.2), is(medium));
+        assertThat(allocation.select(.49), is(medium));
+        assertThat(allocation.select(.5), is(large));
+        assertThat(allocation.select(.99), is(large));
+    }
+
+    @Test
+    public void leavesOutClosedAndEmptyBuckets() {
+        Bucket open = bucket("open", .5, Bucket.State.OPEN);
+        BucketList bucketList = new BucketList();
+        bucketList.addBucket(bucket("closed", .25, Bucket.State.CLOSED));
+        bucketList.addBucket(bucket("empty", .25, Bucket.State.EMPTY));
+        bucketList.addBucket(open);
+
+        BucketAllocation allocation = new BucketAllocation(bucketList);
+
+        assertThat(allocation.select(.1), is(open));
+        assertNull(allocation.select(.5));
+    }
+
+    @Test
+    public void ordersBucketsWithSameAllocationByLabel() {
+        Bucket blue = bucket("blue", .5, Bucket.State.OPEN);
+        Bucket red = bucket("red", .5, Bucket.State.OPEN);
+        List<Bucket> buckets = Arrays.asList(red, blue);
+
+        BucketAllocation allocation = new BucketAllocation(buckets);
+
+        assertThat(allocation.select(.1), is(blue));
+        assertThat(allocation.select(.6), is(red));
+        assertThat(buckets.get(0), is(red));
+    }
+
+    @Test
+    public void selectsNothingWithoutBuckets() {
+        assertNull(new BucketAllocation((BucketList) null).select(0));
+    }
+
+    private Bucket bucket(String label, double allocation, Bucket.State state) {
+        return Bucket.newInstance(experimentID, Bucket.Label.valueOf(label)).withAllocationPercent(allocation)
+                .withState(state).build();
+    }
+}
@@ -65,6 +65,8 @@ public class BucketsImplTest {
     private Buckets buckets;
     @Mock
     private EventLog eventLog;
+    @Mock
+    private MetadataCache metadataCache;
 
     private final static Application.Name testApp = Application.Name.valueOf("testApp");
     private Experiment.ID experimentID;
@@ -81,7 +83,7 @@ public class BucketsImplTest {
     public void testCreateBucket() throws Exception {
 
         BucketsImpl bucketsImpl = new BucketsImpl(databaseRepository,cassandraRepository,
-                experiments, buckets, validator, eventLog){
+                experiments, buckets, validator, eventLog, metadataCache){
             @Override
             public Bucket getBucket(Experiment.ID experimentID,Bucket.Label bucketLabel){
                 return Bucket.newInstance(experimentID,bucketLabel).withAllocationPercent(.3).build();
@@ -129,7 +131,7 @@ public class BucketsImplTest {
     public void testAdjustAllocationPercentages() {
 
         BucketsImpl bucketsImpl = new BucketsImpl(databaseRepository,cassandraRepository, experiments, buckets,
-                validator, eventLog);
+                validator, eventLog, metadataCache);
 
         Bucket newBucket = Bucket.newInstance(experimentID, bucketLabel).withAllocationPercent(.3).build();
         Bucket bucket = Bucket.newInstance(experimentID, Bucket.Label.valueOf("a")).withAllocationPercent(.4).build();
@@ -165,7 +167,7 @@ public class BucketsImplTest {
     public void testValidateBucketChanges() throws Exception {
 
         BucketsImpl bucketsImpl = new BucketsImpl(databaseRepository,cassandraRepository,
-                experiments, buckets, validator, eventLog);
+                experiments, buckets, validator, eventLog, metadataCache);
 
         Bucket bucket = Bucket.newInstance(experimentID, Bucket.Label.valueOf("a")).withAllocationPercent(.3)
                 .withState(Bucket.State.valueOf("OPEN")).build();
@@ -202,7 +204,7 @@ public class BucketsImplTest {
     public void testGetBucketChangeList() throws Exception {
 
         BucketsImpl bucketsImpl = new BucketsImpl(databaseRepository,cassandraRepository,
-                experiments, buckets, validator, eventLog);
+                experiments, buckets, validator, eventLog, metadataCache);
 
         Bucket bucket = Bucket.newInstance(experimentID, bucketLabel)
                 .withControl(true).withAllocationPercent(.5).withDescription("one").withPayload("pay1").build();
@@ -233,7 +235,7 @@ public class BucketsImplTest {
     @Test
     public void testUpdateBucket() throws Exception{
         BucketsImpl bucketsImpl = new BucketsImpl(databaseRepository, cassandraRepository,
-                experiments, buckets, validator, eventLog);
+                experiments, buckets, validator, eventLog, metadataCache);
         Experiment experiment = Experiment.withID(experimentID)
                 .withApplicationName(testApp)
                 .withState(Experiment.State.DRAFT)
@@ -272,7 +274,7 @@ public class BucketsImplTest {
     public void testUpdateBucketBatch() throws Exception {
 
         BucketsImpl bucketsImpl = new BucketsImpl(databaseRepository, cassandraRepository,
-                experiments, buckets, validator, eventLog);
+                experiments, buckets, validator, eventLog, metadataCache);
 
         Bucket bucket = Bucket.newInstance(experimentID, bucketLabel)
                 .withControl(true).withAllocationPercent(.5)
@@ -306,7 +308,7 @@ public class BucketsImplTest {
     public void testCombineOldAndNewBuckets() throws Exception {
 
         BucketsImpl bucketsImpl = new BucketsImpl(databaseRepository,cassandraRepository,
-                experiments, buckets, validator, eventLog);
+                experiments, buckets, validator, eventLog, metadataCache);
 
         Bucket bucket = Bucket.newInstance(experimentID, Bucket.Label.valueOf("a"))
                 .withControl(true).withAllocationPercent(.5).withDescription("one").build();
@@ -335,7 +337,7 @@ public class BucketsImplTest {
     public void testDeleteBucket() {
 
         BucketsImpl bucketsImpl = new BucketsImpl(databaseRepository, cassandraRepository,
-                experiments, buckets, validator, eventLog);
+                experiments, buckets, validator, eventLog, metadataCache);
 
         Experiment experiment = Experiment.withID(experimentID)
                 .withApplicationName(testApp)
@@ -373,7 +375,7 @@ public class BucketsImplTest {
     @Test
     public void testGetBucketBuilder(){
         BucketsImpl bucketsImpl = new BucketsImpl(databaseRepository, cassandraRepository,
-                experiments, buckets, validator, eventLog);
+                experiments, buckets, validator, eventLog, metadataCache);
         Experiment experiment = Experiment.withID(experimentID)
                 .withApplicationName(testApp)
                 .withState(Experiment.State.DRAFT)
@@ -73,6 +73,8 @@ public class ExperimentsImplTest {
     private Priorities priorities;
     @Mock
     private EventLog eventLog;
+    @Mock
+    private MetadataCache metadataCache;
 
     @Mock
     private Experiment.Builder builder;
@@ -89,7 +91,7 @@ public class ExperimentsImplTest {
         startTime = new Date();
         endTime = new Date(startTime.getTime() + 60000);
         samplingPercent = 0.5;
-        expImpl = new ExperimentsImpl(databaseRepository, cassandraRepository, experiments, buckets, pages, priorities, validator, ruleCache, eventLog);
+        expImpl = new ExperimentsImpl(databaseRepository, cassandraRepository, experiments, buckets, pages, priorities, validator, ruleCache, eventLog, metadataCache);
     }
 
     @Test(expected = InvalidIdentifierException.class)
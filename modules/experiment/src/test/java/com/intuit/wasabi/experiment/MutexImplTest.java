@@ -47,8 +47,9 @@ public class MutexImplTest {
     private CassandraMutexRepository mutexRepository = mock(CassandraMutexRepository.class);
     private ExperimentsImpl experiments = mock(ExperimentsImpl.class);
     private EventLog eventLog = mock(EventLog.class);
+    private MetadataCache metadataCache = mock(MetadataCache.class);
 
-    MutexImpl resource = new MutexImpl(mutexRepository, experiments, eventLog);
+    MutexImpl resource = new MutexImpl(mutexRepository, experiments, eventLog, metadataCache);
     private final static Application.Name testApp = Application.Name.valueOf("testApp");
 
     @Test
@@ -44,6 +44,9 @@ public class MutexImplTest2 {
 	
 	@Mock
     private EventLog eventLog;
+
+	@Mock
+    private MetadataCache metadataCache;
 	
 	@InjectMocks
     MutexImpl resource;
@@ -64,6 +64,8 @@ public class PagesImplTest {
     private PagesRepository pagesRepository;
     @Mock
     private EventLog eventLog;
+    @Mock
+    private MetadataCache metadataCache;
     private Experiment.ID experimentID;
 
     @Before
@@ -73,7 +75,7 @@ public class PagesImplTest {
 
     @Test
     public void testPostPages(){
-        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog);
+        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog, metadataCache);
 
         //Create Experiment and PageList for App
         Experiment experiment = Experiment.withID(experimentID).withApplicationName(testApp).withLabel(Experiment.Label.valueOf("ExperimentLabel")).build();
@@ -114,7 +116,7 @@ public class PagesImplTest {
 
     @Test
     public void testDeletePage(){
-        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog);
+        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog, metadataCache);
 
         //Create Experiment and PageList for App
         Experiment experiment = Experiment.withID(experimentID).withApplicationName(testApp).build();
@@ -155,7 +157,7 @@ public class PagesImplTest {
 
     @Test
     public void testGetExperimentPages(){
-        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog);
+        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog, metadataCache);
 
         //Create Experiment and PageList for App
         Experiment experiment = Experiment.withID(experimentID).withApplicationName(testApp).build();
@@ -179,7 +181,7 @@ public class PagesImplTest {
     @Test
     public void testGetPageExperiments() throws Exception {
 
-        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog);
+        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog, metadataCache);
 
         //Create Experiments for App
         Experiment experiment = Experiment.withID(experimentID).withApplicationName(testApp).build();
@@ -209,7 +211,7 @@ public class PagesImplTest {
     @Test
     public void testGetPageExperimentsWithPages() throws Exception {
 
-        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog);
+        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog, metadataCache);
 
         //Create Experiments for App
         Experiment experiment = Experiment.withID(experimentID).withApplicationName(testApp).build();
@@ -236,7 +238,7 @@ public class PagesImplTest {
 
     @Test
     public void testErasePageDataExperimentNull(){
-        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog);
+        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog, metadataCache);
         UserInfo user = UserInfo.from(UserInfo.Username.valueOf("user")).build();
         pagesImpl.erasePageData(testApp, experimentID, user);
     }
@@ -244,7 +246,7 @@ public class PagesImplTest {
     @Test
     public void testErasePageDataSuccessful(){
         Experiment experiment = Experiment.withID(experimentID).withApplicationName(testApp).build();
-        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog);
+        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog, metadataCache);
         given(experiments.getExperiment(experimentID)).willReturn(experiment);
         UserInfo user = UserInfo.from(UserInfo.Username.valueOf("user")).build();
         willDoNothing().given(eventLog).postEvent(any(ExperimentChangeEvent.class));
@@ -258,7 +260,7 @@ public class PagesImplTest {
     @Test
     public void testGetPageList(){
 
-        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog);
+        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog, metadataCache);
 
         Page page = new Page.Builder().withName(Page.Name.valueOf("somePage")).build();
         List<Page> pageList = new ArrayList<>(1);
@@ -272,7 +274,7 @@ public class PagesImplTest {
     @Test
     public void testGetExperiments(){
 
-        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog);
+        PagesImpl pagesImpl = new PagesImpl(cassandraRepository, pagesRepository, experiments, eventLog, metadataCache);
 
         Experiment.ID expID = Experiment.ID.newInstance();
         Experiment.Label label = Experiment.Label.valueOf("expLabel");
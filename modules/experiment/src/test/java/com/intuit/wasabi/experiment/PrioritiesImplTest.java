@@ -48,10 +48,12 @@ public class PrioritiesImplTest {
     private Experiments experiments;
     @Mock
     private ExperimentValidator validator;
+    @Mock
+    private MetadataCache metadataCache;
 
     @Before
     public void setUp(){
-        prioritiesImpl = new PrioritiesImpl(prioritiesRepository, experiments);
+        prioritiesImpl = new PrioritiesImpl(prioritiesRepository, experiments, metadataCache);
     }
 
     @Test
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.experiment.impl;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import com.intuit.wasabi.experiment.ApplicationSnapshot;
+import com.intuit.wasabi.experimentobjects.Application;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.experimentobjects.PrioritizedExperimentList;
+import com.intuit.wasabi.repository.ExperimentRepository;
+import com.intuit.wasabi.repository.MutexRepository;
+import com.intuit.wasabi.repository.PagesRepository;
+import com.intuit.wasabi.repository.PrioritiesRepository;
+import com.intuit.wasabi.repository.RepositoryException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.util.Collection;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MetadataCacheImplTest {
+
+    private final static Application.Name testApp = Application.Name.valueOf("testApp");
+    @Mock
+    private ExperimentRepository repository;
+    @Mock
+    private MutexRepository mutexRepository;
+    @Mock
+    private PrioritiesRepository prioritiesRepository;
+    @Mock
+    private PagesRepository pagesRepository;
+    private Table<Experiment.ID, Experiment.Label, Experiment> experiments;
+
+    @Before
+    public void setUp() {
+        Experiment experiment = Experiment.withID(Experiment.ID.newInstance()).withApplicationName(testApp)
+                .withLabel(Experiment.Label.valueOf("label")).build();
+        experiments = HashBasedTable.create();
+        experiments.put(experiment.getID(), experiment.getLabel(), experiment);
+        when(repository.getExperimentList(testApp)).thenReturn(experiments);
+        when(prioritiesRepository.getPriorities(testApp)).thenReturn(new PrioritizedExperimentList());
+    }
+
+    @Test
+    public void getSnapshotLoadsOnce() {
+        MetadataCacheImpl cache = new MetadataCacheImpl(repository, mutexRepository, prioritiesRepository,
+                pagesRepository, true, 0);
+
+        ApplicationSnapshot snapshot = cache.getSnapshot(testApp);
+
+        assertThat(cache.getSnapshot(testApp), is(sameInstance(snapshot)));
+        assertThat(snapshot.getExperiments(), is(experiments));
+        // every experiment has an exclusion entry, even if the repository does not return one
+        assertTrue(snapshot.getExclusives().get(experiments.rowKeySet().iterator().next()).isEmpty());
+        verify(repository, times(1)).getExperimentList(testApp);
+    }
+
+    @Test
+    public void refreshReplacesCachedSnapshot() {
+        MetadataCacheImpl cache = new MetadataCacheImpl(repository, mutexRepository, prioritiesRepository,
+                pagesRepository, true, 0);
+
+        ApplicationSnapshot snapshot = cache.getSnapshot(testApp);
+        cache.refresh(testApp);
+
+        assertThat(cache.getSnapshot(testApp), is(not(sameInstance(snapshot))));
+        verify(repository, times(2)).getExperimentList(testApp);
+    }
+
+    @Test
+    public void refreshIgnoresApplicationsNotCached() {
+        MetadataCacheImpl cache = new MetadataCacheImpl(repository, mutexRepository, prioritiesRepository,
+                pagesRepository, true, 0);
+
+        cache.refresh(testApp);
+
+        verify(repository, never()).getExperimentList(testApp);
+    }
+
+    @Test
+    public void refreshDuringLoadReloadsSnapshot() throws Exception {
+        final MetadataCacheImpl cache = new MetadataCacheImpl(repository, mutexRepository, prioritiesRepository,
+                pagesRepository, true, 0);
+        final Thread refresher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                cache.refresh(testApp);
+            }
+        });
+        when(repository.getExperimentList(testApp)).thenAnswer(new Answer<Object>() {
+            private boolean first = true;
+
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                if (first) {
+                    // a write refreshes the application while its first snapshot is still loading
+                    first = false;
+                    refresher.start();
+                    while (refresher.getState() != Thread.State.BLOCKED) {
+                        Thread.sleep(1);
+                    }
+                }
+                return experiments;
+            }
+        });
+
+        cache.getSnapshot(testApp);
+        refresher.join();
+
+        verify(repository, times(2)).getExperimentList(testApp);
+    }
+
+    @Test
+    public void failedRefreshEvictsSnapshot() {
+        MetadataCacheImpl cache = new MetadataCacheImpl(repository, mutexRepository, prioritiesRepository,
+                pagesRepository, true, 0);
+        ApplicationSnapshot snapshot = cache.getSnapshot(testApp);
+
+        when(mutexRepository.getExclusivesList(any(Collection.class)))
+                .thenThrow(new RepositoryException("unavailable"));
+        cache.refresh(testApp);
+
+        doReturn(null).when(mutexRepository).getExclusivesList(any(Collection.class));
+        assertThat(cache.getSnapshot(testApp), is(not(sameInstance(snapshot))));
+        verify(repository, times(3)).getExperimentList(testApp);
+    }
+
+    @Test
+    public void disabledCacheLoadsEveryTime() {
+        MetadataCacheImpl cache = new MetadataCacheImpl(repository, mutexRepository, prioritiesRepository,
+                pagesRepository, false, 0);
+
+        cache.getSnapshot(testApp);
+        cache.getSnapshot(testApp);
+
+        verify(repository, times(2)).getExperimentList(testApp);
+    }
+}
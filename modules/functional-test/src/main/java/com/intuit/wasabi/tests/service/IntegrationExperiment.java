@@ -260,10 +260,10 @@ public class IntegrationExperiment extends TestBase {
                 new Object[]{ExperimentFactory.createExperiment().setState(Constants.EXPERIMENT_STATE_DRAFT), "Unrecognized property \"state\"", HttpStatus.SC_BAD_REQUEST},
                 // FIXME: jwtodd
 //                new Object[] { ExperimentFactory.createCompleteExperiment().setStartTime((String) null), "Repository error", HttpStatus.SC_INTERNAL_SERVER_ERROR },
-                new Object[]{ExperimentFactory.createCompleteExperiment().setStartTime((String) null), "Could not create experiment \"NewExperiment[id=20533222-2a3f-459d-b6b6-5e05ad1104e3,label=SW50ZWdyVGVzdA_Experiment_146123290282853,applicationName=SW50ZWdyVGVzdA_1461232889078App_PRIMARY,startTime=<null>,endTime=Thu Jun 02 10:01:42 UTC 2016,samplingPercent=1.0,description=A sample Experiment description.,rule=(salary < 10000) && (state = 'VA'),isPersonalizationEnabled=false,modelName=,modelVersion=,isRapidExperiment=false,userCap=0,creatorID="+userName+"]\"", HttpStatus.SC_INTERNAL_SERVER_ERROR},
+                new Object[]{ExperimentFactory.createCompleteExperiment().setStartTime((String) null), "Could not create experiment \"NewExperiment[id=20533222-2a3f-459d-b6b6-5e05ad1104e3,label=SW50ZWdyVGVzdA_Experiment_146123290282853,applicationName=SW50ZWdyVGVzdA_1461232889078App_PRIMARY,startTime=<null>,endTime=Thu Jun 02 10:01:42 UTC 2016,samplingPercent=1.0,description=A sample Experiment description.,rule=(salary < 10000) && (state = 'VA'),isPersonalizationEnabled=false,modelName=,modelVersion=,isRapidExperiment=false,isHashAssignment=false,userCap=0,creatorID="+userName+"]\"", HttpStatus.SC_INTERNAL_SERVER_ERROR},
                 // FIXME: jwtodd
 //                new Object[] { ExperimentFactory.createCompleteExperiment().setEndTime((String) null), "Repository error", HttpStatus.SC_INTERNAL_SERVER_ERROR },
-                new Object[]{ExperimentFactory.createCompleteExperiment().setEndTime((String) null), "Could not create experiment \"NewExperiment[id=97daea3b-1523-43e7-8d7c-d7eba2c18ff5,label=SW50ZWdyVGVzdA_Experiment_146123290282954,applicationName=SW50ZWdyVGVzdA_1461232889078App_PRIMARY,startTime=Thu Apr 21 10:01:42 UTC 2016,endTime=<null>,samplingPercent=1.0,description=A sample Experiment description.,rule=(salary < 10000) && (state = 'VA'),isPersonalizationEnabled=false,modelName=,modelVersion=,isRapidExperiment=false,userCap=0,creatorID="+userName+"]\"", HttpStatus.SC_INTERNAL_SERVER_ERROR},
+                new Object[]{ExperimentFactory.createCompleteExperiment().setEndTime((String) null), "Could not create experiment \"NewExperiment[id=97daea3b-1523-43e7-8d7c-d7eba2c18ff5,label=SW50ZWdyVGVzdA_Experiment_146123290282954,applicationName=SW50ZWdyVGVzdA_1461232889078App_PRIMARY,startTime=Thu Apr 21 10:01:42 UTC 2016,endTime=<null>,samplingPercent=1.0,description=A sample Experiment description.,rule=(salary < 10000) && (state = 'VA'),isPersonalizationEnabled=false,modelName=,modelVersion=,isRapidExperiment=false,isHashAssignment=false,userCap=0,creatorID="+userName+"]\"", HttpStatus.SC_INTERNAL_SERVER_ERROR},
                 // FIXME: jwtodd
 //                new Object[] { null, "The server was unable to process the request", HttpStatus.SC_INTERNAL_SERVER_ERROR },
                 new Object[]{null, "null", HttpStatus.SC_INTERNAL_SERVER_ERROR},
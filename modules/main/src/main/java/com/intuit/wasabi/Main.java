@@ -19,6 +19,7 @@ import com.intuit.autumn.metrics.MetricsModule;
 import com.intuit.autumn.service.ServiceManager;
 import com.intuit.wasabi.api.ApiModule;
 import com.intuit.wasabi.eventlog.EventLogService;
+import com.intuit.wasabi.util.concurrent.DrainService;
 import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 
@@ -55,7 +56,8 @@ public class Main {
                 .addModules(ApiModule.class, MetricsModule.class)
                 .addServices(getEnabledWebServices())
                 .addServices(getEnabledMetricsServices())
-                .addServices(EventLogService.class);
+                .addServices(EventLogService.class)
+                .addServices(DrainService.class);
 
         serviceManager.start();
 
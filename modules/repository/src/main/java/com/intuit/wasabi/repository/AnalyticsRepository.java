@@ -18,6 +18,7 @@ package com.intuit.wasabi.repository;
 import com.intuit.wasabi.analyticsobjects.Parameters;
 import com.intuit.wasabi.analyticsobjects.counts.BucketCounts;
 import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.Context;
 import com.intuit.wasabi.experimentobjects.Experiment;
 
 import java.util.Date;
@@ -66,6 +67,38 @@ public interface AnalyticsRepository {
      */
     List<Map> getImpressionRows(Experiment.ID experimentID, Parameters parameters) ;
 
+    /**
+     * Get impression counts per UTC day and bucket from the start of the experiment up to the to time of the
+     * parameters; the from time is ignored. Besides the day, the bucket label "bid", the event count "c" and the
+     * unique user count "cu" of that day, each row holds "nu", the number of users of the bucket who had their
+     * first impression that day. Rows are ordered by day.
+     *
+     * @param experimentID experimentID
+     * @param parameters parameters associated with this experiment
+     * @return impression rows per day
+     */
+    List<Map> getImpressionRowsPerDay(Experiment.ID experimentID, Parameters parameters) ;
+
+    /**
+     * Get action counts per UTC day, bucket and action, see {@link #getImpressionRowsPerDay(Experiment.ID,
+     * Parameters)}. Each row holds the action name in "action".
+     *
+     * @param experimentID experimentID
+     * @param parameters parameters associated with this experiment
+     * @return action rows per day
+     */
+    List<Map> getActionsRowsPerDay(Experiment.ID experimentID, Parameters parameters) ;
+
+    /**
+     * Get joint action counts per UTC day and bucket, see {@link #getImpressionRowsPerDay(Experiment.ID,
+     * Parameters)}.
+     *
+     * @param experimentID experimentID
+     * @param parameters parameters associated with this experiment
+     * @return joint action rows per day
+     */
+    List<Map> getJointActionsPerDay(Experiment.ID experimentID, Parameters parameters) ;
+
     /**
      * Get empty buckets with their labels
      * @param experimentID experimentID
@@ -89,4 +122,61 @@ public interface AnalyticsRepository {
      * @return whether the check succeeded
      */
     boolean checkMostRecentRollup(Experiment experiment, Parameters parameters, Date to) ;
+
+    /**
+     * Get the contexts of all impressions and actions recorded for an experiment
+     * @param experimentID experimentID
+     * @return the contexts
+     */
+    List<Context> getEventContexts(Experiment.ID experimentID) ;
+
+    /**
+     * Get the last day rolled up for the context of the parameters
+     * @param experimentID experimentID
+     * @param parameters parameters holding the context
+     * @return the last day with rollup rows, <code>null</code> if there are none
+     */
+    Date getLatestRollupDay(Experiment.ID experimentID, Parameters parameters) ;
+
+    /**
+     * Write rollup rows for the context of the parameters, replacing existing rows of the same day, bucket
+     * and action. The rows use the keys returned by {@link #getCountsFromRollups(Experiment.ID, Parameters)},
+     * with the day as "yyyy-MM-dd" string.
+     * @param experimentID experimentID
+     * @param parameters parameters holding the context
+     * @param rollupRows the rows to write
+     */
+    void writeRollupRows(Experiment.ID experimentID, Parameters parameters, List<Map> rollupRows) ;
+
+    /**
+     * Acquire or renew a lock shared by all nodes, e.g. to elect the node running a periodic job. The lock is
+     * held until its lease expires unless the owner renews it.
+     * @param lockName name of the lock
+     * @param owner identifies the node acquiring the lock
+     * @param leaseSeconds seconds the lock is held
+     * @return whether the owner holds the lock
+     */
+    boolean acquireLock(String lockName, String owner, int leaseSeconds) ;
+
+    /**
+     * Record that the job guarded by a lock was completed now.
+     * @param lockName name of the lock
+     */
+    void recordCompletedRun(String lockName) ;
+
+    /**
+     * Whether the job guarded by a lock was completed within the given number of seconds.
+     * @param lockName name of the lock
+     * @param seconds seconds before now
+     * @return whether the job was completed within the seconds
+     */
+    boolean hasCompletedRunWithin(String lockName, int seconds) ;
+
+    /**
+     * Add the partitions of the days from today up to the given number of days ahead to the event tables. The
+     * tables are partitioned by day once by the operators, see <code>partition_event_tables.sql</code>.
+     * @param daysAhead number of days after today to add partitions for
+     * @throws com.intuit.wasabi.repository.RepositoryException if an event table is not partitioned yet
+     */
+    void addEventPartitions(int daysAhead) ;
 }
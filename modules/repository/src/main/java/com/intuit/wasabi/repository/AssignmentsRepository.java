@@ -27,6 +27,7 @@ import com.intuit.wasabi.experimentobjects.Experiment;
 
 import javax.ws.rs.core.StreamingOutput;
 import java.util.Date;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -165,4 +166,11 @@ public interface AssignmentsRepository {
      */
     AssignmentCounts getBucketAssignmentCount(Experiment experiment);
 
+    /**
+     * Gets the lengths and overflow counters of the queues of the asynchronous writes
+     *
+     * @return map of queue and counter names to their values
+     */
+    Map<String, Integer> queuesLength();
+
 }
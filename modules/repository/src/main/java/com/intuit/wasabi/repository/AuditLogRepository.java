@@ -16,9 +16,12 @@
 package com.intuit.wasabi.repository;
 
 import com.intuit.wasabi.auditlogobjects.AuditLogEntry;
+import com.intuit.wasabi.auditlogobjects.AuditLogPage;
 import com.intuit.wasabi.experimentobjects.Application;
 
+import java.util.Date;
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * The AuditLogRepository allows easy access to the auditlog tables.
@@ -65,6 +68,25 @@ public interface AuditLogRepository {
      */
     List<AuditLogEntry> getAuditLogEntryList(Application.Name applicationName, int limit);
 
+    /**
+     * Retrieves a page of AuditLogEntries for a specified application, newest first.
+     * The page starts after the entry the continuation token points to and only holds entries in the time range
+     * which match the filter. At most {@code scanLimit} entries are read for one page; if that many do not
+     * yield a full page, a shorter page is returned whose continuation token resumes the scan.
+     *
+     * @param applicationName the application to select
+     * @param from the earliest time of the entries, unbounded if null
+     * @param to the latest time of the entries, unbounded if null
+     * @param continuation the token of the previous page, null for the first page
+     * @param limit the maximum number of entries on the page
+     * @param scanLimit the maximum number of entries to read
+     * @param filter the filter the entries have to match, all entries match if null
+     * @return the page
+     * @throws IllegalArgumentException if the continuation token is invalid
+     */
+    AuditLogPage getAuditLogEntryPage(Application.Name applicationName, Date from, Date to, String continuation,
+                                      int limit, int scanLimit, Predicate<AuditLogEntry> filter);
+
     /**
      * Retrieves the complete list of AuditLogEntries for global events.
      *
@@ -88,4 +110,14 @@ public interface AuditLogRepository {
      * @return true on success
      */
     boolean storeEntry(AuditLogEntry entry);
+
+    /**
+     * Stores AuditLogEntries into the database with a single batch.
+     * The entries should belong to the same application, so that the batch only writes to one partition.
+     *
+     * @param entries the entries to store
+     * @return true on success
+     * @see #storeEntry(AuditLogEntry)
+     */
+    boolean storeEntries(List<AuditLogEntry> entries);
 }
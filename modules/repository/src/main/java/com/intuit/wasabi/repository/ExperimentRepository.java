@@ -28,6 +28,7 @@ import com.netflix.astyanax.model.Rows;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Mid-level interface for the experiments repository
@@ -225,6 +226,38 @@ public interface ExperimentRepository {
      */
     AssignmentCounts getAssignmentCounts(Experiment.ID experimentID, Context context);
 
+    /**
+     * Recounts the assignments of a context, corrects its assignment counters by the difference and marks the
+     * context as reconciled.
+     *
+     * The counters are read before the recount and again once the counter updates which may have been pending
+     * during the recount are written. Only the difference left at both reads is corrected, so that neither pending
+     * counter updates nor assignments made while the context is recounted are counted twice; what is left over is
+     * corrected by the next reconciliation.
+     *
+     * @param experimentID   experiment id
+     * @param context  the context
+     * @param pendingMillis  milliseconds counter updates may be pending for
+     * @return the recounted assignment counts
+     */
+    AssignmentCounts reconcileAssignmentCounts(Experiment.ID experimentID, Context context, long pendingMillis);
+
+    /**
+     * Get the contexts which have assignment counters
+     *
+     * @param experimentID   experiment id
+     * @return the contexts
+     */
+    Set<Context> getAssignmentCountContexts(Experiment.ID experimentID);
+
+    /**
+     * Get the contexts whose assignment counters have been reconciled
+     *
+     * @param experimentID   experiment id
+     * @return the contexts
+     */
+    Set<Context> getReconciledAssignmentCountContexts(Experiment.ID experimentID);
+
     /**
      * Get a bucket list for a list of Experiments in a single cassandra call
      *
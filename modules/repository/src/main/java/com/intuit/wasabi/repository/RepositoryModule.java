@@ -56,10 +56,28 @@ public class RepositoryModule extends AbstractModule {
                 .toInstance(getProperty("assign.bucket.count", properties));
         bind(Integer.class).annotatedWith(named("export.pool.size"))
                 .toInstance(parseInt(getProperty("export.pool.size", properties, "5")));
+        bind(Integer.class).annotatedWith(named("assignments.count.queue.capacity"))
+                .toInstance(parseInt(getProperty("assignments.count.queue.capacity", properties, "10000")));
+        bind(String.class).annotatedWith(named("assignments.count.overflow.policy"))
+                .toInstance(getProperty("assignments.count.overflow.policy", properties, "CALLER_RUNS"));
         bind(Boolean.class).annotatedWith(named("assign.user.to.old"))
                 .toInstance(Boolean.valueOf(getProperty("assign.user.to.old", properties, TRUE.toString())));
         bind(Boolean.class).annotatedWith(named("assign.user.to.new"))
                 .toInstance(Boolean.valueOf(getProperty("assign.user.to.new", properties, TRUE.toString())));
+        bind(Integer.class).annotatedWith(named("assign.user.index.pool.size"))
+                .toInstance(parseInt(getProperty("assign.user.index.pool.size", properties, "5")));
+        bind(Integer.class).annotatedWith(named("assign.user.index.queue.capacity"))
+                .toInstance(parseInt(getProperty("assign.user.index.queue.capacity", properties, "10000")));
+        bind(Integer.class).annotatedWith(named("assign.user.index.max.retries"))
+                .toInstance(parseInt(getProperty("assign.user.index.max.retries", properties, "3")));
+        bind(Integer.class).annotatedWith(named("assign.bucket.count.flush.interval"))
+                .toInstance(parseInt(getProperty("assign.bucket.count.flush.interval", properties, "1000")));
+        bind(Integer.class).annotatedWith(named("assign.bucket.count.flush.threshold"))
+                .toInstance(parseInt(getProperty("assign.bucket.count.flush.threshold", properties, "1000")));
+        bind(Integer.class).annotatedWith(named("export.page.size"))
+                .toInstance(parseInt(getProperty("export.page.size", properties, "1000")));
+        bind(Integer.class).annotatedWith(named("export.prefetch.partitions"))
+                .toInstance(parseInt(getProperty("export.prefetch.partitions", properties, "4")));
         bind(String.class).annotatedWith(named("default.time.format"))
                 .toInstance(getProperty("default.time.format", properties, "yyyy-MM-dd HH:mm:ss"));
         bind(AnalyticsRepository.class).to(DatabaseAnalytics.class).in(SINGLETON);
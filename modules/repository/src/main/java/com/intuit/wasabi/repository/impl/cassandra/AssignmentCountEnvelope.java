@@ -48,6 +48,7 @@ public class AssignmentCountEnvelope implements Runnable {
     private Date date;
     private boolean assignUserToExport;
     private boolean assignBucketCount;
+    private BucketAssignmentCountAggregator aggregator;
 
     /**
      * Constructor
@@ -70,6 +71,32 @@ public class AssignmentCountEnvelope implements Runnable {
                                    Experiment experiment, Assignment assignment, boolean countUp, EventLog eventLog,
                                    Date date, final @Named("assign.user.to.export") Boolean assignUserToExport,
                                    final @Named("assign.bucket.count") Boolean assignBucketCount) {
+        this(assignmentsRepository, cassandraExperimentRepository, dbExperimentRepository, experiment, assignment,
+                countUp, eventLog, date, assignUserToExport, assignBucketCount, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param assignmentsRepository         assignment repository
+     * @param cassandraExperimentRepository cassandra experiment repository
+     * @param dbExperimentRepository        database experiment repository
+     * @param experiment                    experiment object
+     * @param assignment                    assignment object
+     * @param countUp                       boolean value of countup
+     * @param eventLog                      event log object
+     * @param date                          date
+     * @param assignUserToExport            assignUserToExport
+     * @param assignBucketCount             assignBucketCount
+     * @param aggregator                    aggregator of the bucket assignment counts, <code>null</code> to update
+     *                                      and read the counts in Cassandra directly
+     */
+    public AssignmentCountEnvelope(AssignmentsRepository assignmentsRepository,
+                                   ExperimentRepository cassandraExperimentRepository,
+                                   ExperimentRepository dbExperimentRepository,
+                                   Experiment experiment, Assignment assignment, boolean countUp, EventLog eventLog,
+                                   Date date, Boolean assignUserToExport, Boolean assignBucketCount,
+                                   BucketAssignmentCountAggregator aggregator) {
         super();
 
         this.assignmentsRepository = assignmentsRepository;
@@ -82,6 +109,7 @@ public class AssignmentCountEnvelope implements Runnable {
         this.date = date;
         this.assignUserToExport = assignUserToExport;
         this.assignBucketCount = assignBucketCount;
+        this.aggregator = aggregator;
     }
 
     @Override
@@ -89,7 +117,11 @@ public class AssignmentCountEnvelope implements Runnable {
         try {
             // Updates the bucket assignment counts
             if (assignBucketCount) {
-                assignmentsRepository.updateBucketAssignmentCount(experiment, assignment, countUp);
+                if (aggregator != null) {
+                    aggregator.count(experiment, assignment.getContext(), assignment.getBucketLabel(), countUp);
+                } else {
+                    assignmentsRepository.updateBucketAssignmentCount(experiment, assignment, countUp);
+                }
             }
         } catch (Exception e) {
             LOGGER.error("Error updating the assignment counts for experiment: ", experiment.getID() +
@@ -112,13 +144,15 @@ public class AssignmentCountEnvelope implements Runnable {
         // If so, changes the state of the experiment to PAUSED.
         if (experiment.getIsRapidExperiment()) {
             Integer userCap = experiment.getUserCap();
-            AssignmentCounts assignmentCounts = assignmentsRepository.getBucketAssignmentCount(experiment);
-            if (assignmentCounts.getTotalUsers().getBucketAssignments() >= userCap) {
+            if (getBucketAssignments() >= userCap) {
                 boolean successUpdateCassandra = false;
                 //updating the state in Cassandra
                 try {
                     cassandraExperimentRepository.updateExperimentState(experiment, Experiment.State.PAUSED);
                     successUpdateCassandra = true;
+                    if (aggregator != null) {
+                        aggregator.forget(experiment.getID());
+                    }
                     // this is a system event
                     eventLog.postEvent(new ExperimentChangeEvent(experiment, "state", Experiment.State.RUNNING.toString(), Experiment.State.PAUSED.toString()));
                 } catch (Exception e) {
@@ -139,4 +173,13 @@ public class AssignmentCountEnvelope implements Runnable {
             }
         }
     }
+
+    private long getBucketAssignments() {
+        if (aggregator != null) {
+            // the counts of this node which are not flushed yet are included
+            return aggregator.getBucketAssignments(experiment);
+        }
+        AssignmentCounts assignmentCounts = assignmentsRepository.getBucketAssignmentCount(experiment);
+        return assignmentCounts.getTotalUsers().getBucketAssignments();
+    }
 }
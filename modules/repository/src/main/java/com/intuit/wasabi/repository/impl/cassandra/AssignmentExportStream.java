@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.repository.impl.cassandra;
+
+import com.intuit.wasabi.assignmentobjects.DateHour;
+import com.intuit.wasabi.cassandra.CassandraDriver;
+import com.intuit.wasabi.experimentobjects.Context;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.repository.Constants;
+import com.intuit.wasabi.repository.RepositoryException;
+import com.intuit.wasabi.repository.impl.cassandra.serializer.ExperimentIDSerializer;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.model.Rows;
+import com.netflix.astyanax.serializers.DateSerializer;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.DateFormat;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Streams the assignments of an experiment from the hourly partitions of <code>user_assignment_export</code>.
+ *
+ * Each partition is read in pages of <code>pageSize</code> rows, so a partition is never held in memory as a whole.
+ * While a partition is written, the first pages of the next <code>prefetchPartitions</code> partitions are read
+ * concurrently; the partitions are still written in order.
+ */
+class AssignmentExportStream implements StreamingOutput {
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    private static final String HEADER = "experiment_id" + "\t" +
+            "user_id" + "\t" +
+            "context" + "\t" +
+            "bucket_label" + "\t" +
+            "created" + "\t" +
+            LINE_SEPARATOR;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private final CassandraDriver driver;
+    private final ExperimentsKeyspace keyspace;
+    private final ExecutorService prefetchExecutor;
+    private final Experiment.ID experimentID;
+    private final Context context;
+    private final List<DateHour> dateHours;
+    private final boolean ignoreNullBucket;
+    private final DateFormat formatter;
+    private final int pageSize;
+    private final int prefetchPartitions;
+    private final String cql;
+
+    /**
+     * Constructor
+     *
+     * @param driver             the cassandra driver
+     * @param keyspace           the experiments keyspace
+     * @param prefetchExecutor   executor reading the first pages of the next partitions
+     * @param experimentID       the experiment
+     * @param context            the context
+     * @param dateHours          the partitions to export, in output order
+     * @param ignoreNullBucket   whether assignments to the null bucket are left out
+     * @param formatter          formatter of the creation times, only used by the writing thread
+     * @param pageSize           rows per page
+     * @param prefetchPartitions number of partitions read ahead
+     */
+    AssignmentExportStream(CassandraDriver driver, ExperimentsKeyspace keyspace, ExecutorService prefetchExecutor,
+                           Experiment.ID experimentID, Context context, List<DateHour> dateHours,
+                           boolean ignoreNullBucket, DateFormat formatter, int pageSize, int prefetchPartitions) {
+        super();
+
+        this.driver = driver;
+        this.keyspace = keyspace;
+        this.prefetchExecutor = prefetchExecutor;
+        this.experimentID = experimentID;
+        this.context = context;
+        this.dateHours = dateHours;
+        this.ignoreNullBucket = ignoreNullBucket;
+        this.formatter = formatter;
+        this.pageSize = Math.max(1, pageSize);
+        this.prefetchPartitions = Math.max(0, prefetchPartitions);
+        // user_id can only be sliced once the preceding clustering column is_bucket_null is fixed
+        this.cql = "select * from user_assignment_export where experiment_id = ? and day_hour = ? and context = ? " +
+                "and is_bucket_null = ? and user_id > ? limit " + this.pageSize;
+    }
+
+    @Override
+    public void write(OutputStream os) throws IOException, WebApplicationException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(os, Constants.DEFAULT_CHAR_SET), WRITE_BUFFER_SIZE);
+        Deque<Future<Rows<ExperimentsKeyspace.ExperimentIDDayHourComposite, String>>> firstPages =
+                new ArrayDeque<>();
+        StringBuilder line = new StringBuilder(128);
+
+        try {
+            writer.write(HEADER);
+
+            int prefetched = 0;
+            for (DateHour dateHour : dateHours) {
+                // keep the current partition and the next prefetchPartitions partitions in flight
+                while (prefetched < dateHours.size() && firstPages.size() <= prefetchPartitions) {
+                    firstPages.add(prefetchExecutor.submit(firstPage(dateHours.get(prefetched).getDayHour())));
+                    prefetched++;
+                }
+
+                Rows<ExperimentsKeyspace.ExperimentIDDayHourComposite, String> rows = await(firstPages.poll());
+                writeSegment(writer, line, dateHour.getDayHour(), false, rows);
+                if (!ignoreNullBucket) {
+                    writeSegment(writer, line, dateHour.getDayHour(), true,
+                            readPage(dateHour.getDayHour(), true, ""));
+                }
+            }
+        } catch (ConnectionException e) {
+            throw new RepositoryException("Could not retrieve assignment for " +
+                    "experimentID = \"" + experimentID, e);
+        } finally {
+            for (Future<?> firstPage : firstPages) {
+                firstPage.cancel(true);
+            }
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the rows of one partition with the given is_bucket_null value, starting with the given page and
+     * reading the following pages as long as they are full.
+     */
+    private void writeSegment(Writer writer, StringBuilder line, Date dayHour, boolean bucketNull,
+                              Rows<ExperimentsKeyspace.ExperimentIDDayHourComposite, String> page)
+            throws IOException, ConnectionException {
+        Rows<ExperimentsKeyspace.ExperimentIDDayHourComposite, String> rows = page;
+
+        while (true) {
+            String lastUser = null;
+            for (int index = 0; index < rows.size(); index++) {
+                ColumnList<String> columns = rows.getRowByIndex(index).getColumns();
+                lastUser = columns.getStringValue("user_id", null);
+
+                line.setLength(0);
+                line.append(columns.getUUIDValue("experiment_id", null)).append('\t')
+                        .append(lastUser).append('\t')
+                        .append(columns.getStringValue("context", null)).append('\t')
+                        .append(columns.getStringValue("bucket_label", null)).append('\t')
+                        .append(formatter.format(columns.getDateValue("created", null)))
+                        .append(LINE_SEPARATOR);
+                writer.append(line);
+            }
+
+            if (rows.size() < pageSize || lastUser == null) {
+                return;
+            }
+            rows = readPage(dayHour, bucketNull, lastUser);
+        }
+    }
+
+    private Callable<Rows<ExperimentsKeyspace.ExperimentIDDayHourComposite, String>> firstPage(final Date dayHour) {
+        return new Callable<Rows<ExperimentsKeyspace.ExperimentIDDayHourComposite, String>>() {
+            @Override
+            public Rows<ExperimentsKeyspace.ExperimentIDDayHourComposite, String> call() throws ConnectionException {
+                return readPage(dayHour, false, "");
+            }
+        };
+    }
+
+    Rows<ExperimentsKeyspace.ExperimentIDDayHourComposite, String> readPage(Date dayHour, boolean bucketNull,
+                                                                           String afterUser)
+            throws ConnectionException {
+        return driver.getKeyspace()
+                .prepareQuery(keyspace.userAssignmentExport())
+                .withCql(cql)
+                .asPreparedStatement()
+                .withByteBufferValue(experimentID, ExperimentIDSerializer.get())
+                .withByteBufferValue(dayHour, DateSerializer.get())
+                .withStringValue(context.getContext())
+                .withBooleanValue(bucketNull)
+                .withStringValue(afterUser)
+                .execute()
+                .getResult()
+                .getRows();
+    }
+
+    private <T> T await(Future<T> future) throws IOException, ConnectionException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while exporting the assignments of experiment "
+                    + experimentID);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ConnectionException) {
+                throw (ConnectionException) e.getCause();
+            }
+            throw new RepositoryException("Could not retrieve assignment for " +
+                    "experimentID = \"" + experimentID, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.repository.impl.cassandra;
+
+import com.intuit.wasabi.assignmentobjects.Assignment;
+import com.intuit.wasabi.repository.RepositoryException;
+import com.intuit.wasabi.util.concurrent.BoundedExecutor;
+import org.slf4j.Logger;
+
+import java.util.Date;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Asynchronous thread to write the user_experiment_index and user_bucket_index of a new assignment, and the old
+ * user_assignment table if it is kept as a fail safe. Failed writes are retried; writes that already succeeded are
+ * not repeated. The experiment_user_index is written on the request thread, as existing assignments are read from it.
+ *
+ * All writes use the timestamp taken when the assignment was made, which makes retries idempotent and keeps
+ * a late write from overriding a later change of the same assignment.
+ *
+ * An envelope run by the assigning thread because the queue is full is not retried, so that a slow cluster does not
+ * hold up the request with retry delays; a failed write fails the request instead.
+ */
+public class AssignmentIndexEnvelope implements Runnable {
+
+    private static final Logger LOGGER = getLogger(AssignmentIndexEnvelope.class);
+    private static final long RETRY_DELAY_MILLIS = 100;
+    private final CassandraAssignmentsRepository repository;
+    private final Assignment assignment;
+    private final Date date;
+    private final long writeTime;
+    private final int maxRetries;
+    private boolean oldPending;
+    private boolean userToExperimentPending = true;
+    private boolean userToBucketPending = true;
+
+    /**
+     * Constructor
+     *
+     * @param repository      the repository performing the writes
+     * @param assignment      assignment object
+     * @param date            date of the assignment
+     * @param assignUserToOld <code>true</code> if the assignment has to be written to the old table as well
+     * @param writeTime       write timestamp in microseconds
+     * @param maxRetries      number of retries per failed write
+     */
+    public AssignmentIndexEnvelope(CassandraAssignmentsRepository repository, Assignment assignment, Date date,
+                                   boolean assignUserToOld, long writeTime, int maxRetries) {
+        super();
+
+        this.repository = repository;
+        this.assignment = assignment;
+        this.date = date;
+        this.oldPending = assignUserToOld;
+        this.writeTime = writeTime;
+        this.maxRetries = maxRetries;
+    }
+
+    @Override
+    public void run() {
+        if (BoundedExecutor.isRunByCaller()) {
+            writePending();
+            return;
+        }
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            if (attempt > 0) {
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            try {
+                writePending();
+                return;
+            } catch (RepositoryException e) {
+                LOGGER.warn("Attempt " + (attempt + 1) + " to write the indices of " + assignment + " failed", e);
+            }
+        }
+        LOGGER.error("Giving up on writing the indices of " + assignment + " (old table: " + oldPending
+                + ", user_experiment_index: " + userToExperimentPending + ", user_bucket_index: " + userToBucketPending
+                + ")");
+    }
+
+    private void writePending() {
+        if (oldPending) {
+            repository.assignUserToOld(assignment, date, writeTime);
+            oldPending = false;
+        }
+        if (userToExperimentPending) {
+            repository.indexUserToExperiment(assignment, writeTime);
+            userToExperimentPending = false;
+        }
+        if (userToBucketPending) {
+            repository.indexUserToBucket(assignment, writeTime);
+            userToBucketPending = false;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.repository.impl.cassandra;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.Context;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.util.concurrent.Drainable;
+import com.intuit.wasabi.util.concurrent.Drainables;
+import com.netflix.astyanax.connectionpool.exceptions.OperationTimeoutException;
+import com.netflix.astyanax.connectionpool.exceptions.TimeoutException;
+import org.slf4j.Logger;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Aggregates the bucket assignment counts of this node in memory and writes them to
+ * <code>bucket_assignment_counts</code> and <code>bucket_assignment_counts_by_context</code> as one counter update
+ * per experiment, context and bucket, every <code>flushInterval</code> milliseconds once {@link #start() started}
+ * or as soon as <code>flushThreshold</code> changes are pending. Counters without pending changes are dropped by
+ * the flush, so that experiments and contexts which are no longer assigned to are not kept in memory.
+ *
+ * For rapid experiments it keeps the total of bucket assignments last read from Cassandra, so that the user cap
+ * can be checked against that total plus the changes of this node which have not been written yet.
+ *
+ * Counter updates are not idempotent: an update which timed out may have been applied, so it is not written again.
+ * The counters are therefore approximate, and are corrected by the periodic reconciliation of the assignment counts.
+ */
+public class BucketAssignmentCountAggregator implements Drainable {
+
+    private static final Logger LOGGER = getLogger(BucketAssignmentCountAggregator.class);
+    private static final Bucket.Label NULL_LABEL = Bucket.Label.valueOf("NULL");
+    private final CassandraAssignmentsRepository repository;
+    private final int flushInterval;
+    private final int flushThreshold;
+    private final ConcurrentMap<CounterKey, PendingCount> pendingCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Experiment.ID, Experiment> rapidExperiments = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Experiment.ID, Long> flushedBucketAssignments = new ConcurrentHashMap<>();
+    private final LongAdder pendingChanges = new LongAdder();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final ScheduledExecutorService flushExecutor;
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushRequested.set(false);
+            flush();
+        }
+    };
+
+    /**
+     * Constructor
+     *
+     * @param repository     the repository writing and reading the counters
+     * @param flushInterval  milliseconds between two flushes, no periodic flush if not positive
+     * @param flushThreshold number of pending changes triggering an early flush, never if not positive
+     */
+    public BucketAssignmentCountAggregator(CassandraAssignmentsRepository repository, int flushInterval,
+                                           int flushThreshold) {
+        super();
+
+        this.repository = repository;
+        this.flushInterval = flushInterval;
+        this.flushThreshold = flushThreshold;
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("BucketAssignmentCount-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Starts the periodic flushes, once the process has started.
+     */
+    @Override
+    public void start() {
+        if (flushInterval > 0 && started.compareAndSet(false, true)) {
+            flushExecutor.scheduleWithFixedDelay(flushTask, flushInterval, flushInterval, MILLISECONDS);
+        }
+    }
+
+    /**
+     * Counts an assignment (or the removal of one) of the given bucket.
+     *
+     * @param experiment  the experiment
+     * @param context     the context of the assignment
+     * @param bucketLabel the bucket label, <code>null</code> for assignments to the null bucket
+     * @param countUp     <code>true</code> to count up, <code>false</code> to count down
+     */
+    public void count(Experiment experiment, Context context, Bucket.Label bucketLabel, boolean countUp) {
+        CounterKey key = new CounterKey(experiment.getID(), context, bucketLabel == null ? NULL_LABEL : bucketLabel);
+        long change = countUp ? 1 : -1;
+
+        while (true) {
+            PendingCount pendingCount = pendingCountFor(key);
+            pendingCount.add(change);
+            if (!pendingCount.retired) {
+                break;
+            }
+            // the flush dropping this counter may have missed the change, so it is moved to the next counter
+            pendingCount.add(-change);
+        }
+
+        if (Boolean.TRUE.equals(experiment.getIsRapidExperiment())) {
+            rapidExperiments.put(experiment.getID(), experiment);
+        }
+
+        pendingChanges.increment();
+        if (flushThreshold > 0 && pendingChanges.sum() >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(flushTask);
+        }
+    }
+
+    /**
+     * Returns the number of users assigned to a bucket which is not the null bucket: the total last read from
+     * Cassandra plus the changes of this node which have not been written yet.
+     *
+     * @param experiment the experiment
+     * @return the estimated number of bucket assignments
+     */
+    public long getBucketAssignments(Experiment experiment) {
+        Long flushed = flushedBucketAssignments.get(experiment.getID());
+        if (flushed == null) {
+            flushed = readBucketAssignments(experiment);
+        }
+        return flushed + pendingBucketAssignments(experiment.getID());
+    }
+
+    /**
+     * Writes all pending changes and rereads the totals of rapid experiments. Changes which cannot be written
+     * stay pending for the next flush, unless the write timed out and may have been applied.
+     */
+    public synchronized void flush() {
+        // changes counted while writing stay pending towards the flush threshold
+        long changes = pendingChanges.sum();
+
+        for (Map.Entry<CounterKey, PendingCount> entry : pendingCounts.entrySet()) {
+            CounterKey key = entry.getKey();
+            PendingCount pendingCount = entry.getValue();
+
+            // changes counted while writing stay in the counter, only the written delta is taken off
+            long delta = pendingCount.sum();
+            if (delta != 0) {
+                try {
+                    repository.updateBucketAssignmentCount(key.experimentID, key.context, key.bucketLabel, delta);
+                    pendingCount.add(-delta);
+                } catch (Exception e) {
+                    if (isTimeout(e)) {
+                        LOGGER.warn("Timed out writing the assignment count of experiment " + key.experimentID
+                                + " context " + key.context + " bucket " + key.bucketLabel + ", dropping " + delta
+                                + " which may have been applied", e);
+                        pendingCount.add(-delta);
+                        continue;
+                    }
+                    LOGGER.warn("Unable to write the assignment count of experiment " + key.experimentID
+                            + " context " + key.context + " bucket " + key.bucketLabel + ", keeping " + delta
+                            + " for the next flush", e);
+                    continue;
+                }
+            }
+
+            // retired before the check, so that a change counted concurrently is either seen here or moved
+            pendingCount.retired = true;
+            if (pendingCount.sum() == 0) {
+                pendingCounts.remove(key, pendingCount);
+            } else {
+                pendingCount.retired = false;
+            }
+        }
+        pendingChanges.add(-changes);
+
+        for (Experiment experiment : rapidExperiments.values()) {
+            try {
+                readBucketAssignments(experiment);
+            } catch (Exception e) {
+                LOGGER.warn("Unable to read the assignment counts of experiment " + experiment.getID(), e);
+            }
+        }
+    }
+
+    /**
+     * Stops the periodic flushes and writes the pending changes.
+     */
+    public void shutdown() {
+        flushExecutor.shutdown();
+        flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        flushExecutor.shutdown();
+        boolean terminated = flushExecutor.awaitTermination(timeout, unit);
+        flush();
+        Drainables.unregister(this);
+        return terminated;
+    }
+
+    /**
+     * Stops tracking an experiment, e.g. after it reached its user cap. Pending changes are still written.
+     *
+     * @param experimentID the experiment ID
+     */
+    public void forget(Experiment.ID experimentID) {
+        rapidExperiments.remove(experimentID);
+        flushedBucketAssignments.remove(experimentID);
+    }
+
+    private static boolean isTimeout(Exception e) {
+        Throwable cause = e.getCause();
+        return cause instanceof OperationTimeoutException || cause instanceof TimeoutException;
+    }
+
+    private long readBucketAssignments(Experiment experiment) {
+        long bucketAssignments = repository.getBucketAssignmentCount(experiment).getTotalUsers()
+                .getBucketAssignments();
+        flushedBucketAssignments.put(experiment.getID(), bucketAssignments);
+        return bucketAssignments;
+    }
+
+    /**
+     * @return the number of counters kept in memory
+     */
+    int pendingCounters() {
+        return pendingCounts.size();
+    }
+
+    private long pendingBucketAssignments(Experiment.ID experimentID) {
+        long pending = 0;
+        for (Map.Entry<CounterKey, PendingCount> entry : pendingCounts.entrySet()) {
+            if (entry.getKey().experimentID.equals(experimentID) && !NULL_LABEL.equals(entry.getKey().bucketLabel)) {
+                pending += entry.getValue().sum();
+            }
+        }
+        return pending;
+    }
+
+    private PendingCount pendingCountFor(CounterKey key) {
+        PendingCount pendingCount = pendingCounts.get(key);
+        if (pendingCount == null) {
+            PendingCount newCount = new PendingCount();
+            pendingCount = pendingCounts.putIfAbsent(key, newCount);
+            if (pendingCount == null) {
+                pendingCount = newCount;
+            }
+        }
+        return pendingCount;
+    }
+
+    /**
+     * The pending delta of one counter. A counter is retired by the flush dropping it.
+     */
+    private static final class PendingCount extends LongAdder {
+
+        private volatile boolean retired;
+    }
+
+    /**
+     * Experiment, context and bucket of a counter.
+     */
+    private static final class CounterKey {
+
+        private final Experiment.ID experimentID;
+        private final Context context;
+        private final Bucket.Label bucketLabel;
+
+        CounterKey(Experiment.ID experimentID, Context context, Bucket.Label bucketLabel) {
+            this.experimentID = experimentID;
+            this.context = context;
+            this.bucketLabel = bucketLabel;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CounterKey)) {
+                return false;
+            }
+            CounterKey other = (CounterKey) obj;
+            return experimentID.equals(other.experimentID) && Objects.equals(context, other.context)
+                    && bucketLabel.equals(other.bucketLabel);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(experimentID, context, bucketLabel);
+        }
+    }
+}
@@ -41,6 +41,9 @@ import com.intuit.wasabi.repository.impl.cassandra.serializer.ApplicationNameSer
 import com.intuit.wasabi.repository.impl.cassandra.serializer.BucketLabelSerializer;
 import com.intuit.wasabi.repository.impl.cassandra.serializer.ExperimentIDSerializer;
 import com.intuit.wasabi.repository.impl.cassandra.serializer.UserIDSerializer;
+import com.intuit.wasabi.util.concurrent.BoundedExecutor;
+import com.intuit.wasabi.util.concurrent.Drainables;
+import com.intuit.wasabi.util.concurrent.OverflowPolicy;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import com.netflix.astyanax.model.ColumnList;
 import com.netflix.astyanax.model.Rows;
@@ -50,22 +53,14 @@ import com.netflix.astyanax.serializers.StringSerializer;
 import com.netflix.astyanax.serializers.UUIDSerializer;
 import org.slf4j.Logger;
 
-import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.StreamingOutput;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.nio.ByteBuffer;
 import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -84,12 +79,19 @@ public class CassandraAssignmentsRepository implements AssignmentsRepository {
     private final Boolean assignUserToExport;
     private final Boolean assignBucketCount;
     private final String defaultTimeFormat;
-    private LinkedBlockingQueue assignmentsCountQueue = new LinkedBlockingQueue<>();
     private int assignmentsCountThreadPoolSize;
-    private ThreadPoolExecutor assignmentsCountExecutor;
+    private BoundedExecutor assignmentsCountExecutor;
     private boolean assignUserToOld;
     private boolean assignUserToNew;
+    private BoundedExecutor assignmentsIndexExecutor;
+    private int assignmentsIndexMaxRetries;
+    private BucketAssignmentCountAggregator bucketAssignmentCountAggregator;
+    private BoundedExecutor assignmentsExportExecutor;
+    private int exportPageSize;
+    private int exportPrefetchPartitions;
     private static final Logger LOGGER = getLogger(CassandraAssignmentsRepository.class);
+    private static final String ASSIGNMENTS_COUNT = "assignmentsCount";
+    private static final String ASSIGNMENTS_INDEX = "assignmentsIndex";
 
     @Inject
     public CassandraAssignmentsRepository(@CassandraRepository ExperimentRepository experimentRepository,
@@ -101,7 +103,16 @@ public class CassandraAssignmentsRepository implements AssignmentsRepository {
                                           final @Named("assign.user.to.new") Boolean assignUserToNew,
                                           final @Named("assign.user.to.export") Boolean assignUserToExport,
                                           final @Named("assign.bucket.count") Boolean assignBucketCount,
-                                          final @Named("default.time.format") String defaultTimeFormat)
+                                          final @Named("default.time.format") String defaultTimeFormat,
+                                          final @Named("assign.user.index.pool.size") Integer assignmentsIndexThreadPoolSize,
+                                          final @Named("assign.user.index.queue.capacity") Integer assignmentsIndexQueueCapacity,
+                                          final @Named("assign.user.index.max.retries") Integer assignmentsIndexMaxRetries,
+                                          final @Named("assign.bucket.count.flush.interval") Integer bucketCountFlushInterval,
+                                          final @Named("assign.bucket.count.flush.threshold") Integer bucketCountFlushThreshold,
+                                          final @Named("assignments.count.queue.capacity") Integer assignmentsCountQueueCapacity,
+                                          final @Named("assignments.count.overflow.policy") String assignmentsCountOverflowPolicy,
+                                          final @Named("export.page.size") Integer exportPageSize,
+                                          final @Named("export.prefetch.partitions") Integer exportPrefetchPartitions)
             throws IOException, ConnectionException {
         super();
 
@@ -118,8 +129,48 @@ public class CassandraAssignmentsRepository implements AssignmentsRepository {
         this.assignBucketCount = assignBucketCount;
         this.defaultTimeFormat = defaultTimeFormat;
 
-        assignmentsCountExecutor = (ThreadPoolExecutor) new ThreadPoolExecutor(assignmentsCountThreadPoolSize,
-                assignmentsCountThreadPoolSize, 0L, MILLISECONDS, assignmentsCountQueue);
+        assignmentsCountExecutor = new BoundedExecutor.Builder("AssignmentsCount")
+                .withPoolSize(assignmentsCountThreadPoolSize)
+                .withQueueCapacity(assignmentsCountQueueCapacity)
+                .withOverflowPolicy(OverflowPolicy.fromString(assignmentsCountOverflowPolicy))
+                .build();
+
+        // Bounded so that a slow cluster pushes back on the assignment calls: once the queue is full
+        // the calling thread writes the indices itself
+        this.assignmentsIndexMaxRetries = assignmentsIndexMaxRetries;
+        assignmentsIndexExecutor = new BoundedExecutor.Builder("AssignmentsIndex")
+                .withPoolSize(assignmentsIndexThreadPoolSize)
+                .withQueueCapacity(assignmentsIndexQueueCapacity)
+                .withOverflowPolicy(OverflowPolicy.CALLER_RUNS)
+                .build();
+
+        // Bucket assignment counts are aggregated per node and written as one delta per bucket; registered
+        // after the count executor, so that the counts still queued there are flushed on shutdown as well.
+        // The periodic flushes start with the process, see DrainService
+        bucketAssignmentCountAggregator = new BucketAssignmentCountAggregator(this, bucketCountFlushInterval,
+                bucketCountFlushThreshold);
+        Drainables.register(bucketAssignmentCountAggregator);
+
+        // Reads the first pages of the partitions an export is about to write; when all threads are busy
+        // the exporting thread reads them itself
+        this.exportPageSize = exportPageSize;
+        this.exportPrefetchPartitions = exportPrefetchPartitions;
+        assignmentsExportExecutor = new BoundedExecutor.Builder("AssignmentsExport")
+                .withPoolSize(Math.max(1, exportPrefetchPartitions))
+                .withQueueCapacity(Math.max(1, exportPrefetchPartitions))
+                .withOverflowPolicy(OverflowPolicy.CALLER_RUNS)
+                .build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Integer> queuesLength() {
+        Map<String, Integer> queueLengthMap = new HashMap<>();
+        BoundedExecutor.putMetrics(ASSIGNMENTS_COUNT, assignmentsCountExecutor, queueLengthMap);
+        BoundedExecutor.putMetrics(ASSIGNMENTS_INDEX, assignmentsIndexExecutor, queueLengthMap);
+        return queueLengthMap;
     }
 
     @Override
@@ -179,26 +230,35 @@ public class CassandraAssignmentsRepository implements AssignmentsRepository {
     @Timed
     public Assignment assignUser(Assignment assignment, Experiment experiment, Date date) {
         Assignment new_assignment = null;
+        // All writes of this assignment carry the same timestamp, so that the asynchronous ones
+        // can neither overwrite nor resurrect data changed after this call
+        long writeTime = currentWriteTime();
+        boolean writeOldAsync = false;
 
-        if (assignUserToOld) {
-            //Writing assignment to the old table - user_assignment
-            new_assignment = assignUserToOld(assignment, date);
-        }
         if (assignUserToNew) {
             //Writing assignment to the new table - user_assignment_look_up
             new_assignment = assignUserToLookUp(assignment, date);
+            //the old table is only a fail safe if the new one is in use
+            writeOldAsync = assignUserToOld;
+        } else if (assignUserToOld) {
+            //Writing assignment to the old table - user_assignment
+            new_assignment = assignUserToOld(assignment, date, writeTime);
         }
 
+        // existing assignments are looked up in experiment_user_index, so a repeated request must find this one
+        indexExperimentsToUser(assignment, writeTime);
+
         //Updating the assignment bucket counts, user_assignment_export
         // in a asynchronous AssignmentCountEnvelope thread
         boolean countUp = true;
 
         assignmentsCountExecutor.execute(new AssignmentCountEnvelope(assignmentsRepository, experimentRepository,
-                dbRepository, experiment, assignment, countUp, eventLog, date, assignUserToExport, assignBucketCount));
+                dbRepository, experiment, assignment, countUp, eventLog, date, assignUserToExport, assignBucketCount,
+                bucketAssignmentCountAggregator));
 
-        indexUserToExperiment(assignment);
-        indexUserToBucket(assignment);
-        indexExperimentsToUser(assignment);
+        //Writing the other indices (and the old table) off the request thread
+        assignmentsIndexExecutor.execute(new AssignmentIndexEnvelope(this, assignment, date, writeOldAsync,
+                writeTime, assignmentsIndexMaxRetries));
 
         return new_assignment;
     }
@@ -259,16 +319,28 @@ public class CassandraAssignmentsRepository implements AssignmentsRepository {
     @Override
     @Timed
     public Assignment assignUserToOld(Assignment assignment, Date date) {
+        return assignUserToOld(assignment, date, currentWriteTime());
+    }
+
+    /**
+     * Adds the assignment to the old user assignment table.
+     *
+     * @param assignment assignment
+     * @param date       date
+     * @param writeTime  the write timestamp in microseconds
+     * @return user's assignment
+     */
+    Assignment assignUserToOld(Assignment assignment, Date date, long writeTime) {
         final String CQL;
 
         if (assignment.getBucketLabel() != null) {
             CQL = "insert into user_assignment " +
                     "(experiment_id, user_id, context, created, bucket_label) " +
-                    "values (?, ?, ?, ?, ?)";
+                    "values (?, ?, ?, ?, ?) using timestamp ?";
         } else {
             CQL = "insert into user_assignment " +
                     "(experiment_id, user_id, context, created) " +
-                    "values (?, ?, ?, ?)";
+                    "values (?, ?, ?, ?) using timestamp ?";
         }
 
         try {
@@ -285,6 +357,7 @@ public class CassandraAssignmentsRepository implements AssignmentsRepository {
             if (assignment.getBucketLabel() != null) {
                 query.withByteBufferValue(assignment.getBucketLabel(), BucketLabelSerializer.get());
             }
+            query.withLongValue(writeTime);
 
             query.execute();
             return (Assignment.newInstance(assignment.getExperimentID())
@@ -367,18 +440,25 @@ public class CassandraAssignmentsRepository implements AssignmentsRepository {
     }
 
 
+    /**
+     * @return the current time in microseconds, as used for cassandra write timestamps
+     */
+    private static long currentWriteTime() {
+        return System.currentTimeMillis() * 1000;
+    }
+
     //add to cassandra table a user-indexed table of experiments for mutual exclusion
     @Timed
-    private void indexExperimentsToUser(Assignment assignment) {
+    void indexExperimentsToUser(Assignment assignment, long writeTime) {
 
         String CQL = (assignment.getBucketLabel() != null)
 
                 ? "insert into experiment_user_index " +
                 "(user_id, context, app_name, experiment_id, bucket) " +
-                "values (?, ?, ?, ?, ?)"
+                "values (?, ?, ?, ?, ?) using timestamp ?"
                 : "insert into experiment_user_index " +
                 "(user_id, context, app_name, experiment_id) " +
-                "values (?, ?, ?, ?)";
+                "values (?, ?, ?, ?) using timestamp ?";
 
         try {
 
@@ -394,6 +474,7 @@ public class CassandraAssignmentsRepository implements AssignmentsRepository {
             if (assignment.getBucketLabel() != null) {
                 query.withByteBufferValue(assignment.getBucketLabel(), BucketLabelSerializer.get());
             }
+            query.withLongValue(writeTime);
             query.execute();
         } catch (ConnectionException e) {
             throw new RepositoryException("Could not index experiment to user \"" + assignment + "\"", e);
@@ -401,11 +482,11 @@ public class CassandraAssignmentsRepository implements AssignmentsRepository {
     }
 
     @Timed
-    private void indexUserToExperiment(Assignment assignment) {
+    void indexUserToExperiment(Assignment assignment, long writeTime) {
 
         final String CQL = "insert into user_experiment_index " +
                 "(app_name, user_id, context, experiment_id, bucket_label) " +
-                "values (?, ?, ?, ?, ?)";
+                "values (?, ?, ?, ?, ?) using timestamp ?";
         try {
             PreparedCqlQuery<Application.Name, String> query =
                     driver.getKeyspace()
@@ -423,6 +504,7 @@ public class CassandraAssignmentsRepository implements AssignmentsRepository {
             } else {
                 query.withValue(ByteBuffer.wrap(new byte[0]));
             }
+            query.withLongValue(writeTime);
 
             query.execute();
         } catch (ConnectionException e) {
@@ -432,11 +514,11 @@ public class CassandraAssignmentsRepository implements AssignmentsRepository {
     }
 
     @Timed
-    private void indexUserToBucket(Assignment assignment) {
+    void indexUserToBucket(Assignment assignment, long writeTime) {
 
         final String CQL = "insert into user_bucket_index " +
                 "(experiment_id, user_id, context, assigned, bucket_label) " +
-                "values (?, ?, ?, ?, ?)";
+                "values (?, ?, ?, ?, ?) using timestamp ?";
 
         try {
             final Date NOW = new Date();
@@ -457,6 +539,7 @@ public class CassandraAssignmentsRepository implements AssignmentsRepository {
             } else {
                 query.withValue(ByteBuffer.wrap(new byte[0]));
             }
+            query.withLongValue(writeTime);
 
             query.execute();
         } catch (ConnectionException e) {
@@ -670,7 +753,7 @@ public class CassandraAssignmentsRepository implements AssignmentsRepository {
         boolean countUp = false;
         assignmentsCountExecutor.execute(new AssignmentCountEnvelope(assignmentsRepository, experimentRepository,
                 dbRepository, experiment, currentAssignment, countUp, eventLog, null, assignUserToExport,
-                assignBucketCount));
+                assignBucketCount, bucketAssignmentCountAggregator));
         deleteAssignmentOld(experiment.getID(), userID, context, appName, currentAssignment.getBucketLabel());
         removeIndexUserToExperiment(userID, experiment.getID(), context, appName);
         removeIndexUserToBucket(userID, experiment.getID(), context, currentAssignment.getBucketLabel());
@@ -787,78 +870,12 @@ public class CassandraAssignmentsRepository implements AssignmentsRepository {
 
         // Fetches the relevant partitions for a given time window where the user assignments data resides.
         final List<DateHour> dateHours = getUserAssignmentPartitions(from_ts_new, to_ts_new);
-        final String CQL;
-
-        if (ignoreNullBucket == false) {
-            CQL =
-                    "select * from user_assignment_export " +
-                            "where experiment_id = ? and day_hour = ? and context = ?";
-        } else {
-            CQL =
-                    "select * from user_assignment_export " +
-                            "where experiment_id = ? and day_hour = ? and context = ? and is_bucket_null = false";
-        }
-
-        return new StreamingOutput() {
-            @Override
-            public void write(OutputStream os) throws IOException, WebApplicationException {
-                Writer writer = new BufferedWriter(new OutputStreamWriter(os, Constants.DEFAULT_CHAR_SET ));
-
-                String header = "experiment_id" + "\t" +
-                        "user_id" + "\t" +
-                        "context" + "\t" +
-                        "bucket_label" + "\t" +
-                        "created" + "\t" +
-                        System.getProperty("line.separator");
-                writer.write(header);
-                String output;
-                DateFormat formatter = new SimpleDateFormat(defaultTimeFormat);
-
-                formatter.setTimeZone(parameters.getTimeZone());
-                try {
-                    // Iterating through the different partitions across which the data resides
-                    for (int ipart = 0; ipart < dateHours.size(); ipart = ipart + 1) {
-                        Rows<ExperimentsKeyspace.ExperimentIDDayHourComposite, String> data =
-                                driver.getKeyspace()
-                                        .prepareQuery(keyspace.userAssignmentExport())
-                                        .withCql(CQL)
-                                        .asPreparedStatement()
-                                        // experiment_id
-                                        .withByteBufferValue(
-                                                experimentID,
-                                                ExperimentIDSerializer.get())
-                                        //day_hour
-                                        .withByteBufferValue(dateHours.get(ipart).getDayHour(), DateSerializer.get())
-                                        //context
-                                        .withStringValue(context.getContext())
-                                        .execute()
-                                        .getResult()
-                                        .getRows();
-
-                        for (int index = 0; index < data.size(); index = index + 1) {
-                            ColumnList<String> columns = data.getRowByIndex(index).getColumns();
-                            String id = String.valueOf(columns.getUUIDValue("experiment_id", null));
-                            String user = columns.getStringValue("user_id", null);
-                            String context_string = columns.getStringValue("context", null);
-                            String bucket_label = columns.getStringValue("bucket_label", null);
-                            Date date = columns.getDateValue("created", null);
-                            final Date converted_date = new Timestamp(date.getTime());
-                            String created = formatter.format(converted_date);
-                            output = id + '\t' + user + '\t' + context_string + '\t' + bucket_label + '\t' + created
-                                    + System.getProperty("line.separator");
-                            writer.write(output);
-                        }
-
-                    }
-                } catch (ConnectionException e) {
-                    throw new RepositoryException("Could not retrieve assignment for " +
-                            "experimentID = \"" + experimentID, e);
-                } finally {
-                    writer.close();
-                }
+        DateFormat formatter = new SimpleDateFormat(defaultTimeFormat);
+        formatter.setTimeZone(parameters.getTimeZone());
 
-            }
-        };
+        return new AssignmentExportStream(driver, keyspace, assignmentsExportExecutor, experimentID, context,
+                dateHours, Boolean.TRUE.equals(ignoreNullBucket), formatter, exportPageSize,
+                exportPrefetchPartitions);
     }
 
 
@@ -951,27 +968,46 @@ public class CassandraAssignmentsRepository implements AssignmentsRepository {
     @Timed
     public void updateBucketAssignmentCount(Experiment experiment, Assignment assignment, boolean countUp) {
         Bucket.Label bucketLabel = assignment.getBucketLabel();
-        Bucket.Label bucketLabel1 = null;
-        String CQL;
-        bucketLabel1 = (bucketLabel == null) ? Bucket.Label.valueOf("NULL") : bucketLabel;
-        if (countUp) {
-            CQL = "UPDATE bucket_assignment_counts SET bucket_assignment_count = bucket_assignment_count + 1 " +
-                    "WHERE experiment_id =? and bucket_label = ?";
-        } else {
-            CQL = "UPDATE bucket_assignment_counts SET bucket_assignment_count = bucket_assignment_count - 1 " +
-                    "WHERE experiment_id =? and bucket_label = ?";
-        }
+        Bucket.Label bucketLabel1 = (bucketLabel == null) ? Bucket.Label.valueOf("NULL") : bucketLabel;
+        updateBucketAssignmentCount(experiment.getID(), assignment.getContext(), bucketLabel1, countUp ? 1 : -1);
+    }
+
+    /**
+     * Changes the assignment count of a bucket by the given delta, both in total and in the given context. Both
+     * counters are updated by one batch. Counter updates are not idempotent: an update which timed out may have
+     * been applied, so retrying it may count the delta twice.
+     *
+     * @param experimentID the experiment ID
+     * @param context      the context of the assignments
+     * @param bucketLabel  the bucket label, <code>NULL</code> for the null bucket
+     * @param delta        the number of assignments to add, negative to subtract
+     */
+    @Timed
+    void updateBucketAssignmentCount(Experiment.ID experimentID, Context context, Bucket.Label bucketLabel,
+                                     long delta) {
+        final String CQL = "BEGIN COUNTER BATCH " +
+                "UPDATE bucket_assignment_counts SET bucket_assignment_count = bucket_assignment_count + ? " +
+                "WHERE experiment_id = ? and bucket_label = ?; " +
+                "UPDATE bucket_assignment_counts_by_context " +
+                "SET bucket_assignment_count = bucket_assignment_count + ? " +
+                "WHERE experiment_id = ? and context = ? and bucket_label = ?; " +
+                "APPLY BATCH;";
         try {
             driver.getKeyspace()
                     .prepareQuery(keyspace.bucketAssignmentCountsCF())
                     .withCql(CQL)
                     .asPreparedStatement()
-                    .withByteBufferValue(experiment.getID(), ExperimentIDSerializer.get())
-                    .withByteBufferValue(bucketLabel1, BucketLabelSerializer.get())
+                    .withLongValue(delta)
+                    .withByteBufferValue(experimentID, ExperimentIDSerializer.get())
+                    .withByteBufferValue(bucketLabel, BucketLabelSerializer.get())
+                    .withLongValue(delta)
+                    .withByteBufferValue(experimentID, ExperimentIDSerializer.get())
+                    .withStringValue(context.getContext())
+                    .withByteBufferValue(bucketLabel, BucketLabelSerializer.get())
                     .execute();
         } catch (ConnectionException e) {
-            throw new RepositoryException("Could not update the bucket count for experiment " + experiment.getID()
-                    + " bucket " + bucketLabel1.toString(), e);
+            throw new RepositoryException("Could not update the bucket count for experiment " + experimentID
+                    + " context " + context + " bucket " + bucketLabel.toString(), e);
         }
     }
 
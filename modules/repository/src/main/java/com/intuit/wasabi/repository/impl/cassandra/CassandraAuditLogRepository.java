@@ -18,6 +18,7 @@ package com.intuit.wasabi.repository.impl.cassandra;
 import com.google.inject.Inject;
 import com.intuit.wasabi.auditlogobjects.AuditLogAction;
 import com.intuit.wasabi.auditlogobjects.AuditLogEntry;
+import com.intuit.wasabi.auditlogobjects.AuditLogPage;
 import com.intuit.wasabi.authenticationobjects.UserInfo;
 import com.intuit.wasabi.cassandra.CassandraDriver;
 import com.intuit.wasabi.cassandra.ExperimentDriver;
@@ -39,10 +40,14 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -52,6 +57,13 @@ import static org.slf4j.LoggerFactory.getLogger;
 public class CassandraAuditLogRepository implements AuditLogRepository {
 
     private static final Logger LOGGER = getLogger(CassandraAuditLogRepository.class);
+    /** Number of entries read at once when a filter may drop some of them. */
+    private static final int FILTERED_BATCH_SIZE = 100;
+    private static final String INSERT_CQL = "INSERT INTO auditlog ( event_id, application_name, time, action, "
+            + "user_firstname, user_lastname, user_email, user_username, user_userid, "
+            + "experiment_id, experiment_label, bucket_label, "
+            + "changed_property, property_before, property_after )"
+            + " VALUES ( uuid(), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ? );";
     private final CassandraDriver driver;
     private final ExperimentsKeyspace keyspace;
 
@@ -113,6 +125,76 @@ public class CassandraAuditLogRepository implements AuditLogRepository {
         return readAuditLogEntryList(applicationName, rows);
     }
 
+    /**
+     * Retrieves a page of AuditLogEntries for a specified application, newest first.
+     * <br />
+     * The entries are read in the clustering order of the application's partition, (time DESC, event_id ASC),
+     * starting right after the entry the continuation token points to: first the remaining entries with the
+     * same time, then the older ones. The time range is part of the query, the filter is applied to the read
+     * entries until the page is full, the partition is exhausted or {@code scanLimit} entries were read.
+     *
+     * @param applicationName the application to select
+     * @param from the earliest time of the entries, unbounded if null
+     * @param to the latest time of the entries, unbounded if null
+     * @param continuation the token of the previous page, null for the first page
+     * @param limit the maximum number of entries on the page
+     * @param scanLimit the maximum number of entries to read
+     * @param filter the filter the entries have to match, all entries match if null
+     * @return the page
+     * @throws IllegalArgumentException if the continuation token is invalid
+     */
+    @Override
+    public AuditLogPage getAuditLogEntryPage(Application.Name applicationName, Date from, Date to,
+                                             String continuation, int limit, int scanLimit,
+                                             Predicate<AuditLogEntry> filter) {
+        List<AuditLogEntry> entries = new ArrayList<>();
+        if (limit <= 0) {
+            return new AuditLogPage(entries, continuation);
+        }
+
+        Object[] position = decodeContinuation(continuation);
+        int batchSize = filter == null ? limit : Math.max(limit, FILTERED_BATCH_SIZE);
+        int scanned = 0;
+
+        while (true) {
+            List<Row<Application.Name, String>> rows = new ArrayList<>(batchSize);
+            boolean exhausted = false;
+
+            if (position != null) {
+                addAll(rows, cqlWithValues("SELECT * FROM auditlog WHERE application_name = ? AND time = ? "
+                        + "AND event_id > ? LIMIT " + batchSize + ";", applicationName, position[0], position[1]));
+            }
+            if (rows.size() < batchSize) {
+                Rows<Application.Name, String> older = cqlWithValues(
+                        "SELECT * FROM auditlog WHERE application_name = ?"
+                                + (position != null ? " AND time < ?" : to != null ? " AND time <= ?" : "")
+                                + (from != null ? " AND time >= ?" : "")
+                                + " LIMIT " + batchSize + ";",
+                        applicationName, position != null ? position[0] : to, from);
+                addAll(rows, older);
+                exhausted = older.size() < batchSize;
+            }
+
+            for (Row<Application.Name, String> row : rows) {
+                position = new Object[]{row.getColumns().getDateValue("time", null),
+                        row.getColumns().getUUIDValue("event_id", null)};
+                scanned++;
+
+                AuditLogEntry auditLogEntry = readAuditLogEntry(applicationName, row.getColumns());
+                if (auditLogEntry != null && (filter == null || filter.test(auditLogEntry))) {
+                    entries.add(auditLogEntry);
+                }
+                if (entries.size() >= limit || scanned >= scanLimit) {
+                    return new AuditLogPage(entries, encodeContinuation(position));
+                }
+            }
+
+            if (exhausted) {
+                return new AuditLogPage(entries, null);
+            }
+        }
+    }
+
     /**
      * Retrieves the complete list of AuditLogEntries for global events.
      *
@@ -149,16 +231,69 @@ public class CassandraAuditLogRepository implements AuditLogRepository {
      */
     @Override
     public boolean storeEntry(AuditLogEntry entry) {
+        PreparedCqlQuery<Application.Name, String> cqlQuery = bindEntry(driver.getKeyspace()
+                .prepareQuery(keyspace.auditlogCF()).withCql(INSERT_CQL).asPreparedStatement(), entry);
+
+        try {
+            cqlQuery.execute();
+        } catch (ConnectionException e) {
+            LOGGER.error("Could not write AuditLogEntry " + entry + " to database. Record is lost!", e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stores AuditLogEntries into the database with a single unlogged batch.
+     * Unlike {@link #storeEntry(AuditLogEntry)} a failed batch is left to the caller, which may retry it.
+     *
+     * @param entries the entries to store, should belong to the same application
+     * @return true on success
+     * @throws RepositoryException if the required values of one of the entries are null, see
+     *      {@link #storeEntry(AuditLogEntry)}
+     */
+    @Override
+    public boolean storeEntries(List<AuditLogEntry> entries) {
+        if (entries.isEmpty()) {
+            return true;
+        }
+
+        StringBuilder cql = new StringBuilder("BEGIN UNLOGGED BATCH ");
+        for (int i = 0; i < entries.size(); i++) {
+            cql.append(INSERT_CQL);
+        }
+        cql.append("APPLY BATCH;");
+
+        PreparedCqlQuery<Application.Name, String> cqlQuery = driver.getKeyspace()
+                .prepareQuery(keyspace.auditlogCF()).withCql(cql.toString()).asPreparedStatement();
+        for (AuditLogEntry entry : entries) {
+            cqlQuery = bindEntry(cqlQuery, entry);
+        }
+
+        try {
+            cqlQuery.execute();
+        } catch (ConnectionException e) {
+            LOGGER.warn("Could not write a batch of " + entries.size() + " AuditLogEntries to database.", e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Binds the values of an entry to the {@link #INSERT_CQL} placeholders of the query.
+     *
+     * @param cqlQuery the query
+     * @param entry the entry
+     * @return the query
+     * @throws RepositoryException if the required values of the entry are null
+     */
+    private PreparedCqlQuery<Application.Name, String> bindEntry(PreparedCqlQuery<Application.Name, String> cqlQuery,
+                                                                 AuditLogEntry entry) {
         if (entry == null || entry.getAction() == null || entry.getUser() == null || entry.getTime() == null) {
             throw new RepositoryException("Can not insert AuditLogEntry " + entry + " into database, required values are null.");
         }
-        String cql = "INSERT INTO auditlog ( event_id, application_name, time, action, "
-                + "user_firstname, user_lastname, user_email, user_username, user_userid, "
-                + "experiment_id, experiment_label, bucket_label, "
-                + "changed_property, property_before, property_after )"
-                + " VALUES ( uuid(), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ? );";
 
-        PreparedCqlQuery<Application.Name, String> cqlQuery = driver.getKeyspace().prepareQuery(keyspace.auditlogCF()).withCql(cql).asPreparedStatement()
+        cqlQuery = cqlQuery
                 .withByteBufferValue(entry.getApplicationName() == null ? AuditLogRepository.GLOBAL_ENTRY_APPLICATION : entry.getApplicationName(), ApplicationNameSerializer.get())
                 .withByteBufferValue(entry.getTime().getTime(), DateSerializer.get())
                 .withStringValue(entry.getAction().toString())
@@ -169,34 +304,26 @@ public class CassandraAuditLogRepository implements AuditLogRepository {
                 .withStringValue(entry.getUser().getUserId() != null ? entry.getUser().getUserId() : "");
 
         if (entry.getExperimentId() != null) {
-            cqlQuery.withByteBufferValue(entry.getExperimentId(), ExperimentIDSerializer.get());
+            cqlQuery = cqlQuery.withByteBufferValue(entry.getExperimentId(), ExperimentIDSerializer.get());
         } else {
-            cqlQuery.withStringValue("");
+            cqlQuery = cqlQuery.withStringValue("");
         }
 
         if (entry.getExperimentLabel() != null) {
-            cqlQuery.withByteBufferValue(entry.getExperimentLabel(), ExperimentLabelSerializer.get());
+            cqlQuery = cqlQuery.withByteBufferValue(entry.getExperimentLabel(), ExperimentLabelSerializer.get());
         } else {
-            cqlQuery.withStringValue("");
+            cqlQuery = cqlQuery.withStringValue("");
         }
 
         if (entry.getBucketLabel() != null) {
-            cqlQuery.withByteBufferValue(entry.getBucketLabel(), BucketLabelSerializer.get());
+            cqlQuery = cqlQuery.withByteBufferValue(entry.getBucketLabel(), BucketLabelSerializer.get());
         } else {
-            cqlQuery.withStringValue("");
+            cqlQuery = cqlQuery.withStringValue("");
         }
 
-        cqlQuery.withStringValue(entry.getChangedProperty() != null ? entry.getChangedProperty() : "")
+        return cqlQuery.withStringValue(entry.getChangedProperty() != null ? entry.getChangedProperty() : "")
                 .withStringValue(entry.getBefore() != null ? entry.getBefore() : "")
                 .withStringValue(entry.getAfter() != null ? entry.getAfter() : "");
-
-        try {
-            cqlQuery.execute();
-        } catch (ConnectionException e) {
-            LOGGER.error("Could not write AuditLogEntry " + entry + " to database. Record is lost!", e);
-            return false;
-        }
-        return true;
     }
 
 
@@ -227,6 +354,79 @@ public class CassandraAuditLogRepository implements AuditLogRepository {
         }
     }
 
+    /**
+     * Allows cql select queries on an application's partition with further prepared values. Null values are
+     * skipped, dates and UUIDs are bound with their types.
+     *
+     * @param cql the query
+     * @param applicationName the application to put in
+     * @param values the values to put in after the application
+     * @return the resulting rows.
+     *
+     * @throws RepositoryException if an {@link ConnectionException} occurs.
+     */
+    /*test*/ Rows<Application.Name, String> cqlWithValues(String cql, Application.Name applicationName,
+                                                          Object... values) {
+        try {
+            PreparedCqlQuery<Application.Name, String> query = driver.getKeyspace()
+                    .prepareQuery(keyspace.auditlogCF())
+                    .withCql(cql)
+                    .asPreparedStatement()
+                    .withByteBufferValue(applicationName, ApplicationNameSerializer.get());
+            for (Object value : values) {
+                if (value instanceof Date) {
+                    query.withByteBufferValue((Date) value, DateSerializer.get());
+                } else if (value instanceof UUID) {
+                    query.withUUIDValue((UUID) value);
+                }
+            }
+            return query.execute().getResult().getRows();
+        } catch (ConnectionException e) {
+            throw new RepositoryException(
+                    String.format("Can not retrieve auditlog for application %s.", applicationName),
+                    e
+            );
+        }
+    }
+
+    private void addAll(List<Row<Application.Name, String>> list, Rows<Application.Name, String> rows) {
+        for (Row<Application.Name, String> row : rows) {
+            list.add(row);
+        }
+    }
+
+    /**
+     * Encodes the clustering key of an entry, its time and event id, as an opaque continuation token.
+     *
+     * @param position the time and event id
+     * @return the token
+     */
+    /*test*/ String encodeContinuation(Object[] position) {
+        String key = ((Date) position[0]).getTime() + ":" + position[1];
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a continuation token created by {@link #encodeContinuation(Object[])}.
+     *
+     * @param continuation the token, may be blank
+     * @return the time and event id, null for a blank token
+     * @throws IllegalArgumentException if the token is invalid
+     */
+    /*test*/ Object[] decodeContinuation(String continuation) {
+        if (StringUtils.isBlank(continuation)) {
+            return null;
+        }
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(continuation), StandardCharsets.UTF_8);
+            int separator = key.indexOf(':');
+            return new Object[]{new Date(Long.parseLong(key.substring(0, separator))),
+                    UUID.fromString(key.substring(separator + 1))};
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid continuation token \"" + continuation + "\"", e);
+        }
+    }
+
     /**
      * Allows cql select or update queries which have no prepared values.
      *
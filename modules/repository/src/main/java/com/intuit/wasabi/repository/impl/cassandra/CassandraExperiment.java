@@ -75,6 +75,7 @@ import java.util.Date;
         super.setModelName(Preconditions.checkNotNull(columns.getStringValue("model_name", "")));
         super.setModelVersion(Preconditions.checkNotNull(columns.getStringValue("model_version", "")));
         super.setIsRapidExperiment(Preconditions.checkNotNull(columns.getBooleanValue("is_rapid_experiment", false)));
+        super.setIsHashAssignment(Preconditions.checkNotNull(columns.getBooleanValue("is_hash_assignment", false)));
         super.setUserCap(Preconditions.checkNotNull(columns.getIntegerValue("user_cap", Integer.MAX_VALUE)));
         super.setCreatorID(columns.getStringValue("creatorid", null));
     }
@@ -163,6 +164,11 @@ import java.util.Date;
         throwNotMutableException();
     }
 
+    @Override
+    public void setIsHashAssignment(Boolean isHashAssignment) {
+        throwNotMutableException();
+    }
+
     @Override
     public void setUserCap(Integer userCap) {
         throwNotMutableException();
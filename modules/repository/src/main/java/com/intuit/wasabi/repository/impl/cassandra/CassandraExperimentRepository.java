@@ -49,6 +49,7 @@ import com.intuit.wasabi.repository.impl.cassandra.serializer.ExperimentStateSer
 import com.netflix.astyanax.MutationBatch;
 import com.netflix.astyanax.connectionpool.OperationResult;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.model.ColumnFamily;
 import com.netflix.astyanax.model.ColumnList;
 import com.netflix.astyanax.model.ConsistencyLevel;
 import com.netflix.astyanax.model.CqlResult;
@@ -70,6 +71,15 @@ import java.util.*;
 class CassandraExperimentRepository extends AbstractCassandraRepository<ExperimentsKeyspace> implements
         ExperimentRepository {
 
+    /**
+     * Bucket label of the counters of the null assignments
+     */
+    static final String NULL_BUCKET = "NULL";
+    /**
+     * Marks all contexts of an experiment as reconciled: its counters are kept per context from its first assignment.
+     */
+    static final Context ALL_CONTEXTS = Context.valueOf("$all");
+    private static final int ASSIGNMENT_COUNT_PAGE_SIZE = 1000;
     private final ExperimentValidator validator;
 
     /**
@@ -238,8 +248,8 @@ class CassandraExperimentRepository extends AbstractCassandraRepository<Experime
         final String CQL = "insert into experiment " +
                 "(id, description, rule, sample_percent, start_time, end_time, " +
                 "   state, label, app_name, created, modified, is_personalized, model_name, model_version," +
-                " is_rapid_experiment, user_cap, creatorid) " +
-                "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                " is_rapid_experiment, is_hash_assignment, user_cap, creatorid) " +
+                "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
         try {
             final Experiment.ID experimentID = newExperiment.getID();
@@ -276,11 +286,14 @@ class CassandraExperimentRepository extends AbstractCassandraRepository<Experime
                     .withStringValue(newExperiment.getModelName())
                     .withStringValue(newExperiment.getModelVersion())
                     .withBooleanValue(newExperiment.getIsRapidExperiment())
+                    .withBooleanValue(Boolean.TRUE.equals(newExperiment.getIsHashAssignment()))
                     .withIntegerValue(newExperiment.getUserCap())
                     .withStringValue(newExperiment.getCreatorID() != null
                             ? newExperiment.getCreatorID()
                             : "")
                     .execute();
+            // the experiment is assigned to after the counters are kept per context, so they need no recount
+            markAssignmentCountsReconciled(experimentID, ALL_CONTEXTS);
             createApplication(newExperiment.getApplicationName());
             return experimentID;
         } catch (ConnectionException e) {
@@ -311,83 +324,320 @@ class CassandraExperimentRepository extends AbstractCassandraRepository<Experime
     }
 
     /**
-     * Get the summary of assignments delivered for each experiment
+     * Get the summary of assignments delivered for each experiment.
+     *
+     * The counts are read from the counters in <code>bucket_assignment_counts_by_context</code>. Contexts which are
+     * not reconciled yet, i.e. contexts whose counters may miss the assignments made before the counters were kept
+     * per context, are recounted from <code>user_bucket_index</code> until {@link #reconcileAssignmentCounts} has
+     * corrected their counters. The counters of experiments created after the counters were kept per context are
+     * complete from the first assignment and are never recounted on reads.
      */
     @Override
     public AssignmentCounts getAssignmentCounts(Experiment.ID experimentID, Context context) {
+        List<Bucket> bucketList = getBuckets(experimentID).getBuckets();
+        Set<Context> reconciled = readReconciledContexts(experimentID);
+        Map<String, Long> counts = reconciled.contains(context) || reconciled.contains(ALL_CONTEXTS)
+                ? getAssignmentCounters(experimentID, context)
+                : countAssignments(experimentID, context, bucketList);
+
+        return toAssignmentCounts(experimentID, bucketList, counts);
+    }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Only the per context counters are reconciled. The counters of <code>bucket_assignment_counts</code> are left
+     * alone: they count the assignments of all contexts, which cannot be listed from <code>user_bucket_index</code>
+     * as it is partitioned by context.
+     */
+    @Override
+    public AssignmentCounts reconcileAssignmentCounts(Experiment.ID experimentID, Context context,
+                                                      long pendingMillis) {
         List<Bucket> bucketList = getBuckets(experimentID).getBuckets();
+        long start = System.currentTimeMillis();
+        Map<String, Long> countersBefore = getAssignmentCounters(experimentID, context);
+        Map<String, Long> counts = countAssignments(experimentID, context, bucketList);
+        // the counter updates of the assignments counted before the recount started are written by now
+        sleep(pendingMillis - (System.currentTimeMillis() - start));
+        Map<String, Long> countersAfter = getAssignmentCounters(experimentID, context);
+
+        for (Map.Entry<String, Long> count : counts.entrySet()) {
+            Long counterBefore = countersBefore.get(count.getKey());
+            Long counterAfter = countersAfter.get(count.getKey());
+            long delta = correction(count.getValue() - (counterBefore == null ? 0 : counterBefore),
+                    count.getValue() - (counterAfter == null ? 0 : counterAfter));
+
+            // a missing counter is written even if it is zero, so that the context is listed with counters
+            if (delta != 0 || counterAfter == null) {
+                updateAssignmentCounter(experimentID, context, count.getKey(), delta);
+            }
+        }
+        markAssignmentCountsReconciled(experimentID, context);
+        return toAssignmentCounts(experimentID, bucketList, counts);
+    }
 
-        AssignmentCounts.Builder builder = new AssignmentCounts.Builder();
-        builder.withExperimentID(experimentID);
+    /**
+     * The correction both differences agree on: a difference which only shows at one of the two reads is made up by
+     * pending counter updates or by assignments made during the recount, and is not corrected.
+     *
+     * @param deltaBefore the recount minus the counter read before the recount
+     * @param deltaAfter  the recount minus the counter read after the pending counter updates
+     * @return the correction
+     */
+    static long correction(long deltaBefore, long deltaAfter) {
+        if (deltaBefore > 0 && deltaAfter > 0) {
+            return Math.min(deltaBefore, deltaAfter);
+        }
+        if (deltaBefore < 0 && deltaAfter < 0) {
+            return Math.max(deltaBefore, deltaAfter);
+        }
+        return 0;
+    }
 
-        List<BucketAssignmentCount> bucketAssignmentCountList = new ArrayList<>(bucketList.size() + 1);
-        long bucketAssignmentsCount = 0, nullAssignmentsCount = 0;
-        for (Bucket bucket : bucketList) {
-            try {
-                String cql = "select count(*) from user_bucket_index " +
-                        "where experiment_id = " + experimentID +
-                        " and context ='" + context +
-                        "' and bucket_label = '" + bucket.getLabel() + "'";
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Context> getAssignmentCountContexts(Experiment.ID experimentID) {
+        final String CQL = "select context from bucket_assignment_counts_by_context where experiment_id = ?";
 
-                Rows<Experiment.ID, String> rows = getDriver().getKeyspace()
-                        .prepareQuery(getKeyspace().userBucketIndexCF())
-                        .withCql(cql)
-                        .execute()
-                        .getResult()
-                        .getRows();
+        return getContexts(getKeyspace().bucketAssignmentCountsByContextCF(), CQL, experimentID);
+    }
 
-                if (rows.size() == 1) {
-                    long count = rows.getRowByIndex(0).getColumns().getColumnByIndex(0).getLongValue();
-                    bucketAssignmentCountList.add(new BucketAssignmentCount.Builder()
-                            .withBucket(bucket.getLabel())
-                            .withCount(count)
-                            .build());
-                    bucketAssignmentsCount += count;
-                }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Context> getReconciledAssignmentCountContexts(Experiment.ID experimentID) {
+        Set<Context> contexts = readReconciledContexts(experimentID);
+        contexts.remove(ALL_CONTEXTS);
+        return contexts;
+    }
 
-            } catch (ConnectionException e) {
-                throw new RepositoryException("Could not fetch assignmentCounts for experiment " +
-                        "with ID \"" + experimentID + "\"", e);
+    /**
+     * Reads the reconciled contexts of an experiment, including {@link #ALL_CONTEXTS} for new experiments.
+     *
+     * @param experimentID experiment id
+     * @return the contexts
+     */
+    Set<Context> readReconciledContexts(Experiment.ID experimentID) {
+        final String CQL = "select context from assignment_counts_reconciled where experiment_id = ?";
+
+        return getContexts(getKeyspace().assignmentCountsReconciledCF(), CQL, experimentID);
+    }
+
+    private Set<Context> getContexts(ColumnFamily<Experiment.ID, String> columnFamily, String cql,
+                                     Experiment.ID experimentID) {
+        try {
+            Rows<Experiment.ID, String> rows = getDriver().getKeyspace()
+                    .prepareQuery(columnFamily)
+                    .withCql(cql)
+                    .asPreparedStatement()
+                    .withByteBufferValue(experimentID, ExperimentIDSerializer.get())
+                    .execute()
+                    .getResult()
+                    .getRows();
+
+            Set<Context> contexts = new HashSet<>();
+            for (Row<Experiment.ID, String> row : rows) {
+                contexts.add(Context.valueOf(row.getColumns().getStringValue("context", null)));
             }
+            return contexts;
+        } catch (ConnectionException e) {
+            throw new RepositoryException("Could not fetch assignment count contexts for experiment " +
+                    "with ID \"" + experimentID + "\"", e);
         }
+    }
+
+    /**
+     * Marks the assignment counters of a context as reconciled.
+     *
+     * @param experimentID experiment id
+     * @param context      context
+     */
+    void markAssignmentCountsReconciled(Experiment.ID experimentID, Context context) {
+        final String CQL = "insert into assignment_counts_reconciled (experiment_id, context, reconciled) " +
+                "values (?, ?, ?)";
+
+        try {
+            getDriver().getKeyspace()
+                    .prepareQuery(getKeyspace().assignmentCountsReconciledCF())
+                    .withCql(CQL)
+                    .asPreparedStatement()
+                    .withByteBufferValue(experimentID, ExperimentIDSerializer.get())
+                    .withStringValue(context.getContext())
+                    .withByteBufferValue(new Date(), DateSerializer.get())
+                    .execute();
+        } catch (ConnectionException e) {
+            throw new RepositoryException("Could not mark the assignment counts of experiment " +
+                    "with ID \"" + experimentID + "\" as reconciled", e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads the assignment counters of a context.
+     *
+     * @param experimentID experiment id
+     * @param context      context
+     * @return the counters by bucket label, {@link #NULL_BUCKET} for the null assignments
+     */
+    Map<String, Long> getAssignmentCounters(Experiment.ID experimentID, Context context) {
+        final String CQL = "select bucket_label, bucket_assignment_count from bucket_assignment_counts_by_context " +
+                "where experiment_id = ? and context = ?";
 
-        // Checking the count for null assignments
         try {
-            String cql = "select count(*) from user_bucket_index " +
-                    "where experiment_id = " + experimentID +
-                    " and context ='" + context +
-                    "' and bucket_label = ''";
             Rows<Experiment.ID, String> rows = getDriver().getKeyspace()
-                    .prepareQuery(getKeyspace().userBucketIndexCF())
-                    .withCql(cql)
+                    .prepareQuery(getKeyspace().bucketAssignmentCountsByContextCF())
+                    .withCql(CQL)
+                    .asPreparedStatement()
+                    .withByteBufferValue(experimentID, ExperimentIDSerializer.get())
+                    .withStringValue(context.getContext())
                     .execute()
                     .getResult()
                     .getRows();
 
-            if (rows.size() == 1) {
-                nullAssignmentsCount = rows.getRowByIndex(0)
-                        .getColumns()
-                        .getColumnByIndex(0)
-                        .getLongValue();
-
-                bucketAssignmentCountList.add(new BucketAssignmentCount.Builder()
-                        .withBucket(null)
-                        .withCount(nullAssignmentsCount)
-                        .build());
-            } else {
-                bucketAssignmentCountList.add(new BucketAssignmentCount.Builder()
-                        .withBucket(null)
-                        .withCount(0)
-                        .build());
+            Map<String, Long> counters = new HashMap<>();
+            for (Row<Experiment.ID, String> row : rows) {
+                ColumnList<String> columns = row.getColumns();
+                counters.put(columns.getStringValue("bucket_label", null),
+                        columns.getColumnByName("bucket_assignment_count").getLongValue());
             }
+            return counters;
+        } catch (ConnectionException e) {
+            throw new RepositoryException("Could not fetch assignmentCounts for experiment " +
+                    "with ID \"" + experimentID + "\"", e);
+        }
+    }
+
+    /**
+     * Adds the given delta to a per context assignment counter.
+     *
+     * @param experimentID experiment id
+     * @param context      context
+     * @param bucketLabel  bucket label, {@link #NULL_BUCKET} for the null assignments
+     * @param delta        delta to add
+     */
+    void updateAssignmentCounter(Experiment.ID experimentID, Context context, String bucketLabel, long delta) {
+        final String CQL = "update bucket_assignment_counts_by_context " +
+                "set bucket_assignment_count = bucket_assignment_count + ? " +
+                "where experiment_id = ? and context = ? and bucket_label = ?";
 
+        try {
+            getDriver().getKeyspace()
+                    .prepareQuery(getKeyspace().bucketAssignmentCountsByContextCF())
+                    .withCql(CQL)
+                    .asPreparedStatement()
+                    .withLongValue(delta)
+                    .withByteBufferValue(experimentID, ExperimentIDSerializer.get())
+                    .withStringValue(context.getContext())
+                    .withStringValue(bucketLabel)
+                    .execute();
+        } catch (ConnectionException e) {
+            throw new RepositoryException("Could not update assignment counter for experiment " +
+                    "with ID \"" + experimentID + "\"", e);
+        }
+    }
+
+    /**
+     * Counts the assignments of a context in <code>user_bucket_index</code>.
+     *
+     * @param experimentID experiment id
+     * @param context      context
+     * @param bucketList   the buckets of the experiment
+     * @return the counts by bucket label, {@link #NULL_BUCKET} for the null assignments
+     */
+    private Map<String, Long> countAssignments(Experiment.ID experimentID, Context context, List<Bucket> bucketList) {
+        Map<String, Long> counts = new HashMap<>();
+
+        for (Bucket bucket : bucketList) {
+            counts.put(bucket.getLabel().toString(),
+                    countBucketAssignments(experimentID, context, bucket.getLabel().toString()));
+        }
+        // null assignments are indexed with an empty bucket label
+        counts.put(NULL_BUCKET, countBucketAssignments(experimentID, context, ""));
+        return counts;
+    }
+
+    /**
+     * Counts the users of a bucket in <code>user_bucket_index</code> page by page, so that large buckets are
+     * neither read in a single request nor counted by the coordinator.
+     *
+     * @param experimentID experiment id
+     * @param context      context
+     * @param bucketLabel  bucket label as indexed
+     * @return the number of users
+     */
+    long countBucketAssignments(Experiment.ID experimentID, Context context, String bucketLabel) {
+        final String CQL = "select user_id from user_bucket_index " +
+                "where experiment_id = ? and context = ? and bucket_label = ? and user_id > ? " +
+                "limit " + ASSIGNMENT_COUNT_PAGE_SIZE;
+
+        try {
+            long count = 0;
+            String lastUserID = "";
+
+            while (true) {
+                Rows<Experiment.ID, String> rows = getDriver().getKeyspace()
+                        .prepareQuery(getKeyspace().userBucketIndexCF())
+                        .withCql(CQL)
+                        .asPreparedStatement()
+                        .withByteBufferValue(experimentID, ExperimentIDSerializer.get())
+                        .withStringValue(context.getContext())
+                        .withStringValue(bucketLabel)
+                        .withStringValue(lastUserID)
+                        .execute()
+                        .getResult()
+                        .getRows();
+
+                count += rows.size();
+                if (rows.size() < ASSIGNMENT_COUNT_PAGE_SIZE) {
+                    return count;
+                }
+                lastUserID = rows.getRowByIndex(rows.size() - 1).getColumns().getStringValue("user_id", null);
+            }
         } catch (ConnectionException e) {
             throw new RepositoryException("Could not fetch assignmentCounts for experiment " +
                     "with ID \"" + experimentID + "\"", e);
         }
+    }
+
+    private AssignmentCounts toAssignmentCounts(Experiment.ID experimentID, List<Bucket> bucketList,
+                                                Map<String, Long> counts) {
+        List<BucketAssignmentCount> bucketAssignmentCountList = new ArrayList<>(bucketList.size() + 1);
+        long bucketAssignmentsCount = 0;
+
+        for (Bucket bucket : bucketList) {
+            Long count = counts.get(bucket.getLabel().toString());
+            long bucketCount = count == null ? 0 : count;
+
+            bucketAssignmentCountList.add(new BucketAssignmentCount.Builder()
+                    .withBucket(bucket.getLabel())
+                    .withCount(bucketCount)
+                    .build());
+            bucketAssignmentsCount += bucketCount;
+        }
+
+        Long nullCount = counts.get(NULL_BUCKET);
+        long nullAssignmentsCount = nullCount == null ? 0 : nullCount;
+        bucketAssignmentCountList.add(new BucketAssignmentCount.Builder()
+                .withBucket(null)
+                .withCount(nullAssignmentsCount)
+                .build());
 
-        return builder.withBucketAssignmentCount(bucketAssignmentCountList)
+        return new AssignmentCounts.Builder()
+                .withExperimentID(experimentID)
+                .withBucketAssignmentCount(bucketAssignmentCountList)
                 .withTotalUsers(new TotalUsers.Builder()
                         .withTotal(bucketAssignmentsCount + nullAssignmentsCount)
                         .withBucketAssignments(bucketAssignmentsCount)
@@ -466,7 +716,7 @@ class CassandraExperimentRepository extends AbstractCassandraRepository<Experime
                 "set description = ?, rule = ?, sample_percent = ?, " +
                 "start_time = ?, end_time = ?, " +
                 "state=?, label=?, app_name=?, modified=? , is_personalized=?, model_name=?, model_version=?," +
-                " is_rapid_experiment=?, user_cap=?" +
+                " is_rapid_experiment=?, is_hash_assignment=?, user_cap=?" +
                 " where id = ?";
 
         try {
@@ -495,6 +745,7 @@ class CassandraExperimentRepository extends AbstractCassandraRepository<Experime
                     .withStringValue(experiment.getModelName())
                     .withStringValue(experiment.getModelVersion())
                     .withBooleanValue(experiment.getIsRapidExperiment())
+                    .withBooleanValue(Boolean.TRUE.equals(experiment.getIsHashAssignment()))
                     .withIntegerValue(experiment.getUserCap())
                     .withByteBufferValue(experiment.getID(), ExperimentIDSerializer.get())
                     .execute();
@@ -660,6 +911,7 @@ class CassandraExperimentRepository extends AbstractCassandraRepository<Experime
             if (!experimentIDs.isEmpty()) {
                 String cql = "select * from experiment where id in (" + StringUtils.join(experimentIDs, ',') + ")";
                 Rows<Experiment.ID, String> rows = getDriver().getKeyspace().prepareQuery(getKeyspace().experimentCF())
+                        .setConsistencyLevel(ConsistencyLevel.CL_QUORUM)
                         .withCql(cql).asPreparedStatement().execute().getResult().getRows();
                 for (Row<Experiment.ID, String> row : rows) {
                     Experiment experiment = new CassandraExperiment(row.getColumns());
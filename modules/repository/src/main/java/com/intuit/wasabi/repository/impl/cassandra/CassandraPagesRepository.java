@@ -30,18 +30,22 @@ import com.netflix.astyanax.MutationBatch;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import com.netflix.astyanax.model.Column;
 import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.model.ConsistencyLevel;
 import com.netflix.astyanax.model.Row;
 import com.netflix.astyanax.model.Rows;
 import com.netflix.astyanax.query.PreparedCqlQuery;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -190,7 +194,9 @@ public class CassandraPagesRepository implements PagesRepository {
     }
 
     /**
-     * Get the names of all pages and its associated experiments for an application
+     * Get the names of all pages and its associated experiments for an application.
+     * The experiment ids of all pages are read with one query and their labels resolved with another, so the number
+     * of round trips does not depend on the number of pages and experiments.
      */
     @Override
     public Map<Page.Name, List<PageExperiment>> getPageExperimentList(Application.Name applicationName) {
@@ -203,11 +209,13 @@ public class CassandraPagesRepository implements PagesRepository {
                     .getResult()
                     .getColumnNames();
             if (!pages.isEmpty()) {
+                List<Page.Name> pageNames = new ArrayList<>(pages.size());
                 for (String pageName : pages) {
-                    Page page = new Page.Builder().withName(Page.Name.valueOf(pageName)).build();
-                    List<PageExperiment> pageExperiments = getExperiments(applicationName, page.getName());
-                    result.put(page.getName(), pageExperiments);
+                    Page.Name name = Page.Name.valueOf(pageName);
+                    pageNames.add(name);
+                    result.put(name, new LinkedList<PageExperiment>());
                 }
+                result.putAll(toPageExperiments(executeGetPagesExperimentQuery(applicationName, pageNames)));
             }
             return result;
 
@@ -241,28 +249,78 @@ public class CassandraPagesRepository implements PagesRepository {
      */
     @Override
     public List<PageExperiment> getExperiments(Application.Name applicationName, Page.Name pageName) {
-        List<PageExperiment> result = new LinkedList<>();
         final String CQL = "select * from page_experiment_index where app_name = ? and page = ?";
         Rows<ExperimentsKeyspace.AppNamePageComposite, String> rows = executeGetExperimentQuery(applicationName,
                 pageName, CQL);
 
-        if (!rows.isEmpty()) {
-            for (Row<ExperimentsKeyspace.AppNamePageComposite, String> row : rows) {
-                Experiment.ID experimentID = Experiment.ID.valueOf(row.getColumns()
-                        .getColumnByName("exp_id").getUUIDValue());
-                Experiment experiment = experimentRepository.getExperiment(experimentID);
-                if (experiment == null) {
-                    continue;
-                }
-                Experiment.Label label = experiment.getLabel();
-                boolean allowNewAssignment = row.getColumns().getColumnByName("assign").getBooleanValue();
-                result.add(PageExperiment.withAttributes(experimentID, label, allowNewAssignment)
-                        .build());
+        List<PageExperiment> result = toPageExperiments(rows).get(pageName);
+        return result != null ? result : new LinkedList<PageExperiment>();
+    }
+
+    /**
+     * Groups rows of page_experiment_index by page. The labels of all experiments in the rows are resolved with a
+     * single lookup; experiments which do not exist anymore are left out.
+     *
+     * @param rows rows of page_experiment_index
+     * @return the experiments per page, in the order of the rows
+     */
+    Map<Page.Name, List<PageExperiment>> toPageExperiments(Rows<ExperimentsKeyspace.AppNamePageComposite, String> rows) {
+        Map<Page.Name, List<PageExperiment>> result = new HashMap<>();
+        if (rows.isEmpty()) {
+            return result;
+        }
+
+        Set<Experiment.ID> experimentIDs = new LinkedHashSet<>();
+        for (Row<ExperimentsKeyspace.AppNamePageComposite, String> row : rows) {
+            experimentIDs.add(Experiment.ID.valueOf(row.getColumns().getColumnByName("exp_id").getUUIDValue()));
+        }
+        Map<Experiment.ID, Experiment.Label> labels = new HashMap<>(experimentIDs.size());
+        for (Experiment experiment : experimentRepository.getExperiments(experimentIDs).getExperiments()) {
+            labels.put(experiment.getID(), experiment.getLabel());
+        }
+
+        for (Row<ExperimentsKeyspace.AppNamePageComposite, String> row : rows) {
+            Experiment.ID experimentID = Experiment.ID.valueOf(row.getColumns()
+                    .getColumnByName("exp_id").getUUIDValue());
+            Experiment.Label label = labels.get(experimentID);
+            if (label == null) {
+                continue;
             }
+            Page.Name pageName = Page.Name.valueOf(row.getColumns().getColumnByName("page").getStringValue());
+            boolean allowNewAssignment = row.getColumns().getColumnByName("assign").getBooleanValue();
+            List<PageExperiment> pageExperiments = result.get(pageName);
+            if (pageExperiments == null) {
+                pageExperiments = new LinkedList<>();
+                result.put(pageName, pageExperiments);
+            }
+            pageExperiments.add(PageExperiment.withAttributes(experimentID, label, allowNewAssignment).build());
         }
         return result;
     }
 
+    Rows<ExperimentsKeyspace.AppNamePageComposite, String> executeGetPagesExperimentQuery(
+            Application.Name applicationName, List<Page.Name> pageNames) {
+        // page is the last column of the partition key and can therefore be restricted by IN
+        String cql = "select * from page_experiment_index where app_name = ? and page in ("
+                + StringUtils.repeat("?", ",", pageNames.size()) + ")";
+        try {
+            PreparedCqlQuery<ExperimentsKeyspace.AppNamePageComposite, String> query = driver.getKeyspace()
+                    .prepareQuery(keyspace.page_experiment_index_CF())
+                    .setConsistencyLevel(ConsistencyLevel.CL_QUORUM)
+                    .withCql(cql).asPreparedStatement()
+                    .withByteBufferValue(applicationName, ApplicationNameSerializer.get());
+            for (Page.Name pageName : pageNames) {
+                query.withByteBufferValue(pageName, PageNameSerializer.get());
+            }
+            return query.execute()
+                    .getResult()
+                    .getRows();
+        } catch (ConnectionException e) {
+            throw new RepositoryException("Could not retrieve the experiments for applicationName:\"" +
+                    applicationName + "\", pages:\"" + pageNames, e);
+        }
+    }
+
     Rows<ExperimentsKeyspace.AppNamePageComposite, String> executeGetExperimentQuery(Application.Name applicationName,
                                                                                      Page.Name pageName, String CQL) {
         try {
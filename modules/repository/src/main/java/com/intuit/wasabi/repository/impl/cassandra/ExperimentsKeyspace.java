@@ -117,6 +117,10 @@ public interface ExperimentsKeyspace extends RepositoryKeyspace {
 
     ColumnFamily<Experiment.ID, String> bucketAssignmentCountsCF();
 
+    ColumnFamily<Experiment.ID, String> bucketAssignmentCountsByContextCF();
+
+    ColumnFamily<Experiment.ID, String> assignmentCountsReconciledCF();
+
     /**
      * The {@code auditlog} column family definition
      *
@@ -158,6 +158,16 @@ public class ExperimentsKeyspaceImpl implements ExperimentsKeyspace {
     @Override
     public ColumnFamily<Experiment.ID, String> bucketAssignmentCountsCF() { return BUCKET_ASSIGNMENT_COUNTS_CF;}
 
+    @Override
+    public ColumnFamily<Experiment.ID, String> bucketAssignmentCountsByContextCF() {
+        return BUCKET_ASSIGNMENT_COUNTS_BY_CONTEXT_CF;
+    }
+
+    @Override
+    public ColumnFamily<Experiment.ID, String> assignmentCountsReconciledCF() {
+        return ASSIGNMENT_COUNTS_RECONCILED_CF;
+    }
+
     @Override
     public ColumnFamily<Application.Name, String> auditlogCF() { return AUDITLOG_CF; }
 
@@ -302,6 +312,14 @@ public class ExperimentsKeyspaceImpl implements ExperimentsKeyspace {
             .newColumnFamily("bucket_assignment_counts", ExperimentIDSerializer.get(),
                     StringSerializer.get());
 
+    private ColumnFamily<Experiment.ID, String> BUCKET_ASSIGNMENT_COUNTS_BY_CONTEXT_CF = ColumnFamily
+            .newColumnFamily("bucket_assignment_counts_by_context", ExperimentIDSerializer.get(),
+                    StringSerializer.get());
+
+    private ColumnFamily<Experiment.ID, String> ASSIGNMENT_COUNTS_RECONCILED_CF = ColumnFamily
+            .newColumnFamily("assignment_counts_reconciled", ExperimentIDSerializer.get(),
+                    StringSerializer.get());
+
     private ColumnFamily<Application.Name, String> AUDITLOG_CF = ColumnFamily
             .newColumnFamily("auditlog", ApplicationNameSerializer.get(), StringSerializer.get());
 }
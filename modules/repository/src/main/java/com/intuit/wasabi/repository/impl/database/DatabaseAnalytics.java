@@ -25,20 +25,34 @@ import com.intuit.wasabi.analyticsobjects.counts.Counts;
 import com.intuit.wasabi.database.Transaction;
 import com.intuit.wasabi.database.TransactionFactory;
 import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.Context;
 import com.intuit.wasabi.experimentobjects.Experiment;
 import com.intuit.wasabi.repository.AnalyticsRepository;
 import com.intuit.wasabi.repository.RepositoryException;
 
 import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
 import java.util.*;
 
 /**
  * Database analytics impl of analytics repo
  *
+ * The event queries filter on experiment, context and time and group by bucket (and action), which is the order of
+ * the composite keys of the event tables, so that they are answered from the index alone.
+ *
  * @see AnalyticsRepository
  */
 public class DatabaseAnalytics implements AnalyticsRepository {
 
+    private static final int ROLLUP_ROWS_PER_INSERT = 500;
+    private static final String ROLLUP_INSERT = "insert into experiment_rollup (experiment_id, context, day, " +
+            "cumulative, bucket_label, action, impression_count, impression_user_count, action_count, " +
+            "action_user_count) values ";
+    private static final String ROLLUP_VALUES = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String ROLLUP_ON_DUPLICATE = " on duplicate key update " +
+            "impression_count = values(impression_count), impression_user_count = values(impression_user_count), " +
+            "action_count = values(action_count), action_user_count = values(action_user_count)";
+    private static final String[] EVENT_TABLES = {"event_impression", "event_action"};
     private TransactionFactory transactionFactory;
     private Transaction transaction;
 
@@ -99,7 +113,7 @@ public class DatabaseAnalytics implements AnalyticsRepository {
             //build and execute SQL queries for counts
             Date from_ts = parameters.getFromTime();
             Date to_ts = parameters.getToTime();
-            String sqlBase = "bucket_label as bid, count(user_id) as c, count(distinct user_id) as cu";
+            String sqlBase = "bucket_label as bid, count(*) as c, count(distinct user_id) as cu";
             StringBuilder sqlParams = new StringBuilder(" where experiment_id = ? and context = ?");
             List params = new ArrayList();
             params.add(experimentID);
@@ -122,7 +136,7 @@ public class DatabaseAnalytics implements AnalyticsRepository {
             params.toArray(bucketSqlData);
             
             String sqlActions = "select action, " + sqlBase + " from event_action" +
-                    sqlParams.toString() + " group by bucket_label, action";
+                    sqlParams.toString() + " group by bucket_label, action order by null";
             List<Map> actionsRows = transaction.select(sqlActions, bucketSqlData);
 
 
@@ -151,7 +165,7 @@ public class DatabaseAnalytics implements AnalyticsRepository {
             //build and execute SQL queries for counts
             Date from_ts = parameters.getFromTime();
             Date to_ts = parameters.getToTime();
-            String sqlBase = "bucket_label as bid, count(user_id) as c, count(distinct user_id) as cu";
+            String sqlBase = "bucket_label as bid, count(*) as c, count(distinct user_id) as cu";
             StringBuilder sqlParams = new StringBuilder(" where experiment_id = ? and context = ?");
             List params = new ArrayList();
             params.add(experimentID);
@@ -174,7 +188,7 @@ public class DatabaseAnalytics implements AnalyticsRepository {
             params.toArray(bucketSqlData);
 
             String sqlJointActions = "select " + sqlBase + " from event_action" +
-                    sqlParams + " group by bucket_label";
+                    sqlParams + " group by bucket_label order by null";
             List<Map> jointActionsRows = transaction.select(sqlJointActions, bucketSqlData);
             return jointActionsRows;
 
@@ -213,7 +227,7 @@ public class DatabaseAnalytics implements AnalyticsRepository {
             //build and execute SQL queries for counts
             Date from_ts = parameters.getFromTime();
             Date to_ts = parameters.getToTime();
-            String sqlBase = "bucket_label as bid, count(user_id) as c, count(distinct user_id) as cu";
+            String sqlBase = "bucket_label as bid, count(*) as c, count(distinct user_id) as cu";
             String sqlParams = " where experiment_id = ? and context = ?";
             List params = new ArrayList();
             params.add(experimentID);
@@ -234,7 +248,7 @@ public class DatabaseAnalytics implements AnalyticsRepository {
             params.toArray(bucketSqlData);
 
             String sqlImpressions = "select " + sqlBase + " from event_impression" +
-                    sqlParams + " group by bucket_label";
+                    sqlParams + " group by bucket_label order by null";
             List<Map> impressionRows = transaction.select(sqlImpressions, bucketSqlData);
 
             return impressionRows;
@@ -243,6 +257,83 @@ public class DatabaseAnalytics implements AnalyticsRepository {
         }
     }
 
+    /*
+     * @see com.intuit.wasabi.repository.AnalyticsRepository#getImpressionRowsPerDay(com.intuit.wasabi.experimentobjects.Experiment.ID, com.intuit.wasabi.analyticsobjects.Parameters)
+     */
+    @Override
+    public List<Map> getImpressionRowsPerDay(Experiment.ID experimentID, Parameters parameters)
+            throws RepositoryException {
+        try {
+            return selectPerDay("event_impression", false, false, experimentID, parameters);
+        } catch (Exception e) {
+            throw new RepositoryException("error reading impression rows per day from MySQL", e);
+        }
+    }
+
+    /*
+     * @see com.intuit.wasabi.repository.AnalyticsRepository#getActionsRowsPerDay(com.intuit.wasabi.experimentobjects.Experiment.ID, com.intuit.wasabi.analyticsobjects.Parameters)
+     */
+    @Override
+    public List<Map> getActionsRowsPerDay(Experiment.ID experimentID, Parameters parameters)
+            throws RepositoryException {
+        try {
+            return selectPerDay("event_action", true, true, experimentID, parameters);
+        } catch (Exception e) {
+            throw new RepositoryException("error reading actions rows per day from MySQL", e);
+        }
+    }
+
+    /*
+     * @see com.intuit.wasabi.repository.AnalyticsRepository#getJointActionsPerDay(com.intuit.wasabi.experimentobjects.Experiment.ID, com.intuit.wasabi.analyticsobjects.Parameters)
+     */
+    @Override
+    public List<Map> getJointActionsPerDay(Experiment.ID experimentID, Parameters parameters)
+            throws RepositoryException {
+        try {
+            return selectPerDay("event_action", false, true, experimentID, parameters);
+        } catch (Exception e) {
+            throw new RepositoryException("error reading joint actions rows per day from MySQL", e);
+        }
+    }
+
+    /**
+     * Counts the events of a table per day in one pass: the counts of each day are joined with the number of users
+     * seen for the first time that day, which add up to the cumulative unique users of any day.
+     */
+    private List<Map> selectPerDay(String table, boolean perAction, boolean filterActions, Experiment.ID experimentID,
+                                   Parameters parameters) {
+        StringBuilder sqlParams = new StringBuilder(" where experiment_id = ? and context = ?");
+        List params = new ArrayList();
+        params.add(experimentID);
+        params.add(parameters.getContext().getContext());
+
+        if (parameters.getToTime() != null) {
+            params.add(parameters.getToTime());
+            sqlParams.append(" and timestamp <= ?");
+        }
+
+        if (filterActions) {
+            addActionsToSql(parameters, sqlParams, params);
+        }
+
+        String action = perAction ? "action, " : "";
+        String sqlPerDay = "select " + action + "date_format(timestamp, '%Y-%m-%d') as day, bucket_label as bid, " +
+                "count(*) as c, count(distinct user_id) as cu from " + table + sqlParams +
+                " group by " + action + "day, bid";
+        String sqlFirstDays = "select " + action + "day, bid, count(*) as nu from (select " + action +
+                "bucket_label as bid, min(date_format(timestamp, '%Y-%m-%d')) as day from " + table + sqlParams +
+                " group by " + action + "bucket_label, user_id) f group by " + action + "day, bid";
+        String sql = "select " + (perAction ? "d.action, " : "") + "d.day, d.bid, d.c, d.cu, " +
+                "coalesce(n.nu, 0) as nu from (" + sqlPerDay + ") d left join (" + sqlFirstDays + ") n " +
+                "on d.day = n.day and d.bid = n.bid" + (perAction ? " and d.action = n.action" : "") +
+                " order by d.day";
+
+        // the parameters are bound once for each of the two subqueries
+        List bothParams = new ArrayList(params);
+        bothParams.addAll(params);
+        return transaction.select(sql, bothParams.toArray());
+    }
+
     /*
      * @see com.intuit.wasabi.repository.AnalyticsRepository#getEmptyBuckets(com.intuit.wasabi.experimentobjects.Experiment.ID)
      */
@@ -335,4 +426,207 @@ public class DatabaseAnalytics implements AnalyticsRepository {
         }
     }
 
+    /*
+     * @see com.intuit.wasabi.repository.AnalyticsRepository#getEventContexts(com.intuit.wasabi.experimentobjects.Experiment.ID)
+     */
+    @Override
+    public List<Context> getEventContexts(Experiment.ID experimentID) throws RepositoryException {
+
+        try {
+            String sqlQuery = "select context from event_impression where experiment_id = ? group by context " +
+                    "union select context from event_action where experiment_id = ? group by context";
+            List<Map> contextRows = transaction.select(sqlQuery, experimentID, experimentID);
+
+            List<Context> contexts = new ArrayList<>(contextRows.size());
+            for (Map contextRow : contextRows) {
+                contexts.add(Context.valueOf((String) contextRow.get("context")));
+            }
+            return contexts;
+        } catch (Exception e) {
+            throw new RepositoryException("error reading event contexts from MySQL", e);
+        }
+    }
+
+    /*
+     * @see com.intuit.wasabi.repository.AnalyticsRepository#getLatestRollupDay(com.intuit.wasabi.experimentobjects.Experiment.ID, com.intuit.wasabi.analyticsobjects.Parameters)
+     */
+    @Override
+    public Date getLatestRollupDay(Experiment.ID experimentID, Parameters parameters) throws RepositoryException {
+
+        try {
+            String sqlQuery = "select max(day) as day from experiment_rollup where experiment_id = ? and context = ?";
+            List<Map> dayRows = transaction.select(sqlQuery, experimentID, parameters.getContext().getContext());
+
+            return dayRows.isEmpty() ? null : (Date) dayRows.get(0).get("day");
+        } catch (Exception e) {
+            throw new RepositoryException("error reading latest rollup day from MySQL", e);
+        }
+    }
+
+    /*
+     * @see com.intuit.wasabi.repository.AnalyticsRepository#writeRollupRows(com.intuit.wasabi.experimentobjects.Experiment.ID, com.intuit.wasabi.analyticsobjects.Parameters, java.util.List)
+     */
+    @Override
+    public void writeRollupRows(Experiment.ID experimentID, Parameters parameters, List<Map> rollupRows)
+            throws RepositoryException {
+
+        String context = parameters.getContext().getContext();
+        try {
+            for (int from = 0; from < rollupRows.size(); from += ROLLUP_ROWS_PER_INSERT) {
+                List<Map> chunk = rollupRows.subList(from, Math.min(from + ROLLUP_ROWS_PER_INSERT, rollupRows.size()));
+                StringBuilder sqlInsert = new StringBuilder(ROLLUP_INSERT);
+                List params = new ArrayList(chunk.size() * 10);
+
+                for (int i = 0; i < chunk.size(); i++) {
+                    if (i > 0) {
+                        sqlInsert.append(", ");
+                    }
+                    sqlInsert.append(ROLLUP_VALUES);
+
+                    Map rollupRow = chunk.get(i);
+                    params.add(experimentID);
+                    params.add(context);
+                    params.add(rollupRow.get("day"));
+                    params.add(rollupRow.get("c"));
+                    params.add(rollupRow.get("bid"));
+                    params.add(rollupRow.get("action"));
+                    params.add(rollupRow.get("ic"));
+                    params.add(rollupRow.get("iuc"));
+                    params.add(rollupRow.get("ac"));
+                    params.add(rollupRow.get("auc"));
+                }
+                sqlInsert.append(ROLLUP_ON_DUPLICATE);
+
+                transaction.insert(sqlInsert.toString(), params.toArray());
+            }
+        } catch (Exception e) {
+            throw new RepositoryException("error writing rollup rows to MySQL", e);
+        }
+    }
+
+    /**
+     * Unpartitioned tables are not partitioned here: on MySQL 5.6 that copies the whole table while blocking writes,
+     * so it is left to the operators, see <code>mysql/operations/partition_event_tables.sql</code>.
+     *
+     * @see com.intuit.wasabi.repository.AnalyticsRepository#addEventPartitions(int)
+     */
+    @Override
+    public void addEventPartitions(int daysAhead) throws RepositoryException {
+
+        List<String> unpartitioned = new ArrayList<>();
+        try {
+            for (String table : EVENT_TABLES) {
+                List<Map> partitionRows = transaction.select("select partition_name as name " +
+                        "from information_schema.partitions where table_schema = database() and table_name = ? " +
+                        "and partition_name is not null", table);
+                if (partitionRows.isEmpty()) {
+                    unpartitioned.add(table);
+                    continue;
+                }
+
+                String sqlPartitions = eventPartitionsSql(table, partitionRows, Calendar.getInstance(), daysAhead);
+                if (sqlPartitions != null) {
+                    transaction.update(sqlPartitions);
+                }
+            }
+        } catch (Exception e) {
+            throw new RepositoryException("error adding event partitions in MySQL", e);
+        }
+        if (!unpartitioned.isEmpty()) {
+            throw new RepositoryException("event tables " + unpartitioned + " are not partitioned, " +
+                    "run partition_event_tables.sql first");
+        }
+    }
+
+    /**
+     * Builds the statement which adds the missing daily partitions of a partitioned event table. Events after the
+     * last daily partition are kept in <code>p_future</code>, which is split up when partitions are added, so that
+     * inserts never fail for lack of a partition.
+     *
+     * @param table         the event table
+     * @param partitionRows the existing partitions of the table, including <code>p_future</code>
+     * @param today         the first day to add a partition for
+     * @param daysAhead     number of days after today to add partitions for
+     * @return the statement, or null if all partitions exist
+     */
+    String eventPartitionsSql(String table, List<Map> partitionRows, Calendar today, int daysAhead) {
+        String lastPartition = "";
+        for (Map partitionRow : partitionRows) {
+            String name = (String) partitionRow.get("name");
+            if (name.matches("p\\d{8}") && name.compareTo(lastPartition) > 0) {
+                lastPartition = name;
+            }
+        }
+
+        SimpleDateFormat nameFormat = new SimpleDateFormat("'p'yyyyMMdd");
+        SimpleDateFormat boundFormat = new SimpleDateFormat("yyyy-MM-dd");
+        Calendar day = (Calendar) today.clone();
+        StringBuilder sqlPartitions = new StringBuilder();
+
+        for (int i = 0; i <= daysAhead; i++) {
+            String name = nameFormat.format(day.getTime());
+            day.add(Calendar.DATE, 1);
+            if (name.compareTo(lastPartition) > 0) {
+                sqlPartitions.append("partition ").append(name).append(" values less than (to_days('")
+                        .append(boundFormat.format(day.getTime())).append("')), ");
+            }
+        }
+
+        return sqlPartitions.length() == 0 ? null : "alter table " + table + " reorganize partition p_future " +
+                "into (" + sqlPartitions + "partition p_future values less than maxvalue)";
+    }
+
+    /**
+     * Takes the lock if it is free or its lease expired, and extends the lease if the owner holds it already.
+     * The owner column is assigned first, so the lease is only extended for the owner which holds the lock
+     * after the update. Lease times use the clock of the database, not the clocks of the nodes.
+     *
+     * @see com.intuit.wasabi.repository.AnalyticsRepository#acquireLock(java.lang.String, java.lang.String, int)
+     */
+    @Override
+    public boolean acquireLock(String lockName, String owner, int leaseSeconds) throws RepositoryException {
+
+        try {
+            transaction.insert("insert into cluster_lock (lock_name, owner, expires) " +
+                            "values (?, ?, now() + interval ? second) on duplicate key update " +
+                            "owner = if(owner = values(owner) or expires < now(), values(owner), owner), " +
+                            "expires = if(owner = values(owner), values(expires), expires)",
+                    lockName, owner, leaseSeconds);
+
+            List<Map> lockRows = transaction.select("select owner from cluster_lock where lock_name = ?", lockName);
+            return !lockRows.isEmpty() && owner.equals(lockRows.get(0).get("owner"));
+        } catch (Exception e) {
+            throw new RepositoryException("error acquiring lock " + lockName + " in MySQL", e);
+        }
+    }
+
+    /**
+     * @see com.intuit.wasabi.repository.AnalyticsRepository#recordCompletedRun(java.lang.String)
+     */
+    @Override
+    public void recordCompletedRun(String lockName) throws RepositoryException {
+
+        try {
+            transaction.update("update cluster_lock set completed = now() where lock_name = ?", lockName);
+        } catch (Exception e) {
+            throw new RepositoryException("error recording the completed run of lock " + lockName + " in MySQL", e);
+        }
+    }
+
+    /**
+     * Uses the clock of the database, like {@link #acquireLock(String, String, int)}.
+     *
+     * @see com.intuit.wasabi.repository.AnalyticsRepository#hasCompletedRunWithin(java.lang.String, int)
+     */
+    @Override
+    public boolean hasCompletedRunWithin(String lockName, int seconds) throws RepositoryException {
+
+        try {
+            List<Map> rows = transaction.select("select lock_name from cluster_lock where lock_name = ? " +
+                    "and completed > now() - interval ? second", lockName, seconds);
+            return !rows.isEmpty();
+        } catch (Exception e) {
+            throw new RepositoryException("error reading the completed run of lock " + lockName + " from MySQL", e);
+        }
+    }
 }
@@ -46,6 +46,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.intuit.wasabi.experimentobjects.Experiment.State.DELETED;
 
@@ -672,6 +673,22 @@ class DatabaseExperimentRepository implements ExperimentRepository {
         throw new UnsupportedOperationException("Assignment counts not supported on sql");
     }
 
+    @Override
+    public AssignmentCounts reconcileAssignmentCounts(Experiment.ID experimentID, Context context,
+                                                      long pendingMillis) {
+        throw new UnsupportedOperationException("Assignment counts not supported on sql");
+    }
+
+    @Override
+    public Set<Context> getAssignmentCountContexts(Experiment.ID experimentID) {
+        throw new UnsupportedOperationException("Assignment counts not supported on sql");
+    }
+
+    @Override
+    public Set<Context> getReconciledAssignmentCountContexts(Experiment.ID experimentID) {
+        throw new UnsupportedOperationException("Assignment counts not supported on sql");
+    }
+
     /**
      * Get a bucket list for a list of Experiments in a single cassandra call
      */
@@ -0,0 +1,4 @@
+-- Experiments with is_hash_assignment sample and bucket their users by a hash of the experiment and user ID
+-- instead of a random draw.
+
+ALTER TABLE experiment ADD is_hash_assignment boolean;
@@ -0,0 +1,10 @@
+-- Assignment counts per context, so that the assignment counts of a context are read from counters instead of
+-- counting the users of each bucket in user_bucket_index. The null bucket is counted with the label NULL.
+
+CREATE TABLE bucket_assignment_counts_by_context
+  (experiment_id uuid,
+   context varchar,
+   bucket_label varchar,
+   bucket_assignment_count counter,
+  PRIMARY KEY (experiment_id, context, bucket_label)
+);
@@ -0,0 +1,10 @@
+-- Contexts whose assignment counters have been reconciled with user_bucket_index. The counters of a context may miss
+-- the assignments made before they were kept per context, so its assignment counts are recounted on reads until
+-- the context is listed here.
+
+CREATE TABLE assignment_counts_reconciled
+  (experiment_id uuid,
+   context varchar,
+   reconciled timestamp,
+  PRIMARY KEY (experiment_id, context)
+);
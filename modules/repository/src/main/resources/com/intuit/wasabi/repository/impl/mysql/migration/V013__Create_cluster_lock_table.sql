@@ -0,0 +1,8 @@
+USE `${mysql.dbName}`;
+
+CREATE TABLE `cluster_lock` (
+  `lock_name` varchar(64) NOT NULL,
+  `owner` varchar(255) NOT NULL,
+  `expires` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`lock_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
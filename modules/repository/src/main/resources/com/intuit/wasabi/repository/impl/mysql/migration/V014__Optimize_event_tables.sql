@@ -0,0 +1,29 @@
+USE `${mysql.dbName}`;
+
+--
+-- The analytics queries filter the events on experiment, context and time and count the users per bucket (and
+-- action). The composite keys below cover these queries, so they are answered from the index alone.
+--
+-- The foreign keys into bucket are dropped: they were checked for every inserted event and prevent the tables
+-- from being partitioned. Events are checked against the buckets when they are ingested instead.
+--
+
+alter table event_impression drop foreign key event_impression_ibfk_1;
+alter table event_action drop foreign key event_action_ibfk_1;
+
+alter table event_impression
+  drop key event_impression_ibfk_1,
+  drop key user_id,
+  drop key experiment_id,
+  drop key bucket_label,
+  drop key `timestamp`,
+  add key experiment_context_time (experiment_id, context, `timestamp`, bucket_label, user_id);
+
+alter table event_action
+  drop key event_action_ibfk_1,
+  drop key user_id,
+  drop key experiment_id,
+  drop key bucket_label,
+  drop key `timestamp`,
+  drop key action,
+  add key experiment_context_time (experiment_id, context, `timestamp`, bucket_label, action, user_id);
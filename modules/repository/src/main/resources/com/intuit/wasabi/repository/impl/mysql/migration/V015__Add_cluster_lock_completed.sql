@@ -0,0 +1,8 @@
+USE `${mysql.dbName}`;
+
+--
+-- Time the periodic job guarded by the lock was last completed, so that the nodes do not repeat it within its
+-- interval once the lease of the node that completed it expired.
+--
+
+alter table cluster_lock add column `completed` timestamp NULL DEFAULT NULL;
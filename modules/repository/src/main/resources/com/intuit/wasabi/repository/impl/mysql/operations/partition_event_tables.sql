@@ -0,0 +1,30 @@
+--
+-- Partitions the event tables by the day of the event timestamp. This is a one-time operator step, it is not run
+-- by the migrations or by the application:
+--
+-- On MySQL 5.6 partitioning an existing table copies it as a whole and blocks writes to it while copying, which
+-- takes long on large event tables. Run it in a maintenance window (or with an online schema change tool such as
+-- pt-online-schema-change), after the V014 migration, with
+--
+--     mysql -u <user> -p <database> < partition_event_tables.sql
+--
+-- All existing events go to partition p_past, later events to p_future. Afterwards set
+-- event.partitions.days.ahead to a positive number of days: the rollup builder then splits the daily partitions
+-- of the coming days off p_future, which only holds the events of the last days and is reorganized quickly.
+--
+
+set @today = date_format(curdate(), '%Y-%m-%d');
+
+set @sql = concat('alter table event_impression partition by range (to_days(`timestamp`)) (',
+                  'partition p_past values less than (to_days(''', @today, ''')), ',
+                  'partition p_future values less than maxvalue)');
+prepare partition_event_table from @sql;
+execute partition_event_table;
+deallocate prepare partition_event_table;
+
+set @sql = concat('alter table event_action partition by range (to_days(`timestamp`)) (',
+                  'partition p_past values less than (to_days(''', @today, ''')), ',
+                  'partition p_future values less than maxvalue)');
+prepare partition_event_table from @sql;
+execute partition_event_table;
+deallocate prepare partition_event_table;
@@ -18,6 +18,8 @@ package com.intuit.wasabi.repository.impl.cassandra;
 import com.intuit.wasabi.assignmentobjects.Assignment;
 import com.intuit.wasabi.eventlog.EventLog;
 import com.intuit.wasabi.eventlog.impl.NoopEventLogImpl;
+import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.Context;
 import com.intuit.wasabi.experimentobjects.Experiment;
 import com.intuit.wasabi.repository.AssignmentsRepository;
 import com.intuit.wasabi.repository.ExperimentRepository;
@@ -28,6 +30,7 @@ import java.util.Date;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -117,5 +120,45 @@ public class AssignmentCountEnvelopeTest {
 
     }
 
+    /**
+     * This tests that the counts are aggregated instead of updated in Cassandra.
+     */
+    @Test
+    public void testAggregatedCount(){
+        BucketAssignmentCountAggregator aggregator = mock(BucketAssignmentCountAggregator.class);
+        Bucket.Label label = Bucket.Label.valueOf("red");
+        Context context = Context.valueOf("PROD");
+        when(assignment.getBucketLabel()).thenReturn(label);
+        when(assignment.getContext()).thenReturn(context);
+
+        AssignmentCountEnvelope env = new AssignmentCountEnvelope(ar, cass, mysql, exp, assignment, true, el, date,
+                true, true, aggregator);
+        env.run();
+
+        verify(aggregator).count(exp, context, label, true);
+        verify(ar, never()).updateBucketAssignmentCount(exp, assignment, true);
+    }
+
+    /**
+     * This tests that the userCap is checked against the aggregated counts.
+     */
+    @Test
+    public void testRapidExperimentationAggregatedLimitReached(){
+        BucketAssignmentCountAggregator aggregator = mock(BucketAssignmentCountAggregator.class);
+        Experiment.ID experimentID = Experiment.ID.newInstance();
+        when(exp.getID()).thenReturn(experimentID);
+        when(exp.getIsRapidExperiment()).thenReturn(true);
+        when(exp.getUserCap()).thenReturn(42);
+        when(aggregator.getBucketAssignments(exp)).thenReturn(42L);
+        when(cass.updateExperimentState(exp, Experiment.State.PAUSED)).thenReturn(exp);
 
+        AssignmentCountEnvelope env = new AssignmentCountEnvelope(ar, cass, mysql, exp, assignment, true, el, date,
+                true, true, aggregator);
+        env.run();
+
+        verify(ar, never()).getBucketAssignmentCount(exp);
+        verify(cass).updateExperimentState(exp, Experiment.State.PAUSED);
+        verify(mysql).updateExperimentState(exp, Experiment.State.PAUSED);
+        verify(aggregator).forget(experimentID);
+    }
 }
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.repository.impl.cassandra;
+
+import com.intuit.wasabi.assignmentobjects.DateHour;
+import com.intuit.wasabi.cassandra.CassandraDriver;
+import com.intuit.wasabi.experimentobjects.Context;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.model.Rows;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * This class tests the {@link AssignmentExportStream}
+ */
+public class AssignmentExportStreamTest {
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    private Experiment.ID experimentID = Experiment.ID.newInstance();
+    private ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testWritesPagesOfPartitionsInOrder() throws Exception {
+        Date firstHour = new Date(0);
+        Date secondHour = new Date(3600000);
+        AssignmentExportStream stream = spy(stream(Arrays.asList(dateHour(firstHour), dateHour(secondHour)), true));
+        Rows<ExperimentsKeyspace.ExperimentIDDayHourComposite, String> firstPage = rows("u1", "u2");
+        Rows<ExperimentsKeyspace.ExperimentIDDayHourComposite, String> secondPage = rows("u3");
+        Rows<ExperimentsKeyspace.ExperimentIDDayHourComposite, String> otherPartition = rows("u4");
+        doReturn(firstPage).when(stream).readPage(firstHour, false, "");
+        doReturn(secondPage).when(stream).readPage(firstHour, false, "u2");
+        doReturn(otherPartition).when(stream).readPage(secondHour, false, "");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        stream.write(output);
+
+        String[] lines = output.toString("UTF-8").split(LINE_SEPARATOR);
+        assertEquals(5, lines.length);
+        assertEquals("experiment_id\tuser_id\tcontext\tbucket_label\tcreated\t", lines[0]);
+        assertEquals(experimentID + "\tu1\tPROD\tred\t1970-01-01 00:00:00", lines[1]);
+        assertEquals(experimentID + "\tu3\tPROD\tred\t1970-01-01 00:00:00", lines[3]);
+        assertEquals(experimentID + "\tu4\tPROD\tred\t1970-01-01 00:00:00", lines[4]);
+        verify(stream, never()).readPage(any(Date.class), eq(true), anyString());
+    }
+
+    @Test
+    public void testReadsNullBucketAssignments() throws Exception {
+        Date hour = new Date(0);
+        AssignmentExportStream stream = spy(stream(Arrays.asList(dateHour(hour)), false));
+        Rows<ExperimentsKeyspace.ExperimentIDDayHourComposite, String> empty = rows();
+        doReturn(empty).when(stream).readPage(any(Date.class), anyBoolean(), anyString());
+
+        stream.write(new ByteArrayOutputStream());
+
+        verify(stream).readPage(hour, false, "");
+        verify(stream).readPage(hour, true, "");
+    }
+
+    private AssignmentExportStream stream(List<DateHour> dateHours, boolean ignoreNullBucket) {
+        SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return new AssignmentExportStream(mock(CassandraDriver.class), mock(ExperimentsKeyspace.class), executor,
+                experimentID, Context.valueOf("PROD"), dateHours, ignoreNullBucket, formatter, 2, 1);
+    }
+
+    private DateHour dateHour(Date hour) {
+        DateHour dateHour = new DateHour();
+        dateHour.setDateHour(hour);
+        return dateHour;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Rows<ExperimentsKeyspace.ExperimentIDDayHourComposite, String> rows(String... users) {
+        Rows<ExperimentsKeyspace.ExperimentIDDayHourComposite, String> rows = mock(Rows.class, RETURNS_DEEP_STUBS);
+        when(rows.size()).thenReturn(users.length);
+        for (int i = 0; i < users.length; i++) {
+            ColumnList<String> columns = mock(ColumnList.class);
+            when(columns.getUUIDValue("experiment_id", null)).thenReturn(experimentID.getRawID());
+            when(columns.getStringValue("user_id", null)).thenReturn(users[i]);
+            when(columns.getStringValue("context", null)).thenReturn("PROD");
+            when(columns.getStringValue("bucket_label", null)).thenReturn("red");
+            when(columns.getDateValue("created", null)).thenReturn(new Date(0));
+            when(rows.getRowByIndex(i).getColumns()).thenReturn(columns);
+        }
+        return rows;
+    }
+}
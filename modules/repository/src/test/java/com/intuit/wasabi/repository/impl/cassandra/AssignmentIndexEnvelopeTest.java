@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.repository.impl.cassandra;
+
+import com.intuit.wasabi.assignmentobjects.Assignment;
+import com.intuit.wasabi.repository.RepositoryException;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * This class tests the {@link AssignmentIndexEnvelope}
+ */
+public class AssignmentIndexEnvelopeTest {
+
+    private CassandraAssignmentsRepository repository = mock(CassandraAssignmentsRepository.class);
+    private Assignment assignment = mock(Assignment.class);
+    private Date date = new Date();
+
+    @Test
+    public void testWritesAllIndices() {
+        AssignmentIndexEnvelope env = new AssignmentIndexEnvelope(repository, assignment, date, false, 42L, 0);
+        env.run();
+
+        verify(repository, never()).assignUserToOld(assignment, date, 42L);
+        verify(repository, times(1)).indexUserToExperiment(assignment, 42L);
+        verify(repository, times(1)).indexUserToBucket(assignment, 42L);
+        verify(repository, never()).indexExperimentsToUser(assignment, 42L);
+    }
+
+    @Test
+    public void testRetriesOnlyFailedWrites() {
+        doThrow(new RepositoryException("unavailable")).doNothing()
+                .when(repository).indexUserToBucket(assignment, 42L);
+
+        AssignmentIndexEnvelope env = new AssignmentIndexEnvelope(repository, assignment, date, true, 42L, 1);
+        env.run();
+
+        verify(repository, times(1)).assignUserToOld(assignment, date, 42L);
+        verify(repository, times(1)).indexUserToExperiment(assignment, 42L);
+        verify(repository, times(2)).indexUserToBucket(assignment, 42L);
+        verify(repository, never()).indexExperimentsToUser(assignment, 42L);
+    }
+
+    @Test
+    public void testGivesUpAfterMaxRetries() {
+        doThrow(new RepositoryException("unavailable"))
+                .when(repository).indexUserToExperiment(assignment, 42L);
+
+        AssignmentIndexEnvelope env = new AssignmentIndexEnvelope(repository, assignment, date, false, 42L, 1);
+        env.run();
+
+        verify(repository, times(2)).indexUserToExperiment(assignment, 42L);
+        verify(repository, never()).indexUserToBucket(assignment, 42L);
+    }
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.repository.impl.cassandra;
+
+import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.Context;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.repository.RepositoryException;
+import com.netflix.astyanax.connectionpool.exceptions.OperationTimeoutException;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * This class tests the {@link BucketAssignmentCountAggregator}
+ */
+public class BucketAssignmentCountAggregatorTest {
+
+    private CassandraAssignmentsRepository repository = mock(CassandraAssignmentsRepository.class, RETURNS_DEEP_STUBS);
+    private Experiment experiment = mock(Experiment.class);
+    private Experiment.ID experimentID = Experiment.ID.newInstance();
+    private Context context = Context.valueOf("PROD");
+    private Bucket.Label red = Bucket.Label.valueOf("red");
+    private Bucket.Label nullLabel = Bucket.Label.valueOf("NULL");
+    private BucketAssignmentCountAggregator aggregator;
+
+    @Before
+    public void setUp() {
+        when(experiment.getID()).thenReturn(experimentID);
+        aggregator = new BucketAssignmentCountAggregator(repository, 0, 0);
+    }
+
+    @Test
+    public void testFlushWritesOneDeltaPerBucket() {
+        aggregator.count(experiment, context, red, true);
+        aggregator.count(experiment, context, red, true);
+        aggregator.count(experiment, context, red, true);
+        aggregator.count(experiment, context, red, false);
+        aggregator.count(experiment, context, null, true);
+
+        aggregator.flush();
+
+        verify(repository, times(1)).updateBucketAssignmentCount(experimentID, context, red, 2);
+        verify(repository, times(1)).updateBucketAssignmentCount(experimentID, context, nullLabel, 1);
+
+        // nothing is pending anymore
+        aggregator.flush();
+        verify(repository, times(2)).updateBucketAssignmentCount(any(Experiment.ID.class), any(Context.class),
+                any(Bucket.Label.class), anyLong());
+    }
+
+    @Test
+    public void testFlushWritesOneDeltaPerContext() {
+        Context qa = Context.valueOf("QA");
+        aggregator.count(experiment, context, red, true);
+        aggregator.count(experiment, qa, red, true);
+        aggregator.count(experiment, qa, red, true);
+
+        aggregator.flush();
+
+        verify(repository, times(1)).updateBucketAssignmentCount(experimentID, context, red, 1);
+        verify(repository, times(1)).updateBucketAssignmentCount(experimentID, qa, red, 2);
+    }
+
+    @Test
+    public void testFailedWriteIsKeptForNextFlush() {
+        doThrow(new RepositoryException("unavailable")).doNothing()
+                .when(repository).updateBucketAssignmentCount(experimentID, context, red, 1);
+
+        aggregator.count(experiment, context, red, true);
+        aggregator.flush();
+        aggregator.flush();
+
+        verify(repository, times(2)).updateBucketAssignmentCount(experimentID, context, red, 1);
+    }
+
+    @Test
+    public void testTimedOutWriteIsNotRetried() {
+        doThrow(new RepositoryException("timed out", new OperationTimeoutException("timed out")))
+                .when(repository).updateBucketAssignmentCount(experimentID, context, red, 1);
+
+        aggregator.count(experiment, context, red, true);
+        aggregator.flush();
+        aggregator.flush();
+
+        verify(repository, times(1)).updateBucketAssignmentCount(experimentID, context, red, 1);
+        assertEquals(0, aggregator.pendingCounters());
+    }
+
+    @Test
+    public void testBucketAssignmentsIncludePendingCounts() {
+        when(experiment.getIsRapidExperiment()).thenReturn(true);
+        when(repository.getBucketAssignmentCount(experiment).getTotalUsers().getBucketAssignments()).thenReturn(40L);
+
+        aggregator.count(experiment, context, red, true);
+        aggregator.count(experiment, context, red, true);
+        aggregator.count(experiment, context, null, true);
+
+        // null assignments do not count towards the user cap
+        assertEquals(42L, aggregator.getBucketAssignments(experiment));
+        assertEquals(42L, aggregator.getBucketAssignments(experiment));
+
+        when(repository.getBucketAssignmentCount(experiment).getTotalUsers().getBucketAssignments()).thenReturn(45L);
+        aggregator.flush();
+
+        assertEquals(45L, aggregator.getBucketAssignments(experiment));
+    }
+
+    @Test
+    public void testFlushDropsCountersWithoutChanges() {
+        doThrow(new RepositoryException("unavailable")).doNothing()
+                .when(repository).updateBucketAssignmentCount(experimentID, context, nullLabel, 1);
+
+        aggregator.count(experiment, context, red, true);
+        aggregator.count(experiment, context, null, true);
+        aggregator.flush();
+
+        // the failed write stays pending
+        assertEquals(1, aggregator.pendingCounters());
+
+        aggregator.flush();
+        assertEquals(0, aggregator.pendingCounters());
+
+        aggregator.count(experiment, context, red, true);
+        aggregator.flush();
+        verify(repository, times(2)).updateBucketAssignmentCount(experimentID, context, red, 1);
+    }
+
+    @Test
+    public void testPeriodicFlushStartsWithStart() throws InterruptedException {
+        aggregator = new BucketAssignmentCountAggregator(repository, 10, 0);
+        aggregator.count(experiment, context, red, true);
+
+        Thread.sleep(100);
+        verify(repository, never()).updateBucketAssignmentCount(experimentID, context, red, 1);
+
+        aggregator.start();
+        verify(repository, timeout(1000)).updateBucketAssignmentCount(experimentID, context, red, 1);
+        aggregator.shutdown();
+    }
+
+    @Test
+    public void testNoWritesWithoutCounts() {
+        aggregator.flush();
+
+        verify(repository, never()).updateBucketAssignmentCount(any(Experiment.ID.class), any(Context.class),
+                any(Bucket.Label.class), anyLong());
+    }
+}
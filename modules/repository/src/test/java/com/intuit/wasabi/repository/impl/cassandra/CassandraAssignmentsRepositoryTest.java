@@ -50,7 +50,7 @@ public class CassandraAssignmentsRepositoryTest {
     @Test
     public void getUserAssignmentPartitions_test1() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, keyspace, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, keyspace, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         Date to_time = cassandraAssignmentsRepository.addHoursMinutes(from_time, 1, 0);
         List<DateHour> expected = new ArrayList<DateHour>();
@@ -68,7 +68,7 @@ public class CassandraAssignmentsRepositoryTest {
     @Test
     public void getUserAssignmentPartitions_test2() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, keyspace, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, keyspace, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         Date to_time = new Date();
         List<DateHour> expected = new ArrayList<DateHour>();
@@ -84,7 +84,7 @@ public class CassandraAssignmentsRepositoryTest {
     @Test
     public void getUserAssignmentPartitions_test3() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, keyspace, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, keyspace, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         Date to_time = cassandraAssignmentsRepository.addHoursMinutes(from_time, 0, -1);
         List<DateHour> expected = new ArrayList<DateHour>();
@@ -152,7 +152,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test
     public void getUserAssignmentSuccess() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
         
@@ -184,7 +184,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test
     public void getUserAssignmentSuccessOneRow() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
         
@@ -222,7 +222,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test
     public void getBucketAssignmentCountOneRow() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
@@ -261,7 +261,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test
     public void removeIndexUserToBucketSuccess() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
@@ -286,7 +286,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test
     public void removeIndexUserToBucketThrowsException() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
@@ -312,7 +312,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test
     public void removeIndexUserToExperimentSuccess() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
@@ -337,7 +337,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test
     public void removeIndexExperimentsToUserSuccess() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
@@ -362,7 +362,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test(expected=RepositoryException.class)
     public void removeIndexExperimentsToUserThrowsException() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
@@ -388,7 +388,7 @@ public class CassandraAssignmentsRepositoryTest2 {
 	@Test(expected=RepositoryException.class)
     public void removeIndexUserToExperimentThrowsException() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
@@ -413,7 +413,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test
     public void updateBucketAssignmentCountUp() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
@@ -424,12 +424,17 @@ public class CassandraAssignmentsRepositoryTest2 {
         given(cqlQueryExperimentIdString.asPreparedStatement()).willReturn(preparedCqlQueryExperimentIdString);
         Experiment.ID id = Experiment.ID.newInstance();
         given(experiment.getID()).willReturn(id);
+        given(preparedCqlQueryExperimentIdString.withLongValue(isA(Long.class)))
+                .willReturn(preparedCqlQueryExperimentIdString);
         given(preparedCqlQueryExperimentIdString.withByteBufferValue(isA(Experiment.ID.class), 
         		isA(Serializer.class))).
         	willReturn(preparedCqlQueryExperimentIdString);
         given(preparedCqlQueryExperimentIdString.withByteBufferValue(isA(Bucket.Label.class), 
         		isA(Serializer.class))).
         	willReturn(preparedCqlQueryExperimentIdString);
+        given(preparedCqlQueryExperimentIdString.withStringValue(isA(String.class)))
+                .willReturn(preparedCqlQueryExperimentIdString);
+        given(assignment.getContext()).willReturn(Context.valueOf("PROD"));
         given(preparedCqlQueryExperimentIdString.execute()).willReturn(null);
         
         cassandraAssignmentsRepository.updateBucketAssignmentCount(experiment,assignment, true);
@@ -438,7 +443,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test
     public void pushAssignmentToStagingSuccess() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
@@ -458,7 +463,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test(expected=RepositoryException.class)
     public void pushAssignmentToStagingThrowsException() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
@@ -478,7 +483,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test
     public void updateBucketAssignmentCountDown() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
@@ -489,12 +494,17 @@ public class CassandraAssignmentsRepositoryTest2 {
         given(cqlQueryExperimentIdString.asPreparedStatement()).willReturn(preparedCqlQueryExperimentIdString);
         Experiment.ID id = Experiment.ID.newInstance();
         given(experiment.getID()).willReturn(id);
+        given(preparedCqlQueryExperimentIdString.withLongValue(isA(Long.class)))
+                .willReturn(preparedCqlQueryExperimentIdString);
         given(preparedCqlQueryExperimentIdString.withByteBufferValue(isA(Experiment.ID.class), 
         		isA(Serializer.class))).
         	willReturn(preparedCqlQueryExperimentIdString);
         given(preparedCqlQueryExperimentIdString.withByteBufferValue(isA(Bucket.Label.class), 
         		isA(Serializer.class))).
         	willReturn(preparedCqlQueryExperimentIdString);
+        given(preparedCqlQueryExperimentIdString.withStringValue(isA(String.class)))
+                .willReturn(preparedCqlQueryExperimentIdString);
+        given(assignment.getContext()).willReturn(Context.valueOf("PROD"));
         given(preparedCqlQueryExperimentIdString.execute()).willReturn(null);
         
         cassandraAssignmentsRepository.updateBucketAssignmentCount(experiment,assignment, false);
@@ -503,7 +513,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test(expected=RepositoryException.class)
     public void updateBucketAssignmentCountDownThrowsException() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
@@ -514,12 +524,17 @@ public class CassandraAssignmentsRepositoryTest2 {
         given(cqlQueryExperimentIdString.asPreparedStatement()).willReturn(preparedCqlQueryExperimentIdString);
         Experiment.ID id = Experiment.ID.newInstance();
         given(experiment.getID()).willReturn(id);
+        given(preparedCqlQueryExperimentIdString.withLongValue(isA(Long.class)))
+                .willReturn(preparedCqlQueryExperimentIdString);
         given(preparedCqlQueryExperimentIdString.withByteBufferValue(isA(Experiment.ID.class), 
         		isA(Serializer.class))).
         	willReturn(preparedCqlQueryExperimentIdString);
         given(preparedCqlQueryExperimentIdString.withByteBufferValue(isA(Bucket.Label.class), 
         		isA(Serializer.class))).
         	willReturn(preparedCqlQueryExperimentIdString);
+        given(preparedCqlQueryExperimentIdString.withStringValue(isA(String.class)))
+                .willReturn(preparedCqlQueryExperimentIdString);
+        given(assignment.getContext()).willReturn(Context.valueOf("PROD"));
         HostDownException hde = new HostDownException("test");
         given(preparedCqlQueryExperimentIdString.execute()).willThrow(hde);
         
@@ -529,7 +544,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test(expected=RepositoryException.class)
     public void getBucketAssignmentCountThrowsException() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
@@ -551,7 +566,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test
     public void getBucketAssignmentCountOneRowBucketLabelNull() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
@@ -590,7 +605,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test
     public void getBucketAssignmentCountZeroRows() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
@@ -621,7 +636,7 @@ public class CassandraAssignmentsRepositoryTest2 {
     @Test(expected=RepositoryException.class)
     public void getUserAssignmentThrowsException() throws IOException, ConnectionException {
         CassandraAssignmentsRepository cassandraAssignmentsRepository = new CassandraAssignmentsRepository(
-                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd");
+                cassandraRepository, dbRepository, assignmentsRepository, cassandraDriver, experimentsKeysapce, eventLog, 5, true, true, true, true, "yyyy-mm-dd", 1, 10, 0, 0, 0, 10, "CALLER_RUNS", 1000, 4);
         Date from_time = new Date();
         given(cassandraDriver.getKeyspace()).willReturn(keyspace);
         
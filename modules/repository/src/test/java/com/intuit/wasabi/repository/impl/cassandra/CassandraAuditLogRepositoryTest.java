@@ -17,6 +17,7 @@ package com.intuit.wasabi.repository.impl.cassandra;
 
 import com.intuit.wasabi.auditlogobjects.AuditLogAction;
 import com.intuit.wasabi.auditlogobjects.AuditLogEntry;
+import com.intuit.wasabi.auditlogobjects.AuditLogPage;
 import com.intuit.wasabi.cassandra.CassandraDriver;
 import com.intuit.wasabi.eventlog.EventLog;
 import com.intuit.wasabi.experimentobjects.Application;
@@ -45,9 +46,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
 
 
 /**
@@ -71,6 +76,7 @@ public class CassandraAuditLogRepositoryTest {
     private final Bucket.Label bucketLabel = Mockito.mock(Bucket.Label.class);
     private final Calendar time = Calendar.getInstance();
     private final String dummyStringValue = "DummyString";
+    private final UUID eventId = UUID.randomUUID();
 
     private Application.Name appName;
     private Rows<Application.Name, String> rows;
@@ -181,6 +187,60 @@ public class CassandraAuditLogRepositoryTest {
         Assert.assertEquals(1, calr.getGlobalAuditLogEntryList(10).size());
     }
 
+    @Test
+    public void testGetAuditLogEntryPageFull() throws Exception {
+        CassandraAuditLogRepository spy = Mockito.spy(calr);
+        Mockito.doReturn(singleRow()).when(spy).cqlWithValues(Mockito.anyString(), Mockito.eq(appName),
+                Mockito.<Object>anyVararg());
+
+        AuditLogPage page = spy.getAuditLogEntryPage(appName, null, null, null, 1, 100, null);
+
+        Assert.assertEquals(1, page.getEntries().size());
+        Object[] position = spy.decodeContinuation(page.getContinuation());
+        Assert.assertEquals(time.getTime(), position[0]);
+        Assert.assertEquals(eventId, position[1]);
+    }
+
+    @Test
+    public void testGetAuditLogEntryPageExhausted() throws Exception {
+        CassandraAuditLogRepository spy = Mockito.spy(calr);
+        Mockito.doReturn(singleRow()).when(spy).cqlWithValues(Mockito.anyString(), Mockito.eq(appName),
+                Mockito.<Object>anyVararg());
+
+        AuditLogPage page = spy.getAuditLogEntryPage(appName, time.getTime(), null, null, 2, 100, null);
+
+        Assert.assertEquals(1, page.getEntries().size());
+        Assert.assertNull(page.getContinuation());
+        Mockito.verify(spy).cqlWithValues(Mockito.contains("time >= ?"), Mockito.eq(appName),
+                Mockito.<Object>anyVararg());
+    }
+
+    @Test
+    public void testGetAuditLogEntryPageScanLimit() throws Exception {
+        CassandraAuditLogRepository spy = Mockito.spy(calr);
+        Mockito.doReturn(singleRow()).when(spy).cqlWithValues(Mockito.anyString(), Mockito.eq(appName),
+                Mockito.<Object>anyVararg());
+        Predicate<AuditLogEntry> none = new Predicate<AuditLogEntry>() {
+            @Override
+            public boolean test(AuditLogEntry auditLogEntry) {
+                return false;
+            }
+        };
+
+        String continuation = calr.encodeContinuation(new Object[]{time.getTime(), eventId});
+        AuditLogPage page = spy.getAuditLogEntryPage(appName, null, null, continuation, 10, 1, none);
+
+        Assert.assertEquals(0, page.getEntries().size());
+        Assert.assertEquals(continuation, page.getContinuation());
+        Mockito.verify(spy).cqlWithValues(Mockito.contains("event_id > ?"), Mockito.eq(appName),
+                Mockito.eq(time.getTime()), Mockito.eq(eventId));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeInvalidContinuation() throws Exception {
+        calr.decodeContinuation("not a token");
+    }
+
     @Test
     public void testStoreEntry() throws Exception {
         Mockito.when(prepQuery.withByteBufferValue(time.getTime(), DateSerializer.get())).thenReturn(prepQuery);
@@ -212,6 +272,27 @@ public class CassandraAuditLogRepositoryTest {
         }
     }
 
+    @Test
+    public void testStoreEntries() throws Exception {
+        Mockito.when(prepQuery.withByteBufferValue(time.getTime(), DateSerializer.get())).thenReturn(prepQuery);
+        Mockito.when(prepQuery.withByteBufferValue(EventLog.SYSTEM_USER.getUsername(), UsernameSerializer.get())).thenReturn(prepQuery);
+        Mockito.when(prepQuery.withStringValue(Mockito.anyString())).thenReturn(prepQuery);
+        AuditLogEntry ale = new AuditLogEntry(time, EventLog.SYSTEM_USER, AuditLogAction.UNSPECIFIED_ACTION);
+
+        // nothing to store
+        Assert.assertTrue(calr.storeEntries(Collections.<AuditLogEntry>emptyList()));
+        Mockito.verify(prepQuery, Mockito.never()).execute();
+
+        // store both entries with one batch
+        Mockito.when(prepQuery.execute()).thenReturn(null);
+        Assert.assertTrue(calr.storeEntries(Arrays.asList(ale, ale)));
+        Mockito.verify(prepQuery, Mockito.times(1)).execute();
+
+        // fail storing
+        Mockito.when(prepQuery.execute()).thenThrow(Mockito.mock(ConnectionException.class));
+        Assert.assertFalse(calr.storeEntries(Arrays.asList(ale, ale)));
+    }
+
     /**
      * Tests {@link CassandraAuditLogRepository#cqlWithApplication(String, Application.Name)}
      * and {@link CassandraAuditLogRepository#cqlSelectAll(String)}
@@ -280,12 +361,23 @@ public class CassandraAuditLogRepositoryTest {
         Assert.assertNull(ale);
     }
 
+    private Rows<Application.Name, String> singleRow() {
+        Row<Application.Name, String> row = Mockito.mock(Row.class);
+        ColumnList<String> cl = createMockedALEColumnList();
+        Mockito.when(row.getColumns()).thenReturn(cl);
+        Rows<Application.Name, String> singleRow = Mockito.mock(Rows.class);
+        Mockito.when(singleRow.size()).thenReturn(1);
+        Mockito.when(singleRow.iterator()).thenReturn(Collections.singletonList(row).iterator());
+        return singleRow;
+    }
+
     private ColumnList<String> createMockedALEColumnList() {
         ColumnList<String> cl = Mockito.mock(ColumnList.class);
 
         Mockito.when(cl.getStringValue(Mockito.anyString(), Mockito.eq(""))).thenReturn(dummyStringValue);
         Mockito.when(cl.getStringValue(Mockito.eq("action"), Mockito.anyString())).thenReturn(dummyStringValue);
         Mockito.when(cl.getDateValue("time", null)).thenReturn(time.getTime());
+        Mockito.when(cl.getUUIDValue("event_id", null)).thenReturn(eventId);
         Mockito.when(cl.getValue("experiment_label", ExperimentLabelSerializer.get(), null)).thenReturn(expLabel);
         Mockito.when(cl.getValue("experiment_id", ExperimentIDSerializer.get(), null)).thenReturn(expID);
         Mockito.when(cl.getValue("bucket_label", BucketLabelSerializer.get(), null)).thenReturn(bucketLabel);
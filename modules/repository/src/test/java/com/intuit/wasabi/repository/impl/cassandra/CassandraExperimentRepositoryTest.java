@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.repository.impl.cassandra;
+
+import com.googlecode.catchexception.apis.CatchExceptionBdd;
+import com.intuit.wasabi.analyticsobjects.counts.AssignmentCounts;
+import com.intuit.wasabi.cassandra.CassandraDriver;
+import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.BucketList;
+import com.intuit.wasabi.experimentobjects.Context;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.experimentobjects.ExperimentValidator;
+import com.intuit.wasabi.repository.RepositoryException;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.Serializer;
+import com.netflix.astyanax.connectionpool.OperationResult;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.connectionpool.exceptions.HostDownException;
+import com.netflix.astyanax.model.Column;
+import com.netflix.astyanax.model.ColumnFamily;
+import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.model.CqlResult;
+import com.netflix.astyanax.model.Row;
+import com.netflix.astyanax.model.Rows;
+import com.netflix.astyanax.query.ColumnFamilyQuery;
+import com.netflix.astyanax.query.CqlQuery;
+import com.netflix.astyanax.query.PreparedCqlQuery;
+import com.toddfast.mutagen.Plan;
+import com.toddfast.mutagen.cassandra.CassandraMutagen;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.BDDMockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CassandraExperimentRepositoryTest {
+
+    @Mock
+    private CassandraMutagen mutagen;
+    @Mock
+    private Plan.Result<Integer> mutationResult;
+    @Mock
+    private CassandraDriver cassandraDriver;
+    @Mock
+    private ExperimentsKeyspace experimentsKeyspace;
+    @Mock
+    private ExperimentValidator validator;
+    @Mock
+    private Keyspace keyspace;
+
+    @Mock
+    private ColumnFamilyQuery<Experiment.ID, String> queryExperimentIdString;
+
+    @Mock
+    private CqlQuery<Experiment.ID, String> cqlQueryExperimentIdString;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private PreparedCqlQuery<Experiment.ID, String> preparedCqlQueryExperimentIdString;
+
+    @Mock
+    private OperationResult<CqlResult<Experiment.ID, String>> operationResultExperimentIdString;
+
+    @Mock
+    private CqlResult<Experiment.ID, String> cqlResultExperimentIdString;
+
+    @Mock
+    private Rows<Experiment.ID, String> firstPage;
+
+    @Mock
+    private Rows<Experiment.ID, String> lastPage;
+
+    @Mock
+    private Row<Experiment.ID, String> firstRow;
+
+    @Mock
+    private Row<Experiment.ID, String> lastRow;
+
+    @Mock
+    private ColumnList<String> firstColumns;
+
+    @Mock
+    private ColumnList<String> lastColumns;
+
+    @Mock
+    private Column<String> firstValue;
+
+    @Mock
+    private Column<String> lastValue;
+
+    private final Experiment.ID experimentID = Experiment.ID.newInstance();
+    private final Context context = Context.valueOf("PROD");
+    private CassandraExperimentRepository repository;
+
+    @Before
+    public void setUp() throws IOException, ConnectionException {
+        given(cassandraDriver.getKeyspace()).willReturn(keyspace);
+        given(mutagen.mutate(keyspace)).willReturn(mutationResult);
+        repository = new CassandraExperimentRepository(mutagen, cassandraDriver, experimentsKeyspace, validator);
+
+        given(keyspace.prepareQuery(Matchers.<ColumnFamily<Experiment.ID, String>>any()))
+                .willReturn(queryExperimentIdString);
+        given(queryExperimentIdString.withCql(isA(String.class))).willReturn(cqlQueryExperimentIdString);
+        given(cqlQueryExperimentIdString.asPreparedStatement()).willReturn(preparedCqlQueryExperimentIdString);
+        given(preparedCqlQueryExperimentIdString.withByteBufferValue(any(), isA(Serializer.class)))
+                .willReturn(preparedCqlQueryExperimentIdString);
+        given(preparedCqlQueryExperimentIdString.withStringValue(anyString()))
+                .willReturn(preparedCqlQueryExperimentIdString);
+        given(preparedCqlQueryExperimentIdString.execute()).willReturn(operationResultExperimentIdString);
+        given(operationResultExperimentIdString.getResult()).willReturn(cqlResultExperimentIdString);
+
+        given(firstRow.getColumns()).willReturn(firstColumns);
+        given(lastRow.getColumns()).willReturn(lastColumns);
+        given(firstColumns.getColumnByName("bucket_assignment_count")).willReturn(firstValue);
+        given(lastColumns.getColumnByName("bucket_assignment_count")).willReturn(lastValue);
+    }
+
+    @Test
+    public void getAssignmentCountersReadsAllRows() {
+        given(cqlResultExperimentIdString.getRows()).willReturn(firstPage);
+        given(firstPage.iterator()).willReturn(Arrays.asList(firstRow, lastRow).iterator());
+        given(firstColumns.getStringValue("bucket_label", null)).willReturn("red");
+        given(firstValue.getLongValue()).willReturn(5L);
+        given(lastColumns.getStringValue("bucket_label", null)).willReturn(CassandraExperimentRepository.NULL_BUCKET);
+        given(lastValue.getLongValue()).willReturn(2L);
+
+        Map<String, Long> result = repository.getAssignmentCounters(experimentID, context);
+
+        then(result).hasSize(2).containsEntry("red", 5L).containsEntry(CassandraExperimentRepository.NULL_BUCKET, 2L);
+        verify(preparedCqlQueryExperimentIdString).withStringValue("PROD");
+    }
+
+    @Test
+    public void getAssignmentCountersThrowsException() throws ConnectionException {
+        given(preparedCqlQueryExperimentIdString.execute()).willThrow(new HostDownException("test"));
+
+        CatchExceptionBdd.when(repository).getAssignmentCounters(experimentID, context);
+        CatchExceptionBdd.thenThrown(RepositoryException.class);
+    }
+
+    @Test
+    public void countBucketAssignmentsReadsPageByPage() throws ConnectionException {
+        given(cqlResultExperimentIdString.getRows()).willReturn(firstPage).willReturn(lastPage);
+        given(firstPage.size()).willReturn(1000);
+        given(firstPage.getRowByIndex(999)).willReturn(lastRow);
+        given(lastColumns.getStringValue("user_id", null)).willReturn("u999");
+        given(lastPage.size()).willReturn(3);
+
+        long result = repository.countBucketAssignments(experimentID, context, "red");
+
+        then(result).isEqualTo(1003L);
+        verify(preparedCqlQueryExperimentIdString, times(2)).execute();
+        // the first page starts at the smallest user id, the next one after the last user of the previous page
+        verify(preparedCqlQueryExperimentIdString).withStringValue("");
+        verify(preparedCqlQueryExperimentIdString).withStringValue("u999");
+    }
+
+    @Test
+    public void countBucketAssignmentsStopsAtEmptyPageAfterFullPage() throws ConnectionException {
+        given(cqlResultExperimentIdString.getRows()).willReturn(firstPage).willReturn(lastPage);
+        given(firstPage.size()).willReturn(1000);
+        given(firstPage.getRowByIndex(999)).willReturn(lastRow);
+        given(lastColumns.getStringValue("user_id", null)).willReturn("u999");
+        given(lastPage.size()).willReturn(0);
+
+        long result = repository.countBucketAssignments(experimentID, context, "red");
+
+        then(result).isEqualTo(1000L);
+        verify(preparedCqlQueryExperimentIdString, times(2)).execute();
+    }
+
+    @Test
+    public void countBucketAssignmentsReadsShortPageOnce() throws ConnectionException {
+        given(cqlResultExperimentIdString.getRows()).willReturn(lastPage);
+        given(lastPage.size()).willReturn(999);
+
+        long result = repository.countBucketAssignments(experimentID, context, "red");
+
+        then(result).isEqualTo(999L);
+        verify(preparedCqlQueryExperimentIdString, times(1)).execute();
+        verify(lastPage, never()).getRowByIndex(anyInt());
+    }
+
+    @Test
+    public void countBucketAssignmentsThrowsException() throws ConnectionException {
+        given(preparedCqlQueryExperimentIdString.execute()).willThrow(new HostDownException("test"));
+
+        CatchExceptionBdd.when(repository).countBucketAssignments(experimentID, context, "red");
+        CatchExceptionBdd.thenThrown(RepositoryException.class);
+    }
+
+    @Test
+    public void getAssignmentCountContexts() {
+        given(cqlResultExperimentIdString.getRows()).willReturn(firstPage);
+        given(firstPage.iterator()).willReturn(Arrays.asList(firstRow, lastRow).iterator());
+        given(firstColumns.getStringValue("context", null)).willReturn("PROD");
+        given(lastColumns.getStringValue("context", null)).willReturn("QA");
+
+        Set<Context> result = repository.getAssignmentCountContexts(experimentID);
+
+        then(result).containsOnly(context, Context.valueOf("QA"));
+        verify(experimentsKeyspace).bucketAssignmentCountsByContextCF();
+    }
+
+    @Test
+    public void getReconciledAssignmentCountContexts() {
+        given(cqlResultExperimentIdString.getRows()).willReturn(firstPage);
+        given(firstPage.iterator()).willReturn(Collections.singletonList(firstRow).iterator());
+        given(firstColumns.getStringValue("context", null)).willReturn("PROD");
+
+        Set<Context> result = repository.getReconciledAssignmentCountContexts(experimentID);
+
+        then(result).containsOnly(context);
+        verify(experimentsKeyspace).assignmentCountsReconciledCF();
+    }
+
+    @Test
+    public void getReconciledAssignmentCountContextsLeavesOutNewExperimentMarker() {
+        given(cqlResultExperimentIdString.getRows()).willReturn(firstPage);
+        given(firstPage.iterator()).willReturn(Arrays.asList(firstRow, lastRow).iterator());
+        given(firstColumns.getStringValue("context", null)).willReturn("PROD");
+        given(lastColumns.getStringValue("context", null))
+                .willReturn(CassandraExperimentRepository.ALL_CONTEXTS.getContext());
+
+        Set<Context> result = repository.getReconciledAssignmentCountContexts(experimentID);
+
+        then(result).containsOnly(context);
+    }
+
+    @Test
+    public void getAssignmentCountsReadsCountersOfNewExperiments() {
+        CassandraExperimentRepository spy = givenRecount(8L, counters(5L, 0L), counters(5L, 0L));
+        willReturn(new HashSet<>(Collections.singleton(CassandraExperimentRepository.ALL_CONTEXTS)))
+                .given(spy).readReconciledContexts(experimentID);
+
+        AssignmentCounts result = spy.getAssignmentCounts(experimentID, context);
+
+        verify(spy, never()).countBucketAssignments(eq(experimentID), eq(context), anyString());
+        then(result.getTotalUsers().getBucketAssignments()).isEqualTo(5L);
+    }
+
+    @Test
+    public void getAssignmentCountsRecountsUnreconciledContexts() {
+        CassandraExperimentRepository spy = givenRecount(8L, counters(5L, 0L), counters(5L, 0L));
+        willReturn(new HashSet<>(Collections.singleton(Context.valueOf("QA"))))
+                .given(spy).readReconciledContexts(experimentID);
+
+        AssignmentCounts result = spy.getAssignmentCounts(experimentID, context);
+
+        then(result.getTotalUsers().getBucketAssignments()).isEqualTo(8L);
+    }
+
+    @Test
+    public void getAssignmentCountContextsThrowsException() throws ConnectionException {
+        given(preparedCqlQueryExperimentIdString.execute()).willThrow(new HostDownException("test"));
+
+        CatchExceptionBdd.when(repository).getAssignmentCountContexts(experimentID);
+        CatchExceptionBdd.thenThrown(RepositoryException.class);
+    }
+
+    @Test
+    public void reconcileAssignmentCountsWritesMissingCountersAndMissedAssignments() {
+        CassandraExperimentRepository spy = givenRecount(8L, counters(5L, null), counters(6L, null));
+
+        AssignmentCounts result = spy.reconcileAssignmentCounts(experimentID, context, 0);
+
+        // 3 assignments are missing before and 2 after the recount: one counter update was pending
+        verify(spy).updateAssignmentCounter(experimentID, context, "red", 2L);
+        // the missing null assignment counter is written although there is nothing to correct
+        verify(spy).updateAssignmentCounter(experimentID, context, CassandraExperimentRepository.NULL_BUCKET, 0L);
+        verify(spy).markAssignmentCountsReconciled(experimentID, context);
+        then(result.getTotalUsers().getBucketAssignments()).isEqualTo(8L);
+    }
+
+    @Test
+    public void reconcileAssignmentCountsRemovesCountedTwice() {
+        CassandraExperimentRepository spy = givenRecount(8L, counters(10L, 0L), counters(11L, 0L));
+
+        spy.reconcileAssignmentCounts(experimentID, context, 0);
+
+        verify(spy).updateAssignmentCounter(experimentID, context, "red", -2L);
+        verify(spy, never()).updateAssignmentCounter(experimentID, context,
+                CassandraExperimentRepository.NULL_BUCKET, 0L);
+        verify(spy).markAssignmentCountsReconciled(experimentID, context);
+    }
+
+    @Test
+    public void reconcileAssignmentCountsIgnoresPendingUpdates() {
+        // the counter caught up with the recount after the pending updates were written
+        CassandraExperimentRepository spy = givenRecount(8L, counters(6L, 0L), counters(8L, 0L));
+
+        spy.reconcileAssignmentCounts(experimentID, context, 0);
+
+        verify(spy, never()).updateAssignmentCounter(eq(experimentID), eq(context), anyString(), anyLong());
+        verify(spy).markAssignmentCountsReconciled(experimentID, context);
+    }
+
+    @Test
+    public void correction() {
+        then(CassandraExperimentRepository.correction(3, 2)).isEqualTo(2L);
+        then(CassandraExperimentRepository.correction(-2, -3)).isEqualTo(-2L);
+        then(CassandraExperimentRepository.correction(2, -1)).isEqualTo(0L);
+        then(CassandraExperimentRepository.correction(0, 4)).isEqualTo(0L);
+    }
+
+    private CassandraExperimentRepository givenRecount(long count, Map<String, Long> countersBefore,
+                                                       Map<String, Long> countersAfter) {
+        CassandraExperimentRepository spy = spy(repository);
+        BucketList buckets = new BucketList();
+        buckets.addBucket(Bucket.newInstance(experimentID, Bucket.Label.valueOf("red")).build());
+
+        willReturn(buckets).given(spy).getBuckets(experimentID);
+        willReturn(countersBefore).willReturn(countersAfter).given(spy).getAssignmentCounters(experimentID, context);
+        willReturn(count).given(spy).countBucketAssignments(experimentID, context, "red");
+        willReturn(0L).given(spy).countBucketAssignments(experimentID, context, "");
+        willDoNothing().given(spy).updateAssignmentCounter(eq(experimentID), eq(context), anyString(), anyLong());
+        willDoNothing().given(spy).markAssignmentCountsReconciled(experimentID, context);
+        return spy;
+    }
+
+    private Map<String, Long> counters(Long red, Long nullAssignments) {
+        Map<String, Long> counters = new HashMap<>();
+        counters.put("red", red);
+        if (nullAssignments != null) {
+            counters.put(CassandraExperimentRepository.NULL_BUCKET, nullAssignments);
+        }
+        return counters;
+    }
+}
@@ -73,6 +73,7 @@ public class CassandraExperimentTest {
 		given(columns.getStringValue("model_name", "")).willReturn("m1");
 		given(columns.getStringValue("model_version", "")).willReturn("v1");
 		given(columns.getBooleanValue("is_rapid_experiment", false)).willReturn(true);
+		given(columns.getBooleanValue("is_hash_assignment", false)).willReturn(true);
 		given(columns.getIntegerValue("user_cap", Integer.MAX_VALUE)).willReturn(5);
 		given(columns.getStringValue("creatorid", null)).willReturn("c1");
 		experiment = new CassandraExperiment(columns);
@@ -173,6 +174,12 @@ public class CassandraExperimentTest {
 		CatchExceptionBdd.thenThrown(UnsupportedOperationException.class);
 	}
 
+	@Test
+	public void testSetIsHashAssignmentBoolean() {
+		CatchExceptionBdd.when(experiment).setIsHashAssignment(true);
+		CatchExceptionBdd.thenThrown(UnsupportedOperationException.class);
+	}
+
 	@Test
 	public void testSetUserCapInteger() {
 		CatchExceptionBdd.when(experiment).setUserCap(4);
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.repository.impl.cassandra;
+
+import com.intuit.wasabi.cassandra.CassandraDriver;
+import com.intuit.wasabi.experimentobjects.Application;
+import com.intuit.wasabi.experimentobjects.Experiment;
+import com.intuit.wasabi.experimentobjects.ExperimentList;
+import com.intuit.wasabi.experimentobjects.Page;
+import com.intuit.wasabi.experimentobjects.PageExperiment;
+import com.intuit.wasabi.repository.ExperimentRepository;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.Serializer;
+import com.netflix.astyanax.model.ColumnFamily;
+import com.netflix.astyanax.model.ConsistencyLevel;
+import com.netflix.astyanax.model.Row;
+import com.netflix.astyanax.model.Rows;
+import com.netflix.astyanax.query.ColumnFamilyQuery;
+import com.netflix.astyanax.query.CqlQuery;
+import com.netflix.astyanax.query.PreparedCqlQuery;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.BDDMockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CassandraPagesRepositoryTest {
+
+    @Mock
+    private ExperimentRepository experimentRepository;
+    @Mock
+    private CassandraDriver driver;
+    @Mock
+    private ExperimentsKeyspace experimentsKeyspace;
+    @Mock
+    private Keyspace keyspace;
+    @Mock
+    private ColumnFamily<ExperimentsKeyspace.AppNamePageComposite, String> pageExperimentIndexCF;
+    @Mock
+    private ColumnFamily<Application.Name, String> appPageIndexCF;
+    @Mock
+    private ColumnFamilyQuery<ExperimentsKeyspace.AppNamePageComposite, String> pageExperimentIndexQuery;
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private ColumnFamilyQuery<Application.Name, String> appPageIndexQuery;
+    @Mock
+    private CqlQuery<ExperimentsKeyspace.AppNamePageComposite, String> cqlQuery;
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private PreparedCqlQuery<ExperimentsKeyspace.AppNamePageComposite, String> preparedQuery;
+
+    private final Application.Name applicationName = Application.Name.valueOf("app");
+    private final Page.Name home = Page.Name.valueOf("home");
+    private final Page.Name cart = Page.Name.valueOf("cart");
+    private final Page.Name empty = Page.Name.valueOf("empty");
+    private final Experiment red = Experiment.withID(Experiment.ID.newInstance())
+            .withLabel(Experiment.Label.valueOf("red")).build();
+    private final Experiment blue = Experiment.withID(Experiment.ID.newInstance())
+            .withLabel(Experiment.Label.valueOf("blue")).build();
+    private CassandraPagesRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        given(driver.getKeyspace()).willReturn(keyspace);
+        given(experimentsKeyspace.page_experiment_index_CF()).willReturn(pageExperimentIndexCF);
+        given(experimentsKeyspace.app_page_index_CF()).willReturn(appPageIndexCF);
+        given(keyspace.prepareQuery(pageExperimentIndexCF)).willReturn(pageExperimentIndexQuery);
+        given(keyspace.prepareQuery(appPageIndexCF)).willReturn(appPageIndexQuery);
+        given(pageExperimentIndexQuery.setConsistencyLevel(any(ConsistencyLevel.class)))
+                .willReturn(pageExperimentIndexQuery);
+        given(pageExperimentIndexQuery.withCql(anyString())).willReturn(cqlQuery);
+        given(cqlQuery.asPreparedStatement()).willReturn(preparedQuery);
+        given(preparedQuery.withByteBufferValue(any(), any(Serializer.class))).willReturn(preparedQuery);
+
+        repository = new CassandraPagesRepository(experimentRepository, driver, experimentsKeyspace);
+    }
+
+    @Test
+    public void toPageExperimentsGroupsRowsByPage() {
+        Rows<ExperimentsKeyspace.AppNamePageComposite, String> rows = rows(
+                row(home, red, true), row(cart, red, false), row(cart, blue, true));
+        givenExperiments(red, blue);
+
+        Map<Page.Name, List<PageExperiment>> result = repository.toPageExperiments(rows);
+
+        then(result).hasSize(2);
+        then(result.get(home)).hasSize(1);
+        then(result.get(home).get(0).getId()).isEqualTo(red.getID());
+        then(result.get(home).get(0).getAllowNewAssignment()).isTrue();
+        then(result.get(cart)).hasSize(2);
+        then(result.get(cart).get(0).getId()).isEqualTo(red.getID());
+        then(result.get(cart).get(0).getLabel()).isEqualTo(red.getLabel());
+        then(result.get(cart).get(0).getAllowNewAssignment()).isFalse();
+        then(result.get(cart).get(1).getId()).isEqualTo(blue.getID());
+        // an experiment on several pages is looked up once
+        verify(experimentRepository).getExperiments(new HashSet<>(Arrays.asList(red.getID(), blue.getID())));
+    }
+
+    @Test
+    public void toPageExperimentsLeavesOutMissingExperiments() {
+        Rows<ExperimentsKeyspace.AppNamePageComposite, String> rows = rows(row(home, red, true), row(home, blue, true));
+        givenExperiments(blue);
+
+        Map<Page.Name, List<PageExperiment>> result = repository.toPageExperiments(rows);
+
+        then(result.get(home)).hasSize(1);
+        then(result.get(home).get(0).getId()).isEqualTo(blue.getID());
+    }
+
+    @Test
+    public void toPageExperimentsOfNoRows() {
+        Map<Page.Name, List<PageExperiment>> result = repository.toPageExperiments(
+                CassandraPagesRepositoryTest.<ExperimentsKeyspace.AppNamePageComposite>rows());
+
+        then(result).isEmpty();
+        verify(experimentRepository, never()).getExperiments(anyCollectionOf(Experiment.ID.class));
+    }
+
+    @Test
+    public void getPageExperimentListReadsAllPagesWithOneQuorumQuery() throws Exception {
+        given(appPageIndexQuery.getKey(applicationName).execute().getResult().getColumnNames())
+                .willReturn(Arrays.asList("home", "cart", "empty"));
+        Rows<ExperimentsKeyspace.AppNamePageComposite, String> rows = rows(
+                row(home, red, true), row(cart, red, true), row(cart, blue, false));
+        given(preparedQuery.execute().getResult().getRows()).willReturn(rows);
+        givenExperiments(red, blue);
+
+        Map<Page.Name, List<PageExperiment>> result = repository.getPageExperimentList(applicationName);
+
+        then(result).hasSize(3);
+        then(result.get(home)).hasSize(1);
+        then(result.get(cart)).hasSize(2);
+        // a page without experiments is listed as well
+        then(result.get(empty)).isEmpty();
+        verify(pageExperimentIndexQuery).setConsistencyLevel(ConsistencyLevel.CL_QUORUM);
+        verify(pageExperimentIndexQuery).withCql(
+                "select * from page_experiment_index where app_name = ? and page in (?,?,?)");
+        verify(preparedQuery).withByteBufferValue(eq(home), any(Serializer.class));
+        verify(preparedQuery).withByteBufferValue(eq(cart), any(Serializer.class));
+        verify(preparedQuery).withByteBufferValue(eq(empty), any(Serializer.class));
+    }
+
+    private void givenExperiments(Experiment... experiments) {
+        ExperimentList experimentList = new ExperimentList();
+        for (Experiment experiment : experiments) {
+            experimentList.addExperiment(experiment);
+        }
+        given(experimentRepository.getExperiments(anyCollectionOf(Experiment.ID.class))).willReturn(experimentList);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Row<ExperimentsKeyspace.AppNamePageComposite, String> row(Page.Name page, Experiment experiment,
+                                                                      boolean allowNewAssignment) {
+        Row<ExperimentsKeyspace.AppNamePageComposite, String> row = mock(Row.class, RETURNS_DEEP_STUBS);
+        given(row.getColumns().getColumnByName("page").getStringValue()).willReturn(page.toString());
+        given(row.getColumns().getColumnByName("exp_id").getUUIDValue()).willReturn(experiment.getID().getRawID());
+        given(row.getColumns().getColumnByName("assign").getBooleanValue()).willReturn(allowNewAssignment);
+        return row;
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    private static <K> Rows<K, String> rows(Row<K, String>... rows) {
+        final List<Row<K, String>> rowList = new ArrayList<>(Arrays.asList(rows));
+        Rows<K, String> result = mock(Rows.class);
+        given(result.isEmpty()).willReturn(rowList.isEmpty());
+        given(result.size()).willReturn(rowList.size());
+        given(result.iterator()).willAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return rowList.iterator();
+            }
+        });
+        return result;
+    }
+}
@@ -181,6 +181,20 @@ public class ExperimentsKeyspaceImplTest {
         Assert.assertEquals(StringSerializer.get(), ek.bucketAssignmentCountsCF().getColumnSerializer());
     }
 
+    @Test
+    public void testBucketAssignmentCountsByContextCF() throws Exception {
+        Assert.assertEquals("bucket_assignment_counts_by_context", ek.bucketAssignmentCountsByContextCF().getName());
+        Assert.assertEquals(ExperimentIDSerializer.get(), ek.bucketAssignmentCountsByContextCF().getKeySerializer());
+        Assert.assertEquals(StringSerializer.get(), ek.bucketAssignmentCountsByContextCF().getColumnSerializer());
+    }
+
+    @Test
+    public void testAssignmentCountsReconciledCF() throws Exception {
+        Assert.assertEquals("assignment_counts_reconciled", ek.assignmentCountsReconciledCF().getName());
+        Assert.assertEquals(ExperimentIDSerializer.get(), ek.assignmentCountsReconciledCF().getKeySerializer());
+        Assert.assertEquals(StringSerializer.get(), ek.assignmentCountsReconciledCF().getColumnSerializer());
+    }
+
     @Test
     public void testAuditlogCF() throws Exception {
         Assert.assertEquals("auditlog", ek.auditlogCF().getName());
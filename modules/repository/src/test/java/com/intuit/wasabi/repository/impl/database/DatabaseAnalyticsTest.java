@@ -21,6 +21,7 @@ import com.intuit.wasabi.analyticsobjects.counts.BucketCounts;
 import com.intuit.wasabi.database.Transaction;
 import com.intuit.wasabi.database.TransactionFactory;
 import com.intuit.wasabi.experimentobjects.Bucket;
+import com.intuit.wasabi.experimentobjects.Context;
 import com.intuit.wasabi.experimentobjects.Experiment;
 import com.intuit.wasabi.repository.RepositoryException;
 import org.junit.Before;
@@ -147,6 +148,29 @@ public class DatabaseAnalyticsTest {
         fail();
     }
 
+    @Test(expected = RepositoryException.class)
+    public void getActionsRowsPerDayTest(){
+        Experiment.ID experimentId = Experiment.ID.newInstance();
+        Parameters parameters = mock(Parameters.class, RETURNS_DEEP_STUBS);
+        when(parameters.getContext().getContext()).thenReturn("TEST");
+        Date to = mock(Date.class);
+        when(parameters.getToTime()).thenReturn(to);
+        List<String> actions = new ArrayList<String>();
+        actions.add("TEST_ACTION");
+        when(parameters.getActions()).thenReturn(actions);
+        List<Map> expected = mock(List.class);
+        //the filter is bound once for the daily counts and once for the first days of the users
+        when(transaction.select(anyString(), eq(experimentId), eq("TEST"), eq(to), eq("TEST_ACTION"),
+                eq(experimentId), eq("TEST"), eq(to), eq("TEST_ACTION"))).thenReturn(expected);
+        List<Map> result = databaseAnalytics.getActionsRowsPerDay(experimentId, parameters);
+        assertThat(result, is(expected));
+        //exception while select
+        doThrow(new RuntimeException()). when(transaction)
+                .select(anyString(), Matchers.anyVararg());
+        databaseAnalytics.getActionsRowsPerDay(experimentId, parameters);
+        fail();
+    }
+
     @Test(expected = RepositoryException.class)
     public void getEmptyBucketsTest(){
         Experiment.ID experimentId = Experiment.ID.newInstance();
@@ -242,5 +266,107 @@ public class DatabaseAnalyticsTest {
         assertThat(stringBuilder.toString(), is(" and action in (?,?) "));
     }
 
+    @Test
+    public void getEventContextsTest(){
+        Experiment.ID experimentId = Experiment.ID.newInstance();
+        Map<String, Object> row = new HashMap<>();
+        row.put("context", "QA");
+        List<Map> rows = new ArrayList<>();
+        rows.add(row);
+        when(transaction.select(anyString(), eq(experimentId), eq(experimentId))).thenReturn(rows);
+        List<Context> result = databaseAnalytics.getEventContexts(experimentId);
+        assertThat(result.size(), is(1));
+        assertThat(result.get(0).getContext(), is("QA"));
+    }
+
+    @Test
+    public void writeRollupRowsTest() throws Exception {
+        Experiment.ID experimentId = Experiment.ID.newInstance();
+        Parameters parameters = mock(Parameters.class, RETURNS_DEEP_STUBS);
+        when(parameters.getContext().getContext()).thenReturn("TEST");
+        List<Map> rollupRows = new ArrayList<>();
+        for (int i = 0; i < 501; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("day", "2016-06-01");
+            row.put("c", true);
+            row.put("bid", "b" + i);
+            row.put("action", "");
+            rollupRows.add(row);
+        }
+        databaseAnalytics.writeRollupRows(experimentId, parameters, rollupRows);
+        //two statements, the second one with the last row
+        verify(transaction, times(2)).insert(anyString(), Matchers.anyVararg());
+    }
+
+    @Test
+    public void acquireLockTest(){
+        Map<String, Object> row = new HashMap<>();
+        row.put("owner", "node1");
+        List<Map> rows = new ArrayList<>();
+        rows.add(row);
+        when(transaction.select(anyString(), eq("lock"))).thenReturn(rows);
+        assertThat(databaseAnalytics.acquireLock("lock", "node1", 60), is(true));
+        assertThat(databaseAnalytics.acquireLock("lock", "node2", 60), is(false));
+    }
+
+    @Test
+    public void hasCompletedRunWithinTest(){
+        when(transaction.select(anyString(), eq("lock"), eq(60))).thenReturn(new ArrayList<Map>());
+        assertThat(databaseAnalytics.hasCompletedRunWithin("lock", 60), is(false));
+        List<Map> rows = new ArrayList<>();
+        rows.add(new HashMap<>());
+        when(transaction.select(anyString(), eq("lock"), eq(60))).thenReturn(rows);
+        assertThat(databaseAnalytics.hasCompletedRunWithin("lock", 60), is(true));
+    }
+
+    @Test
+    public void eventPartitionsSqlTest(){
+        Calendar today = new GregorianCalendar(2016, Calendar.JUNE, 30);
+        List<Map> partitionRows = partitionRows("p_past", "p_future");
+
+        assertThat(databaseAnalytics.eventPartitionsSql("event_action", partitionRows, today, 1),
+                is("alter table event_action reorganize partition p_future into (" +
+                        "partition p20160630 values less than (to_days('2016-07-01')), " +
+                        "partition p20160701 values less than (to_days('2016-07-02')), " +
+                        "partition p_future values less than maxvalue)"));
+
+        partitionRows = partitionRows("p_past", "p20160630", "p20160701", "p_future");
+        assertThat(databaseAnalytics.eventPartitionsSql("event_action", partitionRows, today, 1), is((String) null));
+        assertThat(databaseAnalytics.eventPartitionsSql("event_action", partitionRows, today, 2),
+                is("alter table event_action reorganize partition p_future into (" +
+                        "partition p20160702 values less than (to_days('2016-07-03')), " +
+                        "partition p_future values less than maxvalue)"));
+    }
+
+    @Test
+    public void addEventPartitionsTest(){
+        when(transaction.select(anyString(), Matchers.anyVararg())).thenReturn(partitionRows("p_past", "p_future"));
+        databaseAnalytics.addEventPartitions(3);
+        //the daily partitions are split off p_future of both event tables
+        verify(transaction, times(2)).update(startsWith("alter table event_"));
+    }
+
+    @Test(expected = RepositoryException.class)
+    public void addEventPartitionsToUnpartitionedTableTest(){
+        when(transaction.select(anyString(), eq("event_impression"))).thenReturn(partitionRows("p_past", "p_future"));
+        when(transaction.select(anyString(), eq("event_action"))).thenReturn(new ArrayList<Map>());
+        try {
+            databaseAnalytics.addEventPartitions(3);
+        } finally {
+            //the unpartitioned table is left to the operators, the partitioned one is still extended
+            verify(transaction).update(startsWith("alter table event_impression reorganize partition p_future"));
+            verify(transaction, never()).update(startsWith("alter table event_action"));
+        }
+    }
+
+    private List<Map> partitionRows(String... names) {
+        List<Map> partitionRows = new ArrayList<>();
+        for (String name : names) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("name", name);
+            partitionRows.add(row);
+        }
+        return partitionRows;
+    }
 
 }
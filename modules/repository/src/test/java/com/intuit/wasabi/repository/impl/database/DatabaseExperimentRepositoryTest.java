@@ -257,6 +257,24 @@ public class DatabaseExperimentRepositoryTest {
                 .hasMessage("Assignment counts not supported on sql")
                 .hasNoCause();
 
+        BDDCatchException.when(repository).reconcileAssignmentCounts(Experiment.ID.newInstance(), null, 0);
+        BDDCatchException.then(caughtException())
+                .isInstanceOf(UnsupportedOperationException.class)
+                .hasMessage("Assignment counts not supported on sql")
+                .hasNoCause();
+
+        BDDCatchException.when(repository).getAssignmentCountContexts(Experiment.ID.newInstance());
+        BDDCatchException.then(caughtException())
+                .isInstanceOf(UnsupportedOperationException.class)
+                .hasMessage("Assignment counts not supported on sql")
+                .hasNoCause();
+
+        BDDCatchException.when(repository).getReconciledAssignmentCountContexts(Experiment.ID.newInstance());
+        BDDCatchException.then(caughtException())
+                .isInstanceOf(UnsupportedOperationException.class)
+                .hasMessage("Assignment counts not supported on sql")
+                .hasNoCause();
+
         BDDCatchException.when(repository).getBucketList(Collections.<Experiment.ID>emptyList());
         BDDCatchException.then(caughtException())
                 .isInstanceOf(UnsupportedOperationException.class)
@@ -25,7 +25,9 @@ import com.intuit.wasabi.authenticationobjects.UserInfo.Username;
 import com.intuit.wasabi.exceptions.AuthenticationException;
 import com.intuit.wasabi.userdirectory.UserDirectory;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static java.text.MessageFormat.format;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -36,14 +38,24 @@ import static org.slf4j.LoggerFactory.getLogger;
 public class DefaultUserDirectory implements UserDirectory {
 
 
-    private final List<UserInfo> users;
+    private final Map<Username, UserInfo> usersByUsername = new HashMap<>();
+    private final Map<String, UserInfo> usersByEmail = new HashMap<>();
 
     /**
+     * Indexes the users by username and by email address; if an entry is configured twice the first one wins.
+     *
      * @param users a list of user credentials
      */
     @Inject
     public DefaultUserDirectory(final @Named("authentication.users") List<UserInfo> users) {
-        this.users = users;
+        for (UserInfo user : users) {
+            if (!usersByUsername.containsKey(user.getUsername())) {
+                usersByUsername.put(user.getUsername(), user);
+            }
+            if (user.getEmail() != null && !usersByEmail.containsKey(user.getEmail())) {
+                usersByEmail.put(user.getEmail(), user);
+            }
+        }
     }
 
     /**
@@ -53,11 +65,10 @@ public class DefaultUserDirectory implements UserDirectory {
      */
     @Override
     public UserInfo lookupUserByEmail(final String userEmail) {
+        UserInfo user = usersByEmail.get(userEmail);
 
-        for (UserInfo user : users) {
-            if (user.getEmail().equals(userEmail)) {
-                return user;
-            }
+        if (user != null) {
+            return user;
         }
 
         throw new AuthenticationException(format("Email address does not exist: {0}", userEmail));
@@ -65,14 +76,12 @@ public class DefaultUserDirectory implements UserDirectory {
 
     @Override
     public UserInfo lookupUser(final Username username) {
-        final String usernameString = username.getUsername();
+        UserInfo user = usersByUsername.get(username);
 
-        for (UserInfo user : users) {
-            if (user.getUsername().equals(username)) {
-                return user;
-            }
+        if (user != null) {
+            return user;
         }
 
-        throw new AuthenticationException(format("Username does not exist: {0}", usernameString));
+        throw new AuthenticationException(format("Username does not exist: {0}", username.getUsername()));
     }
 }
@@ -26,6 +26,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.util.Arrays;
+
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.*;
 
@@ -115,4 +117,15 @@ public class DefaultUserDirectoryTest {
         assertThat(user.getFirstName(), is("Wasabi"));
         assertThat(user.getLastName(), is("Writer"));
      }
+
+    @Test
+    public void testFirstConfiguredUserWins() {
+        UserInfo.Username username = UserInfo.Username.valueOf("admin");
+        UserInfo first = UserInfo.from(username).withEmail("admin@example.com").withFirstName("First").build();
+        UserInfo second = UserInfo.from(username).withEmail("admin@example.com").withFirstName("Second").build();
+        UserDirectory directory = new DefaultUserDirectory(Arrays.asList(first, second));
+
+        assertThat(directory.lookupUser(username).getFirstName(), is("First"));
+        assertThat(directory.lookupUserByEmail("admin@example.com").getFirstName(), is("First"));
+    }
 }
@@ -0,0 +1,617 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.util.concurrent;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Fixed size thread pool with a bounded queue. What happens to a task submitted to a full queue is decided by
+ * the {@link OverflowPolicy} of the executor; the rejected, dropped, spilled and caller-run tasks as well as the
+ * time spent waiting for room in the queue are counted.
+ *
+ * Executors register themselves with {@link Drainables}, so their queues are drained when the process shuts
+ * down.
+ */
+public class BoundedExecutor extends ThreadPoolExecutor implements Drainable {
+
+    public static final String REJECTED = "rejected";
+    public static final String DROPPED = "dropped";
+    public static final String SPILLED = "spilled";
+    public static final String CALLER_RUNS = "callerRuns";
+    public static final String ENQUEUE_WAIT_MILLIS = "enqueueWaitMillis";
+    private static final Logger LOGGER = getLogger(BoundedExecutor.class);
+    private static final long SPILL_REPLAY_INTERVAL_SECONDS = 1;
+    private static final long REPLAY_POLL_MILLIS = 10;
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 60;
+    private static final long BLOCK_SLICE_NANOS = MILLISECONDS.toNanos(100);
+    private static final ThreadLocal<Boolean> RUN_BY_CALLER = new ThreadLocal<>();
+    private final String name;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder enqueueWaitNanos = new LongAdder();
+    private final Object spillLock = new Object();
+    private final AtomicBoolean replaying = new AtomicBoolean();
+    private final Path spillFile;
+    private final Path replayFile;
+    private final ReplayQueue replayQueue;
+    private final TaskCodec taskCodec;
+    private final ScheduledExecutorService spillReplayer;
+
+    private BoundedExecutor(Builder builder) {
+        super(builder.poolSize, Math.max(builder.poolSize, builder.maxPoolSize), IDLE_THREAD_KEEP_ALIVE_SECONDS, SECONDS,
+                builder.spills() ? new ReplayQueue(builder.queueCapacity)
+                        : new ArrayBlockingQueue<Runnable>(builder.queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat(builder.name + "-%d").setDaemon(builder.daemonThreads).build());
+        this.name = builder.name;
+        this.queueCapacity = builder.queueCapacity;
+        this.overflowPolicy = builder.overflowPolicy;
+        this.taskCodec = builder.taskCodec;
+        setRejectedExecutionHandler(new OverflowHandler(builder.blockTimeoutMillis));
+
+        if (builder.spills()) {
+            spillFile = new File(builder.spillDirectory, name + ".spill").toPath();
+            replayFile = spillFile.resolveSibling(spillFile.getFileName() + ".replay");
+            replayQueue = (ReplayQueue) getQueue();
+            spillReplayer = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat(name + "-spill-%d").setDaemon(true).build());
+            // replays the tasks a previous process left on disk as well
+            spillReplayer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    replaySpilledTasks();
+                }
+            }, 0, SPILL_REPLAY_INTERVAL_SECONDS, SECONDS);
+        } else {
+            spillFile = null;
+            replayFile = null;
+            replayQueue = null;
+            spillReplayer = null;
+        }
+
+        Drainables.register(this);
+    }
+
+    /**
+     * @return the name of this executor, used as prefix of its thread names
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the overflow policy of this executor
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * @return the number of tasks which were neither queued nor run
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return the number of queued tasks dropped to make room for newer ones
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return the number of tasks spilled to disk
+     */
+    public long getSpilledCount() {
+        return spilled.sum();
+    }
+
+    /**
+     * @return the number of tasks run by the submitting thread because the queue was full
+     */
+    public long getCallerRunsCount() {
+        return callerRuns.sum();
+    }
+
+    /**
+     * @return the total time submitting threads waited for room in the queue, in milliseconds
+     */
+    public long getEnqueueWaitMillis() {
+        return NANOSECONDS.toMillis(enqueueWaitNanos.sum());
+    }
+
+    /**
+     * @return true if the current thread runs a task it submitted to a full queue, e.g. so that the task does not
+     * hold up the submitting thread with retries
+     */
+    public static boolean isRunByCaller() {
+        return Boolean.TRUE.equals(RUN_BY_CALLER.get());
+    }
+
+    /**
+     * Adds the queue length of an executor under the given name to the metrics, and for bounded executors
+     * the overflow counters under the name followed by a dot and the counter name.
+     *
+     * @param name     the name of the queue
+     * @param executor the executor
+     * @param metrics  the metrics to add to
+     */
+    public static void putMetrics(String name, ThreadPoolExecutor executor, Map<String, Integer> metrics) {
+        metrics.put(name, executor.getQueue().size());
+        if (executor instanceof BoundedExecutor) {
+            BoundedExecutor boundedExecutor = (BoundedExecutor) executor;
+            metrics.put(name + "." + REJECTED, saturatedInt(boundedExecutor.getRejectedCount()));
+            metrics.put(name + "." + DROPPED, saturatedInt(boundedExecutor.getDroppedCount()));
+            metrics.put(name + "." + SPILLED, saturatedInt(boundedExecutor.getSpilledCount()));
+            metrics.put(name + "." + CALLER_RUNS, saturatedInt(boundedExecutor.getCallerRunsCount()));
+            metrics.put(name + "." + ENQUEUE_WAIT_MILLIS, saturatedInt(boundedExecutor.getEnqueueWaitMillis()));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Tasks still spilled to disk, or replayed but not executed yet, stay there and are replayed by the next
+     * executor with the same name.
+     */
+    @Override
+    public boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        if (spillReplayer != null) {
+            spillReplayer.shutdown();
+        }
+        shutdown();
+        boolean terminated = awaitTermination(timeout, unit);
+        if (!terminated) {
+            LOGGER.warn("{} tasks of executor {} were not finished", getQueue().size(), name);
+        }
+        Drainables.unregister(this);
+        return terminated;
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+        if (replayQueue != null) {
+            // tasks started by a new thread never pass the queue
+            replayQueue.taken(task);
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable task, Throwable failure) {
+        if (replayQueue != null) {
+            replayQueue.finished();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedExecutor[" + name + ", " + overflowPolicy + "]";
+    }
+
+    private static int saturatedInt(long value) {
+        return (int) Math.min(Integer.MAX_VALUE, value);
+    }
+
+    private boolean spill(Runnable task) {
+        String record = taskCodec != null ? taskCodec.encode(task) : null;
+        if (record == null || record.indexOf('\n') >= 0 || record.indexOf('\r') >= 0) {
+            return false;
+        }
+        synchronized (spillLock) {
+            try {
+                Files.write(spillFile, Collections.singletonList(record), StandardCharsets.UTF_8, CREATE, APPEND);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to spill a task of executor " + name + " to " + spillFile, e);
+                return false;
+            }
+        }
+        spilled.increment();
+        return true;
+    }
+
+    /**
+     * Executes the spilled tasks, and deletes them from disk once they have been executed. A replay file left over
+     * by an executor which stopped before its replayed tasks were executed is replayed before the spill file.
+     */
+    void replaySpilledTasks() {
+        if (isShutdown() || getQueue().remainingCapacity() < queueCapacity / 2) {
+            return;
+        }
+        if (!replaying.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            replayTasks();
+        } finally {
+            replaying.set(false);
+        }
+    }
+
+    private void replayTasks() {
+        List<String> records;
+        synchronized (spillLock) {
+            try {
+                if (!Files.exists(replayFile)) {
+                    if (!Files.exists(spillFile)) {
+                        return;
+                    }
+                    Files.move(spillFile, replayFile, ATOMIC_MOVE);
+                }
+                records = Files.readAllLines(replayFile, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to replay the spilled tasks of executor " + name, e);
+                return;
+            }
+        }
+
+        LOGGER.info("replaying {} spilled tasks of executor {}", records.size(), name);
+        for (String record : records) {
+            Runnable task;
+            try {
+                task = taskCodec.decode(record);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to replay the spilled task " + record + " of executor " + name, e);
+                dropped.increment();
+                continue;
+            }
+            replayQueue.track(task);
+            try {
+                // tasks which do not fit into the queue anymore are spilled again
+                execute(task);
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("Executor {} is shut down, its spilled tasks are replayed by the next one", name);
+                replayQueue.untrackAll();
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to replay the spilled task " + record + " of executor " + name, e);
+                dropped.increment();
+            }
+        }
+
+        try {
+            if (!awaitReplayedTasks()) {
+                LOGGER.warn("Executor {} terminated before its replayed tasks were executed", name);
+                return;
+            }
+            Files.delete(replayFile);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to delete " + replayFile + ", its tasks will be replayed again", e);
+        }
+    }
+
+    /**
+     * Waits until the replayed tasks have left the queue and the threads which took them have finished the tasks
+     * they were running, which includes replayed tasks taken from the queue by another task, e.g. to batch them.
+     *
+     * @return false if the executor terminated before
+     */
+    private boolean awaitReplayedTasks() throws InterruptedException {
+        while (replayQueue.hasReplayedTasks()) {
+            if (isTerminated()) {
+                replayQueue.untrackAll();
+                return false;
+            }
+            MILLISECONDS.sleep(REPLAY_POLL_MILLIS);
+        }
+        Set<Thread> threads = replayQueue.replayingThreads();
+        while (replayQueue.isReplaying(threads)) {
+            MILLISECONDS.sleep(REPLAY_POLL_MILLIS);
+        }
+        return true;
+    }
+
+    /**
+     * Applies the overflow policy to tasks which do not fit into the queue.
+     */
+    private class OverflowHandler implements RejectedExecutionHandler {
+
+        private final long blockTimeoutMillis;
+
+        OverflowHandler(long blockTimeoutMillis) {
+            this.blockTimeoutMillis = blockTimeoutMillis;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                reject(task, "executor " + name + " is shut down");
+            }
+
+            switch (overflowPolicy) {
+                case BLOCK:
+                    block(task, executor);
+                    break;
+                case DROP_OLDEST:
+                    if (executor.getQueue().poll() != null) {
+                        dropped.increment();
+                    }
+                    executor.execute(task);
+                    break;
+                case SPILL_TO_DISK:
+                    if (spill(task)) {
+                        if (replayQueue != null) {
+                            // the task is on disk again
+                            replayQueue.untrack(task);
+                        }
+                        break;
+                    }
+                    // tasks which cannot be spilled are not lost
+                    runByCaller(task);
+                    break;
+                case CALLER_RUNS:
+                default:
+                    runByCaller(task);
+                    break;
+            }
+        }
+
+        private void runByCaller(Runnable task) {
+            callerRuns.increment();
+            RUN_BY_CALLER.set(Boolean.TRUE);
+            try {
+                task.run();
+            } finally {
+                RUN_BY_CALLER.remove();
+                if (replayQueue != null) {
+                    replayQueue.untrack(task);
+                    replayQueue.finished();
+                }
+            }
+        }
+
+        private void block(Runnable task, ThreadPoolExecutor executor) {
+            BlockingQueue<Runnable> queue = executor.getQueue();
+            long start = System.nanoTime();
+            long waitNanos = blockTimeoutMillis > 0 ? MILLISECONDS.toNanos(blockTimeoutMillis) : Long.MAX_VALUE;
+            boolean queued = false;
+            try {
+                // waits in slices, so a shutdown releases the blocked callers instead of stranding their tasks
+                while (!queued && !executor.isShutdown()) {
+                    long remainingNanos = waitNanos - (System.nanoTime() - start);
+                    if (remainingNanos <= 0) {
+                        break;
+                    }
+                    queued = queue.offer(task, Math.min(remainingNanos, BLOCK_SLICE_NANOS), NANOSECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                enqueueWaitNanos.add(System.nanoTime() - start);
+            }
+            // a task queued after the workers have exited would never run
+            if (queued && executor.isShutdown() && queue.remove(task)) {
+                queued = false;
+            }
+            if (!queued) {
+                reject(task, executor.isShutdown() ? "executor " + name + " is shut down"
+                        : "queue of executor " + name + " is full");
+            }
+        }
+
+        private void reject(Runnable task, String reason) {
+            rejected.increment();
+            throw new RejectedExecutionException("Task " + task + " rejected, " + reason);
+        }
+    }
+
+    /**
+     * Queue of an executor spilling to disk. It tracks the replayed tasks until a thread takes them, and the threads
+     * which took a replayed task until they finish the task they are running.
+     */
+    private static final class ReplayQueue extends ArrayBlockingQueue<Runnable> {
+
+        private final Set<Runnable> replayedTasks =
+                Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Runnable, Boolean>()));
+        private final Set<Thread> replayingThreads = ConcurrentHashMap.newKeySet();
+
+        ReplayQueue(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public Runnable poll() {
+            return taken(super.poll());
+        }
+
+        @Override
+        public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+            return taken(super.poll(timeout, unit));
+        }
+
+        @Override
+        public Runnable take() throws InterruptedException {
+            return taken(super.take());
+        }
+
+        void track(Runnable task) {
+            replayedTasks.add(task);
+        }
+
+        void untrack(Runnable task) {
+            replayedTasks.remove(task);
+        }
+
+        /**
+         * Marks the current thread if it took a replayed task. The thread is marked before the task is untracked,
+         * so that a replay waiting for the tracked tasks sees the thread.
+         */
+        Runnable taken(Runnable task) {
+            if (task != null && !replayedTasks.isEmpty() && replayedTasks.contains(task)) {
+                replayingThreads.add(Thread.currentThread());
+                replayedTasks.remove(task);
+            }
+            return task;
+        }
+
+        /**
+         * Unmarks the current thread once it finished the task it was running.
+         */
+        void finished() {
+            replayingThreads.remove(Thread.currentThread());
+        }
+
+        boolean hasReplayedTasks() {
+            return !replayedTasks.isEmpty();
+        }
+
+        Set<Thread> replayingThreads() {
+            return new HashSet<>(replayingThreads);
+        }
+
+        boolean isReplaying(Set<Thread> threads) {
+            for (Thread thread : threads) {
+                if (replayingThreads.contains(thread)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void untrackAll() {
+            replayedTasks.clear();
+        }
+    }
+
+    /**
+     * Builder for {@link BoundedExecutor}s
+     */
+    public static class Builder {
+
+        private final String name;
+        private int poolSize = 1;
+        private int maxPoolSize;
+        private boolean daemonThreads;
+        private int queueCapacity = 10000;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.CALLER_RUNS;
+        private long blockTimeoutMillis;
+        private File spillDirectory = new File(System.getProperty("java.io.tmpdir"));
+        private TaskCodec taskCodec;
+
+        /**
+         * @param name name of the executor, used for its threads and its spill file
+         */
+        public Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder withPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        /**
+         * @param maxPoolSize maximum number of threads; threads beyond the pool size are only started while the
+         *                    queue is full and stop again after a minute without work
+         * @return this builder
+         */
+        public Builder withMaxPoolSize(int maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+            return this;
+        }
+
+        public Builder withDaemonThreads(boolean daemonThreads) {
+            this.daemonThreads = daemonThreads;
+            return this;
+        }
+
+        public Builder withQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Builder withOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * @param blockTimeoutMillis maximum wait for room in the queue with {@link OverflowPolicy#BLOCK},
+         *                           waits indefinitely if not positive
+         * @return this builder
+         */
+        public Builder withBlockTimeoutMillis(long blockTimeoutMillis) {
+            this.blockTimeoutMillis = blockTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * @param spillDirectory directory of the spill file with {@link OverflowPolicy#SPILL_TO_DISK}
+         * @param taskCodec      codec of the spilled tasks; without one tasks are run by the submitting thread
+         *                       instead of being spilled
+         * @return this builder
+         */
+        public Builder withSpill(File spillDirectory, TaskCodec taskCodec) {
+            this.spillDirectory = spillDirectory;
+            this.taskCodec = taskCodec;
+            return this;
+        }
+
+        private boolean spills() {
+            return overflowPolicy == OverflowPolicy.SPILL_TO_DISK && taskCodec != null;
+        }
+
+        public BoundedExecutor build() {
+            if (poolSize < 1 || queueCapacity < 1) {
+                throw new IllegalArgumentException("Executor " + name + " needs at least one thread and a queue " +
+                        "capacity of at least one, was " + poolSize + " threads and capacity " + queueCapacity);
+            }
+            if (overflowPolicy == OverflowPolicy.SPILL_TO_DISK && taskCodec != null && !spillDirectory.isDirectory()
+                    && !spillDirectory.mkdirs()) {
+                throw new IllegalArgumentException("Unable to create the spill directory " + spillDirectory
+                        + " of executor " + name);
+            }
+            return new BoundedExecutor(this);
+        }
+    }
+}
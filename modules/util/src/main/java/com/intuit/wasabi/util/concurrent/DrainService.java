@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.util.concurrent;
+
+import com.google.common.util.concurrent.AbstractIdleService;
+import org.slf4j.Logger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Service starting all registered {@link Drainable}s when the process starts and draining them when it shuts down.
+ */
+public class DrainService extends AbstractIdleService {
+
+    private static final Logger LOGGER = getLogger(DrainService.class);
+    private static final long DRAIN_TIMEOUT_SECONDS = 30;
+
+    @Override
+    protected void startUp() throws Exception {
+        Drainables.startAll();
+    }
+
+    @Override
+    protected void shutDown() throws Exception {
+        LOGGER.info("draining the queues of {}", serviceName());
+
+        if (Drainables.drainAll(DRAIN_TIMEOUT_SECONDS, SECONDS)) {
+            LOGGER.info("drained all queues");
+        } else {
+            LOGGER.warn("unable to drain all queues within {} seconds", DRAIN_TIMEOUT_SECONDS);
+        }
+    }
+}
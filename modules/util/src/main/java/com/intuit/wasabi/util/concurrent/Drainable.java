@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.util.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Something holding pending work which has to be finished before the process stops.
+ */
+public interface Drainable {
+
+    /**
+     * Starts the background work, once the process has started. May be called more than once, does nothing by
+     * default.
+     */
+    default void start() {
+    }
+
+    /**
+     * Stops taking new work and finishes the pending work.
+     *
+     * @param timeout maximum time to wait for the pending work
+     * @param unit    unit of the timeout
+     * @return <code>true</code> if all pending work was finished in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean drain(long timeout, TimeUnit unit) throws InterruptedException;
+}
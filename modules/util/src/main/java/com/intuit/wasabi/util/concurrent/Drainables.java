@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.util.concurrent;
+
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Registry of the {@link Drainable}s of this process, drained by the {@link DrainService} on shutdown.
+ */
+public final class Drainables {
+
+    private static final Logger LOGGER = getLogger(Drainables.class);
+    private static final List<Drainable> DRAINABLES = new CopyOnWriteArrayList<>();
+    private static volatile boolean started;
+
+    //Add private constructor to not allowing people to create new instance of this class
+    //since everything is static method here
+    private Drainables() {
+    }
+
+    /**
+     * Registers a drainable. Drainables are drained in the order they were registered, so work handed from one
+     * to another is drained by the receiving one as well if it was registered later. A drainable registered after
+     * {@link #startAll()} is started right away.
+     *
+     * @param drainable the drainable
+     */
+    public static void register(Drainable drainable) {
+        DRAINABLES.add(drainable);
+        if (started) {
+            drainable.start();
+        }
+    }
+
+    /**
+     * Starts all registered drainables and the ones registered from now on.
+     */
+    public static void startAll() {
+        started = true;
+        for (Drainable drainable : DRAINABLES) {
+            drainable.start();
+        }
+    }
+
+    /**
+     * Unregisters a drainable, e.g. one which was shut down already.
+     *
+     * @param drainable the drainable
+     */
+    public static void unregister(Drainable drainable) {
+        DRAINABLES.remove(drainable);
+    }
+
+    /**
+     * Drains all registered drainables.
+     *
+     * @param timeout maximum time to wait for all of them together
+     * @param unit    unit of the timeout
+     * @return <code>true</code> if all pending work was finished in time
+     */
+    public static boolean drainAll(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean drained = true;
+
+        for (Drainable drainable : DRAINABLES) {
+            try {
+                if (!drainable.drain(Math.max(0, deadline - System.nanoTime()), NANOSECONDS)) {
+                    LOGGER.warn("Unable to drain {} in time", drainable);
+                    drained = false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.warn("Interrupted while draining {}", drainable);
+                return false;
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to drain " + drainable, e);
+                drained = false;
+            }
+            DRAINABLES.remove(drainable);
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.util.concurrent;
+
+/**
+ * What a {@link BoundedExecutor} does with a task when its queue is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The submitting thread waits until the queue has room, at most for the block timeout of the executor.
+     * The task is rejected if the queue is still full afterwards.
+     */
+    BLOCK,
+
+    /**
+     * The oldest queued task is dropped to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The task is written to a file and queued again once the queue has drained. Tasks which cannot be encoded
+     * by the {@link TaskCodec} of the executor are run by the submitting thread.
+     */
+    SPILL_TO_DISK,
+
+    /**
+     * The submitting thread runs the task itself.
+     */
+    CALLER_RUNS;
+
+    /**
+     * Case insensitive version of {@link #valueOf(String)}
+     *
+     * @param policy the name of the policy
+     * @return the policy
+     */
+    public static OverflowPolicy fromString(String policy) {
+        return valueOf(policy.trim().toUpperCase());
+    }
+}
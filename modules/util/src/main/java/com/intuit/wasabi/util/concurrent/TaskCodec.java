@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.util.concurrent;
+
+/**
+ * Converts tasks to and from the records a {@link BoundedExecutor} spills to disk.
+ */
+public interface TaskCodec {
+
+    /**
+     * Encodes a task.
+     *
+     * @param task the task
+     * @return the task as a single line, <code>null</code> if the task cannot be encoded
+     */
+    String encode(Runnable task);
+
+    /**
+     * Decodes a task encoded by {@link #encode(Runnable)}.
+     *
+     * @param record the encoded task
+     * @return the task
+     */
+    Runnable decode(String record);
+}
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright 2016 Intuit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.intuit.wasabi.util.concurrent;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BoundedExecutorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+    private BoundedExecutor executor;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        release.countDown();
+        if (executor != null) {
+            executor.drain(5, SECONDS);
+        }
+    }
+
+    @Test
+    public void callerRunsWhenQueueIsFull() throws InterruptedException {
+        executor = new BoundedExecutor.Builder("test").withQueueCapacity(1)
+                .withOverflowPolicy(OverflowPolicy.CALLER_RUNS).build();
+        occupyWorkerAndQueue();
+
+        executor.execute(new Named("overflow"));
+
+        assertThat(ran.contains("overflow"), is(true));
+        assertThat(executor.getCallerRunsCount(), is(1L));
+    }
+
+    @Test
+    public void callerRunTasksKnowTheyAreRunByTheCaller() throws InterruptedException {
+        executor = new BoundedExecutor.Builder("test").withQueueCapacity(1)
+                .withOverflowPolicy(OverflowPolicy.CALLER_RUNS).build();
+        occupyWorkerAndQueue();
+        final AtomicReference<Boolean> runByCaller = new AtomicReference<>();
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                runByCaller.set(BoundedExecutor.isRunByCaller());
+            }
+        });
+
+        assertThat(runByCaller.get(), is(true));
+        assertThat(BoundedExecutor.isRunByCaller(), is(false));
+    }
+
+    @Test
+    public void dropOldestWhenQueueIsFull() throws InterruptedException {
+        executor = new BoundedExecutor.Builder("test").withQueueCapacity(1)
+                .withOverflowPolicy(OverflowPolicy.DROP_OLDEST).build();
+        occupyWorkerAndQueue();
+
+        executor.execute(new Named("newest"));
+        release.countDown();
+        assertTrue(executor.drain(5, SECONDS));
+
+        assertThat(ran, is((List<String>) new ArrayList<>(Collections.singletonList("newest"))));
+        assertThat(executor.getDroppedCount(), is(1L));
+    }
+
+    @Test
+    public void blockRejectsAfterTimeout() throws InterruptedException {
+        executor = new BoundedExecutor.Builder("test").withQueueCapacity(1)
+                .withOverflowPolicy(OverflowPolicy.BLOCK).withBlockTimeoutMillis(10).build();
+        occupyWorkerAndQueue();
+
+        try {
+            executor.execute(new Named("overflow"));
+            fail("the task should have been rejected");
+        } catch (RejectedExecutionException e) {
+            assertThat(executor.getRejectedCount(), is(1L));
+            assertTrue(executor.getEnqueueWaitMillis() >= 10);
+        }
+    }
+
+    @Test
+    public void blockRejectsOnShutdown() throws Exception {
+        executor = new BoundedExecutor.Builder("test").withQueueCapacity(1)
+                .withOverflowPolicy(OverflowPolicy.BLOCK).build();
+        occupyWorkerAndQueue();
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread caller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executor.execute(new Named("blocked"));
+                } catch (RejectedExecutionException e) {
+                    failure.set(e);
+                }
+            }
+        });
+        caller.start();
+        while (caller.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(10);
+        }
+
+        executor.shutdown();
+        caller.join(5000);
+
+        assertThat(caller.isAlive(), is(false));
+        assertTrue(failure.get() != null);
+        assertThat(executor.getRejectedCount(), is(1L));
+    }
+
+    @Test
+    public void spillToDiskAndReplay() throws Exception {
+        executor = new BoundedExecutor.Builder("test").withQueueCapacity(2)
+                .withOverflowPolicy(OverflowPolicy.SPILL_TO_DISK)
+                .withSpill(folder.getRoot(), new NamedCodec()).build();
+        occupyWorkerAndQueue();
+        executor.execute(new Named("queued2"));
+
+        executor.execute(new Named("spilled"));
+        assertThat(executor.getSpilledCount(), is(1L));
+        assertThat(ran.contains("spilled"), is(false));
+
+        release.countDown();
+        while (executor.getQueue().size() > 0) {
+            Thread.sleep(10);
+        }
+        executor.replaySpilledTasks();
+        assertTrue(executor.drain(5, SECONDS));
+
+        assertThat(ran.contains("spilled"), is(true));
+    }
+
+    @Test
+    public void replayFileIsDeletedOnceItsTasksHaveRun() throws Exception {
+        File spillFile = new File(folder.getRoot(), "test.spill");
+        File replayFile = new File(folder.getRoot(), "test.spill.replay");
+        Files.write(spillFile.toPath(), Collections.singletonList("left over"), StandardCharsets.UTF_8);
+
+        // the tasks left on disk are replayed at startup, the replayed task waits for the release
+        executor = new BoundedExecutor.Builder("test").withQueueCapacity(2)
+                .withOverflowPolicy(OverflowPolicy.SPILL_TO_DISK)
+                .withSpill(folder.getRoot(), new ReleasedCodec()).build();
+        while (spillFile.exists()) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertThat(replayFile.exists(), is(true));
+
+        release.countDown();
+        for (int i = 0; i < 500 && replayFile.exists(); i++) {
+            Thread.sleep(10);
+        }
+
+        assertThat(replayFile.exists(), is(false));
+        assertThat(ran.contains("left over"), is(true));
+    }
+
+    @Test
+    public void metricsOfBoundedExecutor() throws InterruptedException {
+        executor = new BoundedExecutor.Builder("test").withQueueCapacity(1).build();
+        occupyWorkerAndQueue();
+        executor.execute(new Named("overflow"));
+
+        Map<String, Integer> metrics = new HashMap<>();
+        BoundedExecutor.putMetrics("queue", executor, metrics);
+
+        assertThat(metrics.get("queue"), is(1));
+        assertThat(metrics.get("queue." + BoundedExecutor.CALLER_RUNS), is(1));
+        assertThat(metrics.get("queue." + BoundedExecutor.REJECTED), is(0));
+        assertThat(metrics.size(), is(6));
+    }
+
+    @Test
+    public void drainFinishesQueuedTasks() throws InterruptedException {
+        executor = new BoundedExecutor.Builder("test").withQueueCapacity(1).build();
+        occupyWorkerAndQueue();
+
+        release.countDown();
+
+        assertTrue(executor.drain(5, SECONDS));
+        assertThat(ran.contains("queued"), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBePositive() {
+        new BoundedExecutor.Builder("test").withQueueCapacity(0).build();
+    }
+
+    private void occupyWorkerAndQueue() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        started.await();
+        executor.execute(new Named("queued"));
+    }
+
+    private class Named implements Runnable {
+
+        private final String name;
+
+        Named(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            ran.add(name);
+        }
+    }
+
+    private class ReleasedCodec implements TaskCodec {
+
+        @Override
+        public String encode(Runnable task) {
+            return null;
+        }
+
+        @Override
+        public Runnable decode(final String record) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    ran.add(record);
+                }
+            };
+        }
+    }
+
+    private class NamedCodec implements TaskCodec {
+
+        @Override
+        public String encode(Runnable task) {
+            return task instanceof Named ? ((Named) task).name : null;
+        }
+
+        @Override
+        public Runnable decode(String record) {
+            return new Named(record);
+        }
+    }
+}